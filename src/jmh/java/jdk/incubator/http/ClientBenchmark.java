@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jdk.testlibrary.SimpleSSLContext;
+import tests.http2.server.Http2TestExchange;
+import tests.http2.server.Http2TestServer;
+
+/**
+ * End to end benchmark of {@code HttpClient.send} against a server running
+ * on loopback in the same VM, over plain HTTP/1.1, HTTP/1.1 over TLS and
+ * HTTP/2 over TLS, with small and large response bodies.
+ * <p>
+ * The throughput mode reports requests per second, the sample mode reports
+ * the latency percentiles, p99 included. The allocation rate per request is
+ * reported by the GC profiler, {@code -Djmh.args="ClientBenchmark -prof gc"},
+ * as {@code gc.alloc.rate.norm}; it includes what the in-process server
+ * allocates. The client is shared by the benchmark threads, so
+ * {@code -t <threads>} measures concurrent requests on the same client.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientBenchmark {
+
+    public enum Transport { HTTP_1_1, HTTP_1_1_TLS, HTTP_2_TLS }
+
+    @Param({"HTTP_1_1", "HTTP_1_1_TLS", "HTTP_2_TLS"})
+    Transport transport;
+
+    // response body size
+    @Param({"128", "1048576"})
+    int size;
+
+    private byte[] body;
+    private ExecutorService executor;
+    private HttpServer server;        // HTTP/1.1
+    private Http2TestServer server2;  // HTTP/2
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        body = new byte[size];
+        executor = Executors.newCachedThreadPool();
+        HttpClient.Builder builder = HttpClient.newBuilder().executor(executor);
+        SSLContext context = null;
+        if (transport != Transport.HTTP_1_1) {
+            context = new SimpleSSLContext().get();
+            builder.sslContext(context);
+        }
+        String uri;
+        switch (transport) {
+            case HTTP_1_1:
+                server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+                uri = "http://127.0.0.1:";
+                builder.version(HttpClient.Version.HTTP_1_1);
+                break;
+            case HTTP_1_1_TLS:
+                HttpsServer https = HttpsServer.create(
+                        new InetSocketAddress("127.0.0.1", 0), 0);
+                https.setHttpsConfigurator(new HttpsConfigurator(context));
+                server = https;
+                uri = "https://127.0.0.1:";
+                builder.version(HttpClient.Version.HTTP_1_1);
+                break;
+            default:
+                server2 = new Http2TestServer(true, 0, executor, context);
+                uri = "https://127.0.0.1:";
+                builder.version(HttpClient.Version.HTTP_2);
+        }
+        int port;
+        if (server != null) {
+            server.createContext("/bench", this::handle);
+            server.setExecutor(executor);
+            server.start();
+            port = server.getAddress().getPort();
+        } else {
+            server2.addHandler(this::handle2, "/bench");
+            server2.start();
+            port = server2.getAddress().getPort();
+        }
+        client = builder.build();
+        request = HttpRequest.newBuilder(URI.create(uri + port + "/bench")).build();
+        // check the set up, and open the connection
+        HttpResponse<byte[]> response = send();
+        if (response.body().length != size) {
+            throw new IOException("Unexpected response: " + response);
+        }
+        if (response.version() != client.version()) {
+            throw new IOException("Unexpected version: " + response.version());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        if (server != null) server.stop(0);
+        if (server2 != null) server2.stop();
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange t) throws IOException {
+        try (InputStream is = t.getRequestBody()) {
+            while (is.read() != -1);
+        }
+        t.sendResponseHeaders(200, body.length);
+        try (OutputStream os = t.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private void handle2(Http2TestExchange t) throws IOException {
+        try (InputStream is = t.getRequestBody()) {
+            while (is.read() != -1);
+        }
+        t.sendResponseHeaders(200, body.length);
+        try (OutputStream os = t.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    @Benchmark
+    public HttpResponse<byte[]> send() throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandler.asByteArray());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Measures {@code Http1HeaderParser} on a typical response header block,
+ * delivered in heap or direct buffers, either whole or in chunks small
+ * enough to split lines across buffers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Http1HeaderParserBenchmark {
+
+    private static final String RESPONSE =
+            "HTTP/1.1 200 OK\r\n" +
+            "Accept-Ranges: bytes\r\n" +
+            "Cache-Control: max-age=0, no-cache=\"set-cookie\"\r\n" +
+            "Content-Length: 132868\r\n" +
+            "Content-Type: text/html; charset=UTF-8\r\n" +
+            "Date: Sun, 05 Nov 2017 22:24:03 GMT\r\n" +
+            "Server: Apache/2.4.6 (Red Hat Enterprise Linux) OpenSSL/1.0.1e-fips\r\n" +
+            "Set-Cookie: AWSELB=AF7927F5100F4202119876ED2436B5005EE;PATH=/;MAX-AGE=900\r\n" +
+            "Vary: Host,Accept-Encoding,User-Agent\r\n" +
+            "X-Mod-Pagespeed: 1.12.34.2-0\r\n" +
+            "Connection: keep-alive\r\n\r\n";
+
+    @Param({"false", "true"})
+    boolean direct;
+
+    @Param({"0", "64"})
+    int chunk;
+
+    private ByteBuffer[] buffers;
+
+    @Setup
+    public void setup() {
+        byte[] bytes = RESPONSE.getBytes(US_ASCII);
+        int size = chunk == 0 ? bytes.length : chunk;
+        buffers = new ByteBuffer[(bytes.length + size - 1) / size];
+        for (int i = 0; i < buffers.length; i++) {
+            int n = Math.min(size, bytes.length - i * size);
+            ByteBuffer b = direct ? ByteBuffer.allocateDirect(n)
+                                  : ByteBuffer.allocate(n);
+            b.put(bytes, i * size, n).flip();
+            buffers[i] = b;
+        }
+    }
+
+    @Benchmark
+    public HttpHeaders parse() throws ProtocolException {
+        Http1HeaderParser parser = new Http1HeaderParser();
+        for (ByteBuffer b : buffers) {
+            b.rewind();
+            if (parser.parse(b))
+                break;
+        }
+        return parser.headers();
+    }
+}
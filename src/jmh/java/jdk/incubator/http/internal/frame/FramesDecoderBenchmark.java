@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http.internal.frame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@code FramesDecoder} on a stream of DATA frames, delivered
+ * either in one buffer or split into socket-sized reads that do not fall
+ * on frame boundaries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FramesDecoderBenchmark {
+
+    static final int TOTAL = 256 * 1024; // bytes of payload per operation
+
+    // payload size of each frame
+    @Param({"64", "1024", "16384"})
+    int frameSize;
+
+    // size of the buffers handed to the decoder, 0 for a single buffer
+    @Param({"0", "16384"})
+    int readSize;
+
+    private ByteBuffer[] reads;
+    private int frames;
+
+    @Setup
+    public void setup() {
+        FramesEncoder encoder = new FramesEncoder();
+        int count = TOTAL / frameSize;
+        ByteBuffer all = ByteBuffer.allocate(count * (frameSize + 9));
+        ByteBuffer payload = ByteBuffer.allocate(frameSize);
+        for (int i = 0; i < count; i++) {
+            List<ByteBuffer> encoded = encoder.encodeFrame(
+                    new DataFrame(1, 0, payload.duplicate()));
+            encoded.forEach(all::put);
+        }
+        all.flip();
+        frames = count;
+        if (readSize == 0) {
+            reads = new ByteBuffer[] { all };
+        } else {
+            int n = (all.remaining() + readSize - 1) / readSize;
+            reads = new ByteBuffer[n];
+            for (int i = 0; i < n; i++) {
+                all.limit(Math.min(all.capacity(), all.position() + readSize));
+                reads[i] = all.slice();
+                all.position(all.limit());
+            }
+        }
+    }
+
+    @Benchmark
+    public int decode() throws IOException {
+        int[] count = new int[1];
+        FramesDecoder decoder = new FramesDecoder(frame -> count[0]++);
+        for (ByteBuffer read : reads) {
+            decoder.decode(read.duplicate());
+        }
+        if (count[0] != frames) {
+            throw new InternalError("decoded " + count[0] + " of " + frames);
+        }
+        return count[0];
+    }
+}
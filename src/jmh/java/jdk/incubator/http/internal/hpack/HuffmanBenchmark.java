@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http.internal.hpack;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the bit-by-bit {@code Huffman.Reader} with the table driven
+ * {@code Huffman.TableReader} on header values of various sizes, and
+ * measures the {@code Huffman.Writer} on the same values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HuffmanBenchmark {
+
+    // 16: short header value, 512: typical cookie, 4096: large JWT or cookie
+    @Param({"16", "512", "4096"})
+    int length;
+
+    private String value;
+    private ByteBuffer encoded;
+    private ByteBuffer output;
+    private final StringBuilder decoded = new StringBuilder();
+    private final Huffman.Reader reader = new Huffman.Reader();
+    private final Huffman.TableReader tableReader = new Huffman.TableReader();
+    private final Huffman.Writer writer = new Huffman.Writer();
+
+    @Setup
+    public void setup() {
+        // Characters as found in tokens and cookies
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz"
+                + "0123456789-_.=;/+ ";
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        value = sb.toString();
+        encoded = ByteBuffer.allocate(Huffman.INSTANCE.lengthOf(value));
+        new Huffman.Writer().from(value, 0, value.length()).write(encoded);
+        encoded.flip();
+        output = ByteBuffer.allocate(encoded.remaining());
+    }
+
+    @Benchmark
+    public int reader() throws IOException {
+        decoded.setLength(0);
+        reader.reset();
+        reader.read(encoded.duplicate(), decoded, true);
+        return decoded.length();
+    }
+
+    @Benchmark
+    public int tableReader() throws IOException {
+        decoded.setLength(0);
+        tableReader.reset();
+        tableReader.read(encoded.duplicate(), decoded, true);
+        return decoded.length();
+    }
+
+    @Benchmark
+    public int writer() {
+        output.clear();
+        writer.reset();
+        writer.from(value, 0, value.length()).write(output);
+        return output.position();
+    }
+}
@@ -45,7 +45,7 @@ class AsyncSSLConnection extends AbstractAsyncSSLConnection {
                        HttpClientImpl client,
                        String[] alpn) {
         super(addr, client, Utils.getServerName(addr), alpn);
-        plainConnection = new PlainHttpConnection(addr, client);
+        plainConnection = new PlainHttpConnection(addr, client, true);
         writePublisher = new PlainHttpPublisher();
     }
 
@@ -56,8 +56,13 @@ class AsyncSSLConnection extends AbstractAsyncSSLConnection {
 
     @Override
     public CompletableFuture<Void> connectAsync() {
+        return connectAsync(null);
+    }
+
+    @Override
+    CompletableFuture<Void> connectAsync(ExchangeEvents events) {
         return plainConnection
-                .connectAsync()
+                .connectAsync(events)
                 .thenApply( unused -> {
                     // create the SSLTube wrapping the SocketTube, with the given engine
                     flow = new SSLTube(engine,
@@ -91,6 +96,7 @@ class AsyncSSLConnection extends AbstractAsyncSSLConnection {
 
     @Override
     public void close() {
+        releasePoolDestination();
         plainConnection.close();
     }
 
@@ -93,6 +93,7 @@ class AsyncSSLTunnelConnection extends AbstractAsyncSSLConnection {
 
     @Override
     public void close() {
+        releasePoolDestination();
         plainConnection.close();
     }
 
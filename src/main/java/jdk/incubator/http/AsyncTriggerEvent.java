@@ -37,15 +37,29 @@ final class AsyncTriggerEvent extends AsyncEvent{
 
     private final Runnable trigger;
     private final Consumer<? super IOException> errorHandler;
+    private final SelectableChannel channel;
     AsyncTriggerEvent(Consumer<? super IOException> errorHandler,
                       Runnable trigger) {
+        this(null, errorHandler, trigger);
+    }
+    /**
+     * Creates a trigger that will run in the selector thread serving
+     * the given channel.
+     */
+    AsyncTriggerEvent(SelectableChannel channel,
+                      Consumer<? super IOException> errorHandler,
+                      Runnable trigger) {
         super(0);
         this.trigger = Objects.requireNonNull(trigger);
         this.errorHandler = Objects.requireNonNull(errorHandler);
+        this.channel = channel;
     }
-    /** Returns null */
+    /**
+     * Returns the channel whose selector thread the trigger must run in,
+     * or null. The channel is never registered with the selector.
+     */
     @Override
-    public SelectableChannel channel() { return null; }
+    public SelectableChannel channel() { return channel; }
     /** Returns 0 */
     @Override
     public int interestOps() { return 0; }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.net.InetAddress;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import jdk.incubator.http.internal.common.SysLogger;
+import jdk.incubator.http.internal.common.SysLogger.Level;
+import jdk.incubator.http.internal.common.Utils;
+import java9.util.concurrent.CompletableFuture;
+
+/**
+ * A resolver which looks up host names with InetAddress.getAllByName on an
+ * executor, and caches the results, successful or not, for the configured
+ * time to live.
+ *
+ * Each host has one entry, holding the future of its last resolution.
+ * A resolution that is in progress is shared by the requests for the same
+ * host; the time to live starts when it completes. An expired entry is
+ * replaced by the next request for its host, and expired entries are
+ * purged whenever the cache grows beyond PURGE_THRESHOLD entries.
+ */
+final class CachingResolver implements HttpClient.Resolver {
+
+    static final boolean DEBUG = Utils.DEBUG; // Revisit: temporary dev flag.
+    static final SysLogger DEBUG_LOGGER =
+            Utils.getDebugLogger("CachingResolver"::toString, DEBUG);
+
+    static final int PURGE_THRESHOLD = 1024;
+
+    private final Executor executor;
+    private final long positiveTtl; // nanos
+    private final long negativeTtl; // nanos
+    private final ConcurrentHashMap<String,Entry> cache = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        final CompletableFuture<List<InetAddress>> cf;
+        private long expiry; // System.nanoTime()
+        private volatile boolean timed; // expiry is set
+
+        Entry(CompletableFuture<List<InetAddress>> cf) {
+            this.cf = cf;
+        }
+
+        // called once cf is done
+        void expireAfter(long ttl) {
+            expiry = System.nanoTime() + ttl;
+            timed = true;
+        }
+
+        boolean isExpired(long now) {
+            return timed && now - expiry >= 0;
+        }
+    }
+
+    CachingResolver(Executor executor, Duration positiveTtl, Duration negativeTtl) {
+        this.executor = Objects.requireNonNull(executor);
+        this.positiveTtl = toNanos(positiveTtl, "positiveTtl");
+        this.negativeTtl = toNanos(negativeTtl, "negativeTtl");
+    }
+
+    private static long toNanos(Duration ttl, String name) {
+        if (ttl.isNegative())
+            throw new IllegalArgumentException(name + " is negative: " + ttl);
+        try {
+            return ttl.toNanos();
+        } catch (ArithmeticException x) {
+            return Long.MAX_VALUE / 2; // practically forever
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<InetAddress>> resolve(String host) {
+        String key = host.toLowerCase(Locale.ROOT);
+        long now = System.nanoTime();
+        Entry e = cache.get(key);
+        if (e == null || e.isExpired(now)) {
+            e = cache.compute(key, (k, old) ->
+                    old == null || old.isExpired(now) ? lookup(host) : old);
+            if (cache.size() > PURGE_THRESHOLD) purge(now);
+        }
+        // callers must not be able to complete the shared future
+        return e.cf.copy();
+    }
+
+    private Entry lookup(String host) {
+        DEBUG_LOGGER.log(Level.DEBUG, "resolving %s", host);
+        CompletableFuture<List<InetAddress>> cf =
+                CompletableFuture.supplyAsync(() -> getAllByName(host), executor);
+        Entry e = new Entry(cf);
+        cf.whenComplete((addresses, t) -> {
+            e.expireAfter(t == null ? positiveTtl : negativeTtl);
+            DEBUG_LOGGER.log(Level.DEBUG, "resolved %s: %s", host,
+                             t == null ? addresses : Utils.getCompletionCause(t));
+        });
+        return e;
+    }
+
+    private static List<InetAddress> getAllByName(String host) {
+        PrivilegedExceptionAction<InetAddress[]> pa =
+                () -> InetAddress.getAllByName(host);
+        try {
+            InetAddress[] addresses = AccessController.doPrivileged(pa);
+            return Collections.unmodifiableList(Arrays.asList(addresses));
+        } catch (PrivilegedActionException x) {
+            throw new CompletionException(x.getCause());
+        }
+    }
+
+    private void purge(long now) {
+        cache.values().removeIf(e -> e.isExpired(now));
+    }
+
+    // for tests
+    int size() {
+        return cache.size();
+    }
+}
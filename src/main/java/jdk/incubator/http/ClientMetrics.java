@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.lang.management.ManagementFactory;
+import java.security.AccessController;
+import java.security.PrivilegedExceptionAction;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import jdk.incubator.http.internal.common.SysLogger;
+import jdk.incubator.http.internal.common.SysLogger.Level;
+import jdk.incubator.http.internal.common.Utils;
+
+/**
+ * The metrics of an HttpClientImpl.
+ *
+ * Counters are LongAdders, which are striped under contention, so that
+ * updating them from the selector and executor threads costs about as much
+ * as an uncontended increment. Gauges are computed from the connection pool
+ * and the HTTP/2 connections when they are read.
+ */
+final class ClientMetrics implements HttpClientMetrics {
+
+    static final boolean JMX = Utils.getBooleanProperty("jdk.httpclient.jmx", false);
+    static final boolean DEBUG = Utils.DEBUG; // Revisit: temporary dev flag.
+    final SysLogger debug = Utils.getDebugLogger(this::dbgString, DEBUG);
+
+    // Upper bounds of the latency histogram buckets, in milliseconds
+    private static final long[] LATENCY_BUCKETS = {
+        1, 2, 5, 10, 20, 50, 100, 200, 500,
+        1_000, 2_000, 5_000, 10_000, 30_000, 60_000
+    };
+
+    private final HttpClientImpl client;
+    final LongAdder bytesRead = new LongAdder();
+    final LongAdder bytesWritten = new LongAdder();
+    final LongAdder poolHits = new LongAdder();
+    final LongAdder poolMisses = new LongAdder();
+    final LongAdder stallNanos = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder[] latency = new LongAdder[LATENCY_BUCKETS.length + 1];
+    private volatile ObjectName name;
+
+    ClientMetrics(HttpClientImpl client) {
+        this.client = client;
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LongAdder();
+        }
+    }
+
+    final String dbgString() {
+        return "ClientMetrics(" + client.dbgString() + ")";
+    }
+
+    /**
+     * Records the outcome of a request sent at startNanos.
+     */
+    void requestCompleted(long startNanos, Throwable failure) {
+        if (failure != null) {
+            failed.increment();
+            return;
+        }
+        completed.increment();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        int i = 0;
+        while (i < LATENCY_BUCKETS.length && millis >= LATENCY_BUCKETS[i]) i++;
+        latency[i].increment();
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, if
+     * jdk.httpclient.jmx is true.
+     */
+    void register(long id) {
+        if (!JMX) return;
+        try {
+            ObjectName on = new ObjectName("jdk.incubator.http:type=HttpClient,id=" + id);
+            StandardMBean mbean = new StandardMBean(this, HttpClientMetrics.class, true);
+            AccessController.doPrivileged((PrivilegedExceptionAction<Void>) () -> {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, on);
+                return null;
+            });
+            name = on;
+        } catch (Exception x) {
+            debug.log(Level.DEBUG, "failed to register MBean: %s", (Object) x);
+        }
+    }
+
+    void unregister() {
+        ObjectName on = name;
+        if (on == null) return;
+        name = null;
+        try {
+            AccessController.doPrivileged((PrivilegedExceptionAction<Void>) () -> {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (server.isRegistered(on)) server.unregisterMBean(on);
+                return null;
+            });
+        } catch (Exception x) {
+            debug.log(Level.DEBUG, "failed to unregister MBean: %s", (Object) x);
+        }
+    }
+
+    @Override
+    public Map<String,Integer> getOpenConnections() {
+        Map<String,Integer> open = new TreeMap<>();
+        client.connectionPool().countConnections(open, null);
+        client.client2().countConnections(open);
+        return open;
+    }
+
+    @Override
+    public Map<String,Integer> getIdleConnections() {
+        Map<String,Integer> idle = new TreeMap<>();
+        client.connectionPool().countConnections(null, idle);
+        return idle;
+    }
+
+    @Override
+    public long getPoolHits() {
+        return poolHits.sum();
+    }
+
+    @Override
+    public long getPoolMisses() {
+        return poolMisses.sum();
+    }
+
+    @Override
+    public int getActiveStreams() {
+        return client.client2().activeStreams();
+    }
+
+    @Override
+    public long getFlowControlStallTime() {
+        return TimeUnit.NANOSECONDS.toMillis(stallNanos.sum());
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getCompletedRequests() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getFailedRequests() {
+        return failed.sum();
+    }
+
+    @Override
+    public long[] getLatencyBuckets() {
+        return LATENCY_BUCKETS.clone();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] histogram = new long[latency.length];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = latency[i].sum();
+        }
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        return dbgString();
+    }
+}
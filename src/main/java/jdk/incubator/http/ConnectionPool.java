@@ -31,14 +31,15 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import jdk.incubator.http.internal.common.FlowTube;
 import jdk.incubator.http.internal.common.SysLogger;
 import jdk.incubator.http.internal.common.Utils;
@@ -47,21 +48,43 @@ import java9.util.concurrent.Flow;
 
 /**
  * Http 1.1 connection pool.
+ *
+ * The pool does not use a pool-wide lock. Idle connections are kept in a
+ * lock-free deque per destination, and their keep-alive deadlines in a
+ * timing wheel shared by all destinations. An idle entry is handed
+ * out, expired, or cleaned up by whichever thread first {@linkplain
+ * IdleEntry#claim() claims} it. A destination is dropped from the pool
+ * once it has no idle entry, no open connection and no pipeline left.
+ *
+ * The pool limits, per destination, the number of idle connections it
+ * keeps ({@code jdk.httpclient.pool.maxidle}) and the number of open
+ * connections above which a released connection is closed rather than
+ * pooled ({@code jdk.httpclient.pool.maxconnections}). Neither limit
+ * bounds the number of connections that are opened.
  */
 final class ConnectionPool {
 
     static final long KEEP_ALIVE = Utils.getIntegerNetProperty(
             "jdk.httpclient.keepalive.timeout", 1200); // seconds
+    // Maximum number of idle connections kept per destination
+    static final int MAX_IDLE = Math.max(0, Utils.getIntegerNetProperty(
+            "jdk.httpclient.pool.maxidle", Integer.MAX_VALUE));
+    // Maximum number of open connections per destination beyond which
+    // a connection is closed instead of being returned to the pool. This
+    // only caps pooling: it does not limit how many connections are opened
+    // to a destination, since an exchange never waits for a connection.
+    static final int MAX_CONNECTIONS = Math.max(1, Utils.getIntegerNetProperty(
+            "jdk.httpclient.pool.maxconnections", Integer.MAX_VALUE));
     static final boolean DEBUG = Utils.DEBUG; // Revisit: temporary dev flag.
     final SysLogger debug = Utils.getDebugLogger(this::dbgString, DEBUG);
 
     // Pools of idle connections
 
-    private final HashMap<CacheKey,LinkedList<HttpConnection>> plainPool;
-    private final HashMap<CacheKey,LinkedList<HttpConnection>> sslPool;
+    private final ConcurrentHashMap<CacheKey,Destination> plainPool;
+    private final ConcurrentHashMap<CacheKey,Destination> sslPool;
     private final ExpiryList expiryList;
     private final String dbgTag; // used for debug
-    boolean stopped;
+    volatile boolean stopped;
 
     /**
      * Entries in connection pool are keyed by destination address and/or
@@ -113,8 +136,8 @@ final class ConnectionPool {
      */
     private ConnectionPool(String tag) {
         dbgTag = tag;
-        plainPool = new HashMap<>();
-        sslPool = new HashMap<>();
+        plainPool = new ConcurrentHashMap<>();
+        sslPool = new ConcurrentHashMap<>();
         expiryList = new ExpiryList();
     }
 
@@ -132,17 +155,68 @@ final class ConnectionPool {
         return new CacheKey(destination, proxy);
     }
 
-    synchronized HttpConnection getConnection(boolean secure,
-                                              InetSocketAddress addr,
-                                              InetSocketAddress proxy) {
+    HttpConnection getConnection(boolean secure,
+                                 InetSocketAddress addr,
+                                 InetSocketAddress proxy) {
         if (stopped) return null;
         CacheKey key = new CacheKey(addr, proxy);
-        HttpConnection c = secure ? findConnection(key, sslPool)
-                                  : findConnection(key, plainPool);
+        Destination d = secure ? sslPool.get(key) : plainPool.get(key);
+        if (d == null) return null;
+        IdleEntry e = d.poll();
+        if (e == null) {
+            // entries claimed by others may have been unlinked by poll
+            d.removeIfUnused();
+            return null;
+        }
+        expiryList.remove(e);
+        d.removeIfUnused();
+        HttpConnection c = e.connection;
         //System.out.println ("getConnection returning: " + c);
         return c;
     }
 
+    /**
+     * Returns the pipeline that an exchange to the given destination can
+     * join, or null. Idle connections are preferred, so there is none if
+     * the destination has any.
+     */
+    Http1Pipeline getPipeline(boolean secure,
+                              InetSocketAddress addr,
+                              InetSocketAddress proxy) {
+        if (stopped) return null;
+        CacheKey key = new CacheKey(addr, proxy);
+        Destination d = secure ? sslPool.get(key) : plainPool.get(key);
+        if (d == null || d.idleCount.get() > 0) return null;
+        return d.pipeline.get();
+    }
+
+    /**
+     * Makes the given pipeline the one that exchanges to its destination
+     * join, in place of the previous one, if any.
+     */
+    void pipelineStarted(Http1Pipeline pipeline) {
+        if (stopped) return;
+        attach(pipeline.connection, d -> d.pipeline.set(pipeline));
+    }
+
+    /** Called when no more exchanges can join the given pipeline. */
+    void pipelineClosed(Http1Pipeline pipeline) {
+        HttpConnection c = pipeline.connection;
+        Destination d = poolFor(c).get(c.cacheKey());
+        if (d != null && d.pipeline.compareAndSet(pipeline, null)) {
+            d.removeIfUnused();
+        }
+    }
+
+    /**
+     * Counts a newly created connection against the limit of open
+     * connections of its destination, until the connection is closed.
+     */
+    void connectionOpened(HttpConnection conn) {
+        if (stopped) return;
+        attach(conn, conn::setPoolDestination);
+    }
+
     /**
      * Returns the connection to the pool.
      */
@@ -153,28 +227,47 @@ final class ConnectionPool {
     // Called also by whitebox tests
     void returnToPool(HttpConnection conn, Instant now, long keepAlive) {
 
-        // Don't call registerCleanupTrigger while holding a lock,
-        // but register it before the connection is added to the pool,
-        // since we don't want to trigger the cleanup if the connection
-        // is not in the pool.
+        if (stopped) {
+            conn.close();
+            return;
+        }
+        Destination d = destinationFor(conn);
+        if (d.open.get() > MAX_CONNECTIONS) {
+            debug.log(Level.DEBUG, "%s: too many connections, closing %s",
+                      d, conn);
+            conn.close();
+            return;
+        }
+
+        // Register the cleanup trigger before the connection is added to
+        // the pool, since we don't want to miss anything that happens
+        // while it is sitting there.
         CleanupTrigger cleanup = registerCleanupTrigger(conn);
+        IdleEntry entry = new IdleEntry(conn, d, now, keepAlive);
+        cleanup.entry = entry;
+        expiryList.add(entry);
+        while (!offer(entry)) {
+            // the destination was dropped in the meantime
+            expiryList.remove(entry);
+            d = destinationFor(conn);
+            entry = new IdleEntry(conn, d, now, keepAlive);
+            cleanup.entry = entry;
+            expiryList.add(entry);
+        }
 
-        // it's possible that cleanup may have been called.
-        synchronized(this) {
-            if (cleanup.isDone()) {
-                return;
-            } else if (stopped) {
-                conn.close();
-                return;
-            }
-            if (conn instanceof PlainHttpConnection) {
-                putConnection(conn, plainPool);
-            } else {
-                assert conn.isSecure();
-                putConnection(conn, sslPool);
-            }
-            expiryList.add(conn, now, keepAlive);
+        // Cleanup, or stop, may have happened concurrently - in which case
+        // it may have missed the entry we have just added.
+        if (cleanup.isDone() || stopped) {
+            if (entry.claim()) remove(entry);
+            close(conn);
+            return;
+        }
+        List<IdleEntry> evicted = d.trim(MAX_IDLE);
+        for (IdleEntry e : evicted) {
+            expiryList.remove(e);
+            close(e.connection);
         }
+        if (!evicted.isEmpty()) d.removeIfUnused();
         //System.out.println("Return to pool: " + conn);
     }
 
@@ -189,44 +282,48 @@ final class ConnectionPool {
         return cleanup;
     }
 
-    private HttpConnection
-    findConnection(CacheKey key,
-                   HashMap<CacheKey,LinkedList<HttpConnection>> pool) {
-        LinkedList<HttpConnection> l = pool.get(key);
-        if (l == null || l.isEmpty()) {
-            return null;
-        } else {
-            HttpConnection c = l.removeFirst();
-            expiryList.remove(c);
-            return c;
-        }
+    private ConcurrentHashMap<CacheKey,Destination> poolFor(HttpConnection c) {
+        ConcurrentHashMap<CacheKey,Destination> pool =
+                c instanceof PlainHttpConnection ? plainPool : sslPool;
+        assert pool == plainPool || c.isSecure();
+        return pool;
     }
 
-    /* called from cache cleaner only  */
-    private boolean
-    removeFromPool(HttpConnection c,
-                   HashMap<CacheKey,LinkedList<HttpConnection>> pool) {
-        //System.out.println("cacheCleaner removing: " + c);
-        assert Thread.holdsLock(this);
-        CacheKey k = c.cacheKey();
-        List<HttpConnection> l = pool.get(k);
-        if (l == null || l.isEmpty()) {
-            pool.remove(k);
-            return false;
-        }
-        return l.remove(c);
+    private Destination destinationFor(HttpConnection c) {
+        ConcurrentHashMap<CacheKey,Destination> pool = poolFor(c);
+        return pool.computeIfAbsent(c.cacheKey(), k -> new Destination(k, pool));
     }
 
-    private void
-    putConnection(HttpConnection c,
-                  HashMap<CacheKey,LinkedList<HttpConnection>> pool) {
-        CacheKey key = c.cacheKey();
-        LinkedList<HttpConnection> l = pool.get(key);
-        if (l == null) {
-            l = new LinkedList<>();
-            pool.put(key, l);
-        }
-        l.add(c);
+    /*
+     * Applies the given action to the destination of the given connection,
+     * creating the destination if needed. The action runs atomically with
+     * respect to Destination::removeIfUnused, so that nothing is added to a
+     * destination that is being dropped from the pool.
+     */
+    private void attach(HttpConnection c, Consumer<Destination> action) {
+        ConcurrentHashMap<CacheKey,Destination> pool = poolFor(c);
+        pool.compute(c.cacheKey(), (k, d) -> {
+            if (d == null) d = new Destination(k, pool);
+            action.accept(d);
+            return d;
+        });
+    }
+
+    // Adds the entry to its destination, unless that destination has been
+    // dropped from the pool.
+    private boolean offer(IdleEntry entry) {
+        Destination d = entry.destination;
+        return d.pool.computeIfPresent(d.key, (k, cur) -> {
+            if (cur == d) d.offer(entry);
+            return cur;
+        }) == d;
+    }
+
+    // Removes a claimed entry from the pool
+    private void remove(IdleEntry entry) {
+        entry.destination.remove(entry);
+        expiryList.remove(entry);
+        entry.destination.removeIfUnused();
     }
 
     /**
@@ -251,23 +348,16 @@ final class ConnectionPool {
         // just adding them.
         if (!expiryList.purgeMaybeRequired()) return nextPurge;
 
-        List<HttpConnection> closelist;
-        synchronized (this) {
-            closelist = expiryList.purgeUntil(now);
-            for (HttpConnection c : closelist) {
-                if (c instanceof PlainHttpConnection) {
-                    boolean wasPresent = removeFromPool(c, plainPool);
-                    assert wasPresent;
-                } else {
-                    boolean wasPresent = removeFromPool(c, sslPool);
-                    assert wasPresent;
-                }
-            }
-            nextPurge = now.until(
-                    expiryList.nextExpiryDeadline().orElse(now),
-                    ChronoUnit.MILLIS);
+        List<IdleEntry> closelist = expiryList.purgeUntil(now);
+        for (IdleEntry e : closelist) {
+            e.destination.remove(e);
+            e.destination.removeIfUnused();
+        }
+        Instant next = expiryList.nextExpiryDeadline();
+        if (next != null) {
+            nextPurge = now.until(next, ChronoUnit.MILLIS);
         }
-        closelist.forEach(this::close);
+        closelist.forEach((e) -> close(e.connection));
         return nextPurge;
     }
 
@@ -277,162 +367,228 @@ final class ConnectionPool {
         } catch (Throwable e) {} // ignore
     }
 
+    /**
+     * Adds up the open and idle connections of each destination into the
+     * given maps, keyed by origin. Either map may be null.
+     */
+    void countConnections(Map<String,Integer> open, Map<String,Integer> idle) {
+        for (Destination d : plainPool.values()) d.countInto(open, idle);
+        for (Destination d : sslPool.values()) d.countInto(open, idle);
+    }
+
+    // Used for whitebox testing
+    int destinationCount() {
+        return plainPool.size() + sslPool.size();
+    }
+
     void stop() {
-        List<HttpConnection> closelist = Collections.emptyList();
+        stopped = true;
+        List<IdleEntry> closelist = new ArrayList<>();
         try {
-            synchronized (this) {
-                stopped = true;
-                closelist = expiryList.stream()
-                    .map(e -> e.connection)
-                    .collect(Collectors.toList());
-                expiryList.clear();
-                plainPool.clear();
-                sslPool.clear();
-            }
+            for (Destination d : plainPool.values()) d.drainTo(closelist);
+            for (Destination d : sslPool.values()) d.drainTo(closelist);
+            closelist.forEach(expiryList::remove);
+            plainPool.clear();
+            sslPool.clear();
         } finally {
-            closelist.forEach(this::close);
+            closelist.forEach((e) -> close(e.connection));
+        }
+    }
+
+    /**
+     * Idle connections to a single destination, most recently returned
+     * first, together with the number of open connections to that
+     * destination.
+     */
+    static final class Destination {
+        final CacheKey key;
+        // the map of the pool this destination belongs to
+        private final ConcurrentHashMap<CacheKey,Destination> pool;
+        private final ConcurrentLinkedDeque<IdleEntry> idle =
+                new ConcurrentLinkedDeque<>();
+        // number of entries in idle. It is decremented by whoever unlinks
+        // an entry, which is not always the thread that claimed it, so that
+        // each entry is counted out exactly once.
+        private final AtomicInteger idleCount = new AtomicInteger();
+        // number of open connections counted against this destination
+        final AtomicInteger open = new AtomicInteger();
+        // the pipeline that exchanges to this destination join, if any
+        final AtomicReference<Http1Pipeline> pipeline = new AtomicReference<>();
+
+        Destination(CacheKey key, ConcurrentHashMap<CacheKey,Destination> pool) {
+            this.key = key;
+            this.pool = pool;
+        }
+
+        void offer(IdleEntry entry) {
+            idle.offerFirst(entry);
+            idleCount.incrementAndGet();
+        }
+
+        // Claims and returns the most recently returned entry, or null
+        IdleEntry poll() {
+            IdleEntry e;
+            while ((e = idle.pollFirst()) != null) {
+                idleCount.decrementAndGet();
+                if (e.claim()) {
+                    return e;
+                }
+            }
+            return null;
+        }
+
+        // Removes an entry that was claimed by the caller, unless another
+        // thread has already unlinked it
+        void remove(IdleEntry entry) {
+            if (idle.removeLastOccurrence(entry)) {
+                idleCount.decrementAndGet();
+            }
+        }
+
+        // Claims and removes the least recently returned entries until
+        // no more than max remain.
+        List<IdleEntry> trim(int max) {
+            List<IdleEntry> evicted = null;
+            while (idleCount.get() > max) {
+                IdleEntry e = idle.pollLast();
+                if (e == null) break;
+                idleCount.decrementAndGet();
+                if (e.claim()) {
+                    if (evicted == null) evicted = new ArrayList<>();
+                    evicted.add(e);
+                }
+            }
+            return evicted == null ? Collections.emptyList() : evicted;
+        }
+
+        void drainTo(List<IdleEntry> list) {
+            IdleEntry e;
+            while ((e = idle.pollFirst()) != null) {
+                idleCount.decrementAndGet();
+                if (e.claim()) {
+                    list.add(e);
+                }
+            }
+        }
+
+        void connectionClosed() {
+            if (open.decrementAndGet() == 0) removeIfUnused();
+        }
+
+        private boolean isUnused() {
+            return idleCount.get() == 0 && open.get() == 0
+                    && pipeline.get() == null;
+        }
+
+        // Drops this destination from the pool if nothing refers to it
+        // any more.
+        void removeIfUnused() {
+            if (!isUnused()) return;
+            pool.computeIfPresent(key,
+                    (k, d) -> d == this && isUnused() ? null : d);
+        }
+
+        void countInto(Map<String,Integer> openMap, Map<String,Integer> idleMap) {
+            String origin = origin();
+            int o = open.get(), i = idleCount.get();
+            if (openMap != null && o > 0) openMap.merge(origin, o, Integer::sum);
+            if (idleMap != null && i > 0) idleMap.merge(origin, i, Integer::sum);
+        }
+
+        // host:port of the destination, or of the proxy
+        String origin() {
+            InetSocketAddress addr = key.destination != null
+                    ? key.destination : key.proxy;
+            return addr.getHostString() + ":" + addr.getPort();
+        }
+
+        @Override
+        public String toString() {
+            return "Destination(" + (key.destination != null
+                    ? key.destination : key.proxy) + ")";
         }
     }
 
-    static final class ExpiryEntry {
+    /**
+     * An idle connection sitting in the pool. Whoever first claims
+     * the entry - a caller of getConnection, the purge, the cleanup trigger,
+     * or stop - owns the connection and is responsible for removing the
+     * entry from the pool.
+     */
+    static final class IdleEntry extends TimingWheel.Entry {
         final HttpConnection connection;
+        final Destination destination;
         final Instant expiry; // absolute time in seconds of expiry time
-        ExpiryEntry(HttpConnection connection, Instant expiry) {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        IdleEntry(HttpConnection connection, Destination destination,
+                  Instant now, long keepAlive) {
+            this(connection, destination, now.truncatedTo(ChronoUnit.SECONDS)
+                    .plus(keepAlive, ChronoUnit.SECONDS));
+        }
+
+        private IdleEntry(HttpConnection connection, Destination destination,
+                          Instant expiry) {
+            super(expiry.toEpochMilli());
             this.connection = connection;
+            this.destination = destination;
             this.expiry = expiry;
         }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
     }
 
     /**
-     * Manages a LinkedList of sorted ExpiryEntry. The entry with the closer
-     * deadline is at the tail of the list, and the entry with the farther
-     * deadline is at the head. In the most common situation, new elements
-     * will need to be added at the head (or close to it), and expired elements
-     * will need to be purged from the tail.
+     * Keeps the idle entries of all destinations by expiry deadline. Entries
+     * are added and removed in constant time; expired entries are purged by
+     * a single thread, the first SelectorManager thread (or a whitebox test).
      */
-    private static final class ExpiryList {
-        private final LinkedList<ExpiryEntry> list = new LinkedList<>();
-        private volatile boolean mayContainEntries;
+    static final class ExpiryList {
+        // Keep-alive deadlines have seconds granularity: one tick per
+        // second, and one revolution of the wheel in a bit over 8 minutes.
+        private final TimingWheel<IdleEntry> wheel = new TimingWheel<>(1000, 512);
 
-        // A loosely accurate boolean whose value is computed
-        // at the end of each operation performed on ExpiryList;
-        // Does not require synchronizing on the ConnectionPool.
+        // A loosely accurate boolean that does not require
+        // synchronization.
         boolean purgeMaybeRequired() {
-            return mayContainEntries;
-        }
-
-        // Returns the next expiry deadline
-        // should only be called while holding a synchronization
-        // lock on the ConnectionPool
-        Optional<Instant> nextExpiryDeadline() {
-            if (list.isEmpty()) return Optional.empty();
-            else return Optional.of(list.getLast().expiry);
-        }
-
-        // should only be called while holding a synchronization
-        // lock on the ConnectionPool
-        void add(HttpConnection conn) {
-            add(conn, Instant.now(), KEEP_ALIVE);
-        }
-
-        // Used by whitebox test.
-        void add(HttpConnection conn, Instant now, long keepAlive) {
-            Instant then = now.truncatedTo(ChronoUnit.SECONDS)
-                    .plus(keepAlive, ChronoUnit.SECONDS);
-
-            // Elements with the farther deadline are at the head of
-            // the list. It's more likely that the new element will
-            // have the farthest deadline, and will need to be inserted
-            // at the head of the list, so we're using an ascending
-            // list iterator to find the right insertion point.
-            ListIterator<ExpiryEntry> li = list.listIterator();
-            while (li.hasNext()) {
-                ExpiryEntry entry = li.next();
-
-                if (then.isAfter(entry.expiry)) {
-                    li.previous();
-                    // insert here
-                    li.add(new ExpiryEntry(conn, then));
-                    mayContainEntries = true;
-                    return;
-                }
-            }
-            // last (or first) element of list (the last element is
-            // the first when the list is empty)
-            list.add(new ExpiryEntry(conn, then));
-            mayContainEntries = true;
-        }
-
-        // should only be called while holding a synchronization
-        // lock on the ConnectionPool
-        void remove(HttpConnection c) {
-            if (c == null || list.isEmpty()) return;
-            ListIterator<ExpiryEntry> li = list.listIterator();
-            while (li.hasNext()) {
-                ExpiryEntry e = li.next();
-                if (e.connection.equals(c)) {
-                    li.remove();
-                    mayContainEntries = !list.isEmpty();
-                    return;
-                }
-            }
+            return !wheel.isEmpty();
         }
 
-        // should only be called while holding a synchronization
-        // lock on the ConnectionPool.
-        // Purge all elements whose deadline is before now (now included).
-        List<HttpConnection> purgeUntil(Instant now) {
-            if (list.isEmpty()) return Collections.emptyList();
-
-            List<HttpConnection> closelist = new ArrayList<>();
-
-            // elements with the closest deadlines are at the tail
-            // of the queue, so we're going to use a descending iterator
-            // to remove them, and stop when we find the first element
-            // that has not expired yet.
-            Iterator<ExpiryEntry> li = list.descendingIterator();
-            while (li.hasNext()) {
-                ExpiryEntry entry = li.next();
-                // use !isAfter instead of isBefore in order to
-                // remove the entry if its expiry == now
-                if (!entry.expiry.isAfter(now)) {
-                    li.remove();
-                    HttpConnection c = entry.connection;
-                    closelist.add(c);
-                } else break; // the list is sorted
-            }
-            mayContainEntries = !list.isEmpty();
-            return closelist;
+        // Returns the time at which the next purge should happen, or null.
+        // This is the next expiry deadline, unless it is too far away.
+        Instant nextExpiryDeadline() {
+            long next = wheel.nextDeadline();
+            return next < 0 ? null : Instant.ofEpochMilli(next);
         }
 
-        // should only be called while holding a synchronization
-        // lock on the ConnectionPool
-        java.util.stream.Stream<ExpiryEntry> stream() {
-            return list.stream();
+        void add(IdleEntry entry) {
+            wheel.schedule(entry);
         }
 
-        // should only be called while holding a synchronization
-        // lock on the ConnectionPool
-        void clear() {
-            list.clear();
-            mayContainEntries = false;
+        void remove(IdleEntry entry) {
+            wheel.cancel(entry);
+        }
+
+        // Claims and removes all entries whose deadline is before now
+        // (now included).
+        List<IdleEntry> purgeUntil(Instant now) {
+            List<IdleEntry> closelist = new ArrayList<>();
+            for (IdleEntry entry : wheel.expire(now.toEpochMilli())) {
+                if (entry.claim()) closelist.add(entry);
+            }
+            return closelist;
         }
     }
 
-    void cleanup(HttpConnection c, Throwable error) {
+    void cleanup(IdleEntry entry, Throwable error) {
+        HttpConnection c = entry.connection;
         debug.log(Level.DEBUG,
                   "%s : ConnectionPool.cleanup(%s)",
                   String.valueOf(c.getConnectionFlow()),
                   error);
-        synchronized(this) {
-            if (c instanceof PlainHttpConnection) {
-                removeFromPool(c, plainPool);
-            } else {
-                assert c.isSecure();
-                removeFromPool(c, sslPool);
-            }
-            expiryList.remove(c);
-        }
+        if (entry.claim()) remove(entry);
         c.close();
     }
 
@@ -447,6 +603,8 @@ final class ConnectionPool {
 
         private final HttpConnection connection;
         private volatile boolean done;
+        // set by returnToPool once the connection is in the pool
+        volatile IdleEntry entry;
 
         public CleanupTrigger(HttpConnection connection) {
             this.connection = connection;
@@ -456,7 +614,15 @@ final class ConnectionPool {
 
         private void triggerCleanup(Throwable error) {
             done = true;
-            cleanup(connection, error);
+            IdleEntry e = entry;
+            if (e != null) {
+                cleanup(e, error);
+            } else {
+                // returnToPool will take care of it
+                debug.log(Level.DEBUG, "%s : cleanup before pooling (%s)",
+                          String.valueOf(connection.getConnectionFlow()),
+                          error);
+            }
         }
 
         @Override public void request(long n) {}
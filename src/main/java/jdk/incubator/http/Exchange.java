@@ -33,6 +33,7 @@ import java.net.URLPermission;
 import java.security.AccessControlContext;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.Executor;
 import jdk.incubator.http.internal.common.MinimalFuture;
 import jdk.incubator.http.internal.common.SysLogger;
@@ -120,8 +121,14 @@ final class Exchange<T> {
 
     public CompletableFuture<T> readBodyAsync(HttpResponse.BodyHandler<T> handler) {
         // The connection will not be returned to the pool in the case of WebSocket
-        return exchImpl.readBodyAsync(handler, !request.isWebSocket(), parentExecutor)
+        CompletableFuture<T> cf =
+                exchImpl.readBodyAsync(handler, !request.isWebSocket(), parentExecutor)
                 .whenComplete((r,t) -> exchImpl.completed());
+        ExchangeEvents events = request.events();
+        if (events != null) {
+            cf = cf.whenComplete((r,t) -> events.responseBodyEnd(t));
+        }
+        return cf;
     }
 
     /**
@@ -291,17 +298,17 @@ final class Exchange<T> {
         if (request.expectContinue()) {
             request.addSystemHeader("Expect", "100-Continue");
             Log.logTrace("Sending Expect: 100-Continue");
-            return establishExchange(connection)
-                    .thenCompose((ex) -> ex.sendHeadersAsync())
-                    .thenCompose(v -> exchImpl.getResponseAsync(parentExecutor))
+            return headersSent(establishExchange(connection)
+                    .thenCompose((ex) -> ex.sendHeadersAsync()))
+                    .thenCompose(v -> responseHeaders(exchImpl.getResponseAsync(parentExecutor)))
                     .thenCompose((Response r1) -> {
                         Log.logResponse(r1::toString);
                         int rcode = r1.statusCode();
                         if (rcode == 100) {
                             Log.logTrace("Received 100-Continue: sending body");
                             CompletableFuture<Response> cf =
-                                    exchImpl.sendBodyAsync()
-                                            .thenCompose(exIm -> exIm.getResponseAsync(parentExecutor));
+                                    bodySent(exchImpl.sendBodyAsync())
+                                            .thenCompose(exIm -> responseHeaders(exIm.getResponseAsync(parentExecutor)));
                             cf = wrapForUpgrade(cf);
                             cf = wrapForLog(cf);
                             return cf;
@@ -318,16 +325,36 @@ final class Exchange<T> {
                         }
                     });
         } else {
-            CompletableFuture<Response> cf = establishExchange(connection)
-                    .thenCompose((ex) -> ex.sendHeadersAsync())
-                    .thenCompose(ExchangeImpl::sendBodyAsync)
-                    .thenCompose(exIm -> exIm.getResponseAsync(parentExecutor));
+            CompletableFuture<Response> cf = bodySent(headersSent(establishExchange(connection)
+                    .thenCompose((ex) -> ex.sendHeadersAsync()))
+                    .thenCompose(ExchangeImpl::sendBodyAsync))
+                    .thenCompose(exIm -> responseHeaders(exIm.getResponseAsync(parentExecutor)));
             cf = wrapForUpgrade(cf);
             cf = wrapForLog(cf);
             return cf;
         }
     }
 
+    // The following only add a stage when the client has an event listener
+
+    private CompletableFuture<ExchangeImpl<T>> headersSent(CompletableFuture<ExchangeImpl<T>> cf) {
+        ExchangeEvents events = request.events();
+        if (events == null) return cf;
+        return cf.thenApply(ex -> { events.requestHeadersSent(); return ex; });
+    }
+
+    private CompletableFuture<ExchangeImpl<T>> bodySent(CompletableFuture<ExchangeImpl<T>> cf) {
+        ExchangeEvents events = request.events();
+        if (events == null) return cf;
+        return cf.thenApply(ex -> { events.requestBodySent(); return ex; });
+    }
+
+    private CompletableFuture<Response> responseHeaders(CompletableFuture<Response> cf) {
+        ExchangeEvents events = request.events();
+        if (events == null) return cf;
+        return cf.thenApply(r -> { events.responseHeadersEnd(r.statusCode()); return r; });
+    }
+
     private CompletableFuture<Response> wrapForUpgrade(CompletableFuture<Response> cf) {
         if (upgrading) {
             return cf.thenCompose(r -> checkForUpgradeAsync(r, exchImpl));
@@ -472,9 +499,17 @@ final class Exchange<T> {
             return null;
         }
 
-        HttpHeaders userHeaders = request.getUserHeaders();
+        Map<String, List<String>> userHeaders = request.getUserHeaders().map();
+        HttpHeaderTemplate template = request.getHeaderTemplate();
+        if (template != null) {
+            // the template's headers are sent too
+            Map<String, List<String>> all = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            all.putAll(template.headers().map());
+            all.putAll(userHeaders);
+            userHeaders = all;
+        }
         URI u = getURIForSecurityCheck();
-        URLPermission p = permissionForServer(u, method, userHeaders.map());
+        URLPermission p = permissionForServer(u, method, userHeaders);
 
         try {
             assert acc != null;
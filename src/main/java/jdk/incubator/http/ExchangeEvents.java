@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.net.InetSocketAddress;
+import jdk.incubator.http.internal.common.SysLogger;
+import jdk.incubator.http.internal.common.SysLogger.Level;
+import jdk.incubator.http.internal.common.Utils;
+import java9.util.concurrent.CompletableFuture;
+
+/**
+ * Notifies the client's {@link HttpClient.EventListener} of the events of
+ * one request. An instance is attached to the HttpRequestImpl of each
+ * exchange of a request, and is null when the client has no listener: call
+ * sites check for null before taking a timestamp, so that requests sent by
+ * a client without a listener do not pay for it.
+ */
+final class ExchangeEvents {
+
+    static final boolean DEBUG = Utils.DEBUG; // Revisit: temporary dev flag.
+    static final SysLogger DEBUG_LOGGER =
+            Utils.getDebugLogger("ExchangeEvents"::toString, DEBUG);
+
+    private final HttpClient.EventListener listener;
+    private final HttpRequest request; // the request passed to the client
+
+    ExchangeEvents(HttpClient.EventListener listener, HttpRequest request) {
+        this.listener = listener;
+        this.request = request;
+    }
+
+    /**
+     * Connects the given connection, notifying the connect events, and the
+     * secure connect events if it is an SSL connection.
+     */
+    static CompletableFuture<Void> connectAsync(ExchangeEvents events,
+                                                HttpConnection connection) {
+        if (events == null) return connection.connectAsync();
+        return events.connectAsync(connection);
+    }
+
+    private CompletableFuture<Void> connectAsync(HttpConnection connection) {
+        connectStart(connection.address());
+        CompletableFuture<Void> cf;
+        try {
+            cf = connection.connectAsync(this);
+        } catch (Throwable t) {
+            connectEnd(t);
+            throw t;
+        }
+        return cf.whenComplete((r, t) -> {
+            connectEnd(t);
+            if (t == null && connection instanceof AbstractAsyncSSLConnection) {
+                // the handshake starts once the SSL flow is connected
+                secureConnectStart();
+                ((AbstractAsyncSSLConnection) connection).getALPN()
+                        .whenComplete((alpn, x) -> secureConnectEnd(alpn, x));
+            }
+        });
+    }
+
+    // Listener exceptions must not break the exchange
+    private void failed(String event, Throwable t) {
+        DEBUG_LOGGER.log(Level.DEBUG, "listener failed on %s: %s",
+                         event, (Object) t);
+    }
+
+    void requestStart() {
+        try {
+            listener.requestStart(request, System.nanoTime());
+        } catch (Throwable t) { failed("requestStart", t); }
+    }
+
+    void dnsStart(String host) {
+        try {
+            listener.dnsStart(request, host, System.nanoTime());
+        } catch (Throwable t) { failed("dnsStart", t); }
+    }
+
+    void dnsEnd(String host) {
+        try {
+            listener.dnsEnd(request, host, System.nanoTime());
+        } catch (Throwable t) { failed("dnsEnd", t); }
+    }
+
+    void connectionLookup(boolean reused) {
+        try {
+            listener.connectionLookup(request, reused, System.nanoTime());
+        } catch (Throwable t) { failed("connectionLookup", t); }
+    }
+
+    void connectStart(InetSocketAddress address) {
+        try {
+            listener.connectStart(request, address, System.nanoTime());
+        } catch (Throwable t) { failed("connectStart", t); }
+    }
+
+    void connectEnd(Throwable failure) {
+        try {
+            listener.connectEnd(request, Utils.getCompletionCause(failure),
+                                System.nanoTime());
+        } catch (Throwable t) { failed("connectEnd", t); }
+    }
+
+    void secureConnectStart() {
+        try {
+            listener.secureConnectStart(request, System.nanoTime());
+        } catch (Throwable t) { failed("secureConnectStart", t); }
+    }
+
+    void secureConnectEnd(String alpn, Throwable failure) {
+        try {
+            listener.secureConnectEnd(request, alpn,
+                                      Utils.getCompletionCause(failure),
+                                      System.nanoTime());
+        } catch (Throwable t) { failed("secureConnectEnd", t); }
+    }
+
+    void requestHeadersSent() {
+        try {
+            listener.requestHeadersSent(request, System.nanoTime());
+        } catch (Throwable t) { failed("requestHeadersSent", t); }
+    }
+
+    void requestBodySent() {
+        try {
+            listener.requestBodySent(request, System.nanoTime());
+        } catch (Throwable t) { failed("requestBodySent", t); }
+    }
+
+    void responseHeadersStart() {
+        try {
+            listener.responseHeadersStart(request, System.nanoTime());
+        } catch (Throwable t) { failed("responseHeadersStart", t); }
+    }
+
+    void responseHeadersEnd(int statusCode) {
+        try {
+            listener.responseHeadersEnd(request, statusCode, System.nanoTime());
+        } catch (Throwable t) { failed("responseHeadersEnd", t); }
+    }
+
+    void responseBodyEnd(Throwable failure) {
+        try {
+            listener.responseBodyEnd(request, Utils.getCompletionCause(failure),
+                                     System.nanoTime());
+        } catch (Throwable t) { failed("responseBodyEnd", t); }
+    }
+
+    void requestEnd(Throwable failure) {
+        try {
+            listener.requestEnd(request, Utils.getCompletionCause(failure),
+                                System.nanoTime());
+        } catch (Throwable t) { failed("requestEnd", t); }
+    }
+}
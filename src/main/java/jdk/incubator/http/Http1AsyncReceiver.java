@@ -343,6 +343,29 @@ class Http1AsyncReceiver {
         this.retry = retry;
     }
 
+    /**
+     * Hands this receiver over to the next exchange pipelined on the
+     * connection, once the previous exchange has read its response. An
+     * error is turned into a ConnectionExpiredException, as for a pooled
+     * connection, until some of the next response has been received:
+     * the bytes already in the queue belong to it.
+     */
+    synchronized void handOver(Http1Exchange<?> next) {
+        debug.log(Level.DEBUG, "handed over to %s", next);
+        owner = next;
+        long queued = remaining();
+        received.set(queued);
+        Throwable x = error;
+        if (x instanceof IOException && queued == 0
+                && !(x instanceof ConnectionExpiredException)) {
+            // the connection was closed right after the previous response
+            error = new ConnectionExpiredException("subscription is finished", x);
+            retry = false;
+        } else {
+            retry = x == null;
+        }
+    }
+
     void clear() {
         debug.log(Level.DEBUG, "cleared");
         this.pendingDelegateRef.set(null);
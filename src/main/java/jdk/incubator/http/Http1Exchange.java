@@ -24,11 +24,15 @@
  */
 package jdk.incubator.http;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import jdk.incubator.http.HttpResponse.BodyHandler;
 import jdk.incubator.http.HttpResponse.BodySubscriber;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
 import java.util.Objects;
 import java.util.LinkedList;
 import java.util.List;
@@ -64,7 +68,16 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
     final HttpConnection connection;
     final HttpClientImpl client;
     final Executor executor;
-    private final Http1AsyncReceiver asyncReceiver;
+    final Http1AsyncReceiver asyncReceiver;
+    /** The pipeline of the connection, if requests are pipelined on it. */
+    final Http1Pipeline pipeline;
+    /** True if this exchange joined the pipeline of a busy connection, and
+     * shares the receiver of the exchange that started the pipeline. */
+    private final boolean joined;
+    /** Complete when this exchange can send its request, and read its
+     * response, respectively. Always complete unless joined. */
+    private final CompletableFuture<Void> sendTurn;
+    private final CompletableFuture<Void> readTurn;
 
     /** Records a possible cancellation raised before any operation
      * has been initiated, or an error received while sending the request. */
@@ -105,20 +118,37 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
     static class DataPair {
         Throwable throwable;
         List<ByteBuffer> data;
+        DirectWrite direct;
         DataPair(List<ByteBuffer> data, Throwable throwable){
             this.data = data;
             this.throwable = throwable;
         }
+        DataPair(DirectWrite direct) {
+            this.direct = direct;
+        }
         @Override
         public String toString() {
-            return "DataPair [data=" + data + ", throwable=" + throwable + "]";
+            return "DataPair [data=" + data + ", throwable=" + throwable
+                    + (direct == null ? "" : ", direct=" + direct) + "]";
         }
     }
 
-    /** An abstract supertype for HTTP/1.1 body subscribers. There are two
+    /** A part of the request body that is written straight to the socket
+     * channel of a plain connection, rather than published to the connection
+     * flow. It is only handed the channel once everything queued before it
+     * has been written. */
+    interface DirectWrite extends Closeable {
+        /** Writes as many bytes as the channel accepts without blocking.
+         * Returns true once everything has been written. */
+        boolean writeTo(SocketChannel channel) throws IOException;
+    }
+
+    /** An abstract supertype for HTTP/1.1 body subscribers. There are three
      * concrete implementations: {@link Http1Request.StreamSubscriber}, and
      * {@link Http1Request.FixedContentSubscriber}, for receiving chunked and
-     * fixed length bodies, respectively. */
+     * fixed length bodies, respectively, and
+     * {@link Http1Request.FileTransferSubscriber}, for file bodies sent over
+     * plain connections. */
     static abstract class Http1BodySubscriber implements Flow.Subscriber<ByteBuffer> {
         protected volatile Flow.Subscription subscription;
         protected volatile boolean complete;
@@ -164,15 +194,38 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
         this.operations = new LinkedList<>();
         operations.add(headersSentCF);
         operations.add(bodySentCF);
+        Http1Pipeline.Entry entry = null;
         if (connection != null) {
             this.connection = connection;
         } else {
-            InetSocketAddress addr = request.getAddress();
-            this.connection = HttpConnection.getConnection(addr, client, request, HTTP_1_1);
+            InetSocketAddress addr = request.getAddress(client);
+            entry = Http1Pipeline.join(exchange, addr);
+            this.connection = entry != null ? entry.pipeline.connection
+                    : HttpConnection.getConnection(addr, client, request, HTTP_1_1);
         }
         this.requestAction = new Http1Request(request, this);
-        this.asyncReceiver = new Http1AsyncReceiver(executor, this);
-        asyncReceiver.subscribe(new InitialErrorReceiver());
+        if (entry != null) {
+            // the receiver is handed over to this exchange once the
+            // responses before its own have been read
+            this.joined = true;
+            this.pipeline = entry.pipeline;
+            this.asyncReceiver = pipeline.receiver;
+            this.sendTurn = entry.sendTurn;
+            this.readTurn = entry.readTurn.thenRun(() -> {
+                asyncReceiver.handOver(this);
+                asyncReceiver.subscribe(new InitialErrorReceiver());
+            });
+            entry.attach(this);
+        } else {
+            this.joined = false;
+            this.sendTurn = this.readTurn = MinimalFuture.completedFuture(null);
+            this.asyncReceiver = new Http1AsyncReceiver(executor, this);
+            asyncReceiver.subscribe(new InitialErrorReceiver());
+            this.pipeline = connection == null ? Http1Pipeline.start(this) : null;
+        }
+        if (pipeline != null) {
+            bodySentCF.thenRun(() -> pipeline.requestSent(this));
+        }
     }
 
     /** An initial receiver that handles no data, but cancels the request if
@@ -186,7 +239,7 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
 
         @Override
         public void onReadError(Throwable ex) {
-            cancelImpl(ex);
+            cancelImpl(ex, true);
         }
 
         @Override
@@ -206,6 +259,12 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
 
     private void connectFlows(HttpConnection connection) {
         FlowTube tube =  connection.getConnectionFlow();
+        if (joined) {
+            // the receiver of the pipeline is already reading from the flow
+            debug.log(Level.DEBUG, "%s connecting write flow", tube);
+            writePublisher.subscribe(tube);
+            return;
+        }
         debug.log(Level.DEBUG, "%s connecting flows", tube);
 
         // Connect the flow to our Http1TubeSubscriber:
@@ -227,13 +286,22 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
         // If the first attempt to read something triggers EOF, or
         // IOException("channel reset by peer"), we're going to retry.
         // Instruct the asyncReceiver to throw ConnectionExpiredException
-        // to force a retry.
-        asyncReceiver.setRetryOnError(true);
+        // to force a retry. The receiver of a pipeline does this when it is
+        // handed over.
+        if (!joined) asyncReceiver.setRetryOnError(true);
 
         CompletableFuture<Void> connectCF;
-        if (!connection.connected()) {
+        if (joined) {
+            // connected by the exchange that started the pipeline, once
+            // the previous request has been sent
+            debug.log(Level.DEBUG, "waiting for the previous request");
+            connectCF = sendTurn;
+            synchronized (lock) {
+                operations.add(connectCF);
+            }
+        } else if (!connection.connected()) {
             debug.log(Level.DEBUG, "initiating connect async");
-            connectCF = connection.connectAsync();
+            connectCF = ExchangeEvents.connectAsync(request.events(), connection);
             synchronized (lock) {
                 operations.add(connectCF);
             }
@@ -264,7 +332,7 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
                         cf.completeExceptionally(t);
                         return cf;
                     } })
-                .thenCompose(unused -> headersSentCF);
+                .thenCompose(unused -> abortOnError(headersSentCF));
     }
 
     @Override
@@ -282,12 +350,14 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
             connection.close();
             bodySentCF.completeExceptionally(t);
         }
-        return bodySentCF;
+        return abortOnError(bodySentCF);
     }
 
     @Override
     CompletableFuture<Response> getResponseAsync(Executor executor) {
-        CompletableFuture<Response> cf = response.readHeadersAsync(executor);
+        CompletableFuture<Response> cf = joined
+                ? readTurn.thenCompose(v -> response.readHeadersAsync(executor))
+                : response.readHeadersAsync(executor);
         Throwable cause;
         synchronized (lock) {
             operations.add(cf);
@@ -311,7 +381,7 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
                             ? ("completed response with " + cause)
                             : ("response already completed, ignoring " + cause));
         }
-        return cf;
+        return abortOnError(cf);
     }
 
     @Override
@@ -324,7 +394,15 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
         CompletableFuture<T> bodyCF = response.readBody(bs,
                                                         returnConnectionToPool,
                                                         executor);
-        return bodyCF;
+        return abortOnError(bodyCF);
+    }
+
+    /** Aborts the pipeline, if any, if the given operation fails. */
+    private <U> CompletableFuture<U> abortOnError(CompletableFuture<U> cf) {
+        if (pipeline == null) return cf;
+        return cf.whenComplete((r, t) -> {
+            if (t != null) pipeline.abort(this, Utils.getCompletionCause(t));
+        });
     }
 
     @Override
@@ -342,7 +420,8 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
     void released() {
         Http1Response<T> resp = this.response;
         if (resp != null) resp.completed();
-        asyncReceiver.clear();
+        // the receiver of a pipeline is cleared by the pipeline
+        if (pipeline == null) asyncReceiver.clear();
     }
 
     void completed() {
@@ -356,7 +435,7 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
      */
     @Override
     void cancel() {
-        cancelImpl(new IOException("Request cancelled"));
+        cancelImpl(new IOException("Request cancelled"), false);
     }
 
     /**
@@ -365,10 +444,13 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
      */
     @Override
     void cancel(IOException cause) {
-        cancelImpl(cause);
+        // a server that does not support pipelining typically leaves
+        // pipelined requests unanswered
+        cancelImpl(cause, cause instanceof HttpTimeoutException);
     }
 
-    private void cancelImpl(Throwable cause) {
+    // failure is true if the exchange failed, rather than being cancelled
+    private void cancelImpl(Throwable cause, boolean failure) {
         LinkedList<CompletableFuture<?>> toComplete = null;
         int count = 0;
         synchronized (lock) {
@@ -378,6 +460,12 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
                     && response != null && response.finished()) {
                 return;
             }
+            // before the connection is closed, so that the read error that
+            // this causes is not taken for a failure of the pipeline
+            if (pipeline != null) {
+                if (failure) pipeline.abort(this, cause);
+                else pipeline.close(this, cause);
+            }
             connection.close();   // TODO: ensure non-blocking if holding the lock
             writePublisher.writeScheduler.stop();
             if (operations.isEmpty()) {
@@ -453,6 +541,11 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
         appendToOutgoing(new DataPair(item, null));
     }
 
+    /** Convenience for {@link #appendToOutgoing(DataPair)}, with a direct write. */
+    void appendToOutgoing(DirectWrite direct) {
+        appendToOutgoing(new DataPair(direct));
+    }
+
     private void appendToOutgoing(DataPair dp) {
         debug.log(Level.DEBUG, "appending to outgoing " + dp);
         outgoing.add(dp);
@@ -498,6 +591,9 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
                         state = State.COMPLETING;
                         debug.log(Level.DEBUG, "initiating completion of bodySentCF");
                         bodySentCF.completeAsync(() -> this, exec);
+                    } else if (dp.direct != null) {
+                        // more body is requested once the write is done
+                        debug.log(Level.DEBUG, "direct write of the body");
                     } else {
                         debug.log(Level.DEBUG, "requesting more body from the subscriber");
                         exec.execute(() -> bodySubscriber.request(1));
@@ -566,6 +662,10 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
                         debug.log(Level.DEBUG, "onError");
                         // Do not call the subscriber's onError, it is not required.
                         writeScheduler.stop();
+                    } else if (dp.direct != null) {
+                        // keeps the unit of demand until the write is done,
+                        // so nothing else gets published in the meantime
+                        new DirectWriteTask(dp.direct).run();
                     } else {
                         List<ByteBuffer> data = dp.data;
                         if (data == Http1BodySubscriber.COMPLETED) {
@@ -589,6 +689,75 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
             }
         }
 
+        /** Drives a {@link DirectWrite} to completion, waiting for the
+         * channel to become writable whenever its send buffer is full. */
+        final class DirectWriteTask extends AsyncEvent implements Runnable {
+            final DirectWrite direct;
+            final SocketChannel channel;
+
+            DirectWriteTask(DirectWrite direct) {
+                this.direct = direct;
+                this.channel = connection.channel();
+            }
+
+            @Override
+            public void run() {
+                if (cancelled || writeScheduler.isStopped()) {
+                    debug.log(Level.DEBUG, "direct write abandoned");
+                    closeQuietly();
+                    return;
+                }
+                try {
+                    if (!direct.writeTo(channel)) {
+                        client.registerEvent(this);
+                        return;
+                    }
+                } catch (Throwable t) {
+                    debug.log(Level.DEBUG, "direct write failed: %s", (Object)t);
+                    failed(t);
+                    return;
+                }
+                debug.log(Level.DEBUG, "direct write done");
+                closeQuietly();
+                demand.increase(1);
+                bodySubscriber.request(1);
+                writeScheduler.runOrSchedule();
+            }
+
+            private void failed(Throwable t) {
+                closeQuietly();
+                demand.increase(1);
+                appendToOutgoing(t);
+            }
+
+            private void closeQuietly() {
+                try {
+                    direct.close();
+                } catch (IOException ignored) { }
+            }
+
+            @Override
+            public SelectableChannel channel() {
+                return channel;
+            }
+
+            @Override
+            public int interestOps() {
+                return SelectionKey.OP_WRITE;
+            }
+
+            @Override
+            public void handle() {
+                // don't write from the selector thread
+                client.theExecutor().execute(this);
+            }
+
+            @Override
+            public void abort(IOException ioe) {
+                failed(ioe);
+            }
+        }
+
         final class Http1WriteSubscription implements Flow.Subscription {
 
             @Override
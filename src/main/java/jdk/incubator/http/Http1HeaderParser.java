@@ -26,26 +26,37 @@ package jdk.incubator.http;
 
 import java.net.ProtocolException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Locale;
-import java.util.Map;
+import jdk.incubator.http.internal.common.HttpHeadersImpl;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Parses the status-line and headers of an HTTP/1.X response.
+ *
+ * <p> The input is scanned for line terminators a word at a time, and the
+ * bytes of each line are copied in bulk into a reusable line buffer. Header
+ * names and values are decoded as ISO-8859-1 straight from that buffer, and
+ * well-known header names are taken from a static table rather than being
+ * decoded and lower-cased anew for every response.
+ */
 class Http1HeaderParser {
 
-    private static final char CR = '\r';
-    private static final char LF = '\n';
-    private static final char HT = '\t';
-    private static final char SP = ' ';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte HT = '\t';
+    private static final byte SP = ' ';
 
-    private StringBuilder sb = new StringBuilder();
+    private byte[] line = new byte[128];
+    private int length;
     private String statusLine;
     private int responseCode;
     private HttpHeaders headers;
-    private Map<String,List<String>> privateMap = new HashMap<>();
+    private HttpHeadersImpl privateHeaders = new HttpHeadersImpl();
 
     enum State { STATUS_LINE,
                  STATUS_LINE_FOUND_CR,
@@ -120,25 +131,26 @@ class Http1HeaderParser {
     }
 
     private void readResumeStatusLine(ByteBuffer input) {
-        char c = 0;
-        while (input.hasRemaining() && (c =(char)input.get()) != CR) {
-            sb.append(c);
-        }
-
-        if (c == CR) {
+        int pos = input.position();
+        int end = indexOf(input, pos, input.limit(), CRS, CRS);
+        append(input, pos, end);
+        if (end < input.limit()) {
+            input.position(end + 1);
             state = State.STATUS_LINE_FOUND_CR;
+        } else {
+            input.position(end);
         }
     }
 
     private void readStatusLineFeed(ByteBuffer input) throws ProtocolException {
-        char c = (char)input.get();
+        char c = (char)(input.get() & 0xFF);
         if (c != LF) {
             throw protocolException("Bad trailing char, \"%s\", when parsing status-line, \"%s\"",
-                                    c, sb.toString());
+                                    c, string(0, length));
         }
 
-        statusLine = sb.toString();
-        sb = new StringBuilder();
+        statusLine = string(0, length);
+        length = 0;
         if (!statusLine.startsWith("HTTP/1.")) {
             throw protocolException("Invalid status line: \"%s\"", statusLine);
         }
@@ -152,23 +164,23 @@ class Http1HeaderParser {
 
     private void maybeStartHeaders(ByteBuffer input) {
         assert state == State.STATUS_LINE_END;
-        assert sb.length() == 0;
-        char c = (char)input.get();
+        assert length == 0;
+        byte c = input.get();
         if (c == CR) {
             state = State.STATUS_LINE_END_CR;
         } else {
-            sb.append(c);
+            append(c);
             state = State.HEADER;
         }
     }
 
     private void maybeEndHeaders(ByteBuffer input) throws ProtocolException {
         assert state == State.STATUS_LINE_END_CR;
-        assert sb.length() == 0;
-        char c = (char)input.get();
+        assert length == 0;
+        char c = (char)(input.get() & 0xFF);
         if (c == LF) {
-            headers = ImmutableHeaders.of(privateMap);
-            privateMap = null;
+            headers = ImmutableHeaders.of(privateHeaders);
+            privateHeaders = null;
             state = State.FINISHED;  // no headers
         } else {
             throw protocolException("Unexpected \"%s\", after status-line CR", c);
@@ -178,90 +190,102 @@ class Http1HeaderParser {
     private void readResumeHeader(ByteBuffer input) {
         assert state == State.HEADER;
         assert input.hasRemaining();
-        while (input.hasRemaining()) {
-            char c = (char)input.get();
-            if (c == CR) {
-                state = State.HEADER_FOUND_CR;
-                break;
-            } else if (c == LF) {
-                state = State.HEADER_FOUND_LF;
-                break;
-            }
-
-            if (c == HT)
-                c = SP;
-            sb.append(c);
+        int pos = input.position();
+        int end = indexOf(input, pos, input.limit(), CRS, LFS);
+        int start = length;
+        append(input, pos, end);
+        // HT within a header line is replaced by SP
+        for (int i = start; i < length; i++) {
+            if (line[i] == HT)
+                line[i] = SP;
+        }
+        if (end < input.limit()) {
+            state = input.get(end) == CR ? State.HEADER_FOUND_CR
+                                         : State.HEADER_FOUND_LF;
+            input.position(end + 1);
+        } else {
+            input.position(end);
         }
     }
 
-    private void addHeaderFromString(String headerString) {
-        assert sb.length() == 0;
-        int idx = headerString.indexOf(':');
-        if (idx == -1)
+    private void addHeaderFromLine() {
+        byte[] buf = line;
+        int end = length;
+        length = 0;
+        int idx = 0;
+        while (idx < end && buf[idx] != ':')
+            idx++;
+        if (idx == end)
             return;
-        String name = headerString.substring(0, idx).trim();
-        if (name.isEmpty())
+        // same notion of white space as String::trim
+        int nameStart = 0, nameEnd = idx;
+        while (nameStart < nameEnd && (buf[nameStart] & 0xFF) <= SP)
+            nameStart++;
+        while (nameEnd > nameStart && (buf[nameEnd - 1] & 0xFF) <= SP)
+            nameEnd--;
+        if (nameStart == nameEnd)
             return;
-        String value = headerString.substring(idx + 1, headerString.length()).trim();
+        int valueStart = idx + 1, valueEnd = end;
+        while (valueStart < valueEnd && (buf[valueStart] & 0xFF) <= SP)
+            valueStart++;
+        while (valueEnd > valueStart && (buf[valueEnd - 1] & 0xFF) <= SP)
+            valueEnd--;
 
-        privateMap.computeIfAbsent(name.toLowerCase(Locale.US),
-                                   k -> new ArrayList<>()).add(value);
+        String name = headerName(buf, nameStart, nameEnd);
+        String value = string(valueStart, valueEnd);
+        privateHeaders.addHeader(name, value);
     }
 
     private void resumeOrLF(ByteBuffer input) {
         assert state == State.HEADER_FOUND_CR || state == State.HEADER_FOUND_LF;
-        char c = (char)input.get();
+        byte c = input.get();
         if (c == LF && state == State.HEADER_FOUND_CR) {
             // header value will be flushed by
             // resumeOrSecondCR if next line does not
             // begin by SP or HT
             state = State.HEADER_FOUND_CR_LF;
         } else if (c == SP || c == HT) {
-            sb.append(SP); // parity with MessageHeaders
+            append(SP); // parity with MessageHeaders
             state = State.HEADER;
         } else {
-            sb = new StringBuilder();
-            sb.append(c);
+            length = 0;
+            append(c);
             state = State.HEADER;
         }
     }
 
     private void resumeOrSecondCR(ByteBuffer input) {
         assert state == State.HEADER_FOUND_CR_LF;
-        char c = (char)input.get();
+        byte c = input.get();
         if (c == CR) {
-            if (sb.length() > 0) {
+            if (length > 0) {
                 // no continuation line - flush
                 // previous header value.
-                String headerString = sb.toString();
-                sb = new StringBuilder();
-                addHeaderFromString(headerString);
+                addHeaderFromLine();
             }
             state = State.HEADER_FOUND_CR_LF_CR;
         } else if (c == SP || c == HT) {
-            assert sb.length() != 0;
-            sb.append(SP); // continuation line
+            assert length != 0;
+            append(SP); // continuation line
             state = State.HEADER;
         } else {
-            if (sb.length() > 0) {
+            if (length > 0) {
                 // no continuation line - flush
                 // previous header value.
-                String headerString = sb.toString();
-                sb = new StringBuilder();
-                addHeaderFromString(headerString);
+                addHeaderFromLine();
             }
-            sb.append(c);
+            append(c);
             state = State.HEADER;
         }
     }
 
     private void resumeOrEndHeaders(ByteBuffer input) throws ProtocolException {
         assert state == State.HEADER_FOUND_CR_LF_CR;
-        char c = (char)input.get();
+        char c = (char)(input.get() & 0xFF);
         if (c == LF) {
             state = State.FINISHED;
-            headers = ImmutableHeaders.of(privateMap);
-            privateMap = null;
+            headers = ImmutableHeaders.of(privateHeaders);
+            privateHeaders = null;
         } else {
             throw protocolException("Unexpected \"%s\", after CR LF CR", c);
         }
@@ -270,4 +294,149 @@ class Http1HeaderParser {
     private ProtocolException protocolException(String format, Object... args) {
         return new ProtocolException(format(format, args));
     }
+
+    // -- line buffer
+
+    private void append(byte b) {
+        if (length == line.length)
+            line = Arrays.copyOf(line, length << 1);
+        line[length++] = b;
+    }
+
+    /** Appends the bytes of input in [from, to) without moving its position. */
+    private void append(ByteBuffer input, int from, int to) {
+        int n = to - from;
+        if (n == 0)
+            return;
+        if (length + n > line.length)
+            line = Arrays.copyOf(line, Math.max(line.length << 1, length + n));
+        if (input.hasArray()) {
+            System.arraycopy(input.array(), input.arrayOffset() + from,
+                             line, length, n);
+        } else {
+            ByteBuffer src = input.duplicate();
+            src.limit(to).position(from);
+            src.get(line, length, n);
+        }
+        length += n;
+    }
+
+    /** Decodes line[from, to) as ISO-8859-1. */
+    @SuppressWarnings("deprecation")
+    private String string(int from, int to) {
+        return new String(line, 0, from, to - from);
+    }
+
+    // -- scanning
+
+    private static final long CRS = 0x0D0D0D0D0D0D0D0DL;
+    private static final long LFS = 0x0A0A0A0A0A0A0A0AL;
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+
+    /**
+     * Returns the index of the first byte in input[from, to) that is equal
+     * to any byte of either pattern (each a byte repeated eight times), or
+     * {@code to} if there is none. Eight bytes are examined per step.
+     */
+    static int indexOf(ByteBuffer input, int from, int to, long p1, long p2) {
+        int i = from;
+        if (to - from >= 8) {
+            boolean bigEndian = input.order() == ByteOrder.BIG_ENDIAN;
+            for (; i <= to - 8; i += 8) {
+                long word = input.getLong(i);
+                long found = zeros(word ^ p1) | zeros(word ^ p2);
+                if (found != 0) {
+                    return i + (bigEndian ? Long.numberOfLeadingZeros(found)
+                                          : Long.numberOfTrailingZeros(found)) / 8;
+                }
+            }
+        }
+        byte b1 = (byte) p1, b2 = (byte) p2;
+        for (; i < to; i++) {
+            byte b = input.get(i);
+            if (b == b1 || b == b2)
+                return i;
+        }
+        return to;
+    }
+
+    /**
+     * Returns a word with the high bit set in, and only in, every byte that
+     * is zero in the given word. Unlike the usual {@code (x - 0x01..) & ~x}
+     * form this never carries between bytes, so it is exact in both byte
+     * orders.
+     */
+    private static long zeros(long x) {
+        long y = (x & LOW7) + LOW7;
+        return ~(y | x | LOW7);
+    }
+
+    // -- header names
+
+    private static final String[] KNOWN_NAMES = {
+        "accept-ranges", "access-control-allow-origin", "age", "allow",
+        "alt-svc", "cache-control", "connection", "content-disposition",
+        "content-encoding", "content-language", "content-length",
+        "content-location", "content-range", "content-type", "date", "etag",
+        "expires", "keep-alive", "last-modified", "link", "location",
+        "pragma", "proxy-authenticate", "proxy-connection", "retry-after",
+        "server", "set-cookie", "strict-transport-security", "trailer",
+        "transfer-encoding", "upgrade", "vary", "via", "warning",
+        "www-authenticate", "x-content-type-options", "x-frame-options",
+        "x-xss-protection",
+    };
+
+    // open addressing, keyed by a case-insensitive hash of the name bytes
+    private static final String[] NAME_TABLE = new String[128];
+
+    static {
+        for (String name : KNOWN_NAMES) {
+            byte[] bytes = name.getBytes(US_ASCII);
+            int i = hash(bytes, 0, bytes.length) & (NAME_TABLE.length - 1);
+            while (NAME_TABLE[i] != null)
+                i = (i + 1) & (NAME_TABLE.length - 1);
+            NAME_TABLE[i] = name;
+        }
+    }
+
+    private static int hash(byte[] buf, int from, int to) {
+        int h = to - from;
+        for (int i = from; i < to; i++)
+            h = 31 * h + (buf[i] | 0x20); // folds the case of ASCII letters
+        return h ^ (h >>> 7);
+    }
+
+    /** Returns the lower-cased header name in buf[from, to). */
+    static String headerName(byte[] buf, int from, int to) {
+        int mask = NAME_TABLE.length - 1;
+        for (int i = hash(buf, from, to) & mask; ; i = (i + 1) & mask) {
+            String known = NAME_TABLE[i];
+            if (known == null)
+                break;
+            if (equalsLowerCase(known, buf, from, to))
+                return known;
+        }
+        byte[] lower = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            byte b = buf[i];
+            if (b < 0) // not ASCII, let String do it
+                return new String(buf, from, to - from, ISO_8859_1)
+                        .toLowerCase(Locale.US);
+            lower[i - from] = b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+        }
+        return new String(lower, US_ASCII);
+    }
+
+    private static boolean equalsLowerCase(String name, byte[] buf, int from, int to) {
+        if (name.length() != to - from)
+            return false;
+        for (int i = from; i < to; i++) {
+            int b = buf[i];
+            if (b >= 'A' && b <= 'Z')
+                b += 'a' - 'A';
+            if (name.charAt(i - from) != b)
+                return false;
+        }
+        return true;
+    }
 }
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import jdk.incubator.http.internal.common.ConnectionExpiredException;
+import jdk.incubator.http.internal.common.Log;
+import jdk.incubator.http.internal.common.MinimalFuture;
+import jdk.incubator.http.internal.common.SysLogger;
+import jdk.incubator.http.internal.common.SysLogger.Level;
+import jdk.incubator.http.internal.common.Utils;
+import java9.util.concurrent.CompletableFuture;
+
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+
+/**
+ * The HTTP/1.1 exchanges pipelined on one connection, in the order of their
+ * requests. An exchange sends its request once the request of the exchange
+ * before it has been sent, and reads its response once the response of the
+ * exchange before it has been read, with the {@link Http1AsyncReceiver} of
+ * the first exchange: the receiver stays subscribed to the connection flow
+ * for the whole pipeline, so that the bytes of a response that were read
+ * along with the end of the previous one are not lost.
+ *
+ * A pipeline is started by an exchange that got a connection of its own,
+ * and can be joined by subsequent exchanges to the same destination, up to
+ * the pipelining depth of the origin, as long as the destination has no
+ * idle connection. It ends when the last exchange has read its response,
+ * the connection going back to the pool. If the connection cannot be
+ * reused before that, because a response asks for it to be closed or its
+ * body is not read, the pipeline is closed: the exchanges that did not get
+ * to read their response fail with a {@link ConnectionExpiredException}, so
+ * that their request is sent again. If the pipeline fails, the same happens,
+ * and the client also stops pipelining requests to the origin.
+ */
+final class Http1Pipeline {
+
+    static final boolean DEBUG = Utils.DEBUG; // Revisit: temporary dev flag.
+    final SysLogger debug = Utils.getDebugLogger(this::dbgString, DEBUG);
+
+    // Methods whose requests can be sent again (RFC 7231, 4.2.2)
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<>(
+            Arrays.asList("GET", "HEAD", "OPTIONS", "TRACE", "PUT", "DELETE"));
+
+    /** An exchange of the pipeline, and the turns it waits for. */
+    static final class Entry {
+        final Http1Pipeline pipeline;
+        /** Completes when the exchange can send its request. */
+        final CompletableFuture<Void> sendTurn = new MinimalFuture<>();
+        /** Completes when the exchange can read its response. */
+        final CompletableFuture<Void> readTurn = new MinimalFuture<>();
+        // set once the exchange is constructed
+        private volatile Http1Exchange<?> exchange;
+        // guarded by the pipeline
+        private boolean sent;
+
+        Entry(Http1Pipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        void attach(Http1Exchange<?> exchange) {
+            this.exchange = exchange;
+        }
+    }
+
+    final HttpConnection connection;
+    final Http1AsyncReceiver receiver;
+    final String origin;
+    private final int depth;
+    private final HttpClientImpl client;
+    // the exchanges that have not read their response yet: the first one
+    // is the one reading from the receiver
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    // true once no exchange may join
+    private boolean closed;
+
+    private Http1Pipeline(Http1Exchange<?> first, String origin, int depth) {
+        this.connection = first.connection;
+        this.receiver = first.asyncReceiver;
+        this.client = first.client;
+        this.origin = origin;
+        this.depth = depth;
+    }
+
+    /**
+     * Returns the origin of the given URI, as used for the pipelining
+     * settings of the client.
+     */
+    static String origin(URI uri) {
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        int port = uri.getPort();
+        if (port == -1) {
+            port = scheme.equals("https") ? 443 : 80;
+        }
+        return scheme + "://" + uri.getHost().toLowerCase(Locale.ROOT) + ":" + port;
+    }
+
+    // The depth of the pipelines that the exchange may be part of,
+    // 1 if it must have its connection to itself
+    private static int depth(Exchange<?> exchange) {
+        HttpRequestImpl request = exchange.request();
+        if (exchange.version() != HTTP_1_1
+                || request.expectContinue()
+                || request.isWebSocket()
+                || !IDEMPOTENT_METHODS.contains(request.method())) {
+            return 1;
+        }
+        return exchange.client().pipeliningDepth(request.uri());
+    }
+
+    /**
+     * Joins the pipeline of a busy connection to the given destination, if
+     * there is one with room for the exchange, and returns the entry of the
+     * exchange. Returns null if the exchange should get a connection from
+     * {@link HttpConnection#getConnection}.
+     */
+    static Entry join(Exchange<?> exchange, InetSocketAddress addr) {
+        if (depth(exchange) < 2) {
+            return null;
+        }
+        HttpRequestImpl request = exchange.request();
+        Http1Pipeline pipeline = exchange.client().connectionPool()
+                .getPipeline(request.secure(), addr, HttpConnection.proxyAddress(request));
+        return pipeline == null ? null : pipeline.add();
+    }
+
+    /**
+     * Starts a pipeline with the given exchange, which has just got a
+     * connection for itself, if its requests can be pipelined. Returns
+     * the pipeline, or null.
+     */
+    static Http1Pipeline start(Http1Exchange<?> first) {
+        int depth = depth(first.getExchange());
+        if (depth < 2) {
+            return null;
+        }
+        Http1Pipeline pipeline = new Http1Pipeline(first,
+                origin(first.request().uri()), depth);
+        Entry entry = new Entry(pipeline);
+        entry.sendTurn.complete(null);
+        entry.readTurn.complete(null);
+        entry.attach(first);
+        pipeline.entries.add(entry);
+        first.client.connectionPool().pipelineStarted(pipeline);
+        pipeline.debug.log(Level.DEBUG, "started, depth %d", depth);
+        return pipeline;
+    }
+
+    // Adds an entry for an exchange that joins, or returns null
+    private Entry add() {
+        Entry entry;
+        synchronized (this) {
+            if (closed || entries.size() >= depth) {
+                return null;
+            }
+            entry = new Entry(this);
+            if (entries.getLast().sent) {
+                entry.sendTurn.complete(null);
+            }
+            entries.add(entry);
+        }
+        debug.log(Level.DEBUG, "joined");
+        return entry;
+    }
+
+    /**
+     * Called when the request of the given exchange has been sent: the
+     * next exchange can send its request.
+     */
+    void requestSent(Http1Exchange<?> exchange) {
+        Entry next = null;
+        synchronized (this) {
+            Iterator<Entry> it = entries.iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.exchange == exchange) {
+                    entry.sent = true;
+                    next = it.hasNext() ? it.next() : null;
+                    break;
+                }
+            }
+        }
+        if (next != null) {
+            next.sendTurn.complete(null);
+        }
+    }
+
+    /**
+     * Called when the given exchange has read its response, with the
+     * headers of the response, or null if the connection cannot be
+     * reused: the next exchange takes over the receiver. After the last
+     * exchange, the connection is returned to the pool.
+     */
+    void responseDone(Http1Exchange<?> exchange, HttpHeaders hdrs) {
+        Entry next;
+        boolean keepAlive = hdrs != null && hdrs.firstValue("Connection")
+                .map((s) -> !s.equalsIgnoreCase("close"))
+                .orElse(true);
+        synchronized (this) {
+            Entry head = entries.peekFirst();
+            if (head == null || head.exchange != exchange) {
+                return; // aborted
+            }
+            if (keepAlive && head.sent) {
+                entries.removeFirst();
+                next = entries.peekFirst();
+                closed = next == null;
+            } else {
+                next = head;
+            }
+        }
+        if (next == null) {
+            debug.log(Level.DEBUG, "done");
+            client.connectionPool().pipelineClosed(this);
+            receiver.clear();
+            connection.closeOrReturnToCache(hdrs);
+        } else if (next.exchange == exchange) {
+            close(exchange, new IOException("connection not reusable"));
+        } else {
+            // runs the next exchange's takeover of the receiver, before
+            // any error can reach the delegate of this exchange
+            next.readTurn.complete(null);
+        }
+    }
+
+    /**
+     * Aborts the pipeline after a failure of the given exchange, such as an
+     * unexpected end of stream or a malformed response. The other exchanges
+     * are cancelled: the one reading its response with the given cause, the
+     * others with a ConnectionExpiredException. Requests to the origin are
+     * no longer pipelined.
+     */
+    void abort(Http1Exchange<?> exchange, Throwable cause) {
+        abort(exchange, cause, true);
+    }
+
+    /**
+     * Closes the pipeline because its connection cannot be reused after the
+     * given exchange, or the exchange was cancelled, which is not a failure
+     * of the pipeline: the exchanges queued behind it are sent again, and
+     * pipelining stays on.
+     */
+    void close(Http1Exchange<?> exchange, Throwable cause) {
+        abort(exchange, cause, false);
+    }
+
+    private void abort(Http1Exchange<?> exchange, Throwable cause, boolean failed) {
+        List<Entry> dropped;
+        synchronized (this) {
+            if (closed && entries.isEmpty()) {
+                return;
+            }
+            closed = true;
+            dropped = new ArrayList<>(entries);
+            entries.clear();
+        }
+        client.connectionPool().pipelineClosed(this);
+        IOException ioe = cause instanceof IOException
+                ? (IOException) cause : new IOException(cause);
+        boolean others = false;
+        for (int i = 0; i < dropped.size(); i++) {
+            Entry entry = dropped.get(i);
+            Http1Exchange<?> e = entry.exchange;
+            if (e == exchange) continue;
+            others = true;
+            boolean reading = i == 0 && e != null && entry.readTurn.isDone();
+            IOException x = reading ? ioe
+                    : new ConnectionExpiredException("pipelined request not answered", ioe);
+            entry.sendTurn.completeExceptionally(x);
+            entry.readTurn.completeExceptionally(x);
+            if (e != null) e.cancel(x);
+        }
+        connection.close();
+        if (others && failed) {
+            Log.logTrace("Pipelining to {0} failed, sending requests"
+                         + " one at a time: {1}", origin, cause);
+            client.stopPipelining(origin);
+        }
+        debug.log(Level.DEBUG, "%s: %s", failed ? "aborted" : "closed", cause);
+    }
+
+    String dbgString() {
+        return "Http1Pipeline(" + connection.getConnectionFlow() + ")";
+    }
+}
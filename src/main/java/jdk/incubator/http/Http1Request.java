@@ -27,6 +27,8 @@ package jdk.incubator.http;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -54,6 +56,7 @@ class Http1Request {
     private final HttpRequest.BodyPublisher requestPublisher;
     private final HttpHeaders userHeaders;
     private final HttpHeadersImpl systemHeaders;
+    private final HttpHeaderTemplate template; // may be null
     private volatile boolean streaming;
     private volatile long contentLength;
 
@@ -67,6 +70,7 @@ class Http1Request {
         this.requestPublisher = request.requestPublisher;  // may be null
         this.userHeaders = request.getUserHeaders();
         this.systemHeaders = request.getSystemHeaders();
+        this.template = request.getHeaderTemplate();
     }
 
     private void logHeaders(String completeHeaders) {
@@ -85,10 +89,18 @@ class Http1Request {
     private void collectHeaders0(StringBuilder sb) {
         collectHeaders1(sb, systemHeaders);
         collectHeaders1(sb, userHeaders);
-        sb.append("\r\n");
+        if (template == null)
+            sb.append("\r\n");
     }
 
     private void collectHeaders1(StringBuilder sb, HttpHeaders headers) {
+        if (headers instanceof HttpHeadersImpl) {
+            HttpHeadersImpl h = (HttpHeadersImpl) headers;
+            for (int i = 0; i < h.size(); i++) {
+                sb.append(h.name(i)).append(": ").append(h.value(i)).append("\r\n");
+            }
+            return;
+        }
         for (Map.Entry<String,List<String>> entry : headers.map().entrySet()) {
             String key = entry.getKey();
             List<String> values = entry.getValue();
@@ -207,9 +219,17 @@ class Http1Request {
         }
         collectHeaders0(sb);
         String hs = sb.toString();
-        logHeaders(hs);
         ByteBuffer b = ByteBuffer.wrap(hs.getBytes(US_ASCII));
-        return Lists.of(b);
+        if (template == null) {
+            logHeaders(hs);
+            return Lists.of(b);
+        }
+        // the template's headers, encoded once, follow the others
+        byte[] tb = template.http1Bytes();
+        if (Log.headers()) {
+            logHeaders(hs + new String(tb, US_ASCII) + "\r\n");
+        }
+        return Lists.of(b, ByteBuffer.wrap(tb), ByteBuffer.wrap(CRLF));
     }
 
     Http1BodySubscriber continueRequest()  {
@@ -221,12 +241,24 @@ class Http1Request {
             if (contentLength == 0)
                 return null;
 
+            if (canTransferFile()) {
+                return new FileTransferSubscriber(
+                        (RequestPublishers.FilePublisher)requestPublisher);
+            }
             subscriber = new FixedContentSubscriber();
             requestPublisher.subscribe(subscriber);
         }
         return subscriber;
     }
 
+    /** Tells whether the request body is a file that can be transferred
+     * straight to the socket channel. Secure connections need the bytes in
+     * user space, and tunnelling connections own their channel. */
+    private boolean canTransferFile() {
+        return requestPublisher instanceof RequestPublishers.FilePublisher
+                && connection instanceof PlainHttpConnection;
+    }
+
     class StreamSubscriber extends Http1BodySubscriber {
 
         @Override
@@ -355,6 +387,78 @@ class Http1Request {
         }
     }
 
+    /** Sends a file body with {@link FileChannel#transferTo}, without
+     * copying it through the connection flow. The file is only opened once
+     * everything queued before the body has been written. */
+    final class FileTransferSubscriber extends Http1BodySubscriber
+            implements Http1Exchange.DirectWrite {
+
+        private final RequestPublishers.FilePublisher publisher;
+        private volatile FileChannel file;
+        private volatile boolean transferring;
+        private long position;
+
+        FileTransferSubscriber(RequestPublishers.FilePublisher publisher) {
+            this.publisher = publisher;
+        }
+
+        @Override
+        void request(long n) {
+            debug.log(Level.DEBUG, "request(%d)", n);
+            if (!transferring) {
+                transferring = true;
+                http1Exchange.appendToOutgoing(this);
+            } else if (!complete) {
+                complete = true;
+                http1Exchange.appendToOutgoing(COMPLETED);
+            }
+        }
+
+        @Override
+        public boolean writeTo(SocketChannel channel) throws IOException {
+            FileChannel file = this.file;
+            if (file == null) {
+                this.file = file = publisher.openChannel();
+            }
+            while (position < contentLength) {
+                long n = file.transferTo(position, contentLength - position, channel);
+                if (n == 0) {
+                    if (position >= file.size()) {
+                        throw new IOException(connection.getConnectionFlow()
+                                + " [" + Thread.currentThread().getName() +"] "
+                                + "Too few bytes returned by the publisher ("
+                                + position + "/" + contentLength + ")");
+                    }
+                    return false; // the socket's send buffer is full
+                }
+                position += n;
+                connection.client().metrics().bytesWritten.add(n);
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            FileChannel file = this.file;
+            if (file != null) {
+                file.close();
+            }
+        }
+
+        @Override public void onSubscribe(Flow.Subscription subscription) { error(); }
+        @Override public void onNext(ByteBuffer item) { error(); }
+        @Override public void onError(Throwable throwable) { error(); }
+        @Override public void onComplete() { error(); }
+        private void error() {
+            throw new InternalError("should not reach here");
+        }
+
+        @Override
+        public String toString() {
+            return "FileTransferSubscriber(" + position + "/" + contentLength + ")";
+        }
+    }
+
     private static final byte[] CRLF = {'\r', '\n'};
     private static final byte[] EMPTY_CHUNK_BYTES = {'0', '\r', '\n'};
 
@@ -25,6 +25,7 @@
 package jdk.incubator.http;
 
 import java.io.EOFException;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
@@ -147,6 +148,10 @@ class Http1Response<T> {
     public CompletableFuture<Void> ignoreBody(Executor executor) {
         int clen = (int)headers.firstValueAsLong("Content-Length").orElse(-1);
         if (clen == -1 || clen > MAX_IGNORE) {
+            Http1Pipeline pipeline = exchange.pipeline;
+            if (pipeline != null) {
+                pipeline.close(exchange, new IOException("response body not read"));
+            }
             connection.close();
             return MinimalFuture.completedFuture(null); // not treating as error
         } else {
@@ -245,6 +250,13 @@ class Http1Response<T> {
 
 
     private void onFinished() {
+        Http1Pipeline pipeline = exchange.pipeline;
+        if (pipeline != null) {
+            // the next exchange of the pipeline takes over, or the
+            // connection is returned to the pool after the last one
+            pipeline.responseDone(exchange, return2Cache && eof == null ? headers : null);
+            return;
+        }
         asyncReceiver.clear();
         if (return2Cache) {
             Log.logTrace("Attempting to return connection to the pool: {0}", connection);
@@ -410,6 +422,9 @@ class Http1Response<T> {
             assert cf != null : "parsing not started";
             assert parser != null : "no parser";
             try {
+                if (count == 0 && request.events() != null) {
+                    request.events().responseHeadersStart();
+                }
                 count += b.remaining();
                 debug.log(Level.DEBUG, () -> "Sending " + b.remaining()
                         + "/" + b.capacity() + " bytes to header parser");
@@ -26,9 +26,12 @@ package jdk.incubator.http;
 
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -62,8 +65,18 @@ class Http2ClientImpl {
         this.client = client;
     }
 
+    // Maximum number of connections opened to the same origin. Additional
+    // connections are only opened when all the connections of the group are
+    // saturated, i.e. have no free stream slot or no send window left.
+    static final int MAX_CONNECTIONS = getParameter(
+            "jdk.httpclient.http2.maxconnections", 1, 64, 4);
+
+    // Number of seconds after which an idle extra connection is retired.
+    static final int IDLE_TIMEOUT = getParameter(
+            "jdk.httpclient.http2.idletimeout", 1, Integer.MAX_VALUE, 30);
+
     /* Map key is "scheme:host:port" */
-    private final Map<String,Http2Connection> connections = new ConcurrentHashMap<>();
+    private final Map<String,ConnectionGroup> connections = new ConcurrentHashMap<>();
 
     private final Set<String> failures = Collections.synchronizedSet(new HashSet<>());
 
@@ -95,24 +108,101 @@ class Http2ClientImpl {
         InetSocketAddress proxy = req.proxy();
         String key = Http2Connection.keyFor(uri, proxy);
 
+        ConnectionGroup group;
+        Http2Connection connection;
         synchronized (this) {
-            Http2Connection connection = connections.get(key);
-            if (connection != null) { // fast path if connection already exists
+            group = connections.get(key);
+            connection = group == null ? null : group.select();
+            if (connection != null && !connection.isSaturated()) {
+                // fast path if a connection with some capacity left exists
+                if (req.events() != null) req.events().connectionLookup(true);
                 return CompletableFuture.completedFuture(connection);
             }
 
-            if (!req.secure() || failures.contains(key)) {
+            if (connection != null && !group.canGrow()) {
+                // all connections are saturated, but the group can't grow
+                // any further: use the least loaded connection.
+                if (req.events() != null) req.events().connectionLookup(true);
+                return CompletableFuture.completedFuture(connection);
+            }
+
+            if ((!req.secure() && !priorKnowledge(req)) || failures.contains(key)) {
                 // secure: negotiate failed before. Use http/1.1
-                // !secure: no connection available in cache. Attempt upgrade
+                // !secure: no connection available in cache, or all
+                // connections saturated. Attempt upgrade
                 return MinimalFuture.completedFuture(null);
             }
+
+            // all the connections of the group are saturated: open a new one
+            if (connection != null) group.newConnectionStarted();
         }
+        final boolean grow = connection != null;
         return Http2Connection
                 .createAsync(req, this)
                 .whenComplete((conn, t) -> {
                     synchronized (Http2ClientImpl.this) {
+                        if (grow && group.newConnectionDone() && conn == null) {
+                            connections.remove(key, group);
+                        }
                         if (conn != null) {
-                            offerConnection(conn);
+                            offerConnection(conn, grow);
+                        } else {
+                            Throwable cause = Utils.getCompletionCause(t);
+                            if (cause instanceof Http2Connection.ALPNException)
+                                failures.add(key);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Opens new connections to the origin of the given request, until the
+     * group of that origin has the given number of connections, counting
+     * those already in the group or being opened, or cannot grow any more.
+     * The new connections are retired like any extra connection if they
+     * stay idle. Returns the futures of the new connections, none if h2
+     * could not be negotiated with that origin before. A future completes
+     * with an ALPNException, which holds the connection, if h2 is not
+     * negotiated.
+     */
+    List<CompletableFuture<Http2Connection>> prewarm(HttpRequestImpl req, int count) {
+        assert req.secure() || priorKnowledge(req);
+        String key = Http2Connection.keyFor(req.uri(), req.proxy());
+        ConnectionGroup group;
+        int n = 0;
+        synchronized (this) {
+            if (failures.contains(key)) {
+                return Collections.emptyList();
+            }
+            group = connections.computeIfAbsent(key, ConnectionGroup::new);
+            while (group.count() < count && group.canGrow()) {
+                group.newConnectionStarted();
+                n++;
+            }
+        }
+        List<CompletableFuture<Http2Connection>> cfs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            cfs.add(prewarm(req, key, group));
+        }
+        return cfs;
+    }
+
+    private CompletableFuture<Http2Connection> prewarm(HttpRequestImpl req,
+                                                       String key,
+                                                       ConnectionGroup group) {
+        return Http2Connection
+                .createAsync(req, this)
+                .whenComplete((conn, t) -> {
+                    synchronized (Http2ClientImpl.this) {
+                        if (group.newConnectionDone() && conn == null) {
+                            connections.remove(key, group);
+                        }
+                        if (conn != null) {
+                            if (offerConnection(conn, true)) {
+                                connectionIdle(conn);
+                            } else {
+                                close(conn);
+                            }
                         } else {
                             Throwable cause = Utils.getCompletionCause(t);
                             if (cause instanceof Http2Connection.ALPNException)
@@ -124,28 +214,104 @@ class Http2ClientImpl {
 
     /*
      * Cache the given connection, if no connection to the same
-     * destination exists. If one exists, then we let the initial stream
-     * complete but allow it to close itself upon completion.
+     * destination exists, or if all the connections to that
+     * destination are saturated and the group can still grow.
+     * Otherwise, we let the initial stream complete but allow
+     * it to close itself upon completion.
      * This situation should not arise with https because the request
      * has not been sent as part of the initial alpn negotiation
      */
-    boolean offerConnection(Http2Connection c) {
+    synchronized boolean offerConnection(Http2Connection c) {
+        return offerConnection(c, false);
+    }
+
+    // If onDemand is true the connection was opened because the group
+    // was saturated and is added to the group if there is room left.
+    private boolean offerConnection(Http2Connection c, boolean onDemand) {
         String key = c.key();
-        Http2Connection c1 = connections.putIfAbsent(key, c);
-        if (c1 != null) {
+        ConnectionGroup group = connections.computeIfAbsent(key, ConnectionGroup::new);
+        if (!group.offer(c, onDemand)) {
             c.setSingleStream(true);
             return false;
         }
         return true;
     }
 
-    void deleteConnection(Http2Connection c) {
-        connections.remove(c.key());
+    /*
+     * True if a cleartext connection for the request is opened with the
+     * connection preface (RFC 7540, 3.4) rather than by upgrading an
+     * HTTP/1.1 request. Proxied requests are always upgraded.
+     */
+    boolean priorKnowledge(HttpRequestImpl req) {
+        return !req.secure() && req.proxy() == null
+                && client.http2PriorKnowledge();
+    }
+
+    /*
+     * Removes the given connection from its group, and the group itself
+     * once it has no connection left and none is being opened.
+     */
+    synchronized void deleteConnection(Http2Connection c) {
+        String key = c.key();
+        ConnectionGroup group = connections.get(key);
+        if (group != null && group.remove(c)) {
+            connections.remove(key, group);
+        }
+    }
+
+    /*
+     * Called when the last stream of the given connection has been
+     * closed. If the connection is an extra connection of its group
+     * it is retired after IDLE_TIMEOUT seconds of inactivity.
+     */
+    void connectionIdle(Http2Connection c) {
+        ConnectionGroup group = connections.get(c.key());
+        if (group != null && group.size() > 1 && c.armIdleTimer()) {
+            client.registerTimer(new IdleConnectionEvent(c, IDLE_TIMEOUT * 1000L));
+        }
+    }
+
+    private void retireIfIdle(Http2Connection c) {
+        ConnectionGroup group = connections.get(c.key());
+        if (group == null) return;
+        long idle = c.idleMillis();
+        if (idle >= IDLE_TIMEOUT * 1000L) {
+            if (group.retire(c)) {
+                debug.log(Level.DEBUG, "retiring idle connection %s", c);
+                close(c);
+            }
+        } else if (idle >= 0 && group.size() > 1 && c.armIdleTimer()) {
+            // became active again in the meantime, but is idle now
+            client.registerTimer(new IdleConnectionEvent(c, IDLE_TIMEOUT * 1000L - idle));
+        }
+    }
+
+    /** Returns the number of streams open on all connections. */
+    int activeStreams() {
+        int n = 0;
+        for (ConnectionGroup g : connections.values()) {
+            for (Http2Connection c : g.connections()) {
+                n += c.activeStreams();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Adds up the connections of each group into the given map, keyed by
+     * the host:port of the origin, or of the proxy.
+     */
+    void countConnections(Map<String,Integer> open) {
+        for (ConnectionGroup g : connections.values()) {
+            int n = g.size();
+            // the key is {C,S}:{H,P}:host:port
+            if (n > 0) open.merge(g.key.substring(4), n, Integer::sum);
+        }
     }
 
     void stop() {
         debug.log(Level.DEBUG, "stopping");
-        connections.values().forEach(this::close);
+        connections.values().forEach(g -> g.connections().forEach(this::close));
         connections.clear();
     }
 
@@ -197,6 +363,29 @@ class Http2ClientImpl {
                 streamWindow, Integer.MAX_VALUE, defaultValue);
     }
 
+    // Number of milliseconds without any frame received after which a
+    // connection is probed with a PING (0: no probes). Read for each
+    // connection.
+    int getPingInterval() {
+        return getParameter(
+                "jdk.httpclient.http2.pinginterval", 0, Integer.MAX_VALUE, 0);
+    }
+
+    // Number of milliseconds within which a probed connection must answer
+    int getPingTimeout() {
+        return getParameter(
+                "jdk.httpclient.http2.pingtimeout", 1, Integer.MAX_VALUE, 10_000);
+    }
+
+    // the size up to which the receive windows of a connection may be
+    // grown by auto-tuning; caps the memory used for data not yet consumed
+    int getMaxWindowSize(int connectionWindowSize) {
+        return getParameter(
+                "jdk.httpclient.maxwindowsize",
+                connectionWindowSize, Integer.MAX_VALUE,
+                Math.max(connectionWindowSize, K*K*128));
+    }
+
     SettingsFrame getClientSettings() {
         SettingsFrame frame = new SettingsFrame();
         // default defined for HTTP/2 is 4 K, we use 16 K.
@@ -228,4 +417,118 @@ class Http2ClientImpl {
                 16 * K, 16 * K * K -1, 16 * K));
         return frame;
     }
+
+    /**
+     * Fires when an extra connection of a group has been idle for
+     * a while. Runs in the SelectorManager thread.
+     */
+    final class IdleConnectionEvent extends TimeoutEvent {
+        private final Http2Connection connection;
+
+        IdleConnectionEvent(Http2Connection connection, long millis) {
+            super(Duration.ofMillis(millis));
+            this.connection = connection;
+        }
+
+        @Override
+        public void handle() {
+            connection.disarmIdleTimer();
+            retireIfIdle(connection);
+        }
+    }
+
+    /**
+     * The HTTP/2 connections opened to one origin. New streams are placed
+     * on the connection with the most free stream slots, ties being broken
+     * by the largest connection send window. The group grows, up to
+     * MAX_CONNECTIONS, when all its connections are saturated.
+     */
+    static final class ConnectionGroup {
+        private final String key;
+        private final List<Http2Connection> members = new ArrayList<>(1);
+        private int opening; // connections being opened to grow the group
+
+        ConnectionGroup(String key) {
+            this.key = key;
+        }
+
+        /** Returns the least loaded connection, or null if empty. */
+        synchronized Http2Connection select() {
+            Http2Connection best = null;
+            int bestSlots = 0, bestWindow = 0;
+            for (Http2Connection c : members) {
+                if (c.closed) continue;
+                int slots = c.freeStreamSlots();
+                int window = c.sendWindow();
+                if (best == null
+                        || (bestSlots <= 0 && slots > 0)
+                        || (slots > 0) == (bestSlots > 0)
+                            && (slots > bestSlots
+                                || slots == bestSlots && window > bestWindow)) {
+                    best = c;
+                    bestSlots = slots;
+                    bestWindow = window;
+                }
+            }
+            return best;
+        }
+
+        /** Returns the number of connections, counting those being opened. */
+        synchronized int count() {
+            return members.size() + opening;
+        }
+
+        /** Tells whether a new connection may be opened for this group. */
+        synchronized boolean canGrow() {
+            return members.size() + opening < MAX_CONNECTIONS;
+        }
+
+        synchronized void newConnectionStarted() {
+            opening++;
+        }
+
+        /** Returns true if the group is now unused. */
+        synchronized boolean newConnectionDone() {
+            assert opening > 0;
+            opening--;
+            return members.isEmpty() && opening == 0;
+        }
+
+        synchronized boolean offer(Http2Connection c, boolean onDemand) {
+            if (members.size() >= MAX_CONNECTIONS) return false;
+            if (!members.isEmpty() && !onDemand) {
+                // only keep an upgraded connection if the others are saturated
+                for (Http2Connection m : members) {
+                    if (!m.closed && !m.isSaturated()) return false;
+                }
+            }
+            members.add(c);
+            return true;
+        }
+
+        /** Removes c, and returns true if the group is now unused. */
+        synchronized boolean remove(Http2Connection c) {
+            members.remove(c);
+            return members.isEmpty() && opening == 0;
+        }
+
+        /** Removes c if it is idle and not the last connection of the group. */
+        synchronized boolean retire(Http2Connection c) {
+            if (members.size() <= 1 || !c.isIdle()) return false;
+            return members.remove(c);
+        }
+
+        synchronized int size() {
+            return members.size();
+        }
+
+        synchronized List<Http2Connection> connections() {
+            return new ArrayList<>(members);
+        }
+
+        @Override
+        public String toString() {
+            return "ConnectionGroup(" + key + ")";
+        }
+    }
 }
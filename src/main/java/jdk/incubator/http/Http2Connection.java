@@ -30,17 +30,26 @@ import java.net.InetSocketAddress;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import jdk.incubator.http.HttpConnection.HttpPublisher;
+import jdk.incubator.http.internal.common.ConnectionExpiredException;
 import jdk.incubator.http.internal.common.FlowTube;
 import jdk.incubator.http.internal.common.FlowTube.TubeSubscriber;
 import jdk.incubator.http.internal.common.SysLogger.Level;
@@ -208,14 +217,24 @@ class Http2Connection  {
     }
 
     volatile boolean closed;
+    // set when a GOAWAY is received: the streams the server processes are
+    // completed, but no new stream is sent
+    private volatile boolean draining;
 
     //-------------------------------------
     final HttpConnection connection;
     private final Http2ClientImpl client2;
     private final Map<Integer,Stream<?>> streams = new ConcurrentHashMap<>();
+    // Streams created on this connection whose HEADERS have not been sent
+    // yet. Counted by the connection group when placing new streams.
+    private final AtomicInteger pendingStreams = new AtomicInteger();
+    // nanoTime of the last stream creation, or of the moment the last
+    // stream was closed, used to retire idle connections
+    private volatile long lastActive = System.nanoTime();
+    private final AtomicBoolean idleTimerArmed = new AtomicBoolean();
     private int nextstreamid;
     private int nextPushStream = 2;
-    private final Encoder hpackOut;
+    private final HeaderEncoder hpackOut;
     private final Decoder hpackIn;
     final SettingsFrame clientSettings;
     private volatile SettingsFrame serverSettings;
@@ -227,10 +246,22 @@ class Http2Connection  {
      * Send Window controller for both connection and stream windows.
      * Each of this connection's Streams MUST use this controller.
      */
-    private final WindowController windowController = new WindowController();
+    private final WindowController windowController;
     private final FramesController framesController = new FramesController();
     private final Http2TubeSubscriber subscriber = new Http2TubeSubscriber();
     final ConnectionWindowUpdateSender windowUpdater;
+    // null if receive window auto-tuning is disabled
+    private final ReceiveWindowTuner windowTuner;
+    // the SETTINGS_INITIAL_WINDOW_SIZE last advertised to the server
+    private volatile int receiveWindowSize;
+    // PINGs sent and not acknowledged yet, by payload
+    private final Map<Long,PingRequest> pings = new ConcurrentHashMap<>();
+    private final AtomicLong pingCounter = new AtomicLong();
+    // liveness probes, see checkLiveness
+    private final int pingInterval; // millis, 0 if disabled
+    private final int pingTimeout;  // millis
+    private volatile long lastReceived = System.nanoTime();
+    private volatile TimeoutEvent livenessEvent;
     private volatile Throwable cause;
     private volatile Supplier<ByteBuffer> initial;
 
@@ -249,17 +280,28 @@ class Http2Connection  {
         this.nextstreamid = nextstreamid;
         this.key = key;
         this.clientSettings = this.client2.getClientSettings();
+        this.windowController = new WindowController(client2.client().metrics().stallNanos);
         this.framesDecoder = new FramesDecoder(this::processFrame,
                 clientSettings.getParameter(SettingsFrame.MAX_FRAME_SIZE));
         // serverSettings will be updated by server
         this.serverSettings = SettingsFrame.getDefaultSettings();
-        this.hpackOut = new Encoder(serverSettings.getParameter(HEADER_TABLE_SIZE));
+        this.hpackOut = new HeaderEncoder(serverSettings.getParameter(HEADER_TABLE_SIZE));
         this.hpackIn = new Decoder(clientSettings.getParameter(HEADER_TABLE_SIZE));
         debugHpack.log(Level.DEBUG, () -> "For the record:" + super.toString());
         debugHpack.log(Level.DEBUG, "Decoder created: %s", hpackIn);
         debugHpack.log(Level.DEBUG, "Encoder created: %s", hpackOut);
+        this.pingInterval = client2.getPingInterval();
+        this.pingTimeout = client2.getPingTimeout();
+        this.receiveWindowSize = clientSettings.getParameter(INITIAL_WINDOW_SIZE);
+        int connectionWindowSize = client2.getConnectionWindowSize(clientSettings);
         this.windowUpdater = new ConnectionWindowUpdateSender(this,
-                client2.getConnectionWindowSize(clientSettings));
+                connectionWindowSize);
+        int maxWindowSize = client2.getMaxWindowSize(connectionWindowSize);
+        this.windowTuner = ReceiveWindowTuner.ENABLED
+                && maxWindowSize > connectionWindowSize
+                ? new ReceiveWindowTuner(receiveWindowSize,
+                        connectionWindowSize, maxWindowSize)
+                : null;
     }
 
     /**
@@ -279,6 +321,8 @@ class Http2Connection  {
                 3, // stream 1 is registered during the upgrade
                 keyFor(connection));
         Log.logTrace("Connection send window size {0} ", windowController.connectionWindowSize());
+        // no longer an HTTP/1.1 connection of the pool
+        connection.releasePoolDestination();
 
         Stream<?> initialStream = createStream(exchange);
         initialStream.registerStream(1);
@@ -303,18 +347,21 @@ class Http2Connection  {
         return MinimalFuture.supply(() -> new Http2Connection(connection, client2, exchange, initial));
     }
 
-    // Requires TLS handshake. So, is really async
+    // Requires TLS handshake, or a cleartext connection with prior
+    // knowledge. So, is really async
     static CompletableFuture<Http2Connection> createAsync(HttpRequestImpl request,
                                                           Http2ClientImpl h2client) {
-        assert request.secure();
-        AbstractAsyncSSLConnection connection = (AbstractAsyncSSLConnection)
-        HttpConnection.getConnection(request.getAddress(),
+        assert request.secure() || h2client.priorKnowledge(request);
+        HttpConnection connection =
+        HttpConnection.getConnection(request.getAddress(h2client.client()),
                                      h2client.client(),
                                      request,
                                      HttpClient.Version.HTTP_2);
 
-        return connection.connectAsync()
-                  .thenCompose(unused -> checkSSLConfig(connection))
+        return ExchangeEvents.connectAsync(request.events(), connection)
+                  .thenCompose(unused -> connection.isSecure()
+                          ? checkSSLConfig((AbstractAsyncSSLConnection) connection)
+                          : MinimalFuture.completedFuture(null))
                   .thenCompose(notused-> {
                       CompletableFuture<Http2Connection> cf = new MinimalFuture<>();
                       try {
@@ -389,6 +436,11 @@ class Http2Connection  {
                             cf.completeExceptionally(new IOException(msg));
                     }
                 }
+                if (!cf.isDone()) {
+                    // the connection stays HTTP/1.1: count it against the
+                    // open connections of its pool destination
+                    aconn.client().connectionPool().connectionOpened(aconn);
+                }
                 cf.completeExceptionally(new ALPNException(msg, aconn));
                 return cf;
             }
@@ -450,6 +502,62 @@ class Http2Connection  {
         return this.key;
     }
 
+    /**
+     * Returns the number of streams that can still be opened before
+     * reaching the server's SETTINGS_MAX_CONCURRENT_STREAMS. May be
+     * negative if the limit was lowered by the server.
+     */
+    int freeStreamSlots() {
+        int max = serverSettings.getParameter(MAX_CONCURRENT_STREAMS);
+        if (max < 0) return Integer.MAX_VALUE; // no limit set by the server
+        return max - streams.size() - pendingStreams.get();
+    }
+
+    /** Returns the number of streams currently open on this connection. */
+    int activeStreams() {
+        return streams.size();
+    }
+
+    /** Returns the connection level send window. */
+    int sendWindow() {
+        return windowController.connectionWindowSize();
+    }
+
+    /**
+     * Tells whether no new stream should be placed on this connection
+     * if another connection to the same origin could be used instead.
+     */
+    boolean isSaturated() {
+        return freeStreamSlots() <= 0 || sendWindow() <= 0;
+    }
+
+    boolean isIdle() {
+        return streams.isEmpty() && pendingStreams.get() == 0;
+    }
+
+    /**
+     * Returns the number of milliseconds elapsed since this connection
+     * was last used, or -1 if it is not idle.
+     */
+    long idleMillis() {
+        if (!isIdle()) return -1;
+        return (System.nanoTime() - lastActive) / 1000_000L;
+    }
+
+    boolean armIdleTimer() {
+        return idleTimerArmed.compareAndSet(false, true);
+    }
+
+    void disarmIdleTimer() {
+        idleTimerArmed.set(false);
+    }
+
+    // Called once for each stream returned by createStream, when the stream
+    // is registered or cancelled before its HEADERS could be sent.
+    void streamPlaced() {
+        pendingStreams.decrementAndGet();
+    }
+
     boolean offerConnection() {
         return client2.offerConnection(this);
     }
@@ -477,6 +585,14 @@ class Http2Connection  {
         return serverSettings.getParameter(INITIAL_WINDOW_SIZE);
     }
 
+    /**
+     * The receive window size of new streams: the initial window size
+     * from the client settings, unless it was grown by auto-tuning.
+     */
+    final int getInitialReceiveWindowSize() {
+        return receiveWindowSize;
+    }
+
     void close() {
         Log.logTrace("Closing HTTP/2 connection: to {0}", connection.address());
         GoAwayFrame f = new GoAwayFrame(0, ErrorFrame.NO_ERROR, "Requested by user".getBytes());
@@ -541,6 +657,15 @@ class Http2Connection  {
     }
 
     void shutdown(Throwable t) {
+        shutdown(t, s -> false);
+    }
+
+    /*
+     * Shuts down this connection. The streams for which replay returns true
+     * fail with a ConnectionExpiredException, so that their request is sent
+     * again on another connection.
+     */
+    private void shutdown(Throwable t, Predicate<Stream<?>> replay) {
         debug.log(Level.DEBUG, () -> "Shutting down h2c (closed=" + closed + "): " + t);
         if (closed == true) return;
         synchronized (this) {
@@ -551,9 +676,20 @@ class Http2Connection  {
         Throwable initialCause = this.cause;
         if (initialCause == null) this.cause = t;
         client2.deleteConnection(this);
+        for (Long payload : pings.keySet()) {
+            PingRequest ping = pings.remove(payload);
+            if (ping != null) ping.cf.completeExceptionally(t);
+        }
+        TimeoutEvent liveness = livenessEvent;
+        if (liveness != null) client().cancelTimer(liveness);
         List<Stream<?>> c = new LinkedList<>(streams.values());
         for (Stream<?> s : c) {
-            s.cancelImpl(t);
+            if (replay.test(s)) {
+                s.cancelImpl(new ConnectionExpiredException(
+                        "HTTP/2 connection is gone", t));
+            } else {
+                s.cancelImpl(t);
+            }
         }
         connection.close();
     }
@@ -576,6 +712,7 @@ class Http2Connection  {
      */
     void processFrame(Http2Frame frame) throws IOException {
         Log.logFrames(frame, "IN");
+        lastReceived = System.nanoTime();
         int streamid = frame.streamid();
         if (frame instanceof MalformedFrame) {
             Log.logError(((MalformedFrame) frame).getMessage());
@@ -593,6 +730,9 @@ class Http2Connection  {
         if (streamid == 0) {
             handleConnectionFrame(frame);
         } else {
+            if (windowTuner != null && frame instanceof DataFrame) {
+                tuneWindows(((DataFrame) frame).payloadLength());
+            }
             if (frame instanceof SettingsFrame) {
                 // The stream identifier for a SETTINGS frame MUST be zero
                 framesDecoder.close(
@@ -713,9 +853,14 @@ class Http2Connection  {
             // corresponding entry in the window controller.
             windowController.removeStream(streamid);
         }
-        if (singleStream() && streams.isEmpty()) {
+        if (draining && streams.isEmpty()) {
+            shutdown(new IOException("Drained after GOAWAY"));
+        } else if (singleStream() && streams.isEmpty()) {
             // should be only 1 stream, but there might be more if server push
             close();
+        } else if (s != null && isIdle()) {
+            lastActive = System.nanoTime();
+            client2.connectionIdle(this);
         }
     }
 
@@ -763,6 +908,13 @@ class Http2Connection  {
             if (diff != 0) {
                 windowController.adjustActiveStreams(diff);
             }
+            int tableSize = frame.getParameter(HEADER_TABLE_SIZE);
+            if (tableSize >= 0) {
+                // the encoder is only used under sendlock
+                synchronized (sendlock) {
+                    hpackOut.tableSize(tableSize);
+                }
+            }
             serverSettings = frame;
             sendFrame(new SettingsFrame(SettingsFrame.ACK));
         }
@@ -771,16 +923,208 @@ class Http2Connection  {
     private void handlePing(PingFrame frame)
         throws IOException
     {
+        if (frame.getFlag(PingFrame.ACK)) {
+            PingRequest ping = pings.remove(payload(frame.getData()));
+            if (ping != null) {
+                ping.cf.complete(System.nanoTime() - ping.sent);
+            } else {
+                debug.log(Level.DEBUG, "Ignoring unexpected PING ACK");
+            }
+            return;
+        }
         frame.setFlag(PingFrame.ACK);
         sendUnorderedFrame(frame);
     }
 
+    private static final class PingRequest {
+        final CompletableFuture<Long> cf = new MinimalFuture<>();
+        final long sent = System.nanoTime();
+    }
+
+    /**
+     * Sends a PING frame. The returned future completes with the round
+     * trip time, in nanoseconds, when the server acknowledges it, or
+     * exceptionally if the connection is shut down first.
+     */
+    CompletableFuture<Long> ping() {
+        return sendPing().cf;
+    }
+
+    private PingRequest sendPing() {
+        long payload = pingCounter.incrementAndGet();
+        PingRequest ping = new PingRequest();
+        pings.put(payload, ping);
+        if (closed) {
+            pings.remove(payload);
+            Throwable t = cause;
+            ping.cf.completeExceptionally(t != null ? t
+                    : new IOException("connection closed"));
+            return ping;
+        }
+        byte[] data = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            data[i] = (byte) (payload >>> (8 * (7 - i)));
+        }
+        sendUnorderedFrame(new PingFrame(0, data));
+        return ping;
+    }
+
+    private static long payload(byte[] data) {
+        long payload = 0;
+        for (int i = 0; i < 8; i++) {
+            payload = (payload << 8) | (data[i] & 0xFF);
+        }
+        return payload;
+    }
+
+    /**
+     * Fires when a liveness check is due. Runs in the SelectorManager thread.
+     */
+    final class LivenessEvent extends TimeoutEvent {
+        private final PingRequest probe; // null: check whether a probe is due
+
+        LivenessEvent(long millis, PingRequest probe) {
+            super(Duration.ofMillis(millis));
+            this.probe = probe;
+        }
+
+        @Override
+        public void handle() {
+            client().theExecutor().execute(() -> {
+                if (probe == null) {
+                    checkLiveness();
+                } else {
+                    probeExpired(probe);
+                }
+            });
+        }
+    }
+
+    private void scheduleLivenessCheck(long millis, PingRequest probe) {
+        if (closed) return;
+        LivenessEvent e = new LivenessEvent(millis, probe);
+        livenessEvent = e;
+        client().registerTimer(e);
+        if (closed) client().cancelTimer(e);
+    }
+
+    /*
+     * Sends a PING when nothing was received for pingInterval milliseconds.
+     * A server that answers neither the PING nor anything else within
+     * pingTimeout milliseconds is considered gone.
+     */
+    private void checkLiveness() {
+        if (closed) return;
+        long idle = (System.nanoTime() - lastReceived) / 1_000_000L;
+        if (idle < pingInterval) {
+            scheduleLivenessCheck(pingInterval - idle, null);
+            return;
+        }
+        debug.log(Level.DEBUG, "Idle for %d ms: sending PING", idle);
+        PingRequest probe = sendPing();
+        scheduleLivenessCheck(pingTimeout, probe);
+        probe.cf.thenRun(() -> {
+            TimeoutEvent e = livenessEvent;
+            if (e instanceof LivenessEvent && ((LivenessEvent) e).probe == probe) {
+                client().cancelTimer(e);
+                scheduleLivenessCheck(pingInterval, null);
+            }
+        });
+    }
+
+    private void probeExpired(PingRequest probe) {
+        if (closed || probe.cf.isDone()) return;
+        if (lastReceived - probe.sent > 0) {
+            // the PING ACK is late, but the server is there
+            scheduleLivenessCheck(pingInterval, null);
+            return;
+        }
+        String msg = "No answer to PING within " + pingTimeout + " ms";
+        Log.logError("{0}: {1}", this, msg);
+        // place no new streams on this connection
+        client2.deleteConnection(this);
+        shutdown(new IOException(msg), Http2Connection::mayReplay);
+    }
+
+    // Methods whose requests can be sent again (RFC 7231, 4.2.2)
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<>(
+            Arrays.asList("GET", "HEAD", "OPTIONS", "TRACE", "PUT", "DELETE"));
+
+    // True if the request of the stream may not have reached the server,
+    // and can safely be sent again
+    private static boolean mayReplay(Stream<?> s) {
+        return !(s instanceof Stream.PushedStream)
+                && s.nothingReceived()
+                && IDEMPOTENT_METHODS.contains(s.request.method());
+    }
+
+    /*
+     * Feeds the receive window auto-tuning with a DATA frame. Called from
+     * the reader, and from the reader again when the PING it may send is
+     * acknowledged.
+     */
+    private void tuneWindows(int length) {
+        if (!windowTuner.dataReceived(length)) {
+            return;
+        }
+        ping().whenComplete((rtt, t) -> {
+            if (t != null) {
+                windowTuner.pingFailed();
+            } else if (windowTuner.pingAcked(rtt)) {
+                growWindows(windowTuner.streamWindowSize(),
+                            windowTuner.connectionWindowSize());
+            }
+        });
+    }
+
+    // Advertises grown receive windows to the server
+    private void growWindows(int streamWindowSize, int connectionWindowSize) {
+        debug.log(Level.DEBUG, "Growing receive windows: %s", windowTuner);
+        windowUpdater.grow(connectionWindowSize);
+        if (streamWindowSize > receiveWindowSize) {
+            receiveWindowSize = streamWindowSize;
+            // RFC 7540, 6.9.2: the server applies the difference to the
+            // windows of all open streams
+            SettingsFrame sf = new SettingsFrame();
+            sf.setParameter(INITIAL_WINDOW_SIZE, streamWindowSize);
+            sendUnorderedFrame(sf);
+            for (Stream<?> s : streams.values()) {
+                s.receiveWindowResized(streamWindowSize);
+            }
+        }
+    }
+
+    /*
+     * The server processes the streams up to the last stream id of the
+     * frame, and none of the streams above it (RFC 7540, 6.8). The first
+     * complete normally, and the connection is closed when they are done.
+     * The requests of the others are sent again on another connection.
+     */
     private void handleGoAway(GoAwayFrame frame)
         throws IOException
     {
-        shutdown(new IOException(
+        IOException cause = new IOException(
                         String.valueOf(connection.channel().getLocalAddress())
-                        +": GOAWAY received"));
+                        +": GOAWAY received");
+        int lastStream = frame.getLastStream();
+        debug.log(Level.DEBUG, "GOAWAY received, last stream: %d, error: %d",
+                  lastStream, frame.getErrorCode());
+        synchronized (sendlock) {
+            // no HEADERS are sent after this
+            draining = true;
+        }
+        // place no new streams on this connection
+        client2.deleteConnection(this);
+        for (Stream<?> s : new ArrayList<>(streams.values())) {
+            int id = s.streamid;
+            if (!isSeverInitiatedStream(id) && id > lastStream) {
+                s.cancelImpl(new ConnectionExpiredException(
+                        "Stream " + id + " not processed before GOAWAY", cause));
+            }
+        }
+        if (streams.isEmpty()) {
+            shutdown(cause);
+        }
     }
 
     /**
@@ -833,6 +1177,9 @@ class Http2Connection  {
         if (len > 0) {
             windowUpdater.sendWindowUpdate(len);
         }
+        if (pingInterval > 0) {
+            scheduleLivenessCheck(pingInterval, null);
+        }
         // there will be an ACK to the windows update - which should
         // cause any pending data stored before the preface was sent to be
         // flushed (see PrefaceController).
@@ -855,6 +1202,8 @@ class Http2Connection  {
      */
     final <T> Stream<T> createStream(Exchange<T> exchange) {
         Stream<T> stream = new Stream<>(this, exchange, windowController);
+        pendingStreams.incrementAndGet();
+        lastActive = System.nanoTime();
         return stream;
     }
 
@@ -878,6 +1227,7 @@ class Http2Connection  {
     private List<HeaderFrame> encodeHeaders(OutgoingHeaders<Stream<?>> frame) {
         List<ByteBuffer> buffers = encodeHeadersImpl(
                 getMaxSendFrameSize(),
+                frame.getAttachment().request.getHeaderTemplate(),
                 frame.getAttachment().getRequestPseudoHeaders(),
                 frame.getUserHeaders(),
                 frame.getSystemHeaders());
@@ -917,28 +1267,56 @@ class Http2Connection  {
      *     header field names MUST be converted to lowercase prior to their
      *     encoding in HTTP/2...
      */
-    private List<ByteBuffer> encodeHeadersImpl(int maxFrameSize, HttpHeaders... headers) {
+    private List<ByteBuffer> encodeHeadersImpl(int maxFrameSize,
+                                               HttpHeaderTemplate template,
+                                               HttpHeaders... headers) {
         ByteBuffer buffer = getHeaderBuffer(maxFrameSize);
         List<ByteBuffer> buffers = new ArrayList<>();
         for(HttpHeaders header : headers) {
+            if (header instanceof HttpHeadersImpl) {
+                // walk the entries directly, rather than through map()
+                HttpHeadersImpl h = (HttpHeadersImpl) header;
+                for (int i = 0; i < h.size(); i++) {
+                    hpackOut.header(HttpHeadersImpl.lowerCase(h.name(i)), h.value(i));
+                    buffer = encodeHeader(buffer, buffers, maxFrameSize);
+                }
+                continue;
+            }
             for (Map.Entry<String, List<String>> e : header.map().entrySet()) {
-                String lKey = e.getKey().toLowerCase();
+                String lKey = HttpHeadersImpl.lowerCase(e.getKey());
                 List<String> values = e.getValue();
                 for (String value : values) {
                     hpackOut.header(lKey, value);
-                    while (!hpackOut.encode(buffer)) {
-                        buffer.flip();
-                        buffers.add(buffer);
-                        buffer =  getHeaderBuffer(maxFrameSize);
-                    }
+                    buffer = encodeHeader(buffer, buffers, maxFrameSize);
                 }
             }
         }
+        if (template != null) {
+            // added to the dynamic table, and from then on sent as indexes
+            HttpHeadersImpl h = (HttpHeadersImpl) template.headers();
+            for (int i = 0; i < h.size(); i++) {
+                hpackOut.indexedHeader(HttpHeadersImpl.lowerCase(h.name(i)), h.value(i));
+                buffer = encodeHeader(buffer, buffers, maxFrameSize);
+            }
+        }
         buffer.flip();
         buffers.add(buffer);
         return buffers;
     }
 
+    // Encodes the header set up in hpackOut, and returns the buffer to
+    // encode the next one into.
+    private ByteBuffer encodeHeader(ByteBuffer buffer,
+                                    List<ByteBuffer> buffers,
+                                    int maxFrameSize) {
+        while (!hpackOut.encode(buffer)) {
+            buffer.flip();
+            buffers.add(buffer);
+            buffer =  getHeaderBuffer(maxFrameSize);
+        }
+        return buffer;
+    }
+
     private List<ByteBuffer> encodeHeaders(OutgoingHeaders<Stream<?>> oh, Stream<?> stream) {
         oh.streamid(stream.streamid);
         if (Log.headers()) {
@@ -976,8 +1354,14 @@ class Http2Connection  {
     void sendFrame(Http2Frame frame) {
         try {
             HttpPublisher publisher = publisher();
+            Stream<?> rejected = null;
             synchronized (sendlock) {
-                if (frame instanceof OutgoingHeaders) {
+                if (frame instanceof OutgoingHeaders && draining) {
+                    // placed before the GOAWAY arrived: sent elsewhere
+                    @SuppressWarnings("unchecked")
+                    OutgoingHeaders<Stream<?>> oh = (OutgoingHeaders<Stream<?>>) frame;
+                    rejected = oh.getAttachment();
+                } else if (frame instanceof OutgoingHeaders) {
                     @SuppressWarnings("unchecked")
                     OutgoingHeaders<Stream<?>> oh = (OutgoingHeaders<Stream<?>>) frame;
                     Stream<?> stream = registerNewStream(oh);
@@ -987,6 +1371,11 @@ class Http2Connection  {
                     publisher.enqueue(encodeFrame(frame));
                 }
             }
+            if (rejected != null) {
+                rejected.cancelImpl(new ConnectionExpiredException(
+                        "HTTP/2 connection is draining", null));
+                return;
+            }
             publisher.signalEnqueued();
         } catch (IOException e) {
             if (!closed) {
@@ -1226,6 +1615,53 @@ class Http2Connection  {
         }
     }
 
+    /**
+     * An HPACK encoder that, unlike the default one, uses the dynamic table,
+     * though only for the headers of {@linkplain HttpHeaderTemplate
+     * templates}, which are sent again and again on the same connection.
+     * Other headers are encoded as by the default encoder.
+     */
+    static final class HeaderEncoder extends Encoder {
+
+        /** The largest dynamic table the encoder uses, in bytes. */
+        static final int TABLE_SIZE = Math.max(0,
+                Utils.getIntegerNetProperty("jdk.httpclient.hpack.encoderTableSize", 4096));
+
+        HeaderEncoder(int maxCapacity) {
+            super(maxCapacity);
+        }
+
+        @Override
+        protected int calculateCapacity(int maxCapacity) {
+            return Math.min(maxCapacity, TABLE_SIZE);
+        }
+
+        /** Applies the peer's SETTINGS_HEADER_TABLE_SIZE. */
+        void tableSize(int size) {
+            if (size != getMaxCapacity())
+                setMaxCapacity(size);
+        }
+
+        /**
+         * Sets up the given header, to be sent as an index if it is in the
+         * table already, or else as a literal that is added to the table.
+         */
+        void indexedHeader(String name, String value) {
+            int index = indexOf(name, value);
+            if (index > 0) {
+                indexed(index);
+            } else if (name.length() + value.length() + 32
+                        > calculateCapacity(getMaxCapacity())) {
+                // would not fit: the table would only be emptied
+                header(name, value);
+            } else if (index < 0) {
+                literalWithIndexing(-index, value, true);
+            } else {
+                literalWithIndexing(name, true, value, true);
+            }
+        }
+    }
+
     static class HeaderDecoder implements DecodingCallback {
         HttpHeadersImpl headers;
 
@@ -1246,10 +1682,27 @@ class Http2Connection  {
     static final class ConnectionWindowUpdateSender extends WindowUpdateSender {
 
         final int initialWindowSize;
+        private int windowSize; // guarded by this
         public ConnectionWindowUpdateSender(Http2Connection connection,
                                             int initialWindowSize) {
             super(connection, initialWindowSize);
             this.initialWindowSize = initialWindowSize;
+            this.windowSize = initialWindowSize;
+        }
+
+        /**
+         * Grows the connection receive window to the given size, by sending
+         * a WINDOW_UPDATE for the difference.
+         */
+        void grow(int newWindowSize) {
+            int delta;
+            synchronized (this) {
+                delta = newWindowSize - windowSize;
+                if (delta <= 0) return;
+                windowSize = newWindowSize;
+            }
+            resize(newWindowSize);
+            sendWindowUpdate(delta);
         }
 
         @Override
@@ -27,8 +27,14 @@ package jdk.incubator.http;
 import java.io.IOException;
 import java.net.Authenticator;
 import java.net.CookieHandler;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.ProxySelector;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -201,13 +207,92 @@ public abstract class HttpClient {
          * and responses to the same
          * <a href="https://tools.ietf.org/html/rfc6454#section-4">origin server</a>
          * will use HTTP/2. If the upgrade fails, then the response will be
-         * handled using HTTP/1.1
+         * handled using HTTP/1.1. Requests to {@code http} URIs can instead
+         * use HTTP/2 directly, see {@link #http2PriorKnowledge(boolean)}.
          *
          * @param version the requested HTTP protocol version
          * @return this builder
          */
         public abstract Builder version(HttpClient.Version version);
 
+        /**
+         * Sets whether HTTP/2 requests to {@code http} URIs are sent with
+         * <i>prior knowledge</i> that the server supports HTTP/2 over
+         * cleartext TCP (optional operation).
+         *
+         * <p> By default, a request that is to use {@linkplain Version#HTTP_2
+         * HTTP/2} and has an {@code http} URI is first sent as an HTTP/1.1
+         * request that asks to upgrade the connection to HTTP/2. With prior
+         * knowledge, the client opens the connection with the HTTP/2
+         * connection preface instead, as described by <a
+         * href="https://tools.ietf.org/html/rfc7540#section-3.4">RFC 7540,
+         * section 3.4</a>, and keeps it for subsequent requests to the same
+         * origin server, like the connections negotiated with TLS. Requests
+         * fail if the server does not support HTTP/2. Requests sent through a
+         * proxy still attempt an upgrade.
+         *
+         * <p> If this method is not invoked prior to {@linkplain #build()
+         * building}, then prior knowledge is not used.
+         *
+         * <p><b>Implementation Requirements:</b><br> The default implementation
+         * of this method throws {@code UnsupportedOperationException}. Builders
+         * obtained through {@link HttpClient#newBuilder()} provide an
+         * implementation of this method.
+         *
+         * @param enable whether to use prior knowledge for cleartext HTTP/2
+         * @return this builder
+         * @throws UnsupportedOperationException if not implemented
+         */
+        public Builder http2PriorKnowledge(boolean enable) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Sets how many HTTP/1.1 requests to the given origin server may be
+         * pipelined on one connection (optional operation).
+         *
+         * <p> With pipelining, a request is sent on a connection to the
+         * origin server that is still busy with previous requests, without
+         * waiting for their responses, as described by <a
+         * href="https://tools.ietf.org/html/rfc7230#section-6.3.2">RFC 7230,
+         * section 6.3.2</a>. The responses are read in the order of the
+         * requests. A request only joins a busy connection when there is no
+         * idle connection to the origin server, and when fewer than {@code
+         * depth} requests are waiting for a response on it. Only requests
+         * with an idempotent method ({@code GET}, {@code HEAD}, {@code
+         * OPTIONS}, {@code TRACE}, {@code PUT} and {@code DELETE}) that are
+         * sent with HTTP/1.1, and that do not expect a {@code 100-Continue}
+         * response, are pipelined.
+         *
+         * <p> If a connection fails, or is closed by the server, while
+         * pipelined requests are waiting for a response, the requests that
+         * did not receive any part of their response are sent again, and the
+         * client stops pipelining requests to the origin server: subsequent
+         * requests to it are sent as if this method had not been invoked
+         * for it.
+         *
+         * <p> If this method is not invoked prior to {@linkplain #build()
+         * building}, then newly built clients do not pipeline requests.
+         *
+         * <p><b>Implementation Requirements:</b><br> The default implementation
+         * of this method throws {@code UnsupportedOperationException}. Builders
+         * obtained through {@link HttpClient#newBuilder()} provide an
+         * implementation of this method.
+         *
+         * @param origin a URI of the origin server, with the {@code http} or
+         *        {@code https} scheme; only its scheme, host and port are used
+         * @param depth the maximum number of requests waiting for a response
+         *        on one connection; {@code 1} disables pipelining
+         * @return this builder
+         * @throws IllegalArgumentException if the URI does not have the
+         *         {@code http} or {@code https} scheme, or no host, or if
+         *         {@code depth} is less than {@code 1}
+         * @throws UnsupportedOperationException if not implemented
+         */
+        public Builder pipelining(URI origin, int depth) {
+            throw new UnsupportedOperationException();
+        }
+
         /**
          * Sets the default priority for any HTTP/2 requests sent from this
          * client. The value provided must be between {@code 1} and {@code 256}
@@ -250,6 +335,151 @@ public abstract class HttpClient {
          */
         public abstract Builder authenticator(Authenticator a);
 
+        /**
+         * Sets the number of selector threads used by the client to drive
+         * its connections.
+         *
+         * <p> If this method is not invoked prior to {@linkplain #build()
+         * building}, then newly built clients will use a single selector
+         * thread. Each connection is served by one selector thread for its
+         * whole lifetime; connections are spread across the threads.
+         *
+         * <p><b>Implementation Requirements:</b><br> The default implementation
+         * of this method throws {@code UnsupportedOperationException}. Builders
+         * obtained through {@link HttpClient#newBuilder()} provide an
+         * implementation of this method.
+         *
+         * @param threads the number of selector threads
+         * @return this builder
+         * @throws IllegalArgumentException if {@code threads} is less than
+         *         {@code 1}
+         * @throws UnsupportedOperationException if not implemented
+         */
+        public Builder selectorThreads(int threads) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Sets whether the client asks for, and transparently decodes,
+         * compressed response bodies (optional operation).
+         *
+         * <p> If enabled, requests sent with a {@link HttpResponse.BodyHandler
+         * BodyHandler} that do not carry an {@code Accept-Encoding} header are
+         * sent with {@code Accept-Encoding: gzip, deflate}. A {@code gzip} or
+         * {@code deflate} encoded response body to such a request is then
+         * inflated incrementally, as it is received, before it reaches the
+         * handler's {@link HttpResponse.BodySubscriber BodySubscriber}. The
+         * response headers are left as received. Requests which set their own
+         * {@code Accept-Encoding} header are left alone.
+         *
+         * <p> If this method is not invoked prior to {@linkplain #build()
+         * building}, then newly built clients do not decompress bodies.
+         *
+         * <p><b>Implementation Requirements:</b><br> The default implementation
+         * of this method throws {@code UnsupportedOperationException}. Builders
+         * obtained through {@link HttpClient#newBuilder()} provide an
+         * implementation of this method.
+         *
+         * @param enable whether to decompress response bodies
+         * @return this builder
+         * @throws UnsupportedOperationException if not implemented
+         */
+        public Builder decompression(boolean enable) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Sets the connect timeout duration for this client (optional
+         * operation).
+         *
+         * <p> In the case where a new connection needs to be established, if
+         * the connection cannot be established within the given {@code
+         * duration}, then {@link HttpClient#send(HttpRequest,BodyHandler)
+         * HttpClient::send} throws an {@link HttpConnectTimeoutException}, or
+         * {@link HttpClient#sendAsync(HttpRequest,BodyHandler)
+         * HttpClient::sendAsync} completes exceptionally with an
+         * {@code HttpConnectTimeoutException}. The duration covers the
+         * resolution of the host name, when it is done by a {@linkplain
+         * #resolver(Resolver) resolver}, and the TCP connection, to the host
+         * or to the proxy, but not the TLS handshake. If a new connection
+         * does not need to be established, for example if a connection can
+         * be reused from a previous request, then this timeout duration has
+         * no effect.
+         *
+         * <p> If this method is not invoked prior to {@linkplain #build()
+         * building}, then connecting only fails when the operating system
+         * gives up.
+         *
+         * <p><b>Implementation Requirements:</b><br> The default implementation
+         * of this method throws {@code UnsupportedOperationException}. Builders
+         * obtained through {@link HttpClient#newBuilder()} provide an
+         * implementation of this method.
+         *
+         * @param duration the duration to allow the underlying connection to be
+         *                 established
+         * @return this builder
+         * @throws IllegalArgumentException if the duration is non-positive
+         * @throws UnsupportedOperationException if not implemented
+         */
+        public Builder connectTimeout(Duration duration) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Sets the resolver used to find the addresses of the hosts that the
+         * client connects to directly (optional operation).
+         *
+         * <p> If this method is not invoked prior to {@linkplain #build()
+         * building}, then newly built clients resolve host names with {@link
+         * java.net.InetAddress#getByName(String) InetAddress}, on the thread
+         * that sets up the exchange, and connect to the first address. With a
+         * resolver, host names are resolved while connecting, without blocking
+         * the thread that sets up the exchange, and the client connects to
+         * one of the addresses returned by the resolver. Connection attempts
+         * to the addresses are raced, as described by <a
+         * href="https://tools.ietf.org/html/rfc8305">RFC 8305</a> (Happy
+         * Eyeballs): the addresses are tried in the order of the resolver,
+         * alternating between IPv6 and IPv4 addresses, a new attempt being
+         * started when the previous one fails, or when it did not complete
+         * within 250 milliseconds. The first attempt to complete is used and
+         * the others are abandoned. The addresses of proxies are not
+         * resolved with the resolver.
+         *
+         * <p><b>Implementation Requirements:</b><br> The default implementation
+         * of this method throws {@code UnsupportedOperationException}. Builders
+         * obtained through {@link HttpClient#newBuilder()} provide an
+         * implementation of this method.
+         *
+         * @param resolver the resolver
+         * @return this builder
+         * @throws UnsupportedOperationException if not implemented
+         * @see Resolver#newCachingResolver(Executor, Duration, Duration)
+         */
+        public Builder resolver(Resolver resolver) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Sets a listener which is notified of the progress of every request
+         * sent by the client (optional operation).
+         *
+         * <p> If this method is not invoked prior to {@linkplain #build()
+         * building}, then newly built clients have no listener, and do not
+         * spend any time on taking timestamps for one.
+         *
+         * <p><b>Implementation Requirements:</b><br> The default implementation
+         * of this method throws {@code UnsupportedOperationException}. Builders
+         * obtained through {@link HttpClient#newBuilder()} provide an
+         * implementation of this method.
+         *
+         * @param listener the event listener
+         * @return this builder
+         * @throws UnsupportedOperationException if not implemented
+         */
+        public Builder eventListener(EventListener listener) {
+            throw new UnsupportedOperationException();
+        }
+
         /**
          * Returns a new {@link HttpClient} built from the current state of this
          * builder.
@@ -345,6 +575,25 @@ public abstract class HttpClient {
      */
     public abstract Optional<Executor> executor();
 
+    /**
+     * Returns an {@code Optional} containing the <i>connect timeout
+     * duration</i> for this client (optional operation). If the {@linkplain
+     * Builder#connectTimeout(Duration) connect timeout duration} was not set
+     * in the client's builder, then the {@code Optional} is empty.
+     *
+     * <p><b>Implementation Requirements:</b><br> The default implementation of this method throws
+     * {@code UnsupportedOperationException}. Clients obtained through
+     * {@link HttpClient#newHttpClient()} or {@link HttpClient#newBuilder()}
+     * provide an implementation of this method.
+     *
+     * @return an {@code Optional} containing this client's connect timeout
+     *         duration
+     * @throws UnsupportedOperationException if not implemented
+     */
+    public Optional<Duration> connectTimeout() {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * The HTTP protocol version.
      * <br><a href="http://openjdk.java.net/jeps/11"><b>Incubating Feature</b>.</a> <b>Will be removed in a future release.</b>
@@ -364,6 +613,226 @@ public abstract class HttpClient {
         HTTP_2
     }
 
+    /**
+     * Resolves host names into network addresses, asynchronously.
+     * <br><a href="http://openjdk.java.net/jeps/11"><b>Incubating Feature</b>.</a> <b>Will be removed in a future release.</b>
+     *
+     * <p> A resolver is set via the {@link
+     * HttpClient.Builder#resolver(HttpClient.Resolver)} method.
+     */
+    public interface Resolver {
+
+        /**
+         * Resolves the given host name into its addresses, in the order in
+         * which they should be tried.
+         *
+         * <p> The returned future completes with a non-empty list, or
+         * exceptionally, typically with an {@link
+         * java.net.UnknownHostException}, if the name cannot be resolved.
+         * This method should not block.
+         *
+         * @param host the host name, or a literal IP address
+         * @return a {@code CompletableFuture<List<InetAddress>>}
+         */
+        CompletableFuture<List<InetAddress>> resolve(String host);
+
+        /**
+         * Returns a resolver which resolves host names with {@link
+         * InetAddress#getAllByName(String)}, which returns all the IPv4 and
+         * IPv6 addresses of a host, on the given executor, and caches the
+         * results.
+         *
+         * <p> The addresses of a host are cached for {@code positiveTtl}, and
+         * the failure to resolve a host for {@code negativeTtl}, from the time
+         * the resolution completes. Concurrent requests for the same host
+         * share a single resolution. Note that {@code InetAddress} applies
+         * its own cache, configured with the {@code networkaddress.cache.ttl}
+         * and {@code networkaddress.cache.negative.ttl} security properties,
+         * underneath this one.
+         *
+         * @param executor the executor on which host names are resolved
+         * @param positiveTtl how long addresses are cached
+         * @param negativeTtl how long failures are cached
+         * @return a caching resolver
+         * @throws IllegalArgumentException if a duration is negative
+         */
+        static Resolver newCachingResolver(Executor executor,
+                                           Duration positiveTtl,
+                                           Duration negativeTtl) {
+            return new CachingResolver(executor, positiveTtl, negativeTtl);
+        }
+    }
+
+    /**
+     * A listener for the events of the requests sent by a client, which can be
+     * used to break down where the time spent by a request goes.
+     * <br><a href="http://openjdk.java.net/jeps/11"><b>Incubating Feature</b>.</a> <b>Will be removed in a future release.</b>
+     *
+     * <p> The listener is set via the {@link
+     * HttpClient.Builder#eventListener(HttpClient.EventListener)} method.
+     *
+     * <p> Every method receives the request that was passed to {@code send}
+     * or {@code sendAsync}, which identifies the request across redirects and
+     * retries, and a timestamp taken from {@link System#nanoTime()}. The
+     * events of a request are notified in the order in which they occur:
+     * {@code requestStart}, then for each exchange with a server (there may
+     * be several, because of redirects, retries or authentication):
+     * {@code dnsStart} and {@code dnsEnd}, {@code connectionLookup},
+     * {@code connectStart} and {@code connectEnd} if a new connection is
+     * needed, {@code secureConnectStart} and {@code secureConnectEnd} if that
+     * connection uses TLS, then {@code requestHeadersSent},
+     * {@code requestBodySent}, {@code responseHeadersStart},
+     * {@code responseHeadersEnd}, and {@code responseBodyEnd}. Finally
+     * {@code requestEnd} is notified when the {@code CompletableFuture}
+     * returned by {@code sendAsync} completes; with body handlers which
+     * stream the body, this may happen before the body is received.
+     * Events that do not apply are
+     * not notified: for example, a request on a reused connection has no
+     * connect events. Some of the events of a connection may be notified
+     * concurrently with the events which follow them.
+     *
+     * <p> The methods are invoked by the threads of the client, and should
+     * return quickly. Exceptions they throw are ignored. All the methods
+     * have an empty default implementation.
+     */
+    public interface EventListener {
+
+        /**
+         * A request was passed to the client.
+         *
+         * @param request the request
+         * @param nanoTime the time of the event
+         */
+        default void requestStart(HttpRequest request, long nanoTime) { }
+
+        /**
+         * The client starts resolving the address of a host.
+         *
+         * <p> When the client has a {@linkplain Builder#resolver(Resolver)
+         * resolver}, host names are resolved while connecting: the resolution
+         * is then notified between {@code connectStart} and {@code connectEnd}.
+         *
+         * @param request the request
+         * @param host the host name
+         * @param nanoTime the time of the event
+         */
+        default void dnsStart(HttpRequest request, String host, long nanoTime) { }
+
+        /**
+         * The client has resolved the address of a host, or failed to.
+         *
+         * @param request the request
+         * @param host the host name
+         * @param nanoTime the time of the event
+         */
+        default void dnsEnd(HttpRequest request, String host, long nanoTime) { }
+
+        /**
+         * The client has looked for a connection it can reuse.
+         *
+         * @param request the request
+         * @param reused whether a connection was found; if not, a new
+         *        connection is opened
+         * @param nanoTime the time of the event
+         */
+        default void connectionLookup(HttpRequest request, boolean reused,
+                                      long nanoTime) { }
+
+        /**
+         * The client starts opening a connection.
+         *
+         * @param request the request
+         * @param address the address connected to, which may be a proxy
+         * @param nanoTime the time of the event
+         */
+        default void connectStart(HttpRequest request, InetSocketAddress address,
+                                  long nanoTime) { }
+
+        /**
+         * The connection is open, or failed to open.
+         *
+         * @param request the request
+         * @param failure the reason why the connection failed, or {@code null}
+         * @param nanoTime the time of the event
+         */
+        default void connectEnd(HttpRequest request, Throwable failure,
+                                long nanoTime) { }
+
+        /**
+         * The TLS handshake of a new connection starts.
+         *
+         * @param request the request
+         * @param nanoTime the time of the event
+         */
+        default void secureConnectStart(HttpRequest request, long nanoTime) { }
+
+        /**
+         * The TLS handshake of a new connection has completed, or failed.
+         *
+         * @param request the request
+         * @param alpn the application protocol negotiated, or {@code null}
+         * @param failure the reason why the handshake failed, or {@code null}
+         * @param nanoTime the time of the event
+         */
+        default void secureConnectEnd(HttpRequest request, String alpn,
+                                      Throwable failure, long nanoTime) { }
+
+        /**
+         * The request headers have been handed over to the connection.
+         *
+         * @param request the request
+         * @param nanoTime the time of the event
+         */
+        default void requestHeadersSent(HttpRequest request, long nanoTime) { }
+
+        /**
+         * The request body has been handed over to the connection.
+         *
+         * @param request the request
+         * @param nanoTime the time of the event
+         */
+        default void requestBodySent(HttpRequest request, long nanoTime) { }
+
+        /**
+         * The first byte of the response headers has been received.
+         *
+         * @param request the request
+         * @param nanoTime the time of the event
+         */
+        default void responseHeadersStart(HttpRequest request, long nanoTime) { }
+
+        /**
+         * The response headers have been received.
+         *
+         * @param request the request
+         * @param statusCode the status code of the response
+         * @param nanoTime the time of the event
+         */
+        default void responseHeadersEnd(HttpRequest request, int statusCode,
+                                        long nanoTime) { }
+
+        /**
+         * The response body has been received by the body subscriber, or
+         * failed.
+         *
+         * @param request the request
+         * @param failure the reason why the body failed, or {@code null}
+         * @param nanoTime the time of the event
+         */
+        default void responseBodyEnd(HttpRequest request, Throwable failure,
+                                     long nanoTime) { }
+
+        /**
+         * The request has completed.
+         *
+         * @param request the request
+         * @param failure the reason why the request failed, or {@code null}
+         * @param nanoTime the time of the event
+         */
+        default void requestEnd(HttpRequest request, Throwable failure,
+                                long nanoTime) { }
+    }
+
     /**
      * Defines automatic redirection policy.
      * <br><a href="http://openjdk.java.net/jeps/11"><b>Incubating Feature</b>.</a> <b>Will be removed in a future release.</b>
@@ -471,6 +940,107 @@ public abstract class HttpClient {
     public abstract <U, T> CompletableFuture<U>
     sendAsync(HttpRequest req, HttpResponse.MultiSubscriber<U, T> multiSubscriber);
 
+    /**
+     * Downloads the resource of the given {@code GET} request into a file,
+     * as several byte ranges fetched concurrently (optional operation).
+     *
+     * <p> A {@code HEAD} request is sent first. If the server accepts byte
+     * ranges for the resource and reports its length, the file is sized to
+     * that length and up to {@code ranges} partial requests are sent
+     * concurrently. Each one writes into its own part of the file. The
+     * ranges share HTTP/2 connections, or use several HTTP/1.1 connections.
+     * A range that fails is requested again on its own. Otherwise the
+     * resource is downloaded with a single request, with the same effect as
+     * {@link HttpResponse.BodyHandler#asFile(Path,
+     * java.nio.file.OpenOption...) BodyHandler.asFile}.
+     *
+     * <p> The returned response carries the status code and headers of the
+     * {@code HEAD} request, or of the single request, and the file as body.
+     * It is available once the whole resource has been written to the file.
+     *
+     * <p><b>Implementation Requirements:</b><br> The default implementation of this method throws
+     * {@code UnsupportedOperationException}. Clients obtained through
+     * {@link HttpClient#newHttpClient()} or {@link HttpClient#newBuilder()}
+     * provide an implementation of this method.
+     *
+     * @param req the request, which must be a {@code GET} request
+     * @param file the file to store the resource in
+     * @param ranges the maximum number of ranges to fetch concurrently
+     * @return a {@code CompletableFuture<HttpResponse<Path>>}
+     * @throws IllegalArgumentException if the request is not a {@code GET}
+     *         request, or if {@code ranges} is less than {@code 1}
+     * @throws SecurityException if a security manager has been installed
+     *         and it denies {@link SecurityManager#checkWrite(String)
+     *         write access} to the file
+     * @throws UnsupportedOperationException if not implemented
+     */
+    public CompletableFuture<HttpResponse<Path>>
+    sendRangedAsync(HttpRequest req, Path file, int ranges) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Opens connections to the origin of the given URI ahead of the requests
+     * that will use them (optional operation).
+     *
+     * <p> The connections are set up as for a {@code GET} request to the
+     * given URI, through the proxy selected for that URI if any: TCP connect,
+     * TLS handshake and, for a client that prefers {@linkplain Version#HTTP_2
+     * HTTP/2}, negotiation of HTTP/2 and exchange of settings. They are then
+     * kept idle by this client, so that subsequent requests to the same
+     * origin do not pay for the set up. The connections that this client
+     * already has to that origin, idle HTTP/1.1 connections and HTTP/2
+     * connections, count toward the given number, and the number of
+     * connections opened is bounded by the limits that this client applies
+     * to any connection, such as the number of HTTP/2 connections to the
+     * same origin. Connections for the {@code http} scheme are opened as
+     * HTTP/1.1 connections, a switch to HTTP/2 happening with the first
+     * request, unless the client uses {@linkplain
+     * Builder#http2PriorKnowledge(boolean) HTTP/2 with prior knowledge}.
+     *
+     * <p> The returned future completes when all the connections are ready,
+     * or exceptionally if one of them could not be opened; the connections
+     * that could be opened are kept in both cases.
+     *
+     * <p><b>Implementation Requirements:</b><br> The default implementation of this method throws
+     * {@code UnsupportedOperationException}. Clients obtained through
+     * {@link HttpClient#newHttpClient()} or {@link HttpClient#newBuilder()}
+     * provide an implementation of this method.
+     *
+     * @param uri the URI of a resource of the origin, with the {@code http}
+     *        or {@code https} scheme
+     * @param connections the number of connections to open
+     * @return a {@code CompletableFuture<Void>}
+     * @throws IllegalArgumentException if the URI is not valid for a request,
+     *         or if {@code connections} is less than {@code 1}
+     * @throws SecurityException if a security manager has been installed
+     *         and it denies {@link java.net.URLPermission access} to the URI
+     *         with the {@code GET} method
+     * @throws UnsupportedOperationException if not implemented
+     */
+    public CompletableFuture<Void> prewarm(URI uri, int connections) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the metrics of this client (optional operation).
+     *
+     * <p> The returned object reflects the activity of this client as it
+     * happens: its counters and gauges are read every time one of its methods
+     * is called.
+     *
+     * <p><b>Implementation Requirements:</b><br> The default implementation of this method throws
+     * {@code UnsupportedOperationException}. Clients obtained through
+     * {@link HttpClient#newHttpClient()} or {@link HttpClient#newBuilder()}
+     * provide an implementation of this method.
+     *
+     * @return the metrics of this client
+     * @throws UnsupportedOperationException if not implemented
+     */
+    public HttpClientMetrics metrics() {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Creates a new {@code WebSocket} builder (optional operation).
      *
@@ -27,6 +27,10 @@ package jdk.incubator.http;
 import java.net.Authenticator;
 import java.net.CookieHandler;
 import java.net.ProxySelector;
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLParameters;
@@ -45,6 +49,14 @@ class HttpClientBuilderImpl extends HttpClient.Builder {
     SSLContext sslContext;
     SSLParameters sslParams;
     int priority = -1;
+    int selectorThreads = 1;
+    boolean decompression;
+    boolean http2PriorKnowledge;
+    Duration connectTimeout;
+    HttpClient.Resolver resolver;
+    HttpClient.EventListener eventListener;
+    // pipelining depth, by origin
+    final Map<String,Integer> pipelining = new HashMap<>();
 
     @Override
     public HttpClientBuilderImpl cookieHandler(CookieHandler cookieHandler) {
@@ -118,6 +130,66 @@ class HttpClientBuilderImpl extends HttpClient.Builder {
         return this;
     }
 
+    @Override
+    public HttpClientBuilderImpl selectorThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.selectorThreads = threads;
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilderImpl decompression(boolean enable) {
+        this.decompression = enable;
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilderImpl http2PriorKnowledge(boolean enable) {
+        this.http2PriorKnowledge = enable;
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilderImpl pipelining(URI origin, int depth) {
+        requireNonNull(origin);
+        String scheme = origin.getScheme();
+        if (scheme == null || origin.getHost() == null
+                || !(scheme.equalsIgnoreCase("http")
+                     || scheme.equalsIgnoreCase("https"))) {
+            throw new IllegalArgumentException("Invalid origin: " + origin);
+        }
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be at least 1");
+        }
+        this.pipelining.put(Http1Pipeline.origin(origin), depth);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilderImpl connectTimeout(Duration duration) {
+        requireNonNull(duration);
+        if (duration.isNegative() || Duration.ZERO.equals(duration))
+            throw new IllegalArgumentException("Invalid duration: " + duration);
+        this.connectTimeout = duration;
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilderImpl resolver(HttpClient.Resolver resolver) {
+        requireNonNull(resolver);
+        this.resolver = resolver;
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilderImpl eventListener(HttpClient.EventListener listener) {
+        requireNonNull(listener);
+        this.eventListener = listener;
+        return this;
+    }
+
     @Override
     public HttpClient build() {
         return HttpClientImpl.create(this);
@@ -28,6 +28,9 @@ import java.io.IOException;
 import java.net.Authenticator;
 import java.net.CookieHandler;
 import java.net.ProxySelector;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.Executor;
@@ -91,6 +94,11 @@ final class HttpClientFacade extends HttpClient {
         return impl.executor();
     }
 
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return impl.connectTimeout();
+    }
+
     @Override
     public <T> HttpResponse<T>
     send(HttpRequest req, HttpResponse.BodyHandler<T> responseBodyHandler)
@@ -126,6 +134,32 @@ final class HttpClientFacade extends HttpClient {
         }
     }
 
+    @Override
+    public CompletableFuture<HttpResponse<Path>>
+    sendRangedAsync(HttpRequest req, Path file, int ranges) {
+        try {
+            return impl.sendRangedAsync(req, file, ranges);
+        } finally {
+            // reachabilityFence(this)
+           Objects.requireNonNull(this);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> prewarm(URI uri, int connections) {
+        try {
+            return impl.prewarm(uri, connections);
+        } finally {
+            // reachabilityFence(this)
+            Objects.requireNonNull(this);
+        }
+    }
+
+    @Override
+    public HttpClientMetrics metrics() {
+        return impl.metrics();
+    }
+
     @Override
     public WebSocket.Builder newWebSocketBuilder() {
         try {
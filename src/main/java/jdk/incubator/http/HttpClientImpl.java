@@ -31,31 +31,34 @@ import java.lang.ref.WeakReference;
 import java.net.Authenticator;
 import java.net.CookieHandler;
 import java.net.ProxySelector;
+import java.net.URI;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
 import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivilegedAction;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 import jdk.incubator.http.HttpResponse.BodyHandler;
 import jdk.incubator.http.HttpResponse.MultiSubscriber;
@@ -122,9 +125,21 @@ class HttpClientImpl extends HttpClient {
     // Security parameters
     private final SSLContext sslContext;
     private final SSLParameters sslParams;
-    private final SelectorManager selmgr;
+    private final boolean decompression;
+    // The selector threads. Each channel is served by only one of them,
+    // see selectorFor(SelectableChannel).
+    private final SelectorManager[] selmgrs;
+    // Number of selector threads that have not terminated yet
+    private final AtomicInteger liveSelectors;
     private final FilterFactory filters;
     private final Http2ClientImpl client2;
+    private final ClientMetrics metrics;
+    private final boolean http2PriorKnowledge;
+    private final Duration connectTimeout; // may be null
+    private final HttpClient.Resolver resolver; // may be null
+    private final HttpClient.EventListener eventListener; // may be null
+    // HTTP/1.1 pipelining depth, by origin
+    private final ConcurrentHashMap<String,Integer> pipelining;
     private final long id;
     private final String dbgTag;
 
@@ -171,9 +186,6 @@ class HttpClientImpl extends HttpClient {
     private final AtomicLong pendingWebSocketCount = new AtomicLong();
     private final AtomicLong pendingHttpRequestCount = new AtomicLong();
 
-    /** A Set of, deadline first, ordered timeout events. */
-    private final TreeSet<TimeoutEvent> timeouts;
-
     /**
      * This is a bit tricky:
      * 1. an HttpClientFacade has a final HttpClientImpl field.
@@ -225,6 +237,7 @@ class HttpClientImpl extends HttpClient {
             isDefaultExecutor = false;
         }
         facadeRef = new WeakReference<>(facadeFactory.createFacade(this));
+        metrics = new ClientMetrics(this);
         client2 = new Http2ClientImpl(this);
         executor = ex;
         cookieHandler = builder.cookieHandler;
@@ -246,26 +259,90 @@ class HttpClientImpl extends HttpClient {
         } else {
             sslParams = builder.sslParams;
         }
+        decompression = builder.decompression;
+        http2PriorKnowledge = builder.http2PriorKnowledge;
+        connectTimeout = builder.connectTimeout;
+        resolver = builder.resolver;
+        eventListener = builder.eventListener;
+        pipelining = new ConcurrentHashMap<>(builder.pipelining);
         connections = new ConnectionPool(id);
         connections.start();
-        timeouts = new TreeSet<>();
+        selmgrs = new SelectorManager[builder.selectorThreads];
         try {
-            selmgr = new SelectorManager(this);
+            for (int i = 0; i < selmgrs.length; i++) {
+                selmgrs[i] = new SelectorManager(this, i);
+                selmgrs[i].setDaemon(true);
+            }
         } catch (IOException e) {
             // unlikely
+            for (SelectorManager sm : selmgrs) {
+                if (sm != null) sm.closeSelector();
+            }
             throw new InternalError(e);
         }
-        selmgr.setDaemon(true);
+        liveSelectors = new AtomicInteger(selmgrs.length);
         filters = new FilterFactory();
         initFilters();
         assert facadeRef.get() != null;
     }
 
     private void start() {
-        selmgr.start();
+        for (SelectorManager sm : selmgrs) {
+            sm.start();
+        }
+        metrics.register(id);
+    }
+
+    // Called from each SelectorManager thread, just before exiting.
+    // The last one to exit stops the client. A selector thread that exits
+    // on an error first asks the others to exit too: the channels and
+    // timers mapped to it could no longer make progress, so the whole
+    // client is stopped, as it was with a single selector thread.
+    private void selectorStopped(boolean failed) {
+        if (failed) {
+            for (SelectorManager sm : selmgrs) {
+                sm.requestStop();
+            }
+        }
+        if (liveSelectors.decrementAndGet() == 0) {
+            stop();
+        }
+    }
+
+    private void wakeupSelectors() {
+        for (SelectorManager sm : selmgrs) {
+            sm.wakeupSelector();
+        }
+    }
+
+    // Returns the selector thread that serves the given channel. A channel
+    // always maps to the same thread, which preserves the ordering of the
+    // events registered for it.
+    private SelectorManager selectorFor(SelectableChannel chan) {
+        if (selmgrs.length == 1) return selmgrs[0];
+        if (chan == null) {
+            // stay on the current selector thread if possible
+            Thread t = Thread.currentThread();
+            if (t instanceof SelectorManager
+                    && ((SelectorManager) t).owner == this) {
+                return (SelectorManager) t;
+            }
+            return selmgrs[0];
+        }
+        int h = System.identityHashCode(chan);
+        h ^= (h >>> 16);
+        return selmgrs[(h & 0x7fffffff) % selmgrs.length];
     }
 
-    // Called from the SelectorManager thread, just before exiting.
+    // Returns the selector thread that handles the given timer. This is
+    // derived from the event identity so that cancelTimer finds the same
+    // thread as registerTimer.
+    private SelectorManager selectorFor(TimeoutEvent event) {
+        if (selmgrs.length == 1) return selmgrs[0];
+        return selmgrs[(int) ((event.id() & Long.MAX_VALUE) % selmgrs.length)];
+    }
+
+    // Called once all SelectorManager threads have exited.
     // Clears the HTTP/1.1 and HTTP/2 cache, ensuring that the connections
     // that may be still lingering there are properly closed (and their
     // possibly still opened SocketChannel released).
@@ -274,6 +351,7 @@ class HttpClientImpl extends HttpClient {
         connections.stop();
         // Clears HTTP/2 cache and close its connections.
         client2.stop();
+        metrics.unregister();
     }
 
     private static SSLParameters getDefaultParams(SSLContext ctx) {
@@ -305,7 +383,7 @@ class HttpClientImpl extends HttpClient {
         final long httpCount = pendingHttpRequestCount.decrementAndGet();
         final long webSocketCount = pendingWebSocketCount.get();
         if (count == 0 && facade() == null) {
-            selmgr.wakeupSelector();
+            wakeupSelectors();
         }
         assert httpCount >= 0 : "count of HTTP operations < 0";
         assert webSocketCount >= 0 : "count of WS operations < 0";
@@ -325,7 +403,7 @@ class HttpClientImpl extends HttpClient {
         final long webSocketCount = pendingWebSocketCount.decrementAndGet();
         final long httpCount = pendingHttpRequestCount.get();
         if (count == 0 && facade() == null) {
-            selmgr.wakeupSelector();
+            wakeupSelectors();
         }
         assert httpCount >= 0 : "count of HTTP operations < 0";
         assert webSocketCount >= 0 : "count of WS operations < 0";
@@ -356,7 +434,7 @@ class HttpClientImpl extends HttpClient {
      * If exchange needs to change interest ops, then call registerEvent() again.
      */
     void registerEvent(AsyncEvent exchange) throws IOException {
-        selmgr.register(exchange);
+        selectorFor(exchange.channel()).register(exchange);
     }
 
     /**
@@ -364,7 +442,7 @@ class HttpClientImpl extends HttpClient {
      * the selector
      */
     void cancelRegistration(SocketChannel s) {
-        selmgr.cancel(s);
+        selectorFor(s).cancel(s);
     }
 
     /**
@@ -373,17 +451,42 @@ class HttpClientImpl extends HttpClient {
      */
     void eventUpdated(AsyncEvent event) throws ClosedChannelException {
         assert !(event instanceof AsyncTriggerEvent);
-        selmgr.eventUpdated(event);
+        selectorFor(event.channel()).eventUpdated(event);
     }
 
     boolean isSelectorThread() {
-        return Thread.currentThread() == selmgr;
+        Thread t = Thread.currentThread();
+        return t instanceof SelectorManager
+                && ((SelectorManager) t).owner == this;
     }
 
     Http2ClientImpl client2() {
         return client2;
     }
 
+    // true if cleartext HTTP/2 connections are opened without upgrade
+    boolean http2PriorKnowledge() {
+        return http2PriorKnowledge;
+    }
+
+    // the number of requests that can be pipelined on one HTTP/1.1
+    // connection to the origin of the given URI; 1 if not pipelined
+    int pipeliningDepth(URI uri) {
+        if (pipelining.isEmpty()) return 1;
+        Integer depth = pipelining.get(Http1Pipeline.origin(uri));
+        return depth == null ? 1 : depth;
+    }
+
+    // requests to the given origin are no longer pipelined
+    void stopPipelining(String origin) {
+        pipelining.remove(origin);
+    }
+
+    // null if host names are resolved when the request is set up
+    HttpClient.Resolver resolver() {
+        return resolver;
+    }
+
     private void debugCompleted(String tag, long startNanos, HttpRequest req) {
         if (debugelapsed.isLoggable(Level.DEBUG)) {
             debugelapsed.log(Level.DEBUG, () -> tag + " elapsed "
@@ -416,6 +519,15 @@ class HttpClientImpl extends HttpClient {
     @Override
     public <T> CompletableFuture<HttpResponse<T>>
     sendAsync(HttpRequest userRequest, BodyHandler<T> responseHandler)
+    {
+        return sendAsync(userRequest, responseHandler, null);
+    }
+
+    // If not null, onStart is handed the MultiExchange of the request before
+    // it is started, so that internal callers can cancel it.
+    <T> CompletableFuture<HttpResponse<T>>
+    sendAsync(HttpRequest userRequest, BodyHandler<T> responseHandler,
+              Consumer<? super MultiExchange<?,T>> onStart)
     {
         AccessControlContext acc = null;
         if (System.getSecurityManager() != null)
@@ -426,7 +538,21 @@ class HttpClientImpl extends HttpClient {
         if (requestImpl.method().equals("CONNECT"))
             throw new IllegalArgumentException("Unsupported method CONNECT");
 
-        long start = DEBUGELAPSED ? System.nanoTime() : 0;
+        if (decompression
+                && !userRequest.headers().firstValue("Accept-Encoding").isPresent()) {
+            // only decode what we asked for
+            requestImpl.setSystemHeader("Accept-Encoding", "gzip, deflate");
+            responseHandler = new HttpResponse.DecodingBodyHandler<>(responseHandler);
+        }
+
+        ExchangeEvents events = null;
+        if (eventListener != null) {
+            events = new ExchangeEvents(eventListener, userRequest);
+            requestImpl.setEvents(events);
+            events.requestStart();
+        }
+
+        long start = System.nanoTime();
         reference();
         try {
             debugelapsed.log(Level.DEBUG, "ClientImpl (async) send %s", userRequest);
@@ -436,8 +562,16 @@ class HttpClientImpl extends HttpClient {
                                                             this,
                                                             responseHandler,
                                                             acc);
+            if (onStart != null) onStart.accept(mex);
             CompletableFuture<HttpResponse<T>> res =
-                    mex.responseAsync().whenComplete((b,t) -> unreference());
+                    mex.responseAsync().whenComplete((b,t) -> {
+                        metrics.requestCompleted(start, t);
+                        unreference();
+                    });
+            if (events != null) {
+                ExchangeEvents ev = events;
+                res = res.whenComplete((b,t) -> ev.requestEnd(t));
+            }
             if (DEBUGELAPSED) {
                 res = res.whenComplete(
                         (b,t) -> debugCompleted("ClientImpl (async)", start, userRequest));
@@ -456,6 +590,44 @@ class HttpClientImpl extends HttpClient {
         }
     }
 
+    @Override
+    public CompletableFuture<HttpResponse<Path>>
+    sendRangedAsync(HttpRequest userRequest, Path file, int ranges) {
+        // keeps the client alive between the HEAD request and the ranges
+        reference();
+        try {
+            return RangedDownload.start(this, userRequest, file, ranges)
+                    .whenComplete((r,t) -> unreference());
+        } catch (Throwable t) {
+            unreference();
+            throw t;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> prewarm(URI uri, int connections) {
+        if (connections < 1)
+            throw new IllegalArgumentException("connections must be >= 1: " + connections);
+        // validates the URI
+        HttpRequest userRequest = HttpRequest.newBuilder(uri).build();
+        AccessControlContext acc = null;
+        SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+            acc = AccessController.getContext();
+            sm.checkPermission(Utils.permissionForServer(uri, "GET", Stream.empty()));
+        }
+        HttpRequestImpl requestImpl = new HttpRequestImpl(userRequest, proxySelector, acc);
+        // keeps the client alive until the connections are parked
+        reference();
+        try {
+            return Prewarmer.start(this, requestImpl, connections)
+                    .whenComplete((r,t) -> unreference());
+        } catch (Throwable t) {
+            unreference();
+            throw t;
+        }
+    }
+
     @Override
     public <U, T> CompletableFuture<U>
     sendAsync(HttpRequest userRequest, MultiSubscriber<U, T> responseHandler) {
@@ -468,7 +640,14 @@ class HttpClientImpl extends HttpClient {
         if (requestImpl.method().equals("CONNECT"))
             throw new IllegalArgumentException("Unsupported method CONNECT");
 
-        long start = DEBUGELAPSED ? System.nanoTime() : 0;
+        ExchangeEvents events = null;
+        if (eventListener != null) {
+            events = new ExchangeEvents(eventListener, userRequest);
+            requestImpl.setEvents(events);
+            events.requestStart();
+        }
+
+        long start = System.nanoTime();
         reference();
         try {
             debugelapsed.log(Level.DEBUG, "ClientImpl (async) send multi %s", userRequest);
@@ -479,7 +658,14 @@ class HttpClientImpl extends HttpClient {
                                                          responseHandler,
                                                          acc);
             CompletableFuture<U> res = mex.multiResponseAsync()
-                      .whenComplete((b,t) -> unreference());
+                      .whenComplete((b,t) -> {
+                          metrics.requestCompleted(start, t);
+                          unreference();
+                      });
+            if (events != null) {
+                ExchangeEvents ev = events;
+                res = res.whenComplete((b,t) -> ev.requestEnd(t));
+            }
             if (DEBUGELAPSED) {
                 res = res.whenComplete(
                         (b,t) -> debugCompleted("ClientImpl (async)", start, userRequest));
@@ -516,6 +702,11 @@ class HttpClientImpl extends HttpClient {
         private static final int MAX_NODEADLINE = 1000 * 1200; // ms
         private static final int DEF_NODEADLINE = 3000; // ms
         private static final long NODEADLINE; // default is DEF_NODEADLINE ms
+        // Timeout events are hashed into buckets of TIMER_TICK ms. They
+        // still fire at their exact deadline: the tick only bounds how many
+        // events share a bucket. One revolution of the wheel is ~10 seconds.
+        private static final long TIMER_TICK = 10; // ms
+        private static final int TIMER_BUCKETS = 1024;
         static {
             // ensure NODEADLINE is initialized with some valid value.
             long deadline =  Utils.getIntegerNetProperty(
@@ -529,19 +720,24 @@ class HttpClientImpl extends HttpClient {
         private final Selector selector;
         private volatile boolean closed;
         private final List<AsyncEvent> registrations;
+        /** Timeout events, hashed by deadline. */
+        private final TimingWheel<TimeoutEvent> timeouts;
         private final SysLogger debug;
         private final SysLogger debugtimeout;
-        HttpClientImpl owner;
-        ConnectionPool pool;
+        final HttpClientImpl owner;
+        // Only the first selector thread purges the connection pool
+        final ConnectionPool pool;
 
-        SelectorManager(HttpClientImpl ref) throws IOException {
-            super(null, null, "HttpClient-" + ref.id + "-SelectorManager", 0);
+        SelectorManager(HttpClientImpl ref, int index) throws IOException {
+            super(null, null, "HttpClient-" + ref.id + "-SelectorManager"
+                    + (index == 0 ? "" : "-" + index), 0);
             UNSAFE.putOrderedObject(this, INHERITABLE_THREAD_LOCALS, null);
             owner = ref;
             debug = ref.debug;
             debugtimeout = ref.debugtimeout;
-            pool = ref.connectionPool();
+            pool = index == 0 ? ref.connectionPool() : null;
             registrations = new ArrayList<>();
+            timeouts = new TimingWheel<>(TIMER_TICK, TIMER_BUCKETS);
             selector = Selector.open();
         }
 
@@ -556,12 +752,47 @@ class HttpClientImpl extends HttpClient {
         }
 
         // This returns immediately. So caller not allowed to send/receive
-        // on connection.
-        synchronized void register(AsyncEvent e) {
-            registrations.add(e);
+        // on connection. The event is aborted if this thread has stopped.
+        void register(AsyncEvent e) {
+            synchronized (this) {
+                if (!closed) {
+                    registrations.add(e);
+                    selector.wakeup();
+                    return;
+                }
+            }
+            e.abort(new IOException("selector manager closed"));
+        }
+
+        // Asks this thread to exit, after aborting the events pending on it
+        synchronized void requestStop() {
+            closed = true;
             selector.wakeup();
         }
 
+        // Called by this thread when exiting: aborts the events still
+        // registered with it, so that their exchanges do not hang.
+        private void abortPending() {
+            List<AsyncEvent> events;
+            synchronized (this) {
+                closed = true;
+                events = new ArrayList<>(registrations);
+                registrations.clear();
+            }
+            IOException io = new IOException("selector manager closed");
+            try {
+                for (SelectionKey key : selector.keys().toArray(new SelectionKey[0])) {
+                    SelectorAttachment sa = (SelectorAttachment) key.attachment();
+                    if (sa != null) sa.abortPending(io);
+                }
+            } catch (ClosedSelectorException x) {
+                // nothing registered any more
+            }
+            for (AsyncEvent event : events) {
+                event.abort(io);
+            }
+        }
+
         synchronized void cancel(SocketChannel e) {
             SelectionKey key = e.keyFor(selector);
             if (key != null) {
@@ -574,23 +805,90 @@ class HttpClientImpl extends HttpClient {
             selector.wakeup();
         }
 
-        synchronized void shutdown() {
+        void closeSelector() {
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        synchronized void shutdown(boolean failed) {
             debug.log(Level.DEBUG, "SelectorManager shutting down");
             closed = true;
             try {
                 selector.close();
             } catch (IOException ignored) {
             } finally {
-                owner.stop();
+                owner.selectorStopped(failed);
+            }
+        }
+
+        void registerTimer(TimeoutEvent event) {
+            Log.logTrace("Registering timer {0}", event);
+            if (timeouts.schedule(event)) {
+                selector.wakeup();
+            }
+        }
+
+        void cancelTimer(TimeoutEvent event) {
+            Log.logTrace("Canceling timer {0}", event);
+            timeouts.cancel(event);
+        }
+
+        /**
+         * Purges ( handles ) timer events that have passed their deadline, and
+         * returns the amount of time, in milliseconds, until the next earliest
+         * event. A return value of 0 means that there are no events.
+         */
+        long purgeTimeoutsAndReturnNextDeadline() {
+            if (timeouts.isEmpty()) return 0L;
+
+            long now = System.currentTimeMillis();
+            List<TimeoutEvent> toHandle = timeouts.expire(now);
+            long next = timeouts.nextDeadline();
+            // an event registered since expire() may already be due
+            long diff = next < 0 ? 0L : Math.max(1L, next - now);
+
+            // can be useful for debugging
+            if (!toHandle.isEmpty() && Log.trace()) {
+                Log.logTrace("purgeTimeoutsAndReturnNextDeadline: handling "
+                        + toHandle.size() + " events, "
+                        + "remaining " + timeouts.size()
+                        + ", next deadline: " + diff);
+            }
+
+            // handle timeout events
+            if (!toHandle.isEmpty()) {
+                Throwable failed = null;
+                for (TimeoutEvent event : toHandle) {
+                    try {
+                       Log.logTrace("Firing timer {0}", event);
+                       event.handle();
+                    } catch (Error | RuntimeException e) {
+                        // Not expected. Handle remaining events then throw...
+                        // If e is an OOME or SOE it might simply trigger a new
+                        // error from here - but in this case there's not much we
+                        // could do anyway. Just let it flow...
+                        if (failed == null) failed = e;
+                        else failed.addSuppressed(e);
+                        Log.logTrace("Failed to handle event {0}: {1}", event, e);
+                    }
+                }
+                if (failed instanceof Error) throw (Error) failed;
+                if (failed instanceof RuntimeException) throw (RuntimeException) failed;
             }
+
+            // return time to wait until next event. 0L if there's no more events.
+            return diff;
         }
 
         @Override
         public void run() {
             List<Pair<AsyncEvent,IOException>> errorList = new ArrayList<>();
             List<AsyncEvent> readyList = new ArrayList<>();
+            boolean failed = false;
             try {
-                while (!Thread.currentThread().isInterrupted()) {
+                while (!closed && !Thread.currentThread().isInterrupted()) {
                     synchronized (this) {
                         assert errorList.isEmpty();
                         assert readyList.isEmpty();
@@ -660,13 +958,14 @@ class HttpClientImpl extends HttpClient {
 
                     // Timeouts will have milliseconds granularity. It is important
                     // to handle them in a timely fashion.
-                    long nextTimeout = owner.purgeTimeoutsAndReturnNextDeadline();
+                    long nextTimeout = purgeTimeoutsAndReturnNextDeadline();
                     debugtimeout.log(Level.DEBUG, "next timeout: %d", nextTimeout);
 
                     // Keep-alive have seconds granularity. It's not really an
                     // issue if we keep connections linger a bit more in the keep
                     // alive cache.
-                    long nextExpiry = pool.purgeExpiredConnectionsAndReturnNextDeadline();
+                    long nextExpiry = pool == null ? 0
+                            : pool.purgeExpiredConnectionsAndReturnNextDeadline();
                     debugtimeout.log(Level.DEBUG, "next expired: %d", nextExpiry);
 
                     assert nextTimeout >= 0;
@@ -696,7 +995,7 @@ class HttpClientImpl extends HttpClient {
                             Log.logTrace("HttpClient no longer referenced. Exiting...");
                             return;
                         }
-                        owner.purgeTimeoutsAndReturnNextDeadline();
+                        purgeTimeoutsAndReturnNextDeadline();
                         continue;
                     }
                     Set<SelectionKey> keys = selector.selectedKeys();
@@ -741,13 +1040,15 @@ class HttpClientImpl extends HttpClient {
                     // This terminates thread. So, better just print stack trace
                     String err = Utils.stackTrace(e);
                     Log.logError("HttpClientImpl: fatal error: " + err);
+                    failed = true;
                 }
                 debug.log(Level.DEBUG, "shutting down", e);
                 if (Utils.ASSERTIONSENABLED && !debug.isLoggable(Level.DEBUG)) {
                     e.printStackTrace(System.err); // always print the stack
                 }
             } finally {
-                shutdown();
+                abortPending();
+                shutdown(failed);
             }
         }
 
@@ -893,10 +1194,20 @@ class HttpClientImpl extends HttpClient {
         return isDefaultExecutor ? Optional.empty() : Optional.of(executor);
     }
 
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return Optional.ofNullable(connectTimeout);
+    }
+
     ConnectionPool connectionPool() {
         return connections;
     }
 
+    @Override
+    public ClientMetrics metrics() {
+        return metrics;
+    }
+
     @Override
     public Redirect followRedirects() {
         return followRedirects;
@@ -963,77 +1274,12 @@ class HttpClientImpl extends HttpClient {
     // Timer controls.
     // Timers are implemented through timed Selector.select() calls.
 
-    synchronized void registerTimer(TimeoutEvent event) {
-        Log.logTrace("Registering timer {0}", event);
-        timeouts.add(event);
-        selmgr.wakeupSelector();
-    }
-
-    synchronized void cancelTimer(TimeoutEvent event) {
-        Log.logTrace("Canceling timer {0}", event);
-        timeouts.remove(event);
+    void registerTimer(TimeoutEvent event) {
+        selectorFor(event).registerTimer(event);
     }
 
-    /**
-     * Purges ( handles ) timer events that have passed their deadline, and
-     * returns the amount of time, in milliseconds, until the next earliest
-     * event. A return value of 0 means that there are no events.
-     */
-    private long purgeTimeoutsAndReturnNextDeadline() {
-        long diff = 0L;
-        List<TimeoutEvent> toHandle = null;
-        int remaining = 0;
-        // enter critical section to retrieve the timeout event to handle
-        synchronized(this) {
-            if (timeouts.isEmpty()) return 0L;
-
-            Instant now = Instant.now();
-            Iterator<TimeoutEvent> itr = timeouts.iterator();
-            while (itr.hasNext()) {
-                TimeoutEvent event = itr.next();
-                diff = now.until(event.deadline(), ChronoUnit.MILLIS);
-                if (diff <= 0) {
-                    itr.remove();
-                    toHandle = (toHandle == null) ? new ArrayList<>() : toHandle;
-                    toHandle.add(event);
-                } else {
-                    break;
-                }
-            }
-            remaining = timeouts.size();
-        }
-
-        // can be useful for debugging
-        if (toHandle != null && Log.trace()) {
-            Log.logTrace("purgeTimeoutsAndReturnNextDeadline: handling "
-                    + (toHandle == null ? 0 : toHandle.size()) + " events, "
-                    + "remaining " + remaining
-                    + ", next deadline: " + (diff < 0 ? 0L : diff));
-        }
-
-        // handle timeout events out of critical section
-        if (toHandle != null) {
-            Throwable failed = null;
-            for (TimeoutEvent event : toHandle) {
-                try {
-                   Log.logTrace("Firing timer {0}", event);
-                   event.handle();
-                } catch (Error | RuntimeException e) {
-                    // Not expected. Handle remaining events then throw...
-                    // If e is an OOME or SOE it might simply trigger a new
-                    // error from here - but in this case there's not much we
-                    // could do anyway. Just let it flow...
-                    if (failed == null) failed = e;
-                    else failed.addSuppressed(e);
-                    Log.logTrace("Failed to handle event {0}: {1}", event, e);
-                }
-            }
-            if (failed instanceof Error) throw (Error) failed;
-            if (failed instanceof RuntimeException) throw (RuntimeException) failed;
-        }
-
-        // return time to wait until next event. 0L if there's no more events.
-        return diff < 0 ? 0L : diff;
+    void cancelTimer(TimeoutEvent event) {
+        selectorFor(event).cancelTimer(event);
     }
 
     // used for the connection window
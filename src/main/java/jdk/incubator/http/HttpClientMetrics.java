@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.util.Map;
+
+/**
+ * A view of the activity of an {@link HttpClient}.
+ * <br><a href="http://openjdk.java.net/jeps/11"><b>Incubating Feature</b>.</a> <b>Will be removed in a future release.</b>
+ *
+ * <p> Counters are cumulative since the client was created. Gauges, such as
+ * the number of open connections, are computed when they are read. Reading
+ * the metrics does not interfere with the requests in progress, and keeping
+ * them costs the client no more than a few uncontended increments per
+ * request.
+ *
+ * <p> Connections are reported per origin, as a map from
+ * {@code "host:port"} to a count. For connections through a proxy, the
+ * origin is the proxy.
+ *
+ * <p> When the {@code jdk.httpclient.jmx} system property is set to
+ * {@code true}, the metrics of every client are also registered with the
+ * platform MBean server as an MXBean, under the object name
+ * {@code jdk.incubator.http:type=HttpClient,id=<n>}. The MXBean is
+ * unregistered when the client is stopped.
+ *
+ * @see HttpClient#metrics()
+ */
+public interface HttpClientMetrics {
+
+    /**
+     * Returns the number of open connections, per origin. HTTP/1.1 and
+     * HTTP/2 connections are both counted.
+     * @return a map from origin to number of open connections
+     */
+    Map<String,Integer> getOpenConnections();
+
+    /**
+     * Returns the number of HTTP/1.1 connections sitting idle in the
+     * connection pool, per origin.
+     * @return a map from origin to number of idle connections
+     */
+    Map<String,Integer> getIdleConnections();
+
+    /**
+     * Returns the number of HTTP/1.1 requests that were sent on a
+     * connection taken from the connection pool.
+     * @return the number of pool hits
+     */
+    long getPoolHits();
+
+    /**
+     * Returns the number of HTTP/1.1 requests that had to open a new
+     * connection because none was available in the connection pool.
+     * @return the number of pool misses
+     */
+    long getPoolMisses();
+
+    /**
+     * Returns the number of HTTP/2 streams currently open.
+     * @return the number of active HTTP/2 streams
+     */
+    int getActiveStreams();
+
+    /**
+     * Returns the time, in milliseconds, that HTTP/2 streams have spent
+     * waiting for send window to send request body data. Time spent by
+     * concurrent streams is added up.
+     * @return the total flow control stall time
+     */
+    long getFlowControlStallTime();
+
+    /**
+     * Returns the number of bytes read from sockets.
+     * @return the number of bytes read
+     */
+    long getBytesRead();
+
+    /**
+     * Returns the number of bytes written to sockets.
+     * @return the number of bytes written
+     */
+    long getBytesWritten();
+
+    /**
+     * Returns the number of requests that completed with a response.
+     * @return the number of completed requests
+     */
+    long getCompletedRequests();
+
+    /**
+     * Returns the number of requests that completed exceptionally.
+     * @return the number of failed requests
+     */
+    long getFailedRequests();
+
+    /**
+     * Returns the upper bounds, in milliseconds, of the buckets of the
+     * {@linkplain #getLatencyHistogram() latency histogram}. The last bucket
+     * has no upper bound, and is not listed.
+     * @return the bucket bounds, in increasing order
+     */
+    long[] getLatencyBuckets();
+
+    /**
+     * Returns the latency histogram of completed requests. Element {@code i}
+     * is the number of requests which completed in less than
+     * {@code getLatencyBuckets()[i]} milliseconds, and not in less than the
+     * previous bound. The last element counts the requests that took
+     * longer than all bounds. The latency is measured from the time the
+     * request is sent until the response is available.
+     * @return the number of requests in each bucket
+     */
+    long[] getLatencyHistogram();
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+/**
+ * Thrown when a connection, over which an {@code HttpRequest} is intended to be
+ * sent, is not successfully established within a specified time period.
+ * <br><a href="http://openjdk.java.net/jeps/11"><b>Incubating Feature</b>.</a> <b>Will be removed in a future release.</b>
+ */
+public class HttpConnectTimeoutException extends HttpTimeoutException {
+
+    private static final long serialVersionUID = -7226532553018298573L;
+
+    /**
+     * Constructs an {@code HttpConnectTimeoutException} with the given detail
+     * message.
+     *
+     * @param message
+     *        The detail message; can be {@code null}
+     */
+    public HttpConnectTimeoutException(String message) {
+        super(message);
+    }
+}
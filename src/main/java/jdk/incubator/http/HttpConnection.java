@@ -33,6 +33,7 @@ import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicReference;
 import jdk.incubator.http.HttpClient.Version;
 import jdk.incubator.http.internal.common.Demand;
 import jdk.incubator.http.internal.common.FlowTube;
@@ -69,6 +70,9 @@ abstract class HttpConnection implements Closeable {
     final InetSocketAddress address;
     private final HttpClientImpl client;
     private final TrailingOperations trailingOperations;
+    // The pool destination this connection is counted against, if any
+    private final AtomicReference<ConnectionPool.Destination> poolDestination =
+            new AtomicReference<>();
 
     HttpConnection(InetSocketAddress address, HttpClientImpl client) {
         this.address = address;
@@ -104,10 +108,35 @@ abstract class HttpConnection implements Closeable {
         return client;
     }
 
+    final void setPoolDestination(ConnectionPool.Destination destination) {
+        if (poolDestination.compareAndSet(null, destination)) {
+            destination.open.incrementAndGet();
+        }
+    }
+
+    /**
+     * Must be called by close(), and when the connection is upgraded to
+     * HTTP/2: stops counting this connection against the limit of open
+     * connections of its pool destination.
+     */
+    final void releasePoolDestination() {
+        ConnectionPool.Destination destination = poolDestination.getAndSet(null);
+        if (destination != null) destination.connectionClosed();
+    }
+
     //public abstract void connect() throws IOException, InterruptedException;
 
     public abstract CompletableFuture<Void> connectAsync();
 
+    /**
+     * Connects, notifying the given events, which may be null, of the
+     * resolution of the destination address when it is resolved while
+     * connecting.
+     */
+    CompletableFuture<Void> connectAsync(ExchangeEvents events) {
+        return connectAsync();
+    }
+
     /** Tells whether, or not, this connection is connected to its destination. */
     abstract boolean connected();
 
@@ -154,24 +183,28 @@ abstract class HttpConnection implements Closeable {
                                                HttpRequestImpl request,
                                                Version version) {
         HttpConnection c = null;
-        InetSocketAddress proxy = request.proxy();
-        if (proxy != null && proxy.isUnresolved()) {
-            // The default proxy selector may select a proxy whose  address is
-            // unresolved. We must resolve the address before connecting to it.
-            proxy = new InetSocketAddress(proxy.getHostString(), proxy.getPort());
-        }
+        InetSocketAddress proxy = proxyAddress(request);
         boolean secure = request.secure();
         ConnectionPool pool = client.connectionPool();
 
         if (!secure) {
-            c = pool.getConnection(false, addr, proxy);
+            if (version != HTTP_2) { // HTTP/2 with prior knowledge: not pooled
+                c = pool.getConnection(false, addr, proxy);
+            }
             if (c != null && c.isOpen() /* may have been eof/closed when in the pool */) {
                 final HttpConnection conn = c;
                 DEBUG_LOGGER.log(Level.DEBUG, () -> conn.getConnectionFlow()
                             + ": plain connection retrieved from HTTP/1.1 pool");
+                client.metrics().poolHits.increment();
+                if (request.events() != null) request.events().connectionLookup(true);
                 return c;
             } else {
-                return getPlainConnection(addr, proxy, request, client);
+                if (version != HTTP_2) client.metrics().poolMisses.increment();
+                if (request.events() != null) request.events().connectionLookup(false);
+                c = getPlainConnection(addr, proxy, request, client);
+                // HTTP/2 with prior knowledge: never an HTTP/1.1 connection
+                if (version != HTTP_2) pool.connectionOpened(c);
+                return c;
             }
         } else {  // secure
             if (version != HTTP_2) { // only HTTP/1.1 connections are in the pool
@@ -181,17 +214,35 @@ abstract class HttpConnection implements Closeable {
                 final HttpConnection conn = c;
                 DEBUG_LOGGER.log(Level.DEBUG, () -> conn.getConnectionFlow()
                             + ": SSL connection retrieved from HTTP/1.1 pool");
+                client.metrics().poolHits.increment();
+                if (request.events() != null) request.events().connectionLookup(true);
                 return c;
             } else {
+                if (version != HTTP_2) client.metrics().poolMisses.increment();
+                if (request.events() != null) request.events().connectionLookup(false);
                 String[] alpn = null;
                 if (version == HTTP_2) {
                     alpn = new String[] { "h2", "http/1.1" };
                 }
-                return getSSLConnection(addr, proxy, alpn, client);
+                c = getSSLConnection(addr, proxy, alpn, client);
+                // counted by Http2Connection if h2 is not negotiated
+                if (version != HTTP_2) pool.connectionOpened(c);
+                return c;
             }
         }
     }
 
+    /** Returns the address of the proxy of the given request, or null. */
+    static InetSocketAddress proxyAddress(HttpRequestImpl request) {
+        InetSocketAddress proxy = request.proxy();
+        if (proxy != null && proxy.isUnresolved()) {
+            // The default proxy selector may select a proxy whose  address is
+            // unresolved. We must resolve the address before connecting to it.
+            proxy = new InetSocketAddress(proxy.getHostString(), proxy.getPort());
+        }
+        return proxy;
+    }
+
     private static HttpConnection getSSLConnection(InetSocketAddress addr,
                                                    InetSocketAddress proxy,
                                                    String[] alpn,
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import jdk.incubator.http.internal.common.HttpHeadersImpl;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Objects.requireNonNull;
+import static jdk.incubator.http.internal.common.Utils.ALLOWED_HEADERS;
+import static jdk.incubator.http.internal.common.Utils.isValidName;
+import static jdk.incubator.http.internal.common.Utils.isValidValue;
+
+/**
+ * A fixed set of request headers that is shared by many requests.
+ * <br><a href="http://openjdk.java.net/jeps/11"><b>Incubating Feature</b>.</a> <b>Will be removed in a future release.</b>
+ *
+ * <p> A template is created once, typically with the headers that every
+ * request of an application carries, such as {@code Accept}, credentials or
+ * tenant identifiers, and is then {@linkplain
+ * HttpRequest.Builder#headerTemplate(HttpHeaderTemplate) set} on each
+ * request. Its headers are sent in addition to the headers of the request.
+ *
+ * <p> Because the headers never change, the client prepares them once rather
+ * than for every request: over HTTP/1.1 the encoded bytes of the template are
+ * written as they are, and over HTTP/2 the headers are added to the dynamic
+ * table of the connection's HPACK encoder, so that after the first request on
+ * a connection each of them is sent as a short index. Values that must not be
+ * kept in a compression context, <a
+ * href="https://tools.ietf.org/html/rfc7541#section-7.1.3">RFC 7541, section
+ * 7.1.3</a>, should be set on the request instead.
+ *
+ * <p> As for headers set on a request builder, headers that the client
+ * controls itself are ignored. {@code HttpHeaderTemplate} instances are
+ * immutable and thread-safe.
+ *
+ * @since 9
+ */
+public final class HttpHeaderTemplate {
+
+    private final ImmutableHeaders headers;
+    private final byte[] http1;
+
+    private HttpHeaderTemplate(ImmutableHeaders headers) {
+        this.headers = headers;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < headers.size(); i++) {
+            sb.append(headers.name(i)).append(": ")
+              .append(headers.value(i)).append("\r\n");
+        }
+        this.http1 = sb.toString().getBytes(US_ASCII);
+    }
+
+    /**
+     * Returns a template with the given name value pairs. The supplied
+     * {@code String} instances must alternate as header names and header
+     * values, as for {@link HttpRequest.Builder#headers(String...)}.
+     *
+     * @param headers the list of name value pairs
+     * @return a header template
+     * @throws IllegalArgumentException if there are an odd number of
+     *         parameters, or if a header name or value is not valid, see
+     *         <a href="https://tools.ietf.org/html/rfc7230#section-3.2">
+     *         RFC 7230 section-3.2</a>
+     */
+    public static HttpHeaderTemplate of(String... headers) {
+        requireNonNull(headers);
+        if (headers.length == 0 || headers.length % 2 != 0) {
+            throw new IllegalArgumentException(
+                    format("wrong number, %d, of parameters", headers.length));
+        }
+        HttpHeadersImpl h = new HttpHeadersImpl();
+        for (int i = 0; i < headers.length; i += 2) {
+            String name = requireNonNull(headers[i], "name");
+            String value = requireNonNull(headers[i + 1], "value");
+            if (!isValidName(name)) {
+                throw new IllegalArgumentException("invalid header name: " + name);
+            }
+            if (!isValidValue(value)) {
+                throw new IllegalArgumentException("invalid header value: " + value);
+            }
+            h.addHeader(name, value);
+        }
+        return new HttpHeaderTemplate(ImmutableHeaders.of(h, ALLOWED_HEADERS));
+    }
+
+    /**
+     * Returns the headers of this template.
+     *
+     * @return the headers
+     */
+    public HttpHeaders headers() {
+        return headers;
+    }
+
+    // the headers, as they are written in an HTTP/1.1 request
+    byte[] http1Bytes() {
+        return http1;
+    }
+
+    /**
+     * Returns a string describing this template.
+     *
+     * @return a string describing this template
+     */
+    @Override
+    public String toString() {
+        return "HttpHeaderTemplate" + headers.map();
+    }
+}
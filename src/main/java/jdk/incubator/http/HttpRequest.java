@@ -396,6 +396,24 @@ public abstract class HttpRequest {
          */
         public abstract Builder setHeader(String name, String value);
 
+        /**
+         * Sets a template of headers to be sent with this request, in
+         * addition to the headers set on this builder. A request has at most
+         * one template; this replaces any previously set template.
+         *
+         * <p><b>Implementation Requirements:</b><br> The default implementation
+         * of this method throws {@code UnsupportedOperationException}. Builders
+         * obtained through {@link HttpRequest#newBuilder()} provide an
+         * implementation of this method.
+         *
+         * @param template the header template
+         * @return this request builder
+         * @throws UnsupportedOperationException if not implemented
+         */
+        public Builder headerTemplate(HttpHeaderTemplate template) {
+            throw new UnsupportedOperationException();
+        }
+
         /**
          * Sets the request method of this builder to GET.
          * This is the default.
@@ -549,6 +567,25 @@ public abstract class HttpRequest {
      */
     public abstract HttpHeaders headers();
 
+    /**
+     * Returns an {@code Optional} containing the {@linkplain
+     * Builder#headerTemplate(HttpHeaderTemplate) header template} that this
+     * request was (or will be) sent with, in addition to its {@linkplain
+     * #headers() headers}. If no template was set, then the {@code Optional}
+     * is empty.
+     *
+     * <p><b>Implementation Requirements:</b><br> The default implementation
+     * of this method throws {@code UnsupportedOperationException}. Requests
+     * built by builders obtained through {@link HttpRequest#newBuilder()}
+     * provide an implementation of this method.
+     *
+     * @return an {@code Optional} containing this request's header template
+     * @throws UnsupportedOperationException if not implemented
+     */
+    public Optional<HttpHeaderTemplate> headerTemplate() {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Tests this HTTP request instance for equality with the given object.
      *
@@ -764,6 +801,33 @@ public abstract class HttpRequest {
             return new RequestPublishers.IterablePublisher(iter);
         }
 
+        /**
+         * Returns a request body publisher which compresses the body of the
+         * given publisher with gzip, as it is being sent. The request is sent
+         * with a {@code Content-Encoding: gzip} header and without a
+         * {@code Content-Length}, since the length of the compressed body is
+         * not known in advance: HTTP/1.1 requests use chunked transfer coding.
+         *
+         * @param publisher the publisher of the uncompressed body
+         * @return a BodyPublisher
+         */
+        static BodyPublisher gzip(BodyPublisher publisher) {
+            return new RequestPublishers.CompressingPublisher(publisher, true);
+        }
+
+        /**
+         * Returns a request body publisher which compresses the body of the
+         * given publisher with zlib wrapped deflate, as it is being sent. The
+         * request is sent with a {@code Content-Encoding: deflate} header and
+         * without a {@code Content-Length}, as with {@link #gzip(BodyPublisher)}.
+         *
+         * @param publisher the publisher of the uncompressed body
+         * @return a BodyPublisher
+         */
+        static BodyPublisher deflate(BodyPublisher publisher) {
+            return new RequestPublishers.CompressingPublisher(publisher, false);
+        }
+
         /**
          * A request body publisher which sends no request body.
          *
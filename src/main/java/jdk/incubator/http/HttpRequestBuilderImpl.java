@@ -43,6 +43,7 @@ class HttpRequestBuilderImpl extends HttpRequest.Builder {
     private BodyPublisher bodyPublisher;
     private volatile Optional<HttpClient.Version> version;
     private Duration duration;
+    private HttpHeaderTemplate template;
 
     public HttpRequestBuilderImpl(URI uri) {
         requireNonNull(uri, "uri must be non-null");
@@ -94,6 +95,7 @@ class HttpRequestBuilderImpl extends HttpRequest.Builder {
         b.uri = uri;
         b.duration = duration;
         b.version = version;
+        b.template = template;
         return b;
     }
 
@@ -136,6 +138,12 @@ class HttpRequestBuilderImpl extends HttpRequest.Builder {
         return this;
     }
 
+    @Override
+    public HttpRequestBuilderImpl headerTemplate(HttpHeaderTemplate template) {
+        this.template = requireNonNull(template);
+        return this;
+    }
+
     @Override
     public HttpRequestBuilderImpl expectContinue(boolean enable) {
         expectContinue = enable;
@@ -151,6 +159,8 @@ class HttpRequestBuilderImpl extends HttpRequest.Builder {
 
     HttpHeadersImpl headers() {  return userHeaders; }
 
+    HttpHeaderTemplate headerTemplate() { return template; }
+
     URI uri() { return uri; }
 
     String method() { return method; }
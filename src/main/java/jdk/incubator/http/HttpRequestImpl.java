@@ -46,6 +46,7 @@ class HttpRequestImpl extends HttpRequest implements WebSocketRequest {
 
     private final HttpHeaders userHeaders;
     private final HttpHeadersImpl systemHeaders;
+    private final HttpHeaderTemplate template; // may be null
     private final URI uri;
     private Proxy proxy;
     private InetSocketAddress authority; // only used when URI not specified
@@ -57,6 +58,8 @@ class HttpRequestImpl extends HttpRequest implements WebSocketRequest {
     private AccessControlContext acc;
     private final Duration timeout;  // may be null
     private final Optional<HttpClient.Version> version;
+    // notifies the client's event listener, null if there is none
+    private volatile ExchangeEvents events;
 
     private static String userAgent() {
         PrivilegedAction<String> pa = () -> System.getProperty("java.version");
@@ -73,8 +76,9 @@ class HttpRequestImpl extends HttpRequest implements WebSocketRequest {
     public HttpRequestImpl(HttpRequestBuilderImpl builder) {
         String method = builder.method();
         this.method = method == null ? "GET" : method;
-        this.userHeaders = ImmutableHeaders.of(builder.headers().map(), ALLOWED_HEADERS);
+        this.userHeaders = ImmutableHeaders.of(builder.headers(), ALLOWED_HEADERS);
         this.systemHeaders = new HttpHeadersImpl();
+        this.template = builder.headerTemplate();
         this.uri = builder.uri();
         assert uri != null;
         this.proxy = null;
@@ -95,8 +99,10 @@ class HttpRequestImpl extends HttpRequest implements WebSocketRequest {
         if (request instanceof HttpRequestImpl) {
             this.systemHeaders = ((HttpRequestImpl) request).systemHeaders;
             this.isWebSocket = ((HttpRequestImpl) request).isWebSocket;
+            this.template = ((HttpRequestImpl) request).template;
         } else {
             this.systemHeaders = new HttpHeadersImpl();
+            this.template = null;
         }
         this.systemHeaders.setHeader("User-Agent", USER_AGENT);
         this.uri = request.uri();
@@ -112,9 +118,18 @@ class HttpRequestImpl extends HttpRequest implements WebSocketRequest {
         this.expectContinue = request.expectContinue();
         this.secure = uri.getScheme().toLowerCase(Locale.US).equals("https");
         this.requestPublisher = request.bodyPublisher().orElse(null);
-        if (acc != null && requestPublisher instanceof RequestPublishers.FilePublisher) {
+        BodyPublisher publisher = requestPublisher;
+        if (publisher instanceof RequestPublishers.CompressingPublisher) {
+            RequestPublishers.CompressingPublisher compressing =
+                    (RequestPublishers.CompressingPublisher) publisher;
+            if (!userHeaders.firstValue("Content-Encoding").isPresent()) {
+                this.systemHeaders.setHeader("Content-Encoding", compressing.encoding());
+            }
+            publisher = compressing.delegate();
+        }
+        if (acc != null && publisher instanceof RequestPublishers.FilePublisher) {
             // Restricts the file publisher with the senders ACC, if any
-            ((RequestPublishers.FilePublisher)requestPublisher).setAccessControlContext(acc);
+            ((RequestPublishers.FilePublisher)publisher).setAccessControlContext(acc);
         }
         this.timeout = request.timeout().orElse(null);
         this.version = request.version();
@@ -126,6 +141,7 @@ class HttpRequestImpl extends HttpRequest implements WebSocketRequest {
                            HttpRequestImpl other) {
         this.method = method == null? "GET" : method;
         this.userHeaders = other.userHeaders;
+        this.template = other.template;
         this.isWebSocket = other.isWebSocket;
         this.systemHeaders = other.systemHeaders;
         this.uri = uri;
@@ -136,6 +152,7 @@ class HttpRequestImpl extends HttpRequest implements WebSocketRequest {
         this.acc = other.acc;
         this.timeout = other.timeout;
         this.version = other.version();
+        this.events = other.events;
     }
 
     /* used for creating CONNECT requests  */
@@ -146,6 +163,7 @@ class HttpRequestImpl extends HttpRequest implements WebSocketRequest {
         this.method = method;
         this.systemHeaders = new HttpHeadersImpl();
         this.userHeaders = ImmutableHeaders.empty();
+        this.template = null;
         this.uri = URI.create("socket://" + authority.getHostString() + ":"
                               + Integer.toString(authority.getPort()) + "/");
         this.proxy = null;
@@ -191,7 +209,8 @@ class HttpRequestImpl extends HttpRequest implements WebSocketRequest {
         sb.append(scheme).append("://").append(authority).append(path);
         this.uri = URI.create(sb.toString());
         this.proxy = null;
-        this.userHeaders = ImmutableHeaders.of(headers.map(), ALLOWED_HEADERS);
+        this.userHeaders = ImmutableHeaders.of(headers, ALLOWED_HEADERS);
+        this.template = null;
         this.systemHeaders = parent.systemHeaders;
         this.expectContinue = parent.expectContinue;
         this.secure = parent.secure;
@@ -211,6 +230,14 @@ class HttpRequestImpl extends HttpRequest implements WebSocketRequest {
         return userHeaders;
     }
 
+    @Override
+    public Optional<HttpHeaderTemplate> headerTemplate() {
+        return Optional.ofNullable(template);
+    }
+
+    /** Returns the header template of this request, or null. */
+    HttpHeaderTemplate getHeaderTemplate() { return template; }
+
     InetSocketAddress authority() { return authority; }
 
     void setH2Upgrade(Http2ClientImpl h2client) {
@@ -296,7 +323,15 @@ class HttpRequestImpl extends HttpRequest implements WebSocketRequest {
         systemHeaders.setHeader(name, value);
     }
 
-    InetSocketAddress getAddress() {
+    ExchangeEvents events() {
+        return events;
+    }
+
+    void setEvents(ExchangeEvents events) {
+        this.events = events;
+    }
+
+    InetSocketAddress getAddress(HttpClientImpl client) {
         URI uri = uri();
         if (uri == null) {
             return authority();
@@ -312,8 +347,21 @@ class HttpRequestImpl extends HttpRequest implements WebSocketRequest {
         final String host = uri.getHost();
         final int port = p;
         if (proxy() == null) {
+            if (client.resolver() != null) {
+                // resolved when connecting
+                return InetSocketAddress.createUnresolved(host, port);
+            }
             PrivilegedAction<InetSocketAddress> pa = () -> new InetSocketAddress(host, port);
-            return AccessController.doPrivileged(pa);
+            ExchangeEvents events = this.events;
+            if (events == null) {
+                return AccessController.doPrivileged(pa);
+            }
+            events.dnsStart(host);
+            try {
+                return AccessController.doPrivileged(pa);
+            } finally {
+                events.dnsEnd(host);
+            }
         } else {
             return InetSocketAddress.createUnresolved(host, port);
         }
@@ -37,6 +37,7 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.security.AccessControlContext;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Consumer;
@@ -206,6 +207,75 @@ public abstract class HttpResponse<T> {
         }
     }
 
+    /**
+     * A Path body handler that writes the file asynchronously, optionally
+     * extending it to the response's Content-Length first. Supports setting ACC.
+     */
+    static class AsyncPathBodyHandler implements UntrustedBodyHandler<Path> {
+        private final Path file;
+        private final boolean preallocate;
+        private final OpenOption[]openOptions;
+        private volatile AccessControlContext acc;
+
+        AsyncPathBodyHandler(Path file, boolean preallocate, OpenOption... openOptions) {
+            this.file = file;
+            this.preallocate = preallocate;
+            this.openOptions = openOptions;
+        }
+
+        @Override
+        public void setAccessControlContext(AccessControlContext acc) {
+            this.acc = acc;
+        }
+
+        @Override
+        public BodySubscriber<Path> apply(int statusCode, HttpHeaders headers) {
+            long size = preallocate
+                    ? headers.firstValueAsLong("Content-Length").orElse(-1L)
+                    : -1L;
+            ResponseSubscribers.AsyncPathSubscriber bs = (ResponseSubscribers.AsyncPathSubscriber)
+                  HttpResponse.asFileAsyncImpl(file, size, openOptions);
+            bs.setAccessControlContext(acc);
+            return bs;
+        }
+    }
+
+    /**
+     * Wraps the subscriber of another handler in a {@link
+     * ResponseSubscribers.DecodingSubscriber} when the response body is
+     * gzip or deflate encoded. Forwards the ACC to the other handler.
+     */
+    static class DecodingBodyHandler<T> implements UntrustedBodyHandler<T> {
+        private final BodyHandler<T> downstream;
+
+        DecodingBodyHandler(BodyHandler<T> downstream) {
+            this.downstream = Objects.requireNonNull(downstream);
+        }
+
+        @Override
+        public void setAccessControlContext(AccessControlContext acc) {
+            if (downstream instanceof UntrustedBodyHandler)
+                ((UntrustedBodyHandler<T>) downstream).setAccessControlContext(acc);
+        }
+
+        @Override
+        public BodySubscriber<T> apply(int statusCode, HttpHeaders headers) {
+            BodySubscriber<T> subscriber = downstream.apply(statusCode, headers);
+            String encoding = headers.firstValue("Content-Encoding")
+                    .map(v -> v.trim().toLowerCase(Locale.US))
+                    .orElse("");
+            switch (encoding) {
+                case "gzip":
+                case "x-gzip":
+                    return new ResponseSubscribers.DecodingSubscriber<>(subscriber, true);
+                case "deflate":
+                    return new ResponseSubscribers.DecodingSubscriber<>(subscriber, false);
+                default:
+                    return subscriber;
+            }
+        }
+    }
+
     // Similar to Path body handler, but for file download. Supports setting ACC.
     static class FileDownloadBodyHandler implements UntrustedBodyHandler<Path> {
         private final Path directory;
@@ -268,6 +338,8 @@ public abstract class HttpResponse<T> {
      * <li>{@link #asString(java.nio.charset.Charset) asString(Charset)}</li>
      * <li>{@link #asFile(Path, OpenOption...)
      * asFile(Path,OpenOption...)}</li>
+     * <li>{@link #asFileAsync(Path, boolean, OpenOption...)
+     * asFileAsync(Path,boolean,OpenOption...)}</li>
      * <li>{@link #asFileDownload(java.nio.file.Path,OpenOption...)
      * asFileDownload(Path,OpenOption...)}</li>
      * <li>{@link #asInputStream() asInputStream()}</li>
@@ -480,6 +552,49 @@ public abstract class HttpResponse<T> {
                                             StandardOpenOption.WRITE);
         }
 
+        /**
+         * Returns a {@code BodyHandler<Path>} that returns a
+         * {@link BodySubscriber BodySubscriber}{@code <Path>} obtained from
+         * {@link BodySubscriber#asFileAsync(Path, long, OpenOption...)
+         * BodySubscriber.asFileAsync(Path,long,OpenOption...)}.
+         *
+         * <p> If {@code preallocate} is {@code true} and the response carries
+         * a {@code Content-Length} header, the file is extended to that length
+         * before the body is written to it.
+         *
+         * <p> When the {@code HttpResponse} object is returned, the body has
+         * been completely written to the file, and {@link #body()} returns a
+         * reference to its {@link Path}.
+         *
+         * @param file the filename to store the body in
+         * @param preallocate whether to size the file from the
+         *        {@code Content-Length} of the response
+         * @param openOptions any options to use when opening/creating the file
+         * @return a response body handler
+         * @throws SecurityException If a security manager has been installed
+         *          and it denies {@link SecurityManager#checkWrite(String)
+         *          write access} to the file. The {@link
+         *          SecurityManager#checkDelete(String) checkDelete} method is
+         *          invoked to check delete access if the file is opened with
+         *          the {@code DELETE_ON_CLOSE} option.
+         */
+        public static BodyHandler<Path> asFileAsync(Path file,
+                                                    boolean preallocate,
+                                                    OpenOption... openOptions) {
+            Objects.requireNonNull(file);
+            List<OpenOption> opts = Lists.of(openOptions);
+            SecurityManager sm = System.getSecurityManager();
+            if (sm != null) {
+                String fn = pathForSecurityCheck(file);
+                sm.checkWrite(fn);
+                if (opts.contains(StandardOpenOption.DELETE_ON_CLOSE))
+                    sm.checkDelete(fn);
+                if (opts.contains(StandardOpenOption.READ))
+                    sm.checkRead(fn);
+            }
+            return new AsyncPathBodyHandler(file, preallocate, openOptions);
+        }
+
         /**
          * Returns a {@code BodyHandler<Path>} that returns a
          * {@link BodySubscriber BodySubscriber}&lt;{@link Path}&gt;
@@ -781,6 +896,50 @@ public abstract class HttpResponse<T> {
             return HttpResponse.asFileImpl(file, openOptions);
         }
 
+        /**
+         * Returns a {@code BodySubscriber} which stores the response body in a
+         * file opened with the given name and options, like {@link
+         * #asFile(Path, OpenOption...) asFile}, but without ever blocking the
+         * thread that delivers the body. The body is written with positional
+         * writes on an {@link java.nio.channels.AsynchronousFileChannel}, and
+         * more of it is only requested while the number of outstanding writes
+         * is within a small bound.
+         *
+         * <p> If {@code expectedSize} is positive, the file is extended to that
+         * size before the body is written to it. If the body then turns out to
+         * be shorter, the file is truncated when the body is complete.
+         *
+         * <p> The {@link HttpResponse} using this subscriber is available after
+         * the entire response has been read.
+         *
+         * @param file the file to store the body in
+         * @param expectedSize the size of the body, if known, or -1
+         * @param openOptions the list of options to open the file with
+         * @return a body subscriber
+         * @throws SecurityException If a security manager has been installed
+         *          and it denies {@link SecurityManager#checkWrite(String)
+         *          write access} to the file. The {@link
+         *          SecurityManager#checkDelete(String) checkDelete} method is
+         *          invoked to check delete access if the file is opened with the
+         *          {@code DELETE_ON_CLOSE} option.
+         */
+        public static BodySubscriber<Path> asFileAsync(Path file,
+                                                       long expectedSize,
+                                                       OpenOption... openOptions) {
+            Objects.requireNonNull(file);
+            List<OpenOption> opts = Lists.of(openOptions);
+            SecurityManager sm = System.getSecurityManager();
+            if (sm != null) {
+                String fn = pathForSecurityCheck(file);
+                sm.checkWrite(fn);
+                if (opts.contains(StandardOpenOption.DELETE_ON_CLOSE))
+                    sm.checkDelete(fn);
+                if (opts.contains(StandardOpenOption.READ))
+                    sm.checkRead(fn);
+            }
+            return HttpResponse.asFileAsyncImpl(file, expectedSize, openOptions);
+        }
+
         /**
          * Returns a {@code BodySubscriber} which stores the response body in a
          * file opened with the given name. Has the same effect as calling
@@ -1099,4 +1258,11 @@ public abstract class HttpResponse<T> {
     static BodySubscriber<Path> asFileImpl(Path file, OpenOption... openOptions) {
         return new ResponseSubscribers.PathSubscriber(file, openOptions);
     }
+
+    // no security check
+    static BodySubscriber<Path> asFileAsyncImpl(Path file, long expectedSize,
+                                                OpenOption... openOptions) {
+        return new ResponseSubscribers.AsyncPathSubscriber(file, expectedSize,
+                                                           openOptions);
+    }
 }
@@ -24,22 +24,18 @@
  */
 package jdk.incubator.http;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.function.Predicate;
-import static java.util.Collections.emptyMap;
-import static java.util.Collections.unmodifiableList;
-import static java.util.Collections.unmodifiableMap;
+import jdk.incubator.http.internal.common.HttpHeadersImpl;
 import static java.util.Objects.requireNonNull;
 
-final class ImmutableHeaders extends HttpHeaders {
+final class ImmutableHeaders extends HttpHeadersImpl {
 
-    private final Map<String, List<String>> map;
+    private static final ImmutableHeaders EMPTY = new ImmutableHeaders();
 
     public static ImmutableHeaders empty() {
-        return of(emptyMap());
+        return EMPTY;
     }
 
     public static ImmutableHeaders of(Map<String, List<String>> src) {
@@ -50,25 +46,53 @@ final class ImmutableHeaders extends HttpHeaders {
                                       Predicate<? super String> keyAllowed) {
         requireNonNull(src, "src");
         requireNonNull(keyAllowed, "keyAllowed");
-        return new ImmutableHeaders(src, keyAllowed);
+        ImmutableHeaders headers = new ImmutableHeaders();
+        for (Map.Entry<String, List<String>> e : src.entrySet()) {
+            if (keyAllowed.test(e.getKey())) {
+                for (String value : e.getValue())
+                    headers.append(e.getKey(), value);
+            }
+        }
+        return headers;
     }
 
-    private ImmutableHeaders(Map<String, List<String>> src,
-                             Predicate<? super String> keyAllowed) {
-        Map<String, List<String>> m = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
-        src.entrySet().stream()
-                .filter(e -> keyAllowed.test(e.getKey()))
-                .forEach(e ->
-                        {
-                            List<String> values = new ArrayList<>(e.getValue());
-                            m.put(e.getKey(), unmodifiableList(values));
-                        }
-                );
-        this.map = unmodifiableMap(m);
+    /**
+     * Returns immutable headers with the entries of src, in the same order,
+     * whose names are allowed. Unlike {@link #of(Map, Predicate)} this does
+     * not need the map view of src.
+     */
+    public static ImmutableHeaders of(HttpHeadersImpl src,
+                                      Predicate<? super String> keyAllowed) {
+        requireNonNull(src, "src");
+        requireNonNull(keyAllowed, "keyAllowed");
+        ImmutableHeaders headers = new ImmutableHeaders();
+        int size = src.size();
+        for (int i = 0; i < size; i++) {
+            if (keyAllowed.test(src.name(i)))
+                headers.append(src.name(i), src.value(i));
+        }
+        return headers;
+    }
+
+    /** Returns immutable headers with all the entries of src. */
+    public static ImmutableHeaders of(HttpHeadersImpl src) {
+        requireNonNull(src, "src");
+        if (src instanceof ImmutableHeaders)
+            return (ImmutableHeaders) src;
+        ImmutableHeaders headers = new ImmutableHeaders();
+        headers.copyFrom(src);
+        return headers;
+    }
+
+    private ImmutableHeaders() { }
+
+    @Override
+    public void addHeader(String name, String value) {
+        throw new UnsupportedOperationException("immutable headers");
     }
 
     @Override
-    public Map<String, List<String>> map() {
-        return map;
+    public void setHeader(String name, String value) {
+        throw new UnsupportedOperationException("immutable headers");
     }
 }
@@ -25,8 +25,11 @@
 package jdk.incubator.http;
 
 import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
@@ -34,6 +37,11 @@ import java.nio.channels.SocketChannel;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 import jdk.incubator.http.internal.common.FlowTube;
 import jdk.incubator.http.internal.common.Log;
 import jdk.incubator.http.internal.common.MinimalFuture;
@@ -49,19 +57,29 @@ import java9.util.concurrent.CompletableFuture;
 class PlainHttpConnection extends HttpConnection {
 
     private final Object reading = new Object();
-    protected final SocketChannel chan;
-    private final FlowTube tube;
+    private final boolean pooledReads;
+    // Delay after which the next address of a resolved host is tried if
+    // the previous connection attempt has not completed (RFC 8305, 5)
+    static final long CONNECTION_ATTEMPT_DELAY = Math.max(10, Utils.getIntegerNetProperty(
+            "jdk.httpclient.connectionAttemptDelay", 250)); // millis
+
+    // replaced by the channel of the winning connection attempt
+    private volatile SocketChannel chan;
+    private volatile FlowTube tube;
     private final PlainHttpPublisher writePublisher = new PlainHttpPublisher(reading);
     private volatile boolean connected;
     private boolean closed;
+    private ConnectRace race; // guarded by this
 
     // should be volatile to provide proper synchronization(visibility) action
 
     final class ConnectEvent extends AsyncEvent {
-        private final CompletableFuture<Void> cf;
+        private final ConnectRace race;
+        private final SocketChannel chan;
 
-        ConnectEvent(CompletableFuture<Void> cf) {
-            this.cf = cf;
+        ConnectEvent(ConnectRace race, SocketChannel chan) {
+            this.race = race;
+            this.chan = chan;
         }
 
         @Override
@@ -76,54 +94,300 @@ class PlainHttpConnection extends HttpConnection {
 
         @Override
         public void handle() {
+            Throwable failure = null;
             try {
-                assert !connected : "Already connected";
                 assert !chan.isBlocking() : "Unexpected blocking channel";
                 debug.log(Level.DEBUG, "ConnectEvent: finishing connect");
                 boolean finished = chan.finishConnect();
                 assert finished : "Expected channel to be connected";
                 debug.log(Level.DEBUG,
                           "ConnectEvent: connect finished: %s Local addr: %s", finished, chan.getLocalAddress());
-                connected = true;
-                // complete async since the event runs on the SelectorManager thread
-                cf.completeAsync(() -> null, client().theExecutor());
             } catch (Throwable e) {
-                client().theExecutor().execute( () -> cf.completeExceptionally(e));
+                failure = e;
             }
+            // complete async since the event runs on the SelectorManager thread
+            Throwable t = failure;
+            client().theExecutor().execute(() -> race.attemptDone(chan, t));
         }
 
         @Override
         public void abort(IOException ioe) {
-            close();
-            client().theExecutor().execute( () -> cf.completeExceptionally(ioe));
+            client().theExecutor().execute(() -> race.attemptDone(chan, ioe));
+        }
+    }
+
+    /**
+     * Races connection attempts to the addresses of the host, as described
+     * by RFC 8305: an attempt is started every CONNECTION_ATTEMPT_DELAY
+     * milliseconds, or as soon as the previous one fails, until one
+     * succeeds. The channel of the first attempt to succeed becomes the
+     * channel of the connection, the others are closed. If the client has a
+     * connect timeout, the race, including the resolution of the host,
+     * fails with an HttpConnectTimeoutException when it expires.
+     */
+    private final class ConnectRace {
+        final CompletableFuture<Void> result = new MinimalFuture<>();
+        // channels of the attempts in progress
+        final List<SocketChannel> pending = new ArrayList<>();
+        final TimeoutEvent timeout;
+        List<InetSocketAddress> targets;
+        int next;
+        TimeoutEvent delay;
+        Throwable lastFailure;
+        boolean done;
+
+        ConnectRace() {
+            Duration duration = client().connectTimeout().orElse(null);
+            if (duration == null) {
+                timeout = null;
+            } else {
+                timeout = new TimeoutEvent(duration) {
+                    @Override
+                    public void handle() {
+                        client().theExecutor().execute(() -> fail(
+                                new HttpConnectTimeoutException("HTTP connect timed out")));
+                    }
+                };
+                client().registerTimer(timeout);
+            }
+        }
+
+        void start(List<InetSocketAddress> targets) {
+            synchronized (this) {
+                if (done) return;
+                if (targets.isEmpty()) {
+                    lastFailure = new UnknownHostException(address.getHostString());
+                }
+                this.targets = targets;
+            }
+            startNext();
+        }
+
+        private void startNext() {
+            SocketChannel ch;
+            InetSocketAddress target;
+            TimeoutEvent oldDelay, newDelay = null;
+            synchronized (this) {
+                if (done) return;
+                if (next >= targets.size()) {
+                    if (!pending.isEmpty()) return;
+                    ch = null;
+                    target = null;
+                } else {
+                    target = targets.get(next);
+                    try {
+                        // the first attempt uses the channel of the connection
+                        ch = next == 0 ? chan : openChannel();
+                    } catch (Throwable t) {
+                        ch = null;
+                        lastFailure = t;
+                    }
+                    next++;
+                    if (ch != null) {
+                        pending.add(ch);
+                        if (next < targets.size()) {
+                            newDelay = new TimeoutEvent(Duration.ofMillis(
+                                    CONNECTION_ATTEMPT_DELAY)) {
+                                @Override
+                                public void handle() {
+                                    client().theExecutor().execute(
+                                            ConnectRace.this::startNext);
+                                }
+                            };
+                        }
+                    }
+                }
+                oldDelay = delay;
+                delay = newDelay;
+            }
+            if (oldDelay != null) client().cancelTimer(oldDelay);
+            if (ch == null) {
+                if (target == null) {
+                    fail(lastFailure);
+                } else {
+                    startNext();
+                }
+                return;
+            }
+            if (newDelay != null) client().registerTimer(newDelay);
+            attempt(ch, target);
+        }
+
+        private void attempt(SocketChannel ch, InetSocketAddress target) {
+            try {
+                assert !ch.isBlocking() : "Unexpected blocking channel";
+                PrivilegedExceptionAction<Boolean> pa = () -> ch.connect(target);
+                boolean finished;
+                try {
+                    finished = AccessController.doPrivileged(pa);
+                } catch (PrivilegedActionException e) {
+                    throw e.getCause();
+                }
+                if (finished) {
+                    debug.log(Level.DEBUG, "connect finished without blocking");
+                    attemptDone(ch, null);
+                } else {
+                    debug.log(Level.DEBUG, "registering connect event for %s", target);
+                    client().registerEvent(new ConnectEvent(this, ch));
+                }
+            } catch (Throwable t) {
+                debug.log(Level.DEBUG, "failed to connect to %s: %s",
+                          target, (Object) t);
+                attemptDone(ch, t);
+            }
+        }
+
+        void attemptDone(SocketChannel ch, Throwable t) {
+            List<SocketChannel> losers;
+            TimeoutEvent oldDelay;
+            synchronized (this) {
+                boolean removed = pending.remove(ch);
+                if (done || !removed) {
+                    closeChannel(ch);
+                    return;
+                }
+                if (t != null) {
+                    lastFailure = t;
+                    losers = null;
+                    oldDelay = null;
+                } else {
+                    done = true;
+                    losers = new ArrayList<>(pending);
+                    pending.clear();
+                    oldDelay = delay;
+                    delay = null;
+                }
+            }
+            if (t != null) {
+                startNext();
+                return;
+            }
+            cancelTimers(oldDelay);
+            losers.forEach(this::closeChannel);
+            try {
+                install(ch);
+                result.complete(null);
+            } catch (Throwable x) {
+                closeChannel(ch);
+                result.completeExceptionally(x);
+            }
+        }
+
+        void fail(Throwable t) {
+            List<SocketChannel> losers;
+            TimeoutEvent oldDelay;
+            synchronized (this) {
+                if (done) return;
+                done = true;
+                losers = new ArrayList<>(pending);
+                pending.clear();
+                oldDelay = delay;
+                delay = null;
+            }
+            cancelTimers(oldDelay);
+            losers.forEach(this::closeChannel);
+            result.completeExceptionally(t);
+        }
+
+        private void cancelTimers(TimeoutEvent delay) {
+            if (delay != null) client().cancelTimer(delay);
+            if (timeout != null) client().cancelTimer(timeout);
+        }
+
+        private void closeChannel(SocketChannel ch) {
+            client().cancelRegistration(ch);
+            try { ch.close(); } catch (IOException x) { }
         }
     }
 
     @Override
     public CompletableFuture<Void> connectAsync() {
-        CompletableFuture<Void> cf = new MinimalFuture<>();
+        return connectAsync(null);
+    }
+
+    @Override
+    CompletableFuture<Void> connectAsync(ExchangeEvents events) {
+        ConnectRace race = new ConnectRace();
+        synchronized (this) {
+            assert !connected && this.race == null : "Already connecting";
+            if (closed) {
+                race.fail(new IOException("connection closed"));
+                return race.result;
+            }
+            this.race = race;
+        }
+        HttpClient.Resolver resolver = client().resolver();
+        if (!address.isUnresolved() || resolver == null) {
+            race.start(Collections.singletonList(address));
+            return race.result;
+        }
+        String host = address.getHostString();
+        if (events != null) events.dnsStart(host);
+        CompletableFuture<List<InetAddress>> cf;
         try {
-            assert !connected : "Already connected";
-            assert !chan.isBlocking() : "Unexpected blocking channel";
-            boolean finished = false;
-            PrivilegedExceptionAction<Boolean> pa = () -> chan.connect(address);
-            try {
-                 finished = AccessController.doPrivileged(pa);
-            } catch (PrivilegedActionException e) {
-                cf.completeExceptionally(e.getCause());
+            cf = resolver.resolve(host);
+        } catch (Throwable t) {
+            cf = MinimalFuture.failedFuture(t);
+        }
+        cf.whenComplete((addresses, t) -> {
+            if (events != null) events.dnsEnd(host);
+            if (t != null) {
+                race.fail(Utils.getCompletionCause(t));
+            } else {
+                race.start(interleave(addresses).stream()
+                        .map(a -> new InetSocketAddress(a, address.getPort()))
+                        .collect(Collectors.toList()));
             }
-            if (finished) {
-                debug.log(Level.DEBUG, "connect finished without blocking");
-                connected = true;
-                cf.complete(null);
+        });
+        return race.result;
+    }
+
+    /**
+     * Orders the addresses of a host as described by RFC 8305, section 4:
+     * the address families alternate, starting with the family of the
+     * first address, and the order of the addresses within a family is
+     * preserved.
+     */
+    static List<InetAddress> interleave(List<InetAddress> addresses) {
+        if (addresses.size() < 2) {
+            return addresses;
+        }
+        boolean firstIsV6 = addresses.get(0) instanceof Inet6Address;
+        List<InetAddress> first = new ArrayList<>();
+        List<InetAddress> second = new ArrayList<>();
+        for (InetAddress a : addresses) {
+            if ((a instanceof Inet6Address) == firstIsV6) {
+                first.add(a);
             } else {
-                debug.log(Level.DEBUG, "registering connect event");
-                client().registerEvent(new ConnectEvent(cf));
+                second.add(a);
             }
-        } catch (Throwable throwable) {
-            cf.completeExceptionally(throwable);
         }
-        return cf;
+        if (second.isEmpty()) {
+            return addresses;
+        }
+        List<InetAddress> result = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(first.size(), second.size()); i++) {
+            if (i < first.size()) result.add(first.get(i));
+            if (i < second.size()) result.add(second.get(i));
+        }
+        return result;
+    }
+
+    // Makes the channel of the winning attempt the channel of the connection
+    private synchronized void install(SocketChannel winner) throws IOException {
+        race = null;
+        if (closed) {
+            throw new IOException("connection closed");
+        }
+        SocketChannel old = chan;
+        if (winner != old) {
+            chan = winner;
+            // wrap the connected channel in a Tube for async reading and writing
+            tube = new SocketTube(client(), winner,
+                                  () -> Utils.getReadBuffer(pooledReads));
+            try { old.close(); } catch (IOException x) { }
+        }
+        connected = true;
     }
 
     @Override
@@ -137,23 +401,46 @@ class PlainHttpConnection extends HttpConnection {
     }
 
     PlainHttpConnection(InetSocketAddress addr, HttpClientImpl client) {
+        this(addr, client, false);
+    }
+
+    /**
+     * Creates a connection. If pooledReads is true the socket is read into
+     * pooled direct buffers: the read subscriber must then copy the data out
+     * of each buffer and recycle it (see Utils.recycleReadBuffer), which is
+     * what SSLFlowDelegate does.
+     */
+    PlainHttpConnection(InetSocketAddress addr, HttpClientImpl client,
+                        boolean pooledReads) {
         super(addr, client);
+        this.pooledReads = pooledReads;
+        try {
+            this.chan = openChannel();
+        } catch (IOException e) {
+            throw new InternalError(e);
+        }
+        // wrap the connected channel in a Tube for async reading and writing
+        tube = new SocketTube(client(), chan,
+                              () -> Utils.getReadBuffer(pooledReads));
+    }
+
+    private SocketChannel openChannel() throws IOException {
+        SocketChannel chan = SocketChannel.open();
         try {
-            this.chan = SocketChannel.open();
             chan.configureBlocking(false);
-            int bufsize = client.getReceiveBufferSize();
-            if (!trySetReceiveBufferSize(bufsize)) {
-                trySetReceiveBufferSize(256*1024);
+            int bufsize = client().getReceiveBufferSize();
+            if (!trySetReceiveBufferSize(chan, bufsize)) {
+                trySetReceiveBufferSize(chan, 256*1024);
             }
             chan.setOption(StandardSocketOptions.TCP_NODELAY, true);
-            // wrap the connected channel in a Tube for async reading and writing
-            tube = new SocketTube(client(), chan, Utils::getBuffer);
         } catch (IOException e) {
-            throw new InternalError(e);
+            chan.close();
+            throw e;
         }
+        return chan;
     }
 
-    private boolean trySetReceiveBufferSize(int bufsize) {
+    private boolean trySetReceiveBufferSize(SocketChannel chan, int bufsize) {
         try {
             chan.setOption(StandardSocketOptions.SO_RCVBUF, bufsize);
             return true;
@@ -178,15 +465,25 @@ class PlainHttpConnection extends HttpConnection {
      * Closes this connection
      */
     @Override
-    public synchronized void close() {
-        if (closed) {
-            return;
+    public void close() {
+        ConnectRace race;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            race = this.race;
+            this.race = null;
+            releasePoolDestination();
+            try {
+                Log.logTrace("Closing: " + toString());
+                chan.close();
+            } catch (IOException e) {}
+        }
+        // complete outside of the lock: dependent stages run in this thread
+        if (race != null) {
+            race.fail(new IOException("connection closed"));
         }
-        closed = true;
-        try {
-            Log.logTrace("Closing: " + toString());
-            chan.close();
-        } catch (IOException e) {}
     }
 
     @Override
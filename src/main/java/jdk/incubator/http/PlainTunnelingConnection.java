@@ -112,6 +112,7 @@ final class PlainTunnelingConnection extends HttpConnection {
 
     @Override
     public void close() {
+        releasePoolDestination();
         delegate.close();
         connected = false;
     }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import jdk.incubator.http.internal.common.MinimalFuture;
+import jdk.incubator.http.internal.common.SysLogger;
+import jdk.incubator.http.internal.common.SysLogger.Level;
+import jdk.incubator.http.internal.common.Utils;
+import java9.util.concurrent.CompletableFuture;
+
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static jdk.incubator.http.HttpClient.Version.HTTP_2;
+
+/**
+ * Opens connections to an origin ahead of the requests that will use them,
+ * and parks them where exchanges look for connections: HTTP/1.1
+ * connections in the {@link ConnectionPool}, HTTP/2 connections in the
+ * connection group of their origin. Connections are obtained through the
+ * same paths as for an exchange, so they count against the same limits,
+ * and the connections the client already has to the origin, idle ones in
+ * the pool or the members of the connection group, count toward the
+ * number asked for.
+ *
+ * Plain connections are parked as HTTP/1.1 connections, since h2c is
+ * negotiated with the first request, unless the client uses HTTP/2 with
+ * prior knowledge; secure connections of a client
+ * that prefers HTTP/2 are parked in the HTTP/1.1 pool if the server does
+ * not negotiate h2.
+ */
+final class Prewarmer {
+
+    static final boolean DEBUG = Utils.DEBUG; // Revisit: temporary dev flag.
+    static final SysLogger DEBUG_LOGGER =
+            Utils.getDebugLogger("Prewarmer"::toString, DEBUG);
+
+    private Prewarmer() { }
+
+    static CompletableFuture<Void> start(HttpClientImpl client,
+                                         HttpRequestImpl request,
+                                         int connections) {
+        List<CompletableFuture<?>> cfs = new ArrayList<>(connections);
+        if (client.version() == HTTP_2
+                && (request.secure() || client.client2().priorKnowledge(request))) {
+            for (CompletableFuture<Http2Connection> cf
+                    : client.client2().prewarm(request, connections)) {
+                cfs.add(openHttp2(client, cf));
+            }
+        } else {
+            List<HttpConnection> idle = new ArrayList<>();
+            try {
+                InetSocketAddress addr = request.getAddress(client);
+                for (int i = 0; i < connections; i++) {
+                    HttpConnection connection = HttpConnection
+                            .getConnection(addr, client, request, HTTP_1_1);
+                    if (connection.connected()) {
+                        idle.add(connection);
+                    } else {
+                        cfs.add(openHttp1(client, connection));
+                    }
+                }
+            } catch (Throwable t) {
+                cfs.add(MinimalFuture.failedFuture(t));
+            }
+            // idle connections go back to the pool only once they have all
+            // been taken, so that each one is counted once
+            idle.forEach(client.connectionPool()::returnToPool);
+        }
+        return CompletableFuture.allOf(cfs.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private static CompletableFuture<Void> openHttp1(HttpClientImpl client,
+                                                     HttpConnection connection) {
+        return connection.connectAsync()
+                .thenCompose(unused -> handshake(connection))
+                .whenComplete((unused, t) -> {
+                    if (t == null) {
+                        DEBUG_LOGGER.log(Level.DEBUG, "parking %s", connection);
+                        client.connectionPool().returnToPool(connection);
+                    } else {
+                        DEBUG_LOGGER.log(Level.DEBUG, "failed to open %s: %s",
+                                         connection, (Object) t);
+                        connection.close();
+                    }
+                });
+    }
+
+    // completes once the TLS handshake of a secure connection is done
+    private static CompletableFuture<Void> handshake(HttpConnection connection) {
+        if (connection instanceof AbstractAsyncSSLConnection) {
+            return ((AbstractAsyncSSLConnection) connection).getALPN()
+                    .thenApply(alpn -> null);
+        }
+        return MinimalFuture.completedFuture(null);
+    }
+
+    private static CompletableFuture<Void> openHttp2(HttpClientImpl client,
+                                                     CompletableFuture<Http2Connection> cf) {
+        return cf.handle((conn, t) -> {
+            Throwable cause = Utils.getCompletionCause(t);
+            if (cause instanceof Http2Connection.ALPNException) {
+                // the server does not speak h2: keep it as HTTP/1.1
+                HttpConnection c =
+                        ((Http2Connection.ALPNException) cause).getConnection();
+                DEBUG_LOGGER.log(Level.DEBUG, "parking %s", c);
+                client.connectionPool().returnToPool(c);
+            } else if (t != null) {
+                throw new CompletionException(cause);
+            }
+            return null;
+        });
+    }
+}
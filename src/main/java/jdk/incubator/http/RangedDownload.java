@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.security.AccessControlContext;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import javax.net.ssl.SSLParameters;
+import jdk.incubator.http.HttpResponse.BodyHandler;
+import jdk.incubator.http.HttpResponse.BodySubscriber;
+import jdk.incubator.http.HttpResponse.UntrustedBodyHandler;
+import jdk.incubator.http.internal.common.MinimalFuture;
+import jdk.incubator.http.internal.common.SysLogger;
+import jdk.incubator.http.internal.common.Utils;
+import jdk.incubator.http.internal.common.SysLogger.Level;
+import java9.util.concurrent.CompletableFuture;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static jdk.incubator.http.internal.common.Utils.unchecked;
+
+/**
+ * Downloads a resource into a file as several byte ranges, fetched
+ * concurrently. A HEAD request first finds out the length of the resource
+ * and whether the server accepts ranges; if it does not, the resource is
+ * downloaded with a single GET, as with {@link BodyHandler#asFile}.
+ *
+ * Otherwise the file is sized to the resource's length, and each range is
+ * written into its own slot of the file, with an {@code If-Range} validator
+ * so that all ranges come from the same version of the resource. Each range
+ * is an independent exchange, with the usual retries of {@link MultiExchange};
+ * a range that still fails is fetched again, up to {@link #MAX_ATTEMPTS}
+ * times, without touching the ranges that succeeded. Once a range has
+ * failed for good the download fails, and the exchanges of the other
+ * ranges are cancelled.
+ */
+final class RangedDownload {
+
+    static final boolean DEBUG = Utils.DEBUG; // Revisit: temporary dev flag.
+    final SysLogger debug = Utils.getDebugLogger(this::dbgString, DEBUG);
+
+    static final int MAX_ATTEMPTS = Math.max(1, Utils.getIntegerNetProperty(
+            "jdk.httpclient.ranged.retrylimit", 3));
+    /** Ranges are never made smaller than this. */
+    static final long MIN_RANGE = 64 * 1024;
+
+    private final HttpClientImpl client;
+    private final HttpRequest request;
+    private final Path file;
+    private final int ranges;
+    private final AccessControlContext acc;
+    // the exchanges of the ranges being fetched
+    private final Set<MultiExchange<?,?>> exchanges = ConcurrentHashMap.newKeySet();
+    private volatile boolean failed;
+
+    private RangedDownload(HttpClientImpl client, HttpRequest request,
+                           Path file, int ranges, AccessControlContext acc) {
+        this.client = client;
+        this.request = request;
+        this.file = file;
+        this.ranges = ranges;
+        this.acc = acc;
+    }
+
+    static CompletableFuture<HttpResponse<Path>> start(HttpClientImpl client,
+                                                       HttpRequest request,
+                                                       Path file,
+                                                       int ranges) {
+        if (ranges < 1)
+            throw new IllegalArgumentException("ranges must be >= 1: " + ranges);
+        if (!request.method().equals("GET"))
+            throw new IllegalArgumentException("Not a GET request: " + request.method());
+        // performs the security checks of asFile
+        BodyHandler.asFile(file, CREATE, WRITE, TRUNCATE_EXISTING);
+        AccessControlContext acc = System.getSecurityManager() != null
+                ? AccessController.getContext() : null;
+        return new RangedDownload(client, request, file, ranges, acc).start();
+    }
+
+    private CompletableFuture<HttpResponse<Path>> start() {
+        HttpRequest head = copyRequest()
+                .method("HEAD", HttpRequest.BodyPublisher.noBody())
+                .build();
+        return client.sendAsync(head, BodyHandler.discard((Void)null))
+                     .thenCompose(this::afterHead);
+    }
+
+    private CompletableFuture<HttpResponse<Path>> afterHead(HttpResponse<Void> head) {
+        HttpHeaders headers = head.headers();
+        long length = headers.firstValueAsLong("Content-Length").orElse(-1L);
+        boolean acceptsRanges = headers.allValues("Accept-Ranges").stream()
+                .anyMatch(v -> v.toLowerCase(Locale.ROOT).contains("bytes"));
+        int n = (int) Math.min(ranges, length / MIN_RANGE);
+        if (head.statusCode() != 200 || !acceptsRanges || n < 2) {
+            debug.log(Level.DEBUG, "single download: status=%d, length=%d, ranges=%s",
+                      head.statusCode(), length, acceptsRanges);
+            return client.sendAsync(copyRequest().GET().build(),
+                    BodyHandler.asFile(file, CREATE, WRITE, TRUNCATE_EXISTING));
+        }
+        try {
+            preallocate(length);
+        } catch (IOException ioe) {
+            return MinimalFuture.failedFuture(ioe);
+        }
+        String validator = validator(headers);
+        long size = (length + n - 1) / n;
+        debug.log(Level.DEBUG, "%d ranges of %d bytes, validator %s",
+                  n, size, validator);
+        CompletableFuture<HttpResponse<Path>> result = new MinimalFuture<>();
+        AtomicInteger remaining = new AtomicInteger(n);
+        for (int i = 0; i < n; i++) {
+            long first = i * size;
+            long last = Math.min(length, first + size) - 1;
+            fetch(first, last, length, validator, 1).whenComplete((r, t) -> {
+                if (t != null) {
+                    fail(result, Utils.getCompletionCause(t));
+                } else if (remaining.decrementAndGet() == 0) {
+                    result.complete(new RangedResponse(request, head, file));
+                }
+            });
+        }
+        return result;
+    }
+
+    /** Fails the download, and cancels the ranges still being fetched. */
+    private void fail(CompletableFuture<HttpResponse<Path>> result, Throwable t) {
+        failed = true;
+        if (result.completeExceptionally(t)) {
+            IOException cause = new IOException("ranged download failed", t);
+            for (MultiExchange<?,?> mex : exchanges) {
+                mex.cancel(cause);
+            }
+        }
+    }
+
+    /** Returns the strong entity tag of the resource, or its last
+     * modification date, or null. */
+    private static String validator(HttpHeaders headers) {
+        Optional<String> etag = headers.firstValue("ETag");
+        if (etag.isPresent() && !etag.get().startsWith("W/")) {
+            return etag.get();
+        }
+        return headers.firstValue("Last-Modified").orElse(null);
+    }
+
+    /** Sizes the file to the length of the resource. */
+    private void preallocate(long length) throws IOException {
+        PrivilegedExceptionAction<Void> pa = () -> {
+            try (FileChannel fc = FileChannel.open(file, CREATE, WRITE)) {
+                if (fc.size() > length) {
+                    fc.truncate(length);
+                } else if (fc.size() < length) {
+                    fc.write(ByteBuffer.allocate(1), length - 1);
+                }
+            }
+            return null;
+        };
+        try {
+            AccessController.doPrivileged(pa, acc);
+        } catch (PrivilegedActionException pae) {
+            throw (IOException) pae.getCause();
+        }
+    }
+
+    private CompletableFuture<Void> fetch(long first, long last, long length,
+                                          String validator, int attempt) {
+        HttpRequest.Builder builder = copyRequest().GET()
+                .setHeader("Range", "bytes=" + first + "-" + last);
+        if (validator != null) {
+            builder.setHeader("If-Range", validator);
+        }
+        MultiExchange<?,?>[] exchange = new MultiExchange<?,?>[1];
+        CompletableFuture<HttpResponse<Path>> cf = client.sendAsync(builder.build(),
+                new RangeHandler(first, last, length),
+                mex -> { exchange[0] = mex; exchanges.add(mex); });
+        if (failed) {
+            // another range failed while this one was being started
+            exchange[0].cancel(new IOException("ranged download failed"));
+        }
+        return cf.handle((r, t) -> {
+                    exchanges.remove(exchange[0]);
+                    if (t == null) {
+                        return MinimalFuture.<Void>completedFuture(null);
+                    }
+                    debug.log(Level.DEBUG, "range %d-%d failed (attempt %d): %s",
+                              first, last, attempt, t);
+                    if (attempt < MAX_ATTEMPTS && !failed) {
+                        return fetch(first, last, length, validator, attempt + 1);
+                    }
+                    return MinimalFuture.<Void>failedFuture(Utils.getCompletionCause(t));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /** Builds a request for the same resource, with the same headers. The
+     *  content is asked for as is, since ranges of a response that the
+     *  client decodes could not be written at their offsets in the file. */
+    private HttpRequest.Builder copyRequest() {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.uri())
+                .expectContinue(request.expectContinue());
+        request.timeout().ifPresent(builder::timeout);
+        request.version().ifPresent(builder::version);
+        request.headers().map().forEach((name, values) -> {
+            if (!name.equalsIgnoreCase("Range") && !name.equalsIgnoreCase("If-Range")) {
+                values.forEach(value -> builder.header(name, value));
+            }
+        });
+        if (request instanceof HttpRequestImpl) {
+            HttpHeaderTemplate template = ((HttpRequestImpl) request).getHeaderTemplate();
+            if (template != null)
+                builder.headerTemplate(template);
+        }
+        return builder.setHeader("Accept-Encoding", "identity");
+    }
+
+    /** Writes one range of the resource into its slot of the file. */
+    final class RangeHandler implements UntrustedBodyHandler<Path> {
+        private final long first;
+        private final long last;
+        private final long length;
+        private volatile AccessControlContext acc;
+
+        RangeHandler(long first, long last, long length) {
+            this.first = first;
+            this.last = last;
+            this.length = length;
+        }
+
+        @Override
+        public void setAccessControlContext(AccessControlContext acc) {
+            this.acc = acc;
+        }
+
+        @Override
+        public BodySubscriber<Path> apply(int statusCode, HttpHeaders headers) {
+            if (statusCode != 206) {
+                throw unchecked(new IOException("Unexpected status for range "
+                        + first + "-" + last + ": " + statusCode));
+            }
+            String expected = "bytes " + first + "-" + last + "/" + length;
+            String contentRange = headers.firstValue("Content-Range").orElse(null);
+            if (!expected.equals(contentRange)) {
+                throw unchecked(new IOException("Unexpected Content-Range: "
+                        + contentRange + ", expected: " + expected));
+            }
+            ResponseSubscribers.AsyncPathSubscriber bs =
+                    new ResponseSubscribers.AsyncPathSubscriber(file, first, -1, WRITE);
+            bs.setAccessControlContext(acc);
+            return bs;
+        }
+    }
+
+    /** The response for the whole resource: the status and headers of the
+     * HEAD request, and the file as body. */
+    static final class RangedResponse extends HttpResponse<Path> {
+        private final HttpRequest request;
+        private final HttpResponse<Void> head;
+        private final Path file;
+
+        RangedResponse(HttpRequest request, HttpResponse<Void> head, Path file) {
+            this.request = request;
+            this.head = head;
+            this.file = file;
+        }
+
+        @Override public int statusCode() { return head.statusCode(); }
+        @Override public HttpRequest request() { return request; }
+        @Override public Optional<HttpResponse<Path>> previousResponse() {
+            return Optional.empty();
+        }
+        @Override public HttpHeaders headers() { return head.headers(); }
+        @Override public Path body() { return file; }
+        @Override public SSLParameters sslParameters() { return head.sslParameters(); }
+        @Override public URI uri() { return head.uri(); }
+        @Override public HttpClient.Version version() { return head.version(); }
+
+        @Override
+        public String toString() {
+            return "(GET " + uri() + ") " + statusCode() + " [ranged]";
+        }
+    }
+
+    String dbgString() {
+        return "RangedDownload(" + request.uri() + ")";
+    }
+}
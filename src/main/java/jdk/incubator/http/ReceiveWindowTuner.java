@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import jdk.incubator.http.internal.common.Utils;
+
+/**
+ * Grows the receive windows of an HTTP/2 connection to the bandwidth-delay
+ * product of the path, the way TCP auto-tunes its receive buffer.
+ *
+ * <p> A measurement starts with the first DATA frame received while none is
+ * in progress: a PING is sent, and the DATA bytes received until its ACK
+ * arrives are what the peer could send in one round trip. When they reach
+ * two thirds of a window the peer was probably held back by it, and the
+ * window is grown to twice the measured bytes, up to a maximum size that
+ * caps the memory a connection may use for data not yet consumed.
+ *
+ * <p> The tuner only keeps the accounting: the connection sends the PING
+ * frames and advertises the new window sizes.
+ */
+final class ReceiveWindowTuner {
+
+    static final boolean ENABLED = Utils.getBooleanProperty(
+            "jdk.httpclient.windowsize.autotune", true);
+
+    private final int maxWindowSize;
+    private int streamWindowSize;
+    private int connectionWindowSize;
+    private boolean measuring;
+    private long bytes;     // received during the current measurement
+    private long rttNanos;  // smoothed, 0 until the first measurement
+
+    ReceiveWindowTuner(int streamWindowSize, int connectionWindowSize,
+                       int maxWindowSize) {
+        this.streamWindowSize = streamWindowSize;
+        this.connectionWindowSize = connectionWindowSize;
+        this.maxWindowSize = maxWindowSize;
+    }
+
+    /**
+     * Accounts for a DATA frame. Returns true if a measurement starts, in
+     * which case the caller sends a PING and reports its ACK to
+     * {@link #pingAcked(long)}.
+     */
+    synchronized boolean dataReceived(int length) {
+        if (measuring) {
+            bytes += length;
+            return false;
+        }
+        if (streamWindowSize >= maxWindowSize
+                && connectionWindowSize >= maxWindowSize) {
+            return false; // nothing left to tune
+        }
+        measuring = true;
+        bytes = length;
+        return true;
+    }
+
+    /**
+     * Ends the current measurement. Returns true if the window sizes grew.
+     */
+    synchronized boolean pingAcked(long rtt) {
+        if (!measuring) {
+            return false;
+        }
+        measuring = false;
+        rttNanos = rttNanos == 0 ? rtt : (7 * rttNanos + rtt) / 8;
+        long target = Math.min(maxWindowSize, 2 * bytes);
+        boolean grew = false;
+        if (bytes * 3 >= streamWindowSize * 2L && target > streamWindowSize) {
+            streamWindowSize = (int) target;
+            grew = true;
+        }
+        if (bytes * 3 >= connectionWindowSize * 2L && target > connectionWindowSize) {
+            connectionWindowSize = (int) target;
+            grew = true;
+        }
+        if (connectionWindowSize < streamWindowSize) {
+            // a single stream must not be held back by the connection
+            connectionWindowSize = streamWindowSize;
+        }
+        return grew;
+    }
+
+    /**
+     * Ends the current measurement without a result, e.g. when the PING
+     * could not be sent.
+     */
+    synchronized void pingFailed() {
+        measuring = false;
+    }
+
+    synchronized int streamWindowSize() {
+        return streamWindowSize;
+    }
+
+    synchronized int connectionWindowSize() {
+        return connectionWindowSize;
+    }
+
+    synchronized long rttNanos() {
+        return rttNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ReceiveWindowTuner(stream=" + streamWindowSize
+                + ", connection=" + connectionWindowSize
+                + ", max=" + maxWindowSize + ", rtt=" + rttNanos + "ns)";
+    }
+}
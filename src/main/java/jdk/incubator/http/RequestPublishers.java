@@ -24,14 +24,16 @@
  */
 package jdk.incubator.http;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -45,7 +47,11 @@ import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import jdk.incubator.http.HttpRequest.BodyPublisher;
+import jdk.incubator.http.internal.common.Demand;
+import jdk.incubator.http.internal.common.SequentialScheduler;
 import jdk.incubator.http.internal.common.Utils;
 
 import java9.util.concurrent.Flow;
@@ -215,6 +221,13 @@ class RequestPublishers {
         }
     }
 
+    /**
+     * Publishes the content of a file. The HTTP/1.1 implementation recognizes
+     * this publisher and, on plain connections, bypasses {@link #subscribe}
+     * entirely: the file is handed to {@link FileChannel#transferTo} on the
+     * socket channel (see {@link Http1Request}). On other connections the
+     * file is read with positional reads, one buffer at a time.
+     */
     static class FilePublisher implements BodyPublisher  {
         private final File file;
         private volatile AccessControlContext acc;
@@ -227,23 +240,32 @@ class RequestPublishers {
             this.acc = acc;
         }
 
-        @Override
-        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        /** Opens the file for reading, with the creator's access rights. */
+        FileChannel openChannel() throws IOException {
             if (System.getSecurityManager() != null && acc == null)
                 throw new InternalError(
                         "Unexpected null acc when security manager has been installed");
 
-            InputStream is;
+            PrivilegedExceptionAction<FileChannel> pa =
+                    () -> FileChannel.open(file.toPath(), StandardOpenOption.READ);
             try {
-                PrivilegedExceptionAction<FileInputStream> pa =
-                        () -> new FileInputStream(file);
-                is = AccessController.doPrivileged(pa, acc);
+                return AccessController.doPrivileged(pa, acc);
             } catch (PrivilegedActionException pae) {
-                throw new UncheckedIOException((IOException)pae.getCause());
+                throw (IOException)pae.getCause();
+            }
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            FileChannel channel;
+            try {
+                channel = openChannel();
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
             }
             PullPublisher<ByteBuffer> publisher =
-                    new PullPublisher<>(() -> new StreamIterator(is));
-            publisher.subscribe(subscriber);
+                    new PullPublisher<>(() -> new FileChannelIterator(channel));
+            publisher.subscribe(new ClosingSubscriber(subscriber, channel));
         }
 
         @Override
@@ -254,6 +276,126 @@ class RequestPublishers {
         }
     }
 
+    /**
+     * Reads a file channel with positional reads, one buffer ahead, blocking
+     * in hasNext(). The channel is closed when the end of the file is reached
+     * or a read fails.
+     */
+    static class FileChannelIterator implements Iterator<ByteBuffer> {
+        final FileChannel channel;
+        final Supplier<? extends ByteBuffer> bufSupplier;
+        long position;
+        ByteBuffer nextBuffer;
+        boolean need2Read = true;
+        boolean haveNext;
+
+        FileChannelIterator(FileChannel channel) {
+            this(channel, Utils::getBuffer);
+        }
+
+        FileChannelIterator(FileChannel channel,
+                            Supplier<? extends ByteBuffer> bufSupplier) {
+            this.channel = channel;
+            this.bufSupplier = bufSupplier;
+        }
+
+        private int read() {
+            ByteBuffer buf = bufSupplier.get();
+            buf.clear();
+            try {
+                // fill the buffer, unless the end of the file is reached
+                while (buf.hasRemaining()) {
+                    int n = channel.read(buf, position);
+                    if (n == -1) break;
+                    position += n;
+                }
+            } catch (IOException ex) {
+                buf.clear();
+            }
+            if (buf.position() == 0) {
+                closeQuietly(channel);
+                return -1;
+            }
+            buf.flip();
+            nextBuffer = buf;
+            return buf.remaining();
+        }
+
+        @Override
+        public synchronized boolean hasNext() {
+            if (need2Read) {
+                haveNext = read() != -1;
+                if (haveNext) {
+                    need2Read = false;
+                }
+                return haveNext;
+            }
+            return haveNext;
+        }
+
+        @Override
+        public synchronized ByteBuffer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            need2Read = true;
+            return nextBuffer;
+        }
+    }
+
+    /**
+     * Forwards to a subscriber, closing the given channel when the
+     * subscription is cancelled or terminates.
+     */
+    static final class ClosingSubscriber implements Flow.Subscriber<ByteBuffer> {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final Closeable closeable;
+
+        ClosingSubscriber(Flow.Subscriber<? super ByteBuffer> subscriber,
+                          Closeable closeable) {
+            this.subscriber = Objects.requireNonNull(subscriber);
+            this.closeable = closeable;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+                @Override
+                public void cancel() {
+                    subscription.cancel();
+                    closeQuietly(closeable);
+                }
+            });
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            closeQuietly(closeable);
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            closeQuietly(closeable);
+            subscriber.onComplete();
+        }
+    }
+
+    static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) { }
+    }
+
     /**
      * Reads one buffer ahead all the time, blocking in hasNext()
      */
@@ -372,4 +514,221 @@ class RequestPublishers {
             publisher.subscribe(subscriber);
         }
     }
+
+    /**
+     * Compresses the body of another publisher with gzip or deflate, as it
+     * is being sent. The length of the compressed body is not known in
+     * advance, so HTTP/1.1 requests are sent chunked. The Content-Encoding
+     * header is added by {@link HttpRequestImpl}.
+     */
+    static final class CompressingPublisher implements BodyPublisher {
+
+        private static final byte[] GZIP_HEADER = {
+            0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff
+        };
+
+        private final BodyPublisher delegate;
+        private final boolean gzip;
+
+        CompressingPublisher(BodyPublisher delegate, boolean gzip) {
+            this.delegate = Objects.requireNonNull(delegate);
+            this.gzip = gzip;
+        }
+
+        /** Returns the value of the Content-Encoding header. */
+        String encoding() {
+            return gzip ? "gzip" : "deflate";
+        }
+
+        BodyPublisher delegate() {
+            return delegate;
+        }
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            delegate.subscribe(new Compressor(subscriber));
+        }
+
+        /**
+         * Subscribes to the delegate, and publishes the compressed bytes in
+         * buffers of {@link Utils#BUFSIZE}. One item is requested from the
+         * delegate whenever there is demand but nothing compressed to hand.
+         */
+        final class Compressor implements Flow.Subscriber<ByteBuffer>,
+                                          Flow.Subscription {
+            final Flow.Subscriber<? super ByteBuffer> subscriber;
+            // only used under its own lock, so that cancel() can end it
+            // while the upstream is still delivering items
+            final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, gzip);
+            final CRC32 crc = new CRC32();
+            final ConcurrentLinkedQueue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+            final Demand demand = new Demand();
+            final SequentialScheduler scheduler =
+                    SequentialScheduler.synchronizedScheduler(this::drain);
+            volatile Flow.Subscription upstream;
+            volatile boolean requested;
+            volatile boolean upstreamCompleted;
+            volatile boolean cancelled;
+            volatile Throwable error;
+            private ByteBuffer out;       // only touched by the upstream signals
+            private byte[] scratch;
+
+            Compressor(Flow.Subscriber<? super ByteBuffer> subscriber) {
+                this.subscriber = Objects.requireNonNull(subscriber);
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                upstream = subscription;
+                if (gzip) {
+                    write(GZIP_HEADER);
+                }
+                subscriber.onSubscribe(this);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                int len = item.remaining();
+                synchronized (deflater) {
+                    if (cancelled) return;
+                    if (item.hasArray()) {
+                        compress(item.array(), item.arrayOffset() + item.position(), len);
+                    } else {
+                        if (scratch == null || scratch.length < len) {
+                            scratch = new byte[Math.max(len, Utils.BUFSIZE)];
+                        }
+                        item.duplicate().get(scratch, 0, len);
+                        compress(scratch, 0, len);
+                    }
+                }
+                item.position(item.limit());
+                requested = false;
+                scheduler.runOrSchedule();
+            }
+
+            private void compress(byte[] b, int off, int len) {
+                if (len == 0) return;
+                if (gzip) crc.update(b, off, len);
+                deflater.setInput(b, off, len);
+                while (!deflater.needsInput()) {
+                    deflate();
+                }
+            }
+
+            private void deflate() {
+                if (out == null) {
+                    out = ByteBuffer.allocate(Utils.BUFSIZE);
+                }
+                int n = deflater.deflate(out.array(), out.arrayOffset() + out.position(),
+                                         out.remaining());
+                out.position(out.position() + n);
+                if (!out.hasRemaining()) {
+                    flush();
+                }
+            }
+
+            private void write(byte[] bytes) {
+                for (byte b : bytes) {
+                    if (out == null) {
+                        out = ByteBuffer.allocate(Utils.BUFSIZE);
+                    }
+                    out.put(b);
+                    if (!out.hasRemaining()) {
+                        flush();
+                    }
+                }
+            }
+
+            private void flush() {
+                if (out != null && out.position() > 0) {
+                    out.flip();
+                    queue.add(out);
+                    out = null;
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error = Objects.requireNonNull(throwable);
+                scheduler.runOrSchedule();
+            }
+
+            @Override
+            public void onComplete() {
+                synchronized (deflater) {
+                    if (cancelled) return;
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        deflate();
+                    }
+                    if (gzip) {
+                        int crc32 = (int) crc.getValue();
+                        int size = (int) deflater.getBytesRead();
+                        write(new byte[] {
+                            (byte) crc32, (byte) (crc32 >> 8),
+                            (byte) (crc32 >> 16), (byte) (crc32 >> 24),
+                            (byte) size, (byte) (size >> 8),
+                            (byte) (size >> 16), (byte) (size >> 24)
+                        });
+                    }
+                }
+                flush();
+                upstreamCompleted = true;
+                scheduler.runOrSchedule();
+            }
+
+            private void drain() {
+                if (cancelled) return;
+                Throwable t = error;
+                if (t != null) {
+                    scheduler.stop();
+                    deflater.end();
+                    subscriber.onError(t);
+                    return;
+                }
+                while (!queue.isEmpty() && demand.tryDecrement()) {
+                    subscriber.onNext(queue.poll());
+                }
+                if (queue.isEmpty()) {
+                    if (upstreamCompleted) {
+                        scheduler.stop();
+                        deflater.end();
+                        subscriber.onComplete();
+                    } else if (!demand.isFulfilled() && !requested) {
+                        requested = true;
+                        upstream.request(1);
+                    }
+                }
+            }
+
+            @Override
+            public void request(long n) {
+                if (cancelled)
+                    return;  // no-op
+
+                if (n <= 0) {
+                    error = new IllegalArgumentException("illegal non-positive request:" + n);
+                    upstream.cancel();
+                } else {
+                    demand.increase(n);
+                }
+                scheduler.runOrSchedule();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                scheduler.stop();
+                upstream.cancel();
+                synchronized (deflater) {
+                    deflater.end();
+                }
+            }
+        }
+    }
 }
@@ -24,9 +24,13 @@
  */
 package jdk.incubator.http;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
 import java.nio.channels.FileChannel;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
@@ -44,6 +48,10 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
 import java.util.function.Function;
 import jdk.incubator.http.internal.common.MinimalFuture;
 import jdk.incubator.http.internal.common.SysLogger;
@@ -175,6 +183,214 @@ class ResponseSubscribers {
         }
     }
 
+    /**
+     * Writes the body to a file with positional writes on an
+     * {@code AsynchronousFileChannel}, so that no thread delivering the body
+     * ever blocks on the file system. At most {@link #MAX_WRITES} buffers are
+     * being written at any time: more data is only requested while fewer
+     * writes are outstanding.
+     */
+    static class AsyncPathSubscriber implements HttpResponse.BodySubscriber<Path> {
+
+        static final int MAX_WRITES = Math.max(1, Utils.getIntegerNetProperty(
+                "jdk.httpclient.asyncfile.maxwrites", 8));
+
+        private final Path file;
+        private final OpenOption[] options;
+        private final long expectedSize;  // -1 if unknown
+        private final CompletableFuture<Path> result = new MinimalFuture<>();
+        private final SysLogger debug =
+                Utils.getDebugLogger(this::dbgString, Utils.DEBUG);
+
+        private volatile Flow.Subscription subscription;
+        private volatile AsynchronousFileChannel out;
+        private volatile AccessControlContext acc;
+        private long position;      // only touched in onNext, and on finish
+        private long initialSize;
+        private int outstanding;    // guarded by this
+        private boolean requested;  // guarded by this
+        private boolean completed;  // guarded by this
+
+        /**
+         * @param expectedSize the size of the body, if known, in which case
+         *        the file is extended to that size before anything is
+         *        written, or -1
+         */
+        AsyncPathSubscriber(Path file, long expectedSize, OpenOption... options) {
+            this(file, 0, expectedSize, options);
+        }
+
+        /**
+         * Writes the body into the file starting at the given offset, for
+         * when the body is only a part of the file's content.
+         */
+        AsyncPathSubscriber(Path file, long offset, long expectedSize,
+                            OpenOption... options) {
+            this.file = file;
+            this.position = offset;
+            this.expectedSize = expectedSize;
+            this.options = options;
+        }
+
+        void setAccessControlContext(AccessControlContext acc) {
+            this.acc = acc;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (System.getSecurityManager() != null && acc == null)
+                throw new InternalError(
+                        "Unexpected null acc when security manager has been installed");
+
+            this.subscription = subscription;
+            try {
+                PrivilegedExceptionAction<AsynchronousFileChannel> pa =
+                        () -> AsynchronousFileChannel.open(file, options);
+                out = AccessController.doPrivileged(pa, acc);
+                initialSize = out.size();
+            } catch (PrivilegedActionException | IOException x) {
+                Throwable t = x instanceof PrivilegedActionException
+                        && x.getCause() != null ? x.getCause() : x;
+                failed(t);
+                return;
+            }
+            if (expectedSize > initialSize) {
+                // extend the file to its final size up front, by writing
+                // its last byte, before any of the body is written
+                debug.log(Level.DEBUG, "preallocating %d bytes", expectedSize);
+                ByteBuffer last = ByteBuffer.allocate(1);
+                out.write(last, expectedSize - 1, null,
+                        new CompletionHandler<Integer, Void>() {
+                    @Override
+                    public void completed(Integer n, Void unused) {
+                        requestMore();
+                    }
+                    @Override
+                    public void failed(Throwable t, Void unused) {
+                        AsyncPathSubscriber.this.failed(t);
+                    }
+                });
+            } else {
+                requestMore();
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            synchronized (this) {
+                requested = false;
+            }
+            for (ByteBuffer item : items) {
+                if (!item.hasRemaining()) continue;
+                long pos = position;
+                position += item.remaining();
+                synchronized (this) {
+                    outstanding++;
+                }
+                write(item, pos);
+            }
+            requestMore();
+        }
+
+        private void write(ByteBuffer buffer, long pos) {
+            out.write(buffer, pos, null, new CompletionHandler<Integer, Void>() {
+                @Override
+                public void completed(Integer n, Void unused) {
+                    if (buffer.hasRemaining()) {
+                        write(buffer, pos + n);
+                    } else {
+                        writeDone();
+                    }
+                }
+                @Override
+                public void failed(Throwable t, Void unused) {
+                    AsyncPathSubscriber.this.failed(t);
+                }
+            });
+        }
+
+        private void writeDone() {
+            boolean finish;
+            synchronized (this) {
+                outstanding--;
+                finish = completed && outstanding == 0;
+            }
+            if (finish) {
+                finish();
+            } else {
+                requestMore();
+            }
+        }
+
+        /** Requests one more item, unless one has already been requested,
+         * too many writes are outstanding, or the body is complete. */
+        private void requestMore() {
+            synchronized (this) {
+                if (requested || completed || outstanding >= MAX_WRITES
+                        || result.isDone()) {
+                    return;
+                }
+                requested = true;
+            }
+            subscription.request(1);
+        }
+
+        private void finish() {
+            if (result.isDone()) return;
+            try {
+                long size = Math.max(position, initialSize);
+                if (out.size() > size) {
+                    // less than expected has been received
+                    out.truncate(size);
+                }
+                out.close();
+            } catch (IOException ioe) {
+                failed(ioe);
+                return;
+            }
+            debug.log(Level.DEBUG, "%d bytes written", position);
+            result.complete(file);
+        }
+
+        private void failed(Throwable t) {
+            debug.log(Level.DEBUG, "failed: %s", (Object)t);
+            if (result.completeExceptionally(t)) {
+                subscription.cancel();
+                AsynchronousFileChannel out = this.out;
+                if (out != null) Utils.close(out);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            AsynchronousFileChannel out = this.out;
+            if (result.completeExceptionally(e) && out != null) {
+                Utils.close(out);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            boolean finish;
+            synchronized (this) {
+                completed = true;
+                finish = outstanding == 0;
+            }
+            if (finish) {
+                finish();
+            }
+        }
+
+        @Override
+        public CompletionStage<Path> getBody() {
+            return result;
+        }
+
+        String dbgString() {
+            return "AsyncPathSubscriber(" + file + ")";
+        }
+    }
+
     static class ByteArraySubscriber<T> implements HttpResponse.BodySubscriber<T> {
         private final Function<byte[], T> finisher;
         private final CompletableFuture<T> result = new MinimalFuture<>();
@@ -562,6 +778,295 @@ class ResponseSubscribers {
         }
     }
 
+    /**
+     * Inflates a gzip or deflate encoded body on its way to a downstream
+     * subscriber, one item at a time, on the thread that delivers it. The
+     * upstream subscription is handed to the downstream subscriber as is,
+     * so that every item requested downstream is one item requested
+     * upstream; an item that inflates to nothing is replaced by requesting
+     * one more.
+     */
+    static final class DecodingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+        private enum State { HEADER, BODY, TRAILER, DONE }
+
+        private static final int GZIP_MAGIC = 0x8b1f;
+        private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16;
+
+        private final HttpResponse.BodySubscriber<T> downstream;
+        private final boolean gzip;
+        private final CRC32 crc = new CRC32();
+        // bytes of a gzip header or trailer, or of a zlib header, which
+        // may be split across several items
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private volatile Flow.Subscription subscription;
+        // guards the state below, so that cancel() can end the inflater
+        // while an item is being inflated
+        private final Object lock = new Object();
+        Inflater inflater;           // package-private for whitebox tests
+        private State state = State.HEADER;
+        private boolean received;    // whether any byte has been received
+        private boolean done;        // whether the downstream has been terminated
+                                     // or has cancelled
+        private byte[] scratch;      // for reading direct buffers
+        private ByteBuffer out;      // the output buffer being filled
+
+        DecodingSubscriber(HttpResponse.BodySubscriber<T> downstream, boolean gzip) {
+            this.downstream = Objects.requireNonNull(downstream);
+            this.gzip = gzip;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            downstream.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    synchronized (lock) {
+                        done = true;
+                        end();
+                    }
+                    subscription.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            List<ByteBuffer> inflated = new ArrayList<>();
+            Exception error = null;
+            synchronized (lock) {
+                if (done) return;
+                try {
+                    for (ByteBuffer item : items) {
+                        int len = item.remaining();
+                        if (len == 0) continue;
+                        received = true;
+                        if (item.hasArray()) {
+                            decode(item.array(), item.arrayOffset() + item.position(),
+                                   len, inflated);
+                        } else {
+                            if (scratch == null || scratch.length < len) {
+                                scratch = new byte[Math.max(len, Utils.BUFSIZE)];
+                            }
+                            item.duplicate().get(scratch, 0, len);
+                            decode(scratch, 0, len, inflated);
+                        }
+                        item.position(item.limit());
+                    }
+                    flush(inflated);
+                } catch (IOException | DataFormatException x) {
+                    done = true;
+                    end();
+                    error = x;
+                }
+            }
+            if (error != null) {
+                subscription.cancel();
+                downstream.onError(error instanceof IOException ? error
+                        : new ZipException(error.getMessage()));
+                return;
+            }
+            if (inflated.isEmpty()) {
+                subscription.request(1);
+            } else {
+                downstream.onNext(inflated);
+            }
+        }
+
+        private void decode(byte[] b, int off, int len, List<ByteBuffer> inflated)
+            throws IOException, DataFormatException
+        {
+            while (len > 0) {
+                switch (state) {
+                    case HEADER: {
+                        pending.write(b, off, len);
+                        byte[] h = pending.toByteArray();
+                        int hlen = gzip ? gzipHeader(h) : zlibHeader(h);
+                        if (hlen < 0) return;   // need more
+                        pending.reset();
+                        crc.reset();
+                        state = State.BODY;
+                        b = h; off = hlen; len = h.length - hlen;
+                        break;
+                    }
+                    case BODY: {
+                        inflater.setInput(b, off, len);
+                        inflate(inflated);
+                        if (!inflater.finished()) return;
+                        int remaining = inflater.getRemaining();
+                        off += len - remaining;
+                        len = remaining;
+                        state = gzip ? State.TRAILER : State.DONE;
+                        break;
+                    }
+                    case TRAILER: {
+                        int n = Math.min(len, 8 - pending.size());
+                        pending.write(b, off, n);
+                        off += n; len -= n;
+                        if (pending.size() < 8) return;
+                        byte[] t = pending.toByteArray();
+                        pending.reset();
+                        if (getInt(t, 0) != (int) crc.getValue()) {
+                            throw new ZipException("Corrupt gzip trailer: bad CRC");
+                        }
+                        if (getInt(t, 4) != (int) inflater.getBytesWritten()) {
+                            throw new ZipException("Corrupt gzip trailer: bad size");
+                        }
+                        // another member may follow
+                        state = State.HEADER;
+                        break;
+                    }
+                    case DONE:
+                        // ignore anything after the end of the deflate stream
+                        return;
+                }
+            }
+        }
+
+        private void inflate(List<ByteBuffer> inflated) throws DataFormatException,
+                                                               ZipException {
+            while (true) {
+                if (out == null) {
+                    out = ByteBuffer.allocate(Utils.BUFSIZE);
+                }
+                int n = inflater.inflate(out.array(), out.arrayOffset() + out.position(),
+                                         out.remaining());
+                if (n > 0) {
+                    if (gzip) {
+                        crc.update(out.array(), out.arrayOffset() + out.position(), n);
+                    }
+                    out.position(out.position() + n);
+                    if (!out.hasRemaining()) {
+                        out.flip();
+                        inflated.add(out);
+                        out = null;
+                    }
+                    continue;
+                }
+                if (inflater.finished() || inflater.needsInput()) {
+                    return;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Preset dictionaries are not supported");
+                }
+            }
+        }
+
+        private void flush(List<ByteBuffer> inflated) {
+            if (out != null && out.position() > 0) {
+                out.flip();
+                inflated.add(out);
+                out = null;
+            }
+        }
+
+        /** Returns the length of the gzip header at the start of the given
+         * bytes, or -1 if they do not contain the whole header yet. */
+        private int gzipHeader(byte[] h) throws ZipException {
+            if (h.length < 10) return -1;
+            if (getShort(h, 0) != GZIP_MAGIC) {
+                throw new ZipException("Not in gzip format");
+            }
+            if ((h[2] & 0xff) != 8) {
+                throw new ZipException("Unsupported compression method");
+            }
+            int flags = h[3] & 0xff;
+            int n = 10;
+            if ((flags & FEXTRA) != 0) {
+                if (h.length < n + 2) return -1;
+                n += 2 + getShort(h, n);
+            }
+            if ((flags & FNAME) != 0) {
+                n = skipZeroTerminated(h, n);
+                if (n < 0) return -1;
+            }
+            if ((flags & FCOMMENT) != 0) {
+                n = skipZeroTerminated(h, n);
+                if (n < 0) return -1;
+            }
+            if ((flags & FHCRC) != 0) {
+                n += 2;
+            }
+            if (h.length < n) return -1;
+            newInflater(true);
+            return n;
+        }
+
+        /** Chooses between zlib wrapped and raw deflate data, since servers
+         * are known to send both as "deflate". Consumes no bytes. */
+        private int zlibHeader(byte[] h) {
+            if (h.length < 2) return -1;
+            int cmf = h[0] & 0xff, flg = h[1] & 0xff;
+            boolean zlib = (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+            newInflater(!zlib);
+            return 0;
+        }
+
+        private void newInflater(boolean nowrap) {
+            if (inflater != null) inflater.end();
+            inflater = new Inflater(nowrap);
+        }
+
+        private static int skipZeroTerminated(byte[] h, int from) {
+            for (int i = from; i < h.length; i++) {
+                if (h[i] == 0) return i + 1;
+            }
+            return -1;
+        }
+
+        private static int getShort(byte[] b, int off) {
+            return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8;
+        }
+
+        private static int getInt(byte[] b, int off) {
+            return getShort(b, off) | getShort(b, off + 2) << 16;
+        }
+
+        private void end() {
+            if (inflater != null) inflater.end();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            synchronized (lock) {
+                if (done) return;
+                done = true;
+                end();
+            }
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            boolean complete;
+            synchronized (lock) {
+                if (done) return;
+                done = true;
+                end();
+                // an empty body, e.g. in a response to HEAD, is fine
+                complete = !received || state == State.DONE
+                        || (state == State.HEADER && pending.size() == 0);
+            }
+            if (complete) {
+                downstream.onComplete();
+            } else {
+                downstream.onError(new EOFException("Truncated "
+                        + (gzip ? "gzip" : "deflate") + " body"));
+            }
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+    }
+
     /** An adapter between {@code BodySubscriber} and {@code Flow.Subscriber}. */
     static final class SubscriberAdapter<S extends Subscriber<? super List<ByteBuffer>>,R>
         implements HttpResponse.BodySubscriber<R>
@@ -31,6 +31,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
@@ -68,10 +69,14 @@ final class SocketTube implements FlowTube {
     private final InternalReadPublisher readPublisher;
     private final InternalWriteSubscriber writeSubscriber;
     private final long id = IDS.incrementAndGet();
+    private final LongAdder bytesRead;
+    private final LongAdder bytesWritten;
 
     public SocketTube(HttpClientImpl client, SocketChannel channel,
                       Supplier<ByteBuffer> buffersSource) {
         this.client = client;
+        this.bytesRead = client.metrics().bytesRead;
+        this.bytesWritten = client.metrics().bytesWritten;
         this.channel = channel;
         this.buffersSource = buffersSource;
         this.readPublisher = new InternalReadPublisher();
@@ -577,7 +582,8 @@ final class SocketTube implements FlowTube {
 
             InternalReadSubscription() {
                 readScheduler = new SequentialScheduler(new SocketFlowTask(this::read));
-                subscribeEvent = new AsyncTriggerEvent(this::signalError,
+                subscribeEvent = new AsyncTriggerEvent(channel,
+                                                       this::signalError,
                                                        this::handleSubscribeEvent);
                 readEvent = new ReadEvent(channel, this);
             }
@@ -861,6 +867,7 @@ final class SocketTube implements FlowTube {
         List<ByteBuffer> list = null;
         while (buf.hasRemaining()) {
             while ((read = channel.read(buf)) > 0) {
+               bytesRead.add(read);
                if (!buf.hasRemaining()) break;
             }
 
@@ -904,6 +911,7 @@ final class SocketTube implements FlowTube {
             if (w == 0) break;
             written += w;
         }
+        if (written > 0) bytesWritten.add(written);
         return written;
     }
 
@@ -122,11 +122,14 @@ class Stream<T> extends ExchangeImpl<T> {
 
     /** True if END_STREAM has been seen in a frame received on this stream. */
     private volatile boolean remotelyClosed;
+    private volatile boolean frameReceived;
     private volatile boolean closed;
     private volatile boolean endStreamSent;
 
     // state flags
     private boolean requestSent, responseReceived;
+    // true once the connection has been told this stream is placed
+    private boolean placed;
 
     /**
      * A reference to this Stream's connection Send Window controller. The
@@ -303,8 +306,12 @@ class Stream<T> extends ExchangeImpl<T> {
      */
     void incoming(Http2Frame frame) throws IOException {
         debug.log(Level.DEBUG, "incoming: %s", frame);
+        frameReceived = true;
         if ((frame instanceof HeaderFrame)) {
             HeaderFrame hframe = (HeaderFrame)frame;
+            if (frame instanceof HeadersFrame && request.events() != null) {
+                request.events().responseHeadersStart();
+            }
             if (hframe.endHeaders()) {
                 Log.logTrace("handling response (streamid={0})", streamid);
                 handleResponse();
@@ -569,9 +576,21 @@ class Stream<T> extends ExchangeImpl<T> {
     void registerStream(int id) {
         this.streamid = id;
         connection.putStream(this, streamid);
+        streamPlaced();
         debug.log(Level.DEBUG, "Registered stream %d", id);
     }
 
+    // Tells the connection that this stream no longer waits to be sent.
+    // PushedStreams are not created through Http2Connection.createStream.
+    private void streamPlaced() {
+        if (this instanceof PushedStream) return;
+        synchronized (this) {
+            if (placed) return;
+            placed = true;
+        }
+        connection.streamPlaced();
+    }
+
     void signalWindowUpdate() {
         RequestSubscriber subscriber = requestSubscriber;
         assert subscriber != null;
@@ -921,6 +940,10 @@ class Stream<T> extends ExchangeImpl<T> {
             if (responseSubscriber != null)
                 sched.runOrSchedule();
         }
+        if (streamid == 0) {
+            // cancelled before its HEADERS were sent
+            streamPlaced();
+        }
         completeResponseExceptionally(e);
         if (!requestBodyCF.isDone()) {
             requestBodyCF.completeExceptionally(e); // we may be sending the body..
@@ -1082,6 +1105,16 @@ class Stream<T> extends ExchangeImpl<T> {
         }
     }
 
+    // True if the server has not sent anything on this stream yet
+    boolean nothingReceived() {
+        return !frameReceived;
+    }
+
+    // Called when the receive window of the streams of the connection grows
+    void receiveWindowResized(int windowSize) {
+        windowUpdater.resize(windowSize);
+    }
+
     final class StreamWindowUpdateSender extends WindowUpdateSender {
 
         StreamWindowUpdateSender(Http2Connection connection) {
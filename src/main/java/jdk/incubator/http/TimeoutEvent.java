@@ -35,41 +35,33 @@ import java.util.concurrent.atomic.AtomicLong;
  * Register with {@link HttpClientImpl#registerTimer(TimeoutEvent)}.
  *
  * Cancel with {@link HttpClientImpl#cancelTimer(TimeoutEvent)}.
+ *
+ * An event can be registered only once.
  */
-abstract class TimeoutEvent implements Comparable<TimeoutEvent> {
+abstract class TimeoutEvent extends TimingWheel.Entry {
 
     private static final AtomicLong COUNTER = new AtomicLong();
-    // we use id in compareTo to make compareTo consistent with equals
-    // see TimeoutEvent::compareTo below;
+    // used to pick the selector thread that handles the event
     private final long id = COUNTER.incrementAndGet();
     private final Instant deadline;
 
     TimeoutEvent(Duration duration) {
-        deadline = Instant.now().plus(duration);
+        this(Instant.now().plus(duration));
+    }
+
+    private TimeoutEvent(Instant deadline) {
+        super(deadline.toEpochMilli());
+        this.deadline = deadline;
     }
 
     public abstract void handle();
 
-    public Instant deadline() {
-        return deadline;
+    final long id() {
+        return id;
     }
 
-    @Override
-    public int compareTo(TimeoutEvent other) {
-        if (other == this) return 0;
-        // if two events have the same deadline, but are not equals, then the
-        // smaller is the one that was created before (has the smaller id).
-        // This is arbitrary and we don't really care which is smaller or
-        // greater, but we need a total order, so two events with the
-        // same deadline cannot compare == 0 if they are not equals.
-        final int compareDeadline = this.deadline.compareTo(other.deadline);
-        if (compareDeadline == 0 && !this.equals(other)) {
-            long diff = this.id - other.id; // should take care of wrap around
-            if (diff < 0) return -1;
-            else if (diff > 0) return 1;
-            else assert false : "Different events with same id and deadline";
-        }
-        return compareDeadline;
+    public Instant deadline() {
+        return deadline;
     }
 
     @Override
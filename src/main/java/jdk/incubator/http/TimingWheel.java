@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2014, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A hashed timing wheel.
+ *
+ * Entries are hashed, by their deadline, into a circular array of buckets,
+ * each bucket covering one tick. Entries whose deadline is more than one
+ * revolution away share their bucket with nearer ones, and are skipped until
+ * their turn comes.
+ *
+ * {@link #schedule(Entry)} and {@link #cancel(Entry)} may be called from any
+ * thread: they only flip the state of the entry and queue it, and take
+ * constant time. The buckets themselves are only touched by the thread that
+ * calls {@link #expire(long)} and {@link #nextDeadline()}, typically a
+ * SelectorManager thread, which applies the queued changes first.
+ *
+ * An entry can be scheduled at most once.
+ *
+ * @param <E> the type of entries held by the wheel
+ */
+final class TimingWheel<E extends TimingWheel.Entry> {
+
+    /**
+     * An entry of the wheel. Entries are linked directly into the buckets,
+     * so that no node needs to be allocated to schedule them.
+     */
+    abstract static class Entry {
+        static final int NEW = 0, PENDING = 1, SCHEDULED = 2,
+                         CANCELLED = 3, EXPIRED = 4;
+        private static final AtomicIntegerFieldUpdater<Entry> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+        // absolute deadline, in milliseconds since the epoch
+        final long deadline;
+        private volatile int state;
+        // accessed only by the thread which owns the buckets
+        private long tick;
+        private Entry prev, next;
+        private boolean linked;
+
+        Entry(long deadline) {
+            this.deadline = deadline;
+        }
+
+        private boolean transition(int from, int to) {
+            return STATE.compareAndSet(this, from, to);
+        }
+    }
+
+    private final long tickMillis;
+    private final int mask;
+    private final Entry[] buckets;
+    private final ConcurrentLinkedQueue<Entry> added = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Entry> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger count = new AtomicInteger();
+
+    // The fields below are guarded by this
+    private long currentTick;
+    private long next;          // cached result of nextDeadline(), if valid
+    private boolean nextValid;
+
+    /**
+     * Creates a timing wheel.
+     * @param tickMillis the time covered by one bucket, in milliseconds
+     * @param buckets    the number of buckets, rounded up to a power of two
+     */
+    TimingWheel(long tickMillis, int buckets) {
+        if (tickMillis <= 0 || buckets <= 0) {
+            throw new IllegalArgumentException(tickMillis + ", " + buckets);
+        }
+        int size = Integer.highestOneBit(buckets);
+        if (size < buckets) size <<= 1;
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.buckets = new Entry[size];
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+    }
+
+    /**
+     * Schedules the given entry.
+     * @return false if the entry was already scheduled once
+     */
+    boolean schedule(E e) {
+        Entry entry = e;
+        if (!entry.transition(Entry.NEW, Entry.PENDING)) return false;
+        count.incrementAndGet();
+        added.add(entry);
+        return true;
+    }
+
+    /**
+     * Cancels the given entry, if it has neither expired nor been
+     * cancelled yet.
+     * @return true if the entry was cancelled by this call
+     */
+    boolean cancel(E e) {
+        Entry entry = e;
+        while (true) {
+            int state = entry.state;
+            if (state != Entry.PENDING && state != Entry.SCHEDULED) {
+                return false;
+            }
+            if (entry.transition(state, Entry.CANCELLED)) {
+                count.decrementAndGet();
+                // a pending entry is dropped when the added queue is drained
+                if (state == Entry.SCHEDULED) cancelled.add(entry);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns true if there are no scheduled entries. This is only loosely
+     * accurate in the presence of concurrent modifications.
+     */
+    boolean isEmpty() {
+        return count.get() == 0;
+    }
+
+    int size() {
+        return count.get();
+    }
+
+    /**
+     * Removes and returns the entries whose deadline is before now
+     * (now included), sorted by deadline.
+     * @param now the current time, in milliseconds since the epoch
+     */
+    @SuppressWarnings("unchecked")
+    synchronized List<E> expire(long now) {
+        update();
+        long nowTick = now / tickMillis;
+        List<E> expired = null;
+        // sweep the buckets from the current tick to nowTick, included,
+        // but visit each bucket once at most
+        long ticks = Math.max(1, Math.min(nowTick - currentTick + 1, buckets.length));
+        for (long t = currentTick; t < currentTick + ticks; t++) {
+            Entry e = buckets[(int) (t & mask)];
+            while (e != null) {
+                Entry n = e.next;
+                if (e.tick <= nowTick && e.deadline <= now) {
+                    unlink(e);
+                    if (e.transition(Entry.SCHEDULED, Entry.EXPIRED)) {
+                        count.decrementAndGet();
+                        if (expired == null) expired = new ArrayList<>();
+                        expired.add((E) e);
+                    }
+                }
+                e = n;
+            }
+        }
+        if (nowTick > currentTick) currentTick = nowTick;
+        if (nextValid && next <= now) nextValid = false;
+        if (expired == null) return Collections.emptyList();
+        if (expired.size() > 1) {
+            expired.sort((a, b) -> Long.compare(a.deadline, b.deadline));
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the time at which {@link #expire(long)} should next be
+     * called, in milliseconds since the epoch, or -1 if the wheel is empty.
+     * This is the earliest deadline of all entries if it falls within one
+     * revolution of the wheel, or else the end of that revolution.
+     */
+    synchronized long nextDeadline() {
+        update();
+        if (count.get() == 0) return -1;
+        if (nextValid) return next;
+        long deadline = -1;
+        for (long t = currentTick; t < currentTick + buckets.length; t++) {
+            for (Entry e = buckets[(int) (t & mask)]; e != null; e = e.next) {
+                if (e.tick == t && (deadline < 0 || e.deadline < deadline)) {
+                    deadline = e.deadline;
+                }
+            }
+            if (deadline >= 0) break;
+        }
+        if (deadline < 0) deadline = (currentTick + buckets.length) * tickMillis;
+        next = deadline;
+        nextValid = true;
+        return deadline;
+    }
+
+    // Applies the changes queued by schedule and cancel
+    private void update() {
+        assert Thread.holdsLock(this);
+        Entry e;
+        while ((e = added.poll()) != null) {
+            if (!e.transition(Entry.PENDING, Entry.SCHEDULED)) {
+                continue; // cancelled before it was linked
+            }
+            // an entry that is already due goes into the current bucket
+            e.tick = Math.max(e.deadline / tickMillis, currentTick);
+            int index = (int) (e.tick & mask);
+            Entry head = buckets[index];
+            e.prev = null;
+            e.next = head;
+            if (head != null) head.prev = e;
+            buckets[index] = e;
+            e.linked = true;
+            if (nextValid && e.deadline < next) next = e.deadline;
+        }
+        while ((e = cancelled.poll()) != null) {
+            unlink(e);
+        }
+    }
+
+    private void unlink(Entry e) {
+        if (!e.linked) return;
+        if (e.prev != null) {
+            e.prev.next = e.next;
+        } else {
+            buckets[(int) (e.tick & mask)] = e.next;
+        }
+        if (e.next != null) e.next.prev = e.prev;
+        e.prev = e.next = null;
+        e.linked = false;
+    }
+}
@@ -30,6 +30,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 
 import jdk.incubator.http.internal.common.SysLogger;
@@ -71,11 +72,18 @@ final class WindowController {
     private final Map<Integer, Map.Entry<Stream<?>, Integer>> pending
             = new LinkedHashMap<>();
 
+    /** The time, from System.nanoTime(), since which each stream of the
+     *  pending map has been waiting for Send Window. */
+    private final Map<Integer,Long> stalledSince = new HashMap<>();
+    /** Accumulates the time streams have spent waiting for Send Window. */
+    private final LongAdder stallNanos;
+
     private final ReentrantLock controllerLock = new ReentrantLock();
 
     /** A Controller with the default initial window size. */
-    WindowController() {
+    WindowController(LongAdder stallNanos) {
         connectionWindowSize = DEFAULT_INITIAL_WINDOW_SIZE;
+        this.stallNanos = stallNanos;
     }
 
 //    /** A Controller with the given initial window size. */
@@ -101,6 +109,7 @@ final class WindowController {
         controllerLock.lock();
         try {
             Integer old = streams.remove(streamid);
+            stallEnded(streamid);
             // Odd stream numbers (client streams) should have been registered.
             // Even stream numbers (server streams - aka Push Streams) should
             // not be registered
@@ -149,11 +158,13 @@ final class WindowController {
                 // If there's not enough window size available, put the
                 // caller in a pending list.
                 pending.put(streamid, Maps.entry(stream, requestAmount));
+                stalledSince.putIfAbsent(streamid, System.nanoTime());
                 return x;
             }
 
             // Remove the caller from the pending list ( if was waiting ).
             pending.remove(streamid);
+            stallEnded(streamid);
 
             // Update window sizes and return the allocated amount to the caller.
             streamSize -= x;
@@ -169,6 +180,15 @@ final class WindowController {
         }
     }
 
+    // Accounts for the time the given stream has been waiting, if it was.
+    private void stallEnded(int streamid) {
+        assert controllerLock.isHeldByCurrentThread();
+        Long since = stalledSince.isEmpty() ? null : stalledSince.remove(streamid);
+        if (since != null) {
+            stallNanos.add(System.nanoTime() - since);
+        }
+    }
+
     /**
      * Increases the Send Window size for the connection.
      *
@@ -24,7 +24,6 @@
  */
 package jdk.incubator.http;
 
-import jdk.incubator.http.internal.frame.SettingsFrame;
 import jdk.incubator.http.internal.frame.WindowUpdateFrame;
 import jdk.incubator.http.internal.common.SysLogger;
 import jdk.incubator.http.internal.common.Utils;
@@ -38,12 +37,14 @@ abstract class WindowUpdateSender {
     final SysLogger debug =
             Utils.getDebugLogger(this::dbgString, DEBUG);
 
-    final int limit;
+    // grows with the receive window, see resize
+    volatile int limit;
+    final int maxFrameSize;
     final Http2Connection connection;
     final AtomicInteger received = new AtomicInteger(0);
 
     WindowUpdateSender(Http2Connection connection) {
-        this(connection, connection.clientSettings.getParameter(SettingsFrame.INITIAL_WINDOW_SIZE));
+        this(connection, connection.getInitialReceiveWindowSize());
     }
 
     WindowUpdateSender(Http2Connection connection, int initWindowSize) {
@@ -52,16 +53,30 @@ abstract class WindowUpdateSender {
 
     WindowUpdateSender(Http2Connection connection, int maxFrameSize, int initWindowSize) {
         this.connection = connection;
-        int v0 = Math.max(0, initWindowSize - maxFrameSize);
-        int v1 = (initWindowSize + (maxFrameSize - 1)) / maxFrameSize;
-        v1 = v1 * maxFrameSize / 2;
+        this.maxFrameSize = maxFrameSize;
+        limit = limit(maxFrameSize, initWindowSize);
+        debug.log(Level.DEBUG, "maxFrameSize=%d, initWindowSize=%d, limit=%d",
+                maxFrameSize, initWindowSize, limit);
+    }
+
+    private static int limit(int maxFrameSize, int windowSize) {
+        int v0 = Math.max(0, windowSize - maxFrameSize);
+        int v1 = (int) ((windowSize + (maxFrameSize - 1L)) / maxFrameSize);
+        v1 = (int) ((long) v1 * maxFrameSize / 2);
         // send WindowUpdate heuristic:
         // - we got data near half of window size
         //   or
         // - remaining window size reached max frame size.
-        limit = Math.min(v0, v1);
-        debug.log(Level.DEBUG, "maxFrameSize=%d, initWindowSize=%d, limit=%d",
-                maxFrameSize, initWindowSize, limit);
+        return Math.min(v0, v1);
+    }
+
+    /**
+     * Adapts the threshold for sending window updates to a receive window
+     * that has grown to the given size.
+     */
+    void resize(int windowSize) {
+        limit = limit(maxFrameSize, windowSize);
+        debug.log(Level.DEBUG, "windowSize=%d, limit=%d", windowSize, limit);
     }
 
     abstract int getStreamId();
@@ -26,6 +26,7 @@ package jdk.incubator.http.internal.common;
 
 import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The class provides reuse of ByteBuffers.
@@ -34,27 +35,83 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  *
  * At the same moment it is allowed to change requested buffers size (all smaller buffers will be discarded).
  * It may be needed for example, if after rehandshaking netPacketBufferSize was changed.
+ *
+ * A pool can also be created for buffers of a fixed size, optionally direct,
+ * and keep at most a given number of them. Such a pool only takes back
+ * buffers that it could have handed out, see {@link #recycle(ByteBuffer)}.
  */
 public class ByteBufferPool {
 
     private final java.util.Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private final int bufferSize;   // 0 if any size
+    private final boolean direct;
+    private final int maxBuffers;
+    private final AtomicInteger pooled = new AtomicInteger();
 
     public ByteBufferPool() {
+        this(0, false, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a pool of buffers of {@code bufferSize} bytes that keeps
+     * at most {@code maxBuffers} released buffers.
+     */
+    public ByteBufferPool(int bufferSize, boolean direct, int maxBuffers) {
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.maxBuffers = maxBuffers;
     }
 
     public ByteBufferReference get(int size) {
         ByteBuffer buffer;
-        while ((buffer = pool.poll()) != null) {
+        while ((buffer = poll()) != null) {
             if (buffer.capacity() >= size) {
                 return ByteBufferReference.of(buffer, this);
             }
         }
-        return ByteBufferReference.of(ByteBuffer.allocate(size), this);
+        return ByteBufferReference.of(allocate(size), this);
+    }
+
+    /**
+     * Returns a cleared buffer of the size of this pool, either
+     * a released one or a newly allocated one.
+     */
+    public ByteBuffer get() {
+        assert bufferSize > 0;
+        ByteBuffer buffer = poll();
+        return buffer == null ? allocate(bufferSize) : buffer;
     }
 
     public void release(ByteBuffer buffer) {
         buffer.clear();
+        if (pooled.incrementAndGet() > maxBuffers) {
+            pooled.decrementAndGet();
+            return; // let it be garbage collected
+        }
         pool.offer(buffer);
     }
 
+    /**
+     * Releases the given buffer if it is of the kind handed out by
+     * {@link #get()}, otherwise does nothing. The caller must no longer
+     * use the buffer, nor any slice of it, once it has been recycled.
+     */
+    public void recycle(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize
+                && buffer.isDirect() == direct
+                && !buffer.isReadOnly()) {
+            release(buffer);
+        }
+    }
+
+    private ByteBuffer poll() {
+        ByteBuffer buffer = pool.poll();
+        if (buffer != null) pooled.decrementAndGet();
+        return buffer;
+    }
+
+    private ByteBuffer allocate(int size) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
 }
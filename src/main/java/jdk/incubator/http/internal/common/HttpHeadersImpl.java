@@ -26,49 +26,246 @@ package jdk.incubator.http.internal.common;
 
 import jdk.incubator.http.HttpHeaders;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
+import java.util.Optional;
 import java.util.TreeMap;
+import static java.util.Objects.requireNonNull;
 
 /**
  * Implementation of HttpHeaders.
+ *
+ * <p> Headers are kept, in the order they were added, in parallel arrays of
+ * names and values. A small open addressing table, keyed by a case-insensitive
+ * hash of the name, points to the first entry of each name, and the entries
+ * of a name are chained in order, so lookups neither walk a tree nor compare
+ * more than a few names. The {@linkplain #map() map} view is only built when
+ * asked for, and is then cached until the headers are next changed.
  */
 public class HttpHeadersImpl extends HttpHeaders {
 
-    private final TreeMap<String,List<String>> headers;
+    private static final int[] NO_INTS = new int[0];
+    private static final String[] NO_STRINGS = new String[0];
+    private static final List<String> NO_VALUES =
+            Collections.unmodifiableList(Collections.emptyList());
+
+    private String[] names = NO_STRINGS;
+    private String[] values = NO_STRINGS;
+    private int[] hashes = NO_INTS;
+    // index + 1 of the next entry with the same name, or 0
+    private int[] next = NO_INTS;
+    // index + 1 of the first entry with a name, or 0; length is a power of 2
+    private int[] table = NO_INTS;
+    private int size;
+    // built lazily, reset whenever the headers change
+    private Map<String,List<String>> map;
+
+    public HttpHeadersImpl() { }
+
+    @Override
+    public Optional<String> firstValue(String name) {
+        int i = find(requireNonNull(name));
+        return i < 0 ? Optional.empty() : Optional.of(values[i]);
+    }
 
-    public HttpHeadersImpl() {
-        headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    @Override
+    public List<String> allValues(String name) {
+        int i = find(requireNonNull(name));
+        // wrapped, so that even no-op mutators throw UOE
+        if (i < 0)
+            return NO_VALUES;
+        if (next[i] == 0)
+            return Collections.unmodifiableList(
+                    Collections.singletonList(values[i]));
+        List<String> list = new ArrayList<>(2);
+        for (; i >= 0; i = next[i] - 1)
+            list.add(values[i]);
+        return Collections.unmodifiableList(list);
     }
 
     @Override
     public Map<String, List<String>> map() {
-        return Collections.unmodifiableMap(headers);
+        Map<String,List<String>> m = map;
+        if (m == null) {
+            TreeMap<String,List<String>> tm =
+                    new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = 0; i < size; i++) {
+                if (!tm.containsKey(names[i]))
+                    tm.put(names[i], allValues(names[i]));
+            }
+            map = m = Collections.unmodifiableMap(tm);
+        }
+        return m;
+    }
+
+    /** Returns the number of header entries, counting each value once. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns the name of the i'th header entry, in the order added. */
+    public String name(int i) {
+        checkIndex(i);
+        return names[i];
+    }
+
+    /** Returns the value of the i'th header entry, in the order added. */
+    public String value(int i) {
+        checkIndex(i);
+        return values[i];
     }
 
     // package private mutators
 
     public HttpHeadersImpl deepCopy() {
         HttpHeadersImpl h1 = new HttpHeadersImpl();
-        Set<String> keys = headers.keySet();
-        for (String key : keys) {
-            List<String> vals = headers.get(key);
-            List<String> vals1 = new ArrayList<>(vals);
-            h1.headers.put(key, vals1);
-        }
+        h1.copyFrom(this);
         return h1;
     }
 
     public void addHeader(String name, String value) {
-        headers.computeIfAbsent(name, k -> new ArrayList<>(1))
-               .add(value);
+        append(name, value);
     }
 
     public void setHeader(String name, String value) {
-        List<String> values = new ArrayList<>(1); // most headers has one value
-        values.add(value);
-        headers.put(name, values);
+        int i = find(name);
+        if (i < 0) {
+            append(name, value);
+            return;
+        }
+        values[i] = value;
+        if (next[i] != 0) {
+            // drop the other values, and re-index what is left
+            String key = names[i];
+            int h = hashes[i], n = 0;
+            for (int j = 0; j < size; j++) {
+                if (j != i && hashes[j] == h && names[j].equalsIgnoreCase(key))
+                    continue;
+                names[n] = names[j];
+                values[n] = values[j];
+                hashes[n] = hashes[j];
+                n++;
+            }
+            Arrays.fill(names, n, size, null);
+            Arrays.fill(values, n, size, null);
+            size = n;
+            rehash(table.length);
+        }
+        map = null;
+    }
+
+    /**
+     * Appends a header entry. For use by subclasses that, unlike this class,
+     * do not allow their headers to be changed once created.
+     */
+    protected final void append(String name, String value) {
+        requireNonNull(name);
+        requireNonNull(value);
+        if (size == names.length)
+            grow();
+        int h = hash(name);
+        names[size] = name;
+        values[size] = value;
+        hashes[size] = h;
+        link(size++, h);
+        map = null;
+    }
+
+    /** Replaces the headers of this instance with those of src. */
+    protected final void copyFrom(HttpHeadersImpl src) {
+        names = src.names.clone();
+        values = src.values.clone();
+        hashes = src.hashes.clone();
+        next = src.next.clone();
+        table = src.table.clone();
+        size = src.size;
+        map = null;
+    }
+
+    /**
+     * Returns the given header name in lower case. The name itself is
+     * returned, rather than a copy, when it is lower case already, as names
+     * taken from the wire and the HPACK tables always are.
+     */
+    public static String lowerCase(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z' || c >= 0x80)
+                return name.toLowerCase(Locale.ROOT);
+        }
+        return name;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException(
+                    "index " + i + ", size " + size);
+    }
+
+    // Returns the index of the first entry with the given name, or -1.
+    private int find(String name) {
+        if (size == 0)
+            return -1;
+        int h = hash(name);
+        int mask = table.length - 1;
+        for (int s = h & mask; table[s] != 0; s = (s + 1) & mask) {
+            int i = table[s] - 1;
+            if (hashes[i] == h
+                    && (names[i] == name || names[i].equalsIgnoreCase(name)))
+                return i;
+        }
+        return -1;
+    }
+
+    // Adds the entry at index i to the table, or to the chain of its name.
+    private void link(int i, int h) {
+        next[i] = 0;
+        int mask = table.length - 1;
+        int s = h & mask;
+        for (; table[s] != 0; s = (s + 1) & mask) {
+            int j = table[s] - 1;
+            if (hashes[j] == h && names[j].equalsIgnoreCase(names[i])) {
+                while (next[j] != 0)
+                    j = next[j] - 1;
+                next[j] = i + 1;
+                return;
+            }
+        }
+        table[s] = i + 1;
+    }
+
+    private void grow() {
+        int capacity = Math.max(8, names.length << 1);
+        names = Arrays.copyOf(names, capacity);
+        values = Arrays.copyOf(values, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        next = Arrays.copyOf(next, capacity);
+        // keep the table at most half full
+        rehash(Math.max(table.length, capacity << 1));
+    }
+
+    private void rehash(int tableSize) {
+        table = new int[tableSize];
+        for (int i = 0; i < size; i++)
+            link(i, hashes[i]);
+    }
+
+    // A hash that agrees with String::equalsIgnoreCase
+    private static int hash(String name) {
+        int h = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < 0x80) {
+                if (c >= 'A' && c <= 'Z')
+                    c += 'a' - 'A';
+            } else {
+                c = Character.toLowerCase(Character.toUpperCase(c));
+            }
+            h = 31 * h + c;
+        }
+        return h ^ (h >>> 16);
     }
 }
@@ -115,8 +115,6 @@ public class SSLFlowDelegate {
         // connect the Reader to the downReader and the
         // Writer to the downWriter.
         connect(downReader, downWriter);
-
-        //Monitor.add(this::monitor);
     }
 
     /**
@@ -272,6 +270,8 @@ public class SSLFlowDelegate {
                         reallocReadBuf();
                     readBuf.put(buf);
                     readBuf.flip();
+                    // the data has been copied: the buffer can be reused
+                    Utils.recycleReadBuffer(buf);
                 }
                 if (complete) {
                     this.completing = complete;
@@ -375,50 +375,6 @@ public class SSLFlowDelegate {
         return cf;
     }
 
-    public interface Monitorable {
-        public String getInfo();
-    }
-
-    public static class Monitor extends Thread {
-        final List<Monitorable> list;
-        static Monitor themon;
-
-        static {
-            themon = new Monitor();
-            themon.start(); // uncomment to enable Monitor
-        }
-
-        Monitor() {
-            super("Monitor");
-            setDaemon(true);
-            list = Collections.synchronizedList(new LinkedList<>());
-        }
-
-        void addTarget(Monitorable o) {
-            list.add(o);
-        }
-
-        public static void add(Monitorable o) {
-            themon.addTarget(o);
-        }
-
-        @Override
-        public void run() {
-            System.out.println("Monitor starting");
-            while (true) {
-                try {Thread.sleep(20*1000); } catch (Exception e) {}
-                synchronized (list) {
-                    for (Monitorable o : list) {
-                        System.out.println(o.getInfo());
-                        System.out.println("-------------------------");
-                    }
-                }
-                System.out.println("--o-o-o-o-o-o-o-o-o-o-o-o-o-o-");
-
-            }
-        }
-    }
-
     /**
      * Processing function for outgoing data. Pass it thru SSLEngine.wrap()
      * Any encrypted buffers generated are passed downstream to be written.
@@ -120,6 +120,49 @@ public final class Utils {
         return ByteBuffer.allocate(BUFSIZE);
     }
 
+    /**
+     * The maximum number of direct buffers of {@link #BUFSIZE} bytes kept for
+     * reading from the socket of SSL connections. Pooling is disabled if 0.
+     */
+    public static final int READ_BUFFER_POOL_SIZE = Math.max(0,
+            getIntegerNetProperty("jdk.httpclient.readbufferpool", 0));
+
+    private static volatile ByteBufferPool readBufferPool =
+            READ_BUFFER_POOL_SIZE == 0 ? null :
+            new ByteBufferPool(BUFSIZE, true, READ_BUFFER_POOL_SIZE);
+
+    /**
+     * Used for whitebox testing: replaces the pool of read buffers, null
+     * disabling pooling, and returns the previous one.
+     */
+    public static ByteBufferPool setReadBufferPool(ByteBufferPool pool) {
+        ByteBufferPool previous = readBufferPool;
+        readBufferPool = pool;
+        return previous;
+    }
+
+    /**
+     * Returns a buffer to read from a socket into. If pooled is true, and
+     * pooling is enabled, the buffer is a direct buffer taken from a shared
+     * pool, which saves the copy through a temporary direct buffer that NIO
+     * does for heap buffers. Such a buffer must only be handed to a consumer
+     * that copies its content and then calls {@link #recycleReadBuffer}.
+     */
+    public static ByteBuffer getReadBuffer(boolean pooled) {
+        ByteBufferPool pool = readBufferPool;
+        return pooled && pool != null ? pool.get() : getBuffer();
+    }
+
+    /**
+     * Gives back a buffer obtained from {@link #getReadBuffer(boolean)}
+     * once its content has been consumed. Buffers that are not pooled
+     * are ignored.
+     */
+    public static void recycleReadBuffer(ByteBuffer buffer) {
+        ByteBufferPool pool = readBufferPool;
+        if (pool != null) pool.recycle(buffer);
+    }
+
     public static Throwable getCompletionCause(Throwable x) {
         if (!(x instanceof CompletionException)
                 && !(x instanceof ExecutionException)) return x;
@@ -268,7 +311,7 @@ public final class Utils {
                 NetProperties.get(name));
     }
 
-    static boolean getBooleanProperty(String name, boolean def) {
+    public static boolean getBooleanProperty(String name, boolean def) {
         return AccessController.doPrivileged((PrivilegedAction<Boolean>) () ->
                 Boolean.parseBoolean(System.getProperty(name, String.valueOf(def))));
     }
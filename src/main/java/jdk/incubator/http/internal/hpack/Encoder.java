@@ -307,6 +307,12 @@ public class Encoder {
         maxCapacity = capacity;
         lastCapacity = calculated;
         minCapacity = Math.min(minCapacity, lastCapacity);
+        if (headerTable != null && minCapacity < headerTable.maxSize()) {
+            // Evict now what the decoder evicts on reading the update, so
+            // that no header set up before the update is written refers to
+            // an entry that is gone by then
+            headerTable.setMaxSize((int) minCapacity);
+        }
     }
 
     /**
@@ -508,6 +514,22 @@ public class Encoder {
         writer = sizeUpdateWriter.maxHeaderTableSize(capacity);
     }
 
+    /**
+     * Looks up a header in the header table.
+     *
+     * @param name
+     *         the name
+     * @param value
+     *         the value
+     *
+     * @return the index of an entry with both the given name and value, or
+     *         the negated index of an entry with the given name, or {@code 0}
+     *         if there is no entry with the given name
+     */
+    protected final int indexOf(CharSequence name, CharSequence value) {
+        return headerTable.indexOf(name, value);
+    }
+
     protected final int getMaxCapacity() {
         return maxCapacity;
     }
@@ -26,6 +26,11 @@ package jdk.incubator.http.internal.hpack;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static java.lang.String.format;
 
@@ -131,6 +136,83 @@ public final class Huffman {
         }
     }
 
+    /*
+     * A reader that decodes 4 bits at a time using the transition tables
+     * precomputed from the trie (see buildDecodingTables). Produces the same
+     * output, and fails in the same situations, as Reader, which walks the
+     * trie one bit at a time.
+     */
+    static final class TableReader {
+
+        private int state; // index of the current internal node of the trie
+
+        public void read(ByteBuffer source,
+                         Appendable destination,
+                         boolean isLast) throws IOException {
+            read(source, destination, true, isLast);
+        }
+
+        void read(ByteBuffer source,
+                  Appendable destination,
+                  boolean reportEOS, /* reportEOS is exposed for tests */
+                  boolean isLast) throws IOException {
+            final int[] transitions = INSTANCE.transitions;
+            int s = state;
+            int pos = source.position();
+
+            while (source.hasRemaining()) {
+                int d = source.get();
+                int t = transitions[(s << 4) | ((d >>> 4) & 0xf)];
+                if ((t & EMIT) != 0) {
+                    emit(t, source, pos, destination, reportEOS);
+                }
+                t = transitions[((t & STATE_MASK) << 4) | (d & 0xf)];
+                if ((t & EMIT) != 0) {
+                    emit(t, source, pos, destination, reportEOS);
+                }
+                state = s = t & STATE_MASK;
+                pos++;
+            }
+            if (!isLast) {
+                return; // it's too early to jump to any conclusions, let's wait
+            }
+            int info = INSTANCE.states[s];
+            int len = info & DEPTH_MASK;
+            boolean isEOSPath = (info & EOS_PATH) != 0;
+            if (isEOSPath && len <= 7) {
+                return; // it's ok, no or some extra padding bits
+            }
+            if (isEOSPath) {
+                throw new IOException(
+                        "Padding is too long (len=" + len + ") " +
+                                "or unexpected end of data");
+            }
+            throw new IOException(
+                    "Not a EOS prefix padding or unexpected end of data");
+        }
+
+        private static void emit(int transition,
+                                 ByteBuffer source,
+                                 int pos,
+                                 Appendable destination,
+                                 boolean reportEOS) throws IOException {
+            char ch = (char) (transition >>> SYMBOL_SHIFT);
+            if (reportEOS && ch == EOS_SYMBOL) {
+                throw new IOException("Encountered EOS");
+            }
+            try {
+                destination.append(ch);
+            } catch (IOException e) {
+                source.position(pos); // do we need this?
+                throw e;
+            }
+        }
+
+        public void reset() {
+            state = 0;
+        }
+    }
+
     static final class Writer {
 
         private int pos;       // position in 'source'
@@ -218,6 +300,25 @@ public final class Huffman {
         public String toString() { return "root"; }
     };
 
+    //
+    // Decoding tables for TableReader. Internal nodes of the trie are
+    // numbered breadth-first, the root being 0 (there are exactly 256 of
+    // them). transitions[state << 4 | nibble] tells the node reached from
+    // 'state' after consuming the 4 bits of 'nibble' (most significant
+    // first) and, if a leaf was passed on the way, its symbol. Since no code
+    // is shorter than 5 bits, at most one symbol is emitted per nibble.
+    // states[state] keeps what is needed to validate the padding.
+    //
+    private static final int STATE_MASK   = 0xff;
+    private static final int EMIT         = 0x100;
+    private static final int SYMBOL_SHIFT = 16;
+    private static final int DEPTH_MASK   = 0x1f;
+    private static final int EOS_PATH     = 0x20;
+    private static final int EOS_SYMBOL   = 256;
+
+    private final int[] transitions;
+    private final int[] states;
+
     // TODO: consider builder and immutable trie
     private Huffman() {
         // @formatter:off
@@ -479,6 +580,53 @@ public final class Huffman {
         addChar(255, 0x3ffffee,  26);
         addEOS (256, EOS.code,   EOS.length);
         // @formatter:on
+
+        // Number the internal nodes breadth-first
+        List<Node> nodes = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        Map<Node, Integer> index = new IdentityHashMap<>();
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        ArrayDeque<Integer> queueDepths = new ArrayDeque<>();
+        queue.add(root);
+        queueDepths.add(0);
+        while (!queue.isEmpty()) {
+            Node n = queue.poll();
+            int depth = queueDepths.poll();
+            if (n.isLeaf()) {
+                continue;
+            }
+            index.put(n, nodes.size());
+            nodes.add(n);
+            depths.add(depth);
+            queue.add(n.left);
+            queueDepths.add(depth + 1);
+            queue.add(n.right);
+            queueDepths.add(depth + 1);
+        }
+        if (nodes.size() - 1 > STATE_MASK) {
+            throw new InternalError("Too many internal nodes: " + nodes.size());
+        }
+        states = new int[nodes.size()];
+        transitions = new int[nodes.size() << 4];
+        for (int i = 0; i < nodes.size(); i++) {
+            Node n = nodes.get(i);
+            states[i] = depths.get(i) | (n.isEOSPath ? EOS_PATH : 0);
+            for (int nibble = 0; nibble < 16; nibble++) {
+                Node c = n;
+                int t = 0;
+                for (int b = 3; b >= 0; b--) {
+                    c = c.getChild((nibble >>> b) & 1);
+                    if (c.isLeaf()) {
+                        if ((t & EMIT) != 0) {
+                            throw new InternalError("Two symbols in a nibble");
+                        }
+                        t = EMIT | (c.getChar() << SYMBOL_SHIFT);
+                        c = root;
+                    }
+                }
+                transitions[(i << 4) | nibble] = t | index.get(c);
+            }
+        }
     }
 
 
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import java9.util.concurrent.CompletableFuture;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * @summary Whitebox tests for CachingResolver: results are cached for
+ *          their time to live, failures for the negative time to live,
+ *          and concurrent requests share a single lookup.
+ */
+@Test
+public class CachingResolverTest {
+
+    // counts the lookups, and runs them on demand
+    static final class QueueExecutor implements Executor {
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+        final AtomicInteger count = new AtomicInteger();
+        @Override
+        public synchronized void execute(Runnable task) {
+            count.incrementAndGet();
+            tasks.add(task);
+        }
+        void runAll() {
+            Runnable task;
+            while ((task = poll()) != null) task.run();
+        }
+        synchronized Runnable poll() {
+            return tasks.poll();
+        }
+    }
+
+    static final Duration LONG = Duration.ofMinutes(10);
+
+    public void testCached() {
+        QueueExecutor executor = new QueueExecutor();
+        CachingResolver resolver = new CachingResolver(executor, LONG, LONG);
+        CompletableFuture<List<InetAddress>> cf1 = resolver.resolve("127.0.0.1");
+        CompletableFuture<List<InetAddress>> cf2 = resolver.resolve("127.0.0.1");
+        // concurrent requests share the lookup
+        assertEquals(executor.count.get(), 1);
+        assertFalse(cf1.isDone());
+        executor.runAll();
+        List<InetAddress> addresses = cf1.join();
+        assertEquals(addresses.size(), 1);
+        assertEquals(addresses.get(0).getHostAddress(), "127.0.0.1");
+        assertEquals(cf2.join(), addresses);
+        // served from the cache
+        assertEquals(resolver.resolve("127.0.0.1").join(), addresses);
+        assertEquals(executor.count.get(), 1);
+        assertEquals(resolver.size(), 1);
+    }
+
+    public void testExpiry() throws Exception {
+        QueueExecutor executor = new QueueExecutor();
+        CachingResolver resolver = new CachingResolver(executor,
+                Duration.ofMillis(50), LONG);
+        CompletableFuture<List<InetAddress>> cf = resolver.resolve("127.0.0.1");
+        executor.runAll();
+        cf.join();
+        resolver.resolve("127.0.0.1");
+        assertEquals(executor.count.get(), 1);
+        Thread.sleep(100);
+        cf = resolver.resolve("127.0.0.1");
+        assertEquals(executor.count.get(), 2);
+        executor.runAll();
+        assertEquals(cf.join().get(0).getHostAddress(), "127.0.0.1");
+    }
+
+    public void testZeroTtl() {
+        QueueExecutor executor = new QueueExecutor();
+        CachingResolver resolver = new CachingResolver(executor,
+                Duration.ZERO, Duration.ZERO);
+        for (int i = 1; i <= 3; i++) {
+            CompletableFuture<List<InetAddress>> cf = resolver.resolve("127.0.0.1");
+            executor.runAll();
+            cf.join();
+            assertEquals(executor.count.get(), i);
+        }
+    }
+
+    public void testNegative() {
+        QueueExecutor executor = new QueueExecutor();
+        CachingResolver resolver = new CachingResolver(executor, LONG, LONG);
+        // not a valid IPv6 literal: fails without any name service lookup
+        CompletableFuture<List<InetAddress>> cf = resolver.resolve("[::1");
+        executor.runAll();
+        assertFailed(cf);
+        // the failure is cached too
+        cf = resolver.resolve("[::1");
+        assertEquals(executor.count.get(), 1);
+        assertFailed(cf);
+    }
+
+    public void testCopies() {
+        QueueExecutor executor = new QueueExecutor();
+        CachingResolver resolver = new CachingResolver(executor, LONG, LONG);
+        CompletableFuture<List<InetAddress>> cf = resolver.resolve("127.0.0.1");
+        // completing the returned future does not affect the cache
+        cf.completeExceptionally(new UnknownHostException("127.0.0.1"));
+        executor.runAll();
+        assertEquals(resolver.resolve("127.0.0.1").join().size(), 1);
+    }
+
+    public void testCaseInsensitive() {
+        QueueExecutor executor = new QueueExecutor();
+        CachingResolver resolver = new CachingResolver(executor, LONG, LONG);
+        resolver.resolve("LocalHost");
+        resolver.resolve("localhost");
+        assertEquals(executor.count.get(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeTtl() {
+        new CachingResolver(Runnable::run, Duration.ofSeconds(-1), LONG);
+    }
+
+    static void assertFailed(CompletableFuture<?> cf) {
+        assertTrue(cf.isCompletedExceptionally());
+        try {
+            cf.join();
+            fail("expected failure");
+        } catch (CompletionException x) {
+            assertTrue(x.getCause() instanceof UnknownHostException,
+                       String.valueOf(x.getCause()));
+        }
+    }
+}
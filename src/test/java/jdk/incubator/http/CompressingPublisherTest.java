@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java9.util.concurrent.Flow;
+
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * @summary Checks that cancelling a RequestPublishers.CompressingPublisher
+ *          ends its deflater, also while the delegate is delivering items.
+ */
+@Test
+public class CompressingPublisherTest {
+
+    static final Random RANDOM = new Random();
+
+    /** A delegate that hands its subscriber to the test, which drives it. */
+    static final class Delegate implements HttpRequest.BodyPublisher, Flow.Subscription {
+        volatile Flow.Subscriber<? super ByteBuffer> subscriber;
+        final AtomicBoolean cancelled = new AtomicBoolean();
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(this);
+        }
+
+        @Override
+        public void request(long n) { }
+
+        @Override
+        public void cancel() {
+            cancelled.set(true);
+        }
+    }
+
+    /** A downstream subscriber that wants everything, and ignores it. */
+    static final class Downstream implements Flow.Subscriber<ByteBuffer> {
+        volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) { }
+
+        @Override
+        public void onError(Throwable throwable) { }
+
+        @Override
+        public void onComplete() { }
+    }
+
+    static boolean isEnded(Deflater deflater) {
+        try {
+            deflater.getBytesRead();
+            return false;
+        } catch (NullPointerException expected) {
+            return true;   // "Deflater has been closed"
+        }
+    }
+
+    @DataProvider(name = "gzip")
+    public Object[][] gzip() {
+        return new Object[][] { { true }, { false } };
+    }
+
+    @Test(dataProvider = "gzip")
+    public void testCancel(boolean gzip) {
+        Delegate delegate = new Delegate();
+        Downstream downstream = new Downstream();
+        new RequestPublishers.CompressingPublisher(delegate, gzip).subscribe(downstream);
+        RequestPublishers.CompressingPublisher.Compressor compressor =
+                (RequestPublishers.CompressingPublisher.Compressor) downstream.subscription;
+        delegate.subscriber.onNext(ByteBuffer.wrap(new byte[1024]));
+        assertTrue(!isEnded(compressor.deflater));
+
+        downstream.subscription.cancel();
+        assertTrue(delegate.cancelled.get());
+        assertTrue(isEnded(compressor.deflater));
+
+        // items still in flight after the cancel are dropped
+        delegate.subscriber.onNext(ByteBuffer.wrap(new byte[1024]));
+        delegate.subscriber.onComplete();
+    }
+
+    @Test(dataProvider = "gzip")
+    public void testCancelWhileCompressing(boolean gzip) throws Exception {
+        for (int i = 0; i < 50; i++) {
+            Delegate delegate = new Delegate();
+            Downstream downstream = new Downstream();
+            new RequestPublishers.CompressingPublisher(delegate, gzip).subscribe(downstream);
+            RequestPublishers.CompressingPublisher.Compressor compressor =
+                    (RequestPublishers.CompressingPublisher.Compressor) downstream.subscription;
+
+            byte[] bytes = new byte[64 * 1024];
+            RANDOM.nextBytes(bytes);
+            CountDownLatch started = new CountDownLatch(1);
+            CompletableFuture<Void> feeder = CompletableFuture.runAsync(() -> {
+                for (int j = 0; j < 64; j++) {
+                    delegate.subscriber.onNext(ByteBuffer.wrap(bytes));
+                    started.countDown();
+                }
+                delegate.subscriber.onComplete();
+            });
+            started.await();
+            downstream.subscription.cancel();
+            try {
+                feeder.join();
+            } catch (Exception x) {
+                fail("Delivering items while cancelled failed", x);
+            }
+            assertTrue(isEnded(compressor.deflater));
+        }
+    }
+}
@@ -24,13 +24,16 @@ package jdk.incubator.http;
 
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
 import java.net.Authenticator;
 import java.net.CookieHandler;
 import java.net.InetSocketAddress;
 import java.net.ProxySelector;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.concurrent.Executor;
@@ -149,6 +152,89 @@ public class ConnectionPoolTest {
                                        + count + " got "
                                        + (count-opened));
         }
+        if (pool.destinationCount() != 0) {
+            throw new RuntimeException("Destinations left: "
+                                       + pool.destinationCount());
+        }
+    }
+
+    public static void testReuse() throws Exception {
+        ConnectionPool pool = new ConnectionPool(667);
+        HttpClient client = new HttpClientStub(pool);
+        InetSocketAddress addr = InetSocketAddress.createUnresolved("foo", 80);
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        HttpConnectionStub[] connections = new HttpConnectionStub[3];
+        for (int i=0; i<connections.length; i++) {
+            connections[i] = new HttpConnectionStub(client, addr, null, true);
+            pool.returnToPool(connections[i], now, 10 + i);
+        }
+        if (pool.getConnection(false, addr, null) != null) {
+            throw new RuntimeException("Unexpected plain connection");
+        }
+        // most recently returned connection first
+        for (int i=connections.length-1; i>=0; i--) {
+            long purge = pool.purgeExpiredConnectionsAndReturnNextDeadline(now);
+            if (purge != 10_000) {
+                throw new RuntimeException("Bad purge delay: " + purge);
+            }
+            HttpConnection c = pool.getConnection(true, addr, null);
+            if (c != connections[i]) {
+                throw new RuntimeException("Expected " + i + " got " + c);
+            }
+        }
+        if (pool.getConnection(true, addr, null) != null) {
+            throw new RuntimeException("Pool should be empty");
+        }
+        if (pool.destinationCount() != 0) {
+            throw new RuntimeException("Destination should be dropped");
+        }
+        long purge = pool.purgeExpiredConnectionsAndReturnNextDeadline(now);
+        if (purge != 0) {
+            throw new RuntimeException("Bad purge delay: " + purge);
+        }
+        long opened = java.util.stream.Stream.of(connections)
+                     .filter(HttpConnectionStub::connected).count();
+        if (opened != connections.length) {
+            throw new RuntimeException("Opened: expected "
+                                       + connections.length + " got " + opened);
+        }
+    }
+
+    // An entry claimed by the cleanup trigger is unlinked by a concurrent
+    // getConnection before the trigger gets to remove it.
+    public static void testClaimedEntryPolled() throws Exception {
+        ConnectionPool pool = new ConnectionPool(668);
+        HttpClient client = new HttpClientStub(pool);
+        InetSocketAddress addr = InetSocketAddress.createUnresolved("foo", 80);
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        HttpConnectionStub conn = new HttpConnectionStub(client, addr, null, true);
+        pool.returnToPool(conn, now, 10);
+
+        // the entry of the connection, as the cleanup trigger sees it
+        Field field = conn.flow.subscriber.getClass().getDeclaredField("entry");
+        field.setAccessible(true);
+        ConnectionPool.IdleEntry entry =
+                (ConnectionPool.IdleEntry) field.get(conn.flow.subscriber);
+        if (!entry.claim()) {
+            throw new RuntimeException("Entry already claimed");
+        }
+        HttpConnection c = CompletableFuture
+                .supplyAsync(() -> pool.getConnection(true, addr, null))
+                .get();
+        if (c != null) {
+            throw new RuntimeException("Got claimed connection " + c);
+        }
+        // what ConnectionPool.cleanup does once it has claimed the entry
+        entry.destination.remove(entry);
+        entry.destination.removeIfUnused();
+        Map<String,Integer> idle = new HashMap<>();
+        pool.countConnections(null, idle);
+        if (!idle.isEmpty()) {
+            throw new RuntimeException("Idle connections left: " + idle);
+        }
+        if (pool.destinationCount() != 0) {
+            throw new RuntimeException("Destination should be dropped");
+        }
     }
 
     static <T> T error() {
@@ -157,6 +243,8 @@ public class ConnectionPoolTest {
 
     static class FlowTubeStub implements FlowTube {
         final HttpConnectionStub conn;
+        // the read subscriber, which is the pool's cleanup trigger
+        volatile Flow.Subscriber<? super List<ByteBuffer>> subscriber;
         FlowTubeStub(HttpConnectionStub conn) { this.conn = conn; }
         @Override
         public void onSubscribe(Flow.Subscription subscription) { }
@@ -165,6 +253,7 @@ public class ConnectionPoolTest {
         @Override public void onNext(List<ByteBuffer> item) { error();}
         @Override
         public void subscribe(Flow.Subscriber<? super List<ByteBuffer>> subscriber) {
+            this.subscriber = subscriber;
         }
         @Override public boolean isFinished() { return conn.closed; }
     }
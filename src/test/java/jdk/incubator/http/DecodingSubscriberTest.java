@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java9.util.concurrent.CompletableFuture;
+import java9.util.concurrent.CompletionStage;
+import java9.util.concurrent.Flow;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * @summary Feeds gzip and deflate encoded bodies, split at random places,
+ *          through ResponseSubscribers.DecodingSubscriber.
+ */
+@Test
+public class DecodingSubscriberTest {
+
+    static final Random RANDOM = new Random();
+
+    static byte[] content(int size) {
+        // compressible, but not trivially
+        byte[] b = new byte[size];
+        for (int i = 0; i < size; i++) {
+            b[i] = (byte) ('a' + RANDOM.nextInt(8));
+        }
+        return b;
+    }
+
+    static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream os = new GZIPOutputStream(bos)) {
+            os.write(content);
+        }
+        return bos.toByteArray();
+    }
+
+    static byte[] deflate(byte[] content, boolean nowrap) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+        try (DeflaterOutputStream os = new DeflaterOutputStream(bos, deflater)) {
+            os.write(content);
+        }
+        deflater.end();
+        return bos.toByteArray();
+    }
+
+    /** Splits the data in items of random sizes, some in direct buffers. */
+    static List<List<ByteBuffer>> split(byte[] data) {
+        List<List<ByteBuffer>> items = new ArrayList<>();
+        int off = 0;
+        while (off < data.length) {
+            List<ByteBuffer> item = new ArrayList<>();
+            for (int i = RANDOM.nextInt(3); i >= 0 && off < data.length; i--) {
+                int len = Math.min(data.length - off, 1 + RANDOM.nextInt(5000));
+                ByteBuffer b = RANDOM.nextBoolean()
+                        ? ByteBuffer.allocate(len) : ByteBuffer.allocateDirect(len);
+                b.put(data, off, len).flip();
+                item.add(b);
+                off += len;
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    /** Publishes the items on request, like the HTTP/1.1 and HTTP/2 paths. */
+    static byte[] decode(byte[] data, boolean gzip) throws Throwable {
+        HttpResponse.BodySubscriber<byte[]> subscriber =
+                new ResponseSubscribers.DecodingSubscriber<>(
+                        HttpResponse.BodySubscriber.asByteArray(), gzip);
+        List<List<ByteBuffer>> items = split(data);
+        long[] demand = new long[1];
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override public void request(long n) { demand[0] += n; }
+            @Override public void cancel() { demand[0] = -1000; }
+        });
+        for (List<ByteBuffer> item : items) {
+            if (demand[0] < 0) break;
+            assertTrue(demand[0] > 0, "no demand");
+            demand[0]--;
+            subscriber.onNext(item);
+        }
+        if (demand[0] >= 0) {
+            subscriber.onComplete();
+        }
+        try {
+            return subscriber.getBody().toCompletableFuture().get();
+        } catch (ExecutionException x) {
+            throw x.getCause();
+        }
+    }
+
+    @DataProvider(name = "sizes")
+    public Object[][] sizes() {
+        return new Object[][] { { 0 }, { 1 }, { 1000 }, { 100_000 }, { 1_000_000 } };
+    }
+
+    @Test(dataProvider = "sizes")
+    public void testGzip(int size) throws Throwable {
+        byte[] content = content(size);
+        assertEquals(decode(gzip(content), true), content);
+    }
+
+    @Test(dataProvider = "sizes")
+    public void testDeflate(int size) throws Throwable {
+        byte[] content = content(size);
+        assertEquals(decode(deflate(content, false), false), content);
+        assertEquals(decode(deflate(content, true), false), content);
+    }
+
+    public void testGzipMembers() throws Throwable {
+        byte[] first = content(30_000), second = content(40_000);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write(gzip(first));
+        data.write(gzip(second));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(first);
+        expected.write(second);
+        assertEquals(decode(data.toByteArray(), true), expected.toByteArray());
+    }
+
+    public void testEmptyBody() throws Throwable {
+        assertEquals(decode(new byte[0], true), new byte[0]);
+        assertEquals(decode(new byte[0], false), new byte[0]);
+    }
+
+    public void testTruncated() throws Throwable {
+        byte[] data = gzip(content(50_000));
+        for (int len : new int[] { 5, data.length / 2, data.length - 3 }) {
+            byte[] truncated = new byte[len];
+            System.arraycopy(data, 0, truncated, 0, len);
+            try {
+                decode(truncated, true);
+                fail("expected EOFException for " + len + " bytes");
+            } catch (EOFException expected) { }
+        }
+    }
+
+    public void testCorrupt() throws Throwable {
+        byte[] data = gzip(content(50_000));
+        data[data.length - 6] ^= 1;  // the CRC
+        try {
+            decode(data, true);
+            fail("expected ZipException");
+        } catch (ZipException expected) { }
+        try {
+            decode(content(100), true);
+            fail("expected ZipException");
+        } catch (ZipException expected) { }
+    }
+
+    /** A downstream subscriber that requests one item at a time. */
+    static final class Downstream implements HttpResponse.BodySubscriber<Void> {
+        final CompletableFuture<Void> cf = new CompletableFuture<>();
+        volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            cf.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            cf.complete(null);
+        }
+
+        @Override
+        public CompletionStage<Void> getBody() {
+            return cf;
+        }
+    }
+
+    /** The upstream subscription, which records whether it was cancelled. */
+    static final class Upstream implements Flow.Subscription {
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        @Override public void request(long n) { }
+        @Override public void cancel() { cancelled.set(true); }
+    }
+
+    static boolean isEnded(Inflater inflater) {
+        try {
+            inflater.getBytesRead();
+            return false;
+        } catch (NullPointerException expected) {
+            return true;   // "Inflater has been closed"
+        }
+    }
+
+    public void testCancel() throws Throwable {
+        Downstream downstream = new Downstream();
+        ResponseSubscribers.DecodingSubscriber<Void> subscriber =
+                new ResponseSubscribers.DecodingSubscriber<>(downstream, true);
+        Upstream upstream = new Upstream();
+        subscriber.onSubscribe(upstream);
+        byte[] data = gzip(content(100_000));
+        subscriber.onNext(Collections.singletonList(ByteBuffer.wrap(data, 0, 1000)));
+        assertTrue(!isEnded(subscriber.inflater));
+
+        downstream.subscription.cancel();
+        assertTrue(upstream.cancelled.get());
+        assertTrue(isEnded(subscriber.inflater));
+
+        // items still in flight after the cancel are dropped
+        subscriber.onNext(Collections.singletonList(
+                ByteBuffer.wrap(data, 1000, data.length - 1000)));
+        subscriber.onComplete();
+        assertTrue(!downstream.cf.isDone());
+    }
+
+    public void testCancelWhileInflating() throws Throwable {
+        byte[] data = gzip(content(1_000_000));
+        for (int i = 0; i < 50; i++) {
+            Downstream downstream = new Downstream();
+            ResponseSubscribers.DecodingSubscriber<Void> subscriber =
+                    new ResponseSubscribers.DecodingSubscriber<>(downstream, true);
+            subscriber.onSubscribe(new Upstream());
+            List<List<ByteBuffer>> items = split(data);
+            CountDownLatch started = new CountDownLatch(1);
+            CompletableFuture<Void> feeder = CompletableFuture.runAsync(() -> {
+                for (List<ByteBuffer> item : items) {
+                    subscriber.onNext(item);
+                    started.countDown();
+                }
+                subscriber.onComplete();
+            });
+            started.await();
+            downstream.subscription.cancel();
+            try {
+                feeder.join();
+            } catch (Exception x) {
+                fail("Delivering items while cancelled failed", x);
+            }
+            assertTrue(isEnded(subscriber.inflater));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.internal.hpack.Decoder;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @summary Whitebox tests for the HPACK encoder of HTTP/2 connections: the
+ *          headers of templates are added to the dynamic table and sent as
+ *          one byte indexes from then on, other headers are not indexed.
+ */
+@Test
+public class HeaderEncoderTest {
+
+    static final String[][] TEMPLATE = {
+        { "accept", "application/json" },
+        { "x-tenant", "acme" },
+        { "authorization", "Bearer 0123456789abcdef" },
+    };
+
+    // encodes the headers as one block, indexing the template ones
+    static ByteBuffer encode(Http2Connection.HeaderEncoder encoder,
+                             String[][] headers, boolean template) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        for (String[] h : headers) {
+            if (template) {
+                encoder.indexedHeader(h[0], h[1]);
+            } else {
+                encoder.header(h[0], h[1]);
+            }
+            assertTrue(encoder.encode(buffer));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static List<String> decode(Decoder decoder, ByteBuffer block)
+            throws IOException
+    {
+        List<String> headers = new ArrayList<>();
+        decoder.decode(block, true, (n, v) -> headers.add(n + ": " + v));
+        return headers;
+    }
+
+    static List<String> expected(String[][] headers) {
+        List<String> list = new ArrayList<>();
+        for (String[] h : headers)
+            list.add(h[0] + ": " + h[1]);
+        return list;
+    }
+
+    public void testIndexing() throws Exception {
+        Http2Connection.HeaderEncoder encoder = new Http2Connection.HeaderEncoder(4096);
+        Decoder decoder = new Decoder(4096);
+
+        ByteBuffer first = encode(encoder, TEMPLATE, true);
+        assertEquals(decode(decoder, first), expected(TEMPLATE));
+        for (int i = 0; i < 3; i++) {
+            ByteBuffer next = encode(encoder, TEMPLATE, true);
+            // one byte per header
+            assertEquals(next.remaining(), TEMPLATE.length);
+            assertEquals(decode(decoder, next), expected(TEMPLATE));
+        }
+
+        // other headers are never indexed
+        String[][] other = { { "x-request-id", "42" } };
+        int size = encode(encoder, other, false).remaining();
+        ByteBuffer again = encode(encoder, other, false);
+        assertEquals(again.remaining(), size);
+    }
+
+    public void testTableSize() throws Exception {
+        Http2Connection.HeaderEncoder encoder = new Http2Connection.HeaderEncoder(4096);
+        Decoder decoder = new Decoder(4096);
+        decode(decoder, encode(encoder, TEMPLATE, true));
+        // the peer allows no dynamic table: literals from then on
+        encoder.tableSize(0);
+        ByteBuffer block = encode(encoder, TEMPLATE, true);
+        assertTrue(block.remaining() > TEMPLATE.length);
+        assertEquals(decode(decoder, block), expected(TEMPLATE));
+        block = encode(encoder, TEMPLATE, true);
+        assertTrue(block.remaining() > TEMPLATE.length);
+        assertEquals(decode(decoder, block), expected(TEMPLATE));
+    }
+
+    public void testTooLarge() throws Exception {
+        Http2Connection.HeaderEncoder encoder = new Http2Connection.HeaderEncoder(64);
+        Decoder decoder = new Decoder(64);
+        String[][] large = { { "x-large", "0123456789012345678901234567890123456789" } };
+        decode(decoder, encode(encoder, large, true));
+        // not indexed, so as not to empty the table for nothing
+        ByteBuffer block = encode(encoder, large, true);
+        int size = block.remaining();
+        assertTrue(size > 1);
+        assertEquals(decode(decoder, block), expected(large));
+        assertEquals(encode(encoder, large, true).remaining(), size);
+    }
+}
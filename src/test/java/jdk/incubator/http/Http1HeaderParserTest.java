@@ -25,6 +25,7 @@ package jdk.incubator.http;
 import java.io.ByteArrayInputStream;
 import java.net.ProtocolException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -284,6 +285,53 @@ public class Http1HeaderParserTest {
         assertEquals(decoderMap1, decoderMap2, "decoder maps not equal");
     }
 
+    @Test(dataProvider = "responses")
+    public void verifyBuffers(String respString) throws Exception {
+        byte[] bytes = respString.getBytes(US_ASCII);
+        Http1HeaderParser decoder = new Http1HeaderParser();
+        ByteBuffer b = ByteBuffer.wrap(bytes);
+        decoder.parse(b);
+        Map<String,List<String>> expected = decoder.headers().map();
+        int remaining = b.remaining();
+
+        // direct and little-endian buffers take the other word-at-a-time paths
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        ByteBuffer little = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (ByteBuffer buffer : new ByteBuffer[] { direct, little }) {
+            decoder = new Http1HeaderParser();
+            decoder.parse(buffer);
+            assertEquals(buffer.remaining(), remaining);
+            assertEquals(decoder.headers().map(), expected);
+        }
+    }
+
+    @Test
+    public void headerNames() {
+        byte[] bytes = "  Content-LENGTH X-Custom-Header".getBytes(US_ASCII);
+        String name = Http1HeaderParser.headerName(bytes, 2, 16);
+        assertEquals(name, "content-length");
+        // well-known names are shared
+        assertSame(name, Http1HeaderParser.headerName(bytes, 2, 16));
+        assertEquals(Http1HeaderParser.headerName(bytes, 17, bytes.length),
+                     "x-custom-header");
+    }
+
+    @Test
+    public void indexOf() {
+        byte[] bytes = "0123456789abcdef\r0123456\n".getBytes(US_ASCII);
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN,
+                                                 ByteOrder.LITTLE_ENDIAN }) {
+            ByteBuffer b = ByteBuffer.wrap(bytes).order(order);
+            long cr = 0x0D0D0D0D0D0D0D0DL, lf = 0x0A0A0A0A0A0A0A0AL;
+            for (int from = 0; from <= 16; from++) {
+                assertEquals(Http1HeaderParser.indexOf(b, from, bytes.length, cr, lf), 16);
+                assertEquals(Http1HeaderParser.indexOf(b, from, bytes.length, lf, lf), 24);
+                assertEquals(Http1HeaderParser.indexOf(b, from, 16, cr, lf), 16);
+            }
+        }
+    }
+
     @DataProvider(name = "errors")
     public Object[][] errors() {
         List<String> responses = new ArrayList<>();
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @summary Whitebox tests for the ordering of the addresses of a host
+ *          before connection attempts are raced (RFC 8305, section 4).
+ */
+@Test
+public class InterleaveAddressesTest {
+
+    static List<InetAddress> addresses(String... literals) throws UnknownHostException {
+        InetAddress[] addresses = new InetAddress[literals.length];
+        for (int i = 0; i < literals.length; i++) {
+            addresses[i] = InetAddress.getByName(literals[i]);
+        }
+        return Arrays.asList(addresses);
+    }
+
+    public void testSingleFamily() throws Exception {
+        List<InetAddress> v4 = addresses("10.0.0.1", "10.0.0.2", "10.0.0.3");
+        assertEquals(PlainHttpConnection.interleave(v4), v4);
+        List<InetAddress> v6 = addresses("::1", "::2");
+        assertEquals(PlainHttpConnection.interleave(v6), v6);
+        assertEquals(PlainHttpConnection.interleave(addresses()), addresses());
+    }
+
+    public void testIPv6First() throws Exception {
+        assertEquals(PlainHttpConnection.interleave(
+                addresses("::1", "::2", "::3", "10.0.0.1", "10.0.0.2")),
+                addresses("::1", "10.0.0.1", "::2", "10.0.0.2", "::3"));
+    }
+
+    public void testIPv4First() throws Exception {
+        assertEquals(PlainHttpConnection.interleave(
+                addresses("10.0.0.1", "10.0.0.2", "10.0.0.3", "::1")),
+                addresses("10.0.0.1", "::1", "10.0.0.2", "10.0.0.3"));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @summary Whitebox tests for ReceiveWindowTuner: windows grow when the
+ *          bytes received in a round trip approach them, up to the maximum
+ *          window size, and measurements stop once it is reached.
+ */
+@Test
+public class ReceiveWindowTunerTest {
+
+    static final int K = 1024;
+
+    // receives the given bytes in one measured round trip
+    static boolean roundTrip(ReceiveWindowTuner tuner, int... lengths) {
+        assertTrue(tuner.dataReceived(lengths[0]), "measurement should start");
+        for (int i = 1; i < lengths.length; i++) {
+            assertFalse(tuner.dataReceived(lengths[i]));
+        }
+        return tuner.pingAcked(50_000_000L);
+    }
+
+    public void testNoGrowthBelowThreshold() {
+        ReceiveWindowTuner tuner = new ReceiveWindowTuner(64 * K, 128 * K, K * K);
+        assertFalse(roundTrip(tuner, 16 * K, 16 * K));
+        assertEquals(tuner.streamWindowSize(), 64 * K);
+        assertEquals(tuner.connectionWindowSize(), 128 * K);
+        assertEquals(tuner.rttNanos(), 50_000_000L);
+    }
+
+    public void testStreamWindowGrows() {
+        ReceiveWindowTuner tuner = new ReceiveWindowTuner(64 * K, 128 * K, K * K);
+        // the stream window was filled in one round trip
+        assertTrue(roundTrip(tuner, 16 * K, 16 * K, 16 * K, 16 * K));
+        assertEquals(tuner.streamWindowSize(), 128 * K);
+        assertEquals(tuner.connectionWindowSize(), 128 * K);
+        // so was the new one, and the connection window
+        assertTrue(roundTrip(tuner, 64 * K, 64 * K));
+        assertEquals(tuner.streamWindowSize(), 256 * K);
+        assertEquals(tuner.connectionWindowSize(), 256 * K);
+    }
+
+    public void testCappedByMaxWindowSize() {
+        ReceiveWindowTuner tuner = new ReceiveWindowTuner(64 * K, 128 * K, 256 * K);
+        assertTrue(roundTrip(tuner, 200 * K));
+        assertEquals(tuner.streamWindowSize(), 256 * K);
+        assertEquals(tuner.connectionWindowSize(), 256 * K);
+        // nothing left to tune: no more PINGs
+        assertFalse(tuner.dataReceived(16 * K));
+        assertFalse(tuner.pingAcked(1));
+    }
+
+    public void testPingFailed() {
+        ReceiveWindowTuner tuner = new ReceiveWindowTuner(64 * K, 128 * K, K * K);
+        assertTrue(tuner.dataReceived(64 * K));
+        tuner.pingFailed();
+        assertFalse(tuner.pingAcked(1));
+        assertEquals(tuner.streamWindowSize(), 64 * K);
+        // the next DATA frame starts a new measurement
+        assertTrue(tuner.dataReceived(16 * K));
+    }
+}
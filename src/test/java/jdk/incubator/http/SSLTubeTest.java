@@ -22,8 +22,8 @@
  */
 package jdk.incubator.http;
 
+import jdk.incubator.http.internal.common.ByteBufferPool;
 import jdk.incubator.http.internal.common.FlowTube;
-import jdk.incubator.http.internal.common.SSLFlowDelegate;
 import jdk.incubator.http.internal.common.Utils;
 import jdk.testlibrary.SimpleSSLContext;
 
@@ -38,7 +38,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -69,6 +71,83 @@ public class SSLTubeTest extends AbstractSSLTubeTest {
         run(server, sslExecutor, allBytesReceived);
     }
 
+    /**
+     * Same as runWithSSLLoopackServer, but the encrypted data read back is
+     * delivered in pooled read buffers, which the SSLFlowDelegate must give
+     * back to the pool exactly once.
+     */
+    @Test
+    public void runWithPooledReadBuffers() throws IOException {
+        ExecutorService sslExecutor = Executors.newCachedThreadPool();
+        CountingPool pool = new CountingPool();
+        ByteBufferPool previous = Utils.setReadBufferPool(pool);
+        try {
+            CountDownLatch allBytesReceived = new CountDownLatch(1);
+            SSLLoopbackSubscriber server =
+                    new SSLLoopbackSubscriber((new SimpleSSLContext()).get(),
+                            sslExecutor,
+                            allBytesReceived,
+                            true);
+            server.start();
+
+            run(server, sslExecutor, allBytesReceived);
+        } finally {
+            Utils.setReadBufferPool(previous);
+        }
+        pool.check();
+    }
+
+    /**
+     * A pool of read buffers that records the buffers it hands out, and
+     * the ones recycled more than once, or without being handed out.
+     */
+    private static class CountingPool extends ByteBufferPool {
+        private final Map<ByteBuffer,Boolean> outstanding = new IdentityHashMap<>();
+        private final AtomicInteger handedOut = new AtomicInteger();
+        private final AtomicInteger unexpected = new AtomicInteger();
+
+        CountingPool() {
+            super(Utils.BUFSIZE, true, 16);
+        }
+
+        @Override
+        public ByteBuffer get() {
+            ByteBuffer b = super.get();
+            synchronized (outstanding) {
+                outstanding.put(b, Boolean.TRUE);
+            }
+            handedOut.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public void recycle(ByteBuffer buffer) {
+            synchronized (outstanding) {
+                if (outstanding.remove(buffer) == null) {
+                    unexpected.incrementAndGet();
+                    return;
+                }
+            }
+            super.recycle(buffer);
+        }
+
+        void check() {
+            if (handedOut.get() == 0) {
+                throw new RuntimeException("no pooled buffer was used");
+            }
+            if (unexpected.get() != 0) {
+                throw new RuntimeException(unexpected.get()
+                        + " buffers recycled more than once");
+            }
+            synchronized (outstanding) {
+                if (!outstanding.isEmpty()) {
+                    throw new RuntimeException(outstanding.size()
+                            + " of " + handedOut.get() + " buffers not recycled");
+                }
+            }
+        }
+    }
+
     /**
      * This is a copy of the SSLLoopbackSubscriber used in FlowTest
      */
@@ -80,10 +159,19 @@ public class SSLTubeTest extends AbstractSSLTubeTest {
         private volatile Flow.Subscription clientSubscription;
         private final SubmissionPublisher<List<ByteBuffer>> publisher;
         private final CountDownLatch allBytesReceived;
+        // whether the data read back is delivered in pooled read buffers
+        private final boolean pooled;
 
         SSLLoopbackSubscriber(SSLContext ctx,
                               ExecutorService exec,
                               CountDownLatch allBytesReceived) throws IOException {
+            this(ctx, exec, allBytesReceived, false);
+        }
+
+        SSLLoopbackSubscriber(SSLContext ctx,
+                              ExecutorService exec,
+                              CountDownLatch allBytesReceived,
+                              boolean pooled) throws IOException {
             SSLServerSocketFactory fac = ctx.getServerSocketFactory();
             SSLServerSocket serv = (SSLServerSocket) fac.createServerSocket(0);
             SSLParameters params = serv.getSSLParameters();
@@ -97,12 +185,12 @@ public class SSLTubeTest extends AbstractSSLTubeTest {
             serverSock = (SSLSocket) serv.accept();
             this.buffer = new LinkedBlockingQueue<>();
             this.allBytesReceived = allBytesReceived;
+            this.pooled = pooled;
             thread1 = new Thread(this::clientWriter, "clientWriter");
             thread2 = new Thread(this::serverLoopback, "serverLoopback");
             thread3 = new Thread(this::clientReader, "clientReader");
             publisher = new SubmissionPublisher<>(exec, Flow.defaultBufferSize(),
                     this::handlePublisherException);
-            SSLFlowDelegate.Monitor.add(this::monitor);
         }
 
         public void start() {
@@ -122,7 +210,8 @@ public class SSLTubeTest extends AbstractSSLTubeTest {
         private void clientReader() {
             try {
                 InputStream is = clientSock.getInputStream();
-                final int bufsize = randomRange(512, 16 * 1024);
+                final int bufsize = pooled ? Utils.BUFSIZE
+                                           : randomRange(512, 16 * 1024);
                 System.out.println("clientReader: bufsize = " + bufsize);
                 while (true) {
                     byte[] buf = new byte[bufsize];
@@ -138,7 +227,14 @@ public class SSLTubeTest extends AbstractSSLTubeTest {
                         Utils.close(is, clientSock);
                         return;
                     }
-                    ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+                    ByteBuffer bb;
+                    if (pooled) {
+                        bb = Utils.getReadBuffer(true);
+                        bb.put(buf, 0, n);
+                        bb.flip();
+                    } else {
+                        bb = ByteBuffer.wrap(buf, 0, n);
+                    }
                     readCount.addAndGet(n);
                     publisher.submit(java9.util.Lists.of(bb));
                 }
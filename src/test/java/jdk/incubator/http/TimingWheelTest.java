@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @summary Whitebox tests for TimingWheel: entries expire at their exact
+ *          deadline, in order, across buckets and revolutions, and
+ *          cancelled entries never expire.
+ */
+@Test
+public class TimingWheelTest {
+
+    static final class TestEntry extends TimingWheel.Entry {
+        TestEntry(long deadline) { super(deadline); }
+        @Override public String toString() { return "TestEntry(" + deadline + ")"; }
+    }
+
+    static final long TICK = 10;
+
+    // a time, aligned on a tick, after the wheel's creation
+    static long start() {
+        return (System.currentTimeMillis() / TICK + 1) * TICK;
+    }
+
+    public void testExactDeadlines() {
+        TimingWheel<TestEntry> wheel = new TimingWheel<>(TICK, 16);
+        long now = start();
+        assertEquals(wheel.nextDeadline(), -1);
+        TestEntry a = new TestEntry(now + 25);
+        TestEntry b = new TestEntry(now + 3);
+        TestEntry c = new TestEntry(now + 7);
+        assertTrue(wheel.schedule(a));
+        assertTrue(wheel.schedule(b));
+        assertTrue(wheel.schedule(c));
+        assertFalse(wheel.schedule(c));
+        assertEquals(wheel.size(), 3);
+
+        assertEquals(wheel.nextDeadline(), now + 3);
+        assertTrue(wheel.expire(now + 2).isEmpty());
+        assertEquals(wheel.expire(now + 3), listOf(b));
+        assertEquals(wheel.nextDeadline(), now + 7);
+        assertTrue(wheel.expire(now + 6).isEmpty());
+        assertEquals(wheel.expire(now + 30), listOf(c, a));
+        assertTrue(wheel.isEmpty());
+        assertEquals(wheel.nextDeadline(), -1);
+    }
+
+    public void testCancel() {
+        TimingWheel<TestEntry> wheel = new TimingWheel<>(TICK, 16);
+        long now = start();
+        TestEntry a = new TestEntry(now + 10);
+        TestEntry b = new TestEntry(now + 20);
+        TestEntry pending = new TestEntry(now + 5);
+        wheel.schedule(a);
+        wheel.schedule(b);
+        assertEquals(wheel.nextDeadline(), now + 10);
+        // cancelled before and after it was linked into its bucket
+        wheel.schedule(pending);
+        assertTrue(wheel.cancel(pending));
+        assertTrue(wheel.cancel(a));
+        assertFalse(wheel.cancel(a));
+        assertEquals(wheel.size(), 1);
+        assertEquals(wheel.expire(now + 100), listOf(b));
+        assertFalse(wheel.cancel(b));
+        assertTrue(wheel.isEmpty());
+    }
+
+    public void testRevolutions() {
+        TimingWheel<TestEntry> wheel = new TimingWheel<>(TICK, 4);
+        long now = start();
+        // 4 buckets of 10ms: these entries share buckets across revolutions
+        TestEntry near = new TestEntry(now + 15);
+        TestEntry far = new TestEntry(now + 45);
+        TestEntry farther = new TestEntry(now + 135);
+        wheel.schedule(farther);
+        wheel.schedule(far);
+        wheel.schedule(near);
+        assertEquals(wheel.nextDeadline(), now + 15);
+        assertEquals(wheel.expire(now + 15), listOf(near));
+        // far is within the next revolution
+        assertEquals(wheel.nextDeadline(), now + 45);
+        assertTrue(wheel.expire(now + 40).isEmpty());
+        assertEquals(wheel.expire(now + 60), listOf(far));
+        // farther is not: wake up at the end of the revolution instead
+        assertEquals(wheel.nextDeadline(), now + 100);
+        assertTrue(wheel.expire(now + 100).isEmpty());
+        assertEquals(wheel.nextDeadline(), now + 135);
+        // a late call expires everything that is due
+        assertEquals(wheel.expire(now + 1000), listOf(farther));
+    }
+
+    public void testOverdue() {
+        TimingWheel<TestEntry> wheel = new TimingWheel<>(TICK, 8);
+        long now = start();
+        wheel.expire(now + 50);
+        TestEntry late = new TestEntry(now);
+        wheel.schedule(late);
+        assertEquals(wheel.nextDeadline(), now);
+        assertEquals(wheel.expire(now + 50), listOf(late));
+    }
+
+    public void testRandom() {
+        Random random = new Random();
+        TimingWheel<TestEntry> wheel = new TimingWheel<>(TICK, 64);
+        long now = start();
+        List<TestEntry> expected = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            TestEntry e = new TestEntry(now + random.nextInt(5_000));
+            wheel.schedule(e);
+            if (random.nextInt(4) == 0) {
+                wheel.cancel(e);
+            } else {
+                expected.add(e);
+            }
+        }
+        expected.sort((a, b) -> Long.compare(a.deadline, b.deadline));
+        List<TestEntry> expired = new ArrayList<>();
+        long t = now;
+        long next;
+        while ((next = wheel.nextDeadline()) >= 0) {
+            assertTrue(next >= t, next + " < " + t);
+            t = next;
+            List<TestEntry> l = wheel.expire(t);
+            for (TestEntry e : l) assertTrue(e.deadline <= t);
+            expired.addAll(l);
+        }
+        assertEquals(expired.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expired.get(i).deadline, expected.get(i).deadline);
+        }
+    }
+
+    public void testConcurrentSchedule() throws Exception {
+        TimingWheel<TestEntry> wheel = new TimingWheel<>(TICK, 64);
+        long now = start();
+        int threads = 4, count = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                executor.execute(() -> {
+                    for (int j = 0; j < count; j++) {
+                        // the entries cancelled are never due
+                        boolean cancel = j % 2 == 0;
+                        TestEntry e = new TestEntry(now + j + (cancel ? count : 0));
+                        wheel.schedule(e);
+                        if (cancel) wheel.cancel(e);
+                    }
+                    done.countDown();
+                });
+            }
+            int expired = 0;
+            while (!done.await(1, TimeUnit.MILLISECONDS)) {
+                expired += wheel.expire(now + count).size();
+            }
+            expired += wheel.expire(now + count).size();
+            assertEquals(expired, threads * count / 2);
+            assertTrue(wheel.isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @SafeVarargs
+    static <T> List<T> listOf(T... items) {
+        List<T> list = new ArrayList<>();
+        for (T t : items) list.add(t);
+        return list;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http.internal.common;
+
+import java.nio.ByteBuffer;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @summary Whitebox tests for the pool of fixed size buffers used to read
+ *          from the socket of SSL connections: only buffers of the kind the
+ *          pool hands out are taken back, and no more than maxBuffers are
+ *          kept.
+ */
+@Test
+public class ByteBufferPoolTest {
+
+    static final int SIZE = 1024;
+
+    public void testGet() {
+        ByteBufferPool pool = new ByteBufferPool(SIZE, true, 4);
+        ByteBuffer b = pool.get();
+        assertTrue(b.isDirect());
+        assertEquals(b.capacity(), SIZE);
+        assertEquals(b.remaining(), SIZE);
+
+        b.put((byte) 1).flip();
+        pool.recycle(b);
+        ByteBuffer c = pool.get();
+        assertSame(c, b);
+        // handed out cleared
+        assertEquals(c.position(), 0);
+        assertEquals(c.remaining(), SIZE);
+
+        ByteBuffer h = new ByteBufferPool(SIZE, false, 4).get();
+        assertFalse(h.isDirect());
+        assertEquals(h.capacity(), SIZE);
+    }
+
+    public void testRecycleOnlyPooledKind() {
+        ByteBufferPool pool = new ByteBufferPool(SIZE, true, 4);
+        ByteBuffer heap = ByteBuffer.allocate(SIZE);
+        ByteBuffer small = ByteBuffer.allocateDirect(SIZE / 2);
+        ByteBuffer large = ByteBuffer.allocateDirect(SIZE * 2);
+        ByteBuffer readOnly = ByteBuffer.allocateDirect(SIZE).asReadOnlyBuffer();
+        for (ByteBuffer b : new ByteBuffer[] { heap, small, large, readOnly }) {
+            pool.recycle(b);
+            ByteBuffer c = pool.get();
+            assertNotSame(c, b);
+            assertTrue(c.isDirect());
+            assertEquals(c.capacity(), SIZE);
+        }
+    }
+
+    public void testMaxBuffers() {
+        ByteBufferPool pool = new ByteBufferPool(SIZE, true, 2);
+        ByteBuffer[] buffers = new ByteBuffer[3];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.get();
+        }
+        for (ByteBuffer b : buffers) {
+            pool.recycle(b);
+        }
+        // only the first two were kept
+        assertSame(pool.get(), buffers[0]);
+        assertSame(pool.get(), buffers[1]);
+        ByteBuffer c = pool.get();
+        for (ByteBuffer b : buffers) {
+            assertNotSame(c, b);
+        }
+
+        // room is made again when buffers are handed out
+        pool.recycle(buffers[2]);
+        assertSame(pool.get(), buffers[2]);
+    }
+
+    public void testReadBuffers() {
+        ByteBufferPool pool = new ByteBufferPool(Utils.BUFSIZE, true, 2);
+        ByteBufferPool previous = Utils.setReadBufferPool(pool);
+        try {
+            ByteBuffer heap = Utils.getReadBuffer(false);
+            assertFalse(heap.isDirect());
+            assertEquals(heap.capacity(), Utils.BUFSIZE);
+
+            ByteBuffer b = Utils.getReadBuffer(true);
+            assertTrue(b.isDirect());
+            assertEquals(b.capacity(), Utils.BUFSIZE);
+            Utils.recycleReadBuffer(b);
+            assertSame(Utils.getReadBuffer(true), b);
+
+            // buffers that do not come from the pool are ignored
+            Utils.recycleReadBuffer(heap);
+            assertNotSame(Utils.getReadBuffer(true), heap);
+
+            // pooling disabled
+            Utils.setReadBufferPool(null);
+            assertFalse(Utils.getReadBuffer(true).isDirect());
+            Utils.recycleReadBuffer(b);
+        } finally {
+            Utils.setReadBufferPool(previous);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.incubator.http.internal.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @summary Whitebox tests for the flat array HttpHeadersImpl: lookups are
+ *          case-insensitive and keep the order values were added in, and
+ *          the lazily built map agrees with a case-insensitive TreeMap.
+ */
+@Test
+public class HttpHeadersImplTest {
+
+    public void testLookup() {
+        HttpHeadersImpl h = new HttpHeadersImpl();
+        h.addHeader("X-Foo", "a");
+        h.addHeader("content-length", "10");
+        h.addHeader("x-foo", "b");
+        assertEquals(h.size(), 3);
+        assertEquals(h.firstValue("X-FOO"), Optional.of("a"));
+        assertEquals(h.allValues("x-Foo"), Arrays.asList("a", "b"));
+        assertEquals(h.firstValueAsLong("Content-Length").getAsLong(), 10L);
+        assertEquals(h.firstValue("missing"), Optional.empty());
+        assertTrue(h.allValues("missing").isEmpty());
+        assertThrows(UnsupportedOperationException.class,
+                     () -> h.allValues("x-foo").add("c"));
+        // entries in the order added
+        assertEquals(h.name(1), "content-length");
+        assertEquals(h.value(2), "b");
+        assertThrows(IndexOutOfBoundsException.class, () -> h.name(3));
+    }
+
+    public void testSetHeader() {
+        HttpHeadersImpl h = new HttpHeadersImpl();
+        h.addHeader("a", "1");
+        h.addHeader("b", "2");
+        h.addHeader("A", "3");
+        h.addHeader("c", "4");
+        h.setHeader("A", "5");
+        assertEquals(h.size(), 3);
+        assertEquals(h.allValues("a"), Collections.singletonList("5"));
+        assertEquals(h.allValues("c"), Collections.singletonList("4"));
+        h.setHeader("d", "6");
+        assertEquals(h.allValues("D"), Collections.singletonList("6"));
+        h.addHeader("a", "7");
+        assertEquals(h.allValues("a"), Arrays.asList("5", "7"));
+    }
+
+    public void testMap() {
+        HttpHeadersImpl h = new HttpHeadersImpl();
+        h.addHeader("Foo", "1");
+        Map<String,List<String>> m = h.map();
+        assertSame(h.map(), m);
+        assertEquals(m.get("FOO"), Collections.singletonList("1"));
+        assertThrows(UnsupportedOperationException.class,
+                     () -> h.map().put("bar", new ArrayList<>()));
+        h.addHeader("foo", "2");
+        assertNotSame(h.map(), m);
+        assertEquals(h.map().get("foo"), Arrays.asList("1", "2"));
+    }
+
+    public void testDeepCopy() {
+        HttpHeadersImpl h = new HttpHeadersImpl();
+        h.addHeader("a", "1");
+        HttpHeadersImpl copy = h.deepCopy();
+        copy.addHeader("a", "2");
+        copy.setHeader("b", "3");
+        assertEquals(h.allValues("a"), Collections.singletonList("1"));
+        assertTrue(h.allValues("b").isEmpty());
+        assertEquals(copy.allValues("a"), Arrays.asList("1", "2"));
+        assertEquals(copy.deepCopy(), copy);
+    }
+
+    public void testLowerCase() {
+        String name = "content-type";
+        assertSame(HttpHeadersImpl.lowerCase(name), name);
+        assertEquals(HttpHeadersImpl.lowerCase("Content-Type"), name);
+    }
+
+    // compares against a case-insensitive TreeMap, past a few table resizes
+    public void testRandom() {
+        long seed = new Random().nextLong();
+        Random random = new Random(seed);
+        String[] names = { "a", "B", "accept", "Accept", "ACCEPT", "x-1",
+                           "x-2", "X-3", "cookie", "via", "date", "age" };
+        for (int round = 0; round < 100; round++) {
+            HttpHeadersImpl h = new HttpHeadersImpl();
+            TreeMap<String,List<String>> expected =
+                    new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            int n = random.nextInt(64);
+            for (int i = 0; i < n; i++) {
+                String name = names[random.nextInt(names.length)];
+                String value = Integer.toString(i);
+                if (random.nextInt(8) == 0) {
+                    h.setHeader(name, value);
+                    expected.remove(name);
+                    expected.put(name, new ArrayList<>(Collections.singletonList(value)));
+                } else {
+                    h.addHeader(name, value);
+                    expected.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+                }
+            }
+            assertEquals(h.map(), expected, "seed " + seed);
+            for (String name : names) {
+                List<String> values = expected.getOrDefault(name, Collections.emptyList());
+                assertEquals(h.allValues(name), values, "seed " + seed);
+            }
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.testng.annotations.Test;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.util.Random;
 import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -337,6 +338,12 @@ public final class HuffmanTest {
             // It's a lot more visual to compare char as codes rather than
             // characters (as some of them might not be visible)
             assertEquals(actual.charAt(0), expected);
+
+            StringBuilder fromTable = new StringBuilder();
+            new Huffman.TableReader().read(ByteBuffer.wrap(bytes), fromTable,
+                                           false, true);
+            assertEquals(fromTable.toString(), actual.toString(),
+                         "ascii: " + ascii);
             i++;
         }
         assertEquals(i, 257); // 256 + EOS
@@ -554,6 +561,68 @@ public final class HuffmanTest {
         TestHelper.assertExceptionMessageContains(e, "char");
     }
 
+    @Test
+    public void table_reader_matches_reader() {
+        Random random = new Random();
+        long seed = random.nextLong();
+        random.setSeed(seed);
+        for (int i = 0; i < 10_000; i++) {
+            byte[] bytes;
+            if (random.nextBoolean()) {
+                // valid: encode random symbols
+                StringBuilder sb = new StringBuilder();
+                int len = random.nextInt(64);
+                for (int j = 0; j < len; j++) {
+                    sb.append((char) random.nextInt(256));
+                }
+                ByteBuffer b = ByteBuffer.allocate(
+                        Huffman.INSTANCE.lengthOf(sb));
+                assertTrue(new Huffman.Writer().from(sb, 0, sb.length())
+                                   .write(b));
+                bytes = b.array();
+            } else {
+                // most likely invalid: random bytes, mostly ones
+                bytes = new byte[random.nextInt(16)];
+                random.nextBytes(bytes);
+                for (int j = 0; j < bytes.length; j++) {
+                    if (random.nextBoolean()) bytes[j] |= 0xf0;
+                }
+            }
+            int split = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+            boolean reportEOS = random.nextBoolean();
+            String expected = decode(new Huffman.Reader(), bytes, split,
+                                     reportEOS);
+            String actual = decode(new Huffman.TableReader(), bytes, split,
+                                   reportEOS);
+            assertEquals(actual, expected, "seed=" + seed
+                    + ", input=" + SpecHelper.toHexdump(ByteBuffer.wrap(bytes))
+                    + ", split=" + split);
+        }
+    }
+
+    // Decodes bytes fed in two chunks, returning the decoded string, or the
+    // failure, together with the number of bytes consumed.
+    private static String decode(Object reader, byte[] bytes, int split,
+                                 boolean reportEOS) {
+        ByteBuffer first = ByteBuffer.wrap(bytes, 0, split);
+        ByteBuffer second = ByteBuffer.wrap(bytes, split, bytes.length - split);
+        StringBuilder actual = new StringBuilder();
+        try {
+            if (reader instanceof Huffman.Reader) {
+                Huffman.Reader r = (Huffman.Reader) reader;
+                r.read(first, actual, reportEOS, false);
+                r.read(second, actual, reportEOS, true);
+            } else {
+                Huffman.TableReader r = (Huffman.TableReader) reader;
+                r.read(first, actual, reportEOS, false);
+                r.read(second, actual, reportEOS, true);
+            }
+            return "ok: " + actual;
+        } catch (IOException e) {
+            return "failed: " + e.getMessage() + ", after: " + actual;
+        }
+    }
+
     private static void read(String hexdump, String decoded) {
         ByteBuffer source = SpecHelper.toBytes(hexdump);
         Appendable actual = new StringBuilder();
@@ -563,6 +632,15 @@ public final class HuffmanTest {
             throw new UncheckedIOException(e);
         }
         assertEquals(actual.toString(), decoded);
+
+        source = SpecHelper.toBytes(hexdump);
+        actual = new StringBuilder();
+        try {
+            new Huffman.TableReader().read(source, actual, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        assertEquals(actual.toString(), decoded);
     }
 
     private static void write(String decoded, String hexdump) {
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Downloads bodies of various sizes with BodyHandler.asFileAsync,
+ *          with and without preallocation, fixed length and chunked.
+ * @modules jdk.incubator.httpclient java.logging jdk.httpserver
+ * @run testng/othervm AsyncFileDownloadTest
+ */
+package tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class AsyncFileDownloadTest {
+
+    HttpServer server;
+    ExecutorService executor;
+    String base;
+    HttpClient client;
+
+    @BeforeClass
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/", AsyncFileDownloadTest::handle);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        client = HttpClient.newBuilder().version(HTTP_1_1).build();
+    }
+
+    @AfterClass
+    public void teardown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    /** Serves /fixed/<size> with a Content-Length, /chunked/<size> without. */
+    static void handle(HttpExchange t) throws IOException {
+        String[] path = t.getRequestURI().getPath().split("/");
+        boolean chunked = path[1].equals("chunked");
+        byte[] content = content(Integer.parseInt(path[2]));
+        t.getRequestBody().close();
+        t.sendResponseHeaders(200, chunked ? 0 : content.length);
+        try (OutputStream os = t.getResponseBody()) {
+            for (int off = 0; off < content.length; off += 1000) {
+                os.write(content, off, Math.min(1000, content.length - off));
+            }
+        }
+    }
+
+    @DataProvider(name = "downloads")
+    public Object[][] downloads() {
+        return new Object[][] {
+            { "fixed",   1,               true  },
+            { "fixed",   64 * 1024 + 7,   true  },
+            { "fixed",   4 * 1024 * 1024, true  },
+            { "fixed",   4 * 1024 * 1024, false },
+            { "chunked", 64 * 1024 + 7,   true  },
+            { "chunked", 4 * 1024 * 1024, false },
+        };
+    }
+
+    @Test(dataProvider = "downloads")
+    public void testDownload(String kind, int size, boolean preallocate)
+        throws Exception
+    {
+        Path file = Files.createTempFile("download", ".bin");
+        try {
+            // longer than any body, to check that it gets replaced
+            Files.write(file, new byte[size + 100]);
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create(base + kind + "/" + size)).build();
+            HttpResponse<Path> response = client.send(request,
+                    HttpResponse.BodyHandler.asFileAsync(file, preallocate,
+                            CREATE, WRITE, TRUNCATE_EXISTING));
+            assertEquals(response.statusCode(), 200);
+            assertEquals(response.body(), file);
+            assertTrue(Arrays.equals(Files.readAllBytes(file), content(size)),
+                       "unexpected file content");
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Checks the counters and gauges of HttpClient.metrics(), and that
+ *          they can be exposed as an MXBean.
+ * @modules jdk.incubator.httpclient java.logging jdk.httpserver
+ * @run testng/othervm ClientMetricsTest
+ */
+package tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.LongStream;
+import javax.management.StandardMBean;
+import javax.management.openmbean.TabularData;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpClientMetrics;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import tests.http2.server.Http2EchoHandler;
+import tests.http2.server.Http2TestServer;
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static jdk.incubator.http.HttpClient.Version.HTTP_2;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ClientMetricsTest {
+
+    static final byte[] BODY = new byte[10_000];
+
+    HttpServer server;
+    Http2TestServer server2;
+    ExecutorService executor;
+    URI uri;
+    URI uri2;
+    String origin;
+    String origin2;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/", ClientMetricsTest::handle);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        origin = "127.0.0.1:" + server.getAddress().getPort();
+        uri = URI.create("http://" + origin + "/");
+
+        server2 = new Http2TestServer(false, 0, executor, null);
+        server2.addHandler(new Http2EchoHandler(), "/");
+        server2.start();
+        origin2 = "127.0.0.1:" + server2.getAddress().getPort();
+        uri2 = URI.create("http://" + origin2 + "/");
+    }
+
+    @AfterClass
+    public void teardown() {
+        server.stop(0);
+        server2.stop();
+        executor.shutdownNow();
+    }
+
+    static void handle(HttpExchange t) throws IOException {
+        try (InputStream is = t.getRequestBody()) {
+            while (is.read() != -1);
+        }
+        t.sendResponseHeaders(200, BODY.length);
+        try (OutputStream os = t.getResponseBody()) {
+            os.write(BODY);
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HTTP_1_1).build();
+        HttpClientMetrics metrics = client.metrics();
+        assertEquals(metrics.getCompletedRequests(), 0);
+        assertEquals(metrics.getLatencyHistogram().length,
+                     metrics.getLatencyBuckets().length + 1);
+
+        int count = 3;
+        for (int i = 0; i < count; i++) {
+            HttpResponse<byte[]> response = client.send(
+                    HttpRequest.newBuilder(uri)
+                            .POST(HttpRequest.BodyPublisher.fromString("hello"))
+                            .build(),
+                    HttpResponse.BodyHandler.asByteArray());
+            assertEquals(response.statusCode(), 200);
+            assertEquals(response.body().length, BODY.length);
+        }
+
+        assertEquals(metrics.getCompletedRequests(), count);
+        assertEquals(metrics.getFailedRequests(), 0);
+        assertEquals(LongStream.of(metrics.getLatencyHistogram()).sum(), count);
+        // one connection, reused by the following requests
+        assertEquals(metrics.getPoolMisses(), 1);
+        assertEquals(metrics.getPoolHits(), count - 1);
+        assertTrue(metrics.getBytesRead() > count * BODY.length,
+                   "read: " + metrics.getBytesRead());
+        assertTrue(metrics.getBytesWritten() > count * "hello".length(),
+                   "written: " + metrics.getBytesWritten());
+        assertEquals(metrics.getActiveStreams(), 0);
+
+        Map<String,Integer> open = metrics.getOpenConnections();
+        assertEquals(open.get(origin), Integer.valueOf(1), open.toString());
+        // the connection is returned to the pool once the body is read
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!metrics.getIdleConnections().containsKey(origin)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(metrics.getIdleConnections().get(origin), Integer.valueOf(1));
+    }
+
+    @Test
+    public void testHttp2() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HTTP_2).build();
+        HttpClientMetrics metrics = client.metrics();
+        int count = 3;
+        for (int i = 0; i < count; i++) {
+            HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(uri2)
+                            .POST(HttpRequest.BodyPublisher.fromString("hello"))
+                            .build(),
+                    HttpResponse.BodyHandler.asString());
+            assertEquals(response.statusCode(), 200);
+            assertEquals(response.version(), HTTP_2);
+        }
+        assertEquals(metrics.getCompletedRequests(), count);
+        // the connection upgraded to h2c is counted once, as an HTTP/2
+        // connection
+        Map<String,Integer> open = metrics.getOpenConnections();
+        assertEquals(open.get(origin2), Integer.valueOf(1), open.toString());
+        assertEquals(metrics.getIdleConnections().get(origin2), null);
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HTTP_1_1).build();
+        // nothing listens on the port of a stopped server
+        HttpServer stopped = HttpServer.create(new InetSocketAddress(0), 0);
+        int port = stopped.getAddress().getPort();
+        stopped.stop(0);
+        URI closed = URI.create("http://127.0.0.1:" + port + "/");
+        try {
+            client.send(HttpRequest.newBuilder(closed).build(),
+                        HttpResponse.BodyHandler.discard(null));
+        } catch (IOException expected) {
+            System.out.println("Got expected: " + expected);
+        }
+        assertEquals(client.metrics().getFailedRequests(), 1);
+        assertEquals(client.metrics().getCompletedRequests(), 0);
+    }
+
+    @Test
+    public void testMXBean() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HTTP_1_1).build();
+        client.send(HttpRequest.newBuilder(uri).build(),
+                    HttpResponse.BodyHandler.discard(null));
+        StandardMBean mbean = new StandardMBean(client.metrics(),
+                                                HttpClientMetrics.class, true);
+        assertEquals(mbean.getAttribute("CompletedRequests"), 1L);
+        TabularData open = (TabularData) mbean.getAttribute("OpenConnections");
+        assertEquals(open.size(), 1);
+        long[] histogram = (long[]) mbean.getAttribute("LatencyHistogram");
+        assertEquals(LongStream.of(histogram).sum(), 1);
+    }
+}
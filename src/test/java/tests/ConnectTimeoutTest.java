@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Checks that connection attempts to the addresses of a host are
+ *          raced, and that the connect timeout of the client is enforced.
+ * @modules jdk.incubator.httpclient jdk.httpserver
+ * @run testng/othervm ConnectTimeoutTest
+ */
+package tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpConnectTimeoutException;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import java9.util.concurrent.CompletableFuture;
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ConnectTimeoutTest {
+
+    // only known to the resolvers of this test
+    static final String HOST = "connect.test";
+
+    HttpServer server;
+    ExecutorService executor;
+    URI uri;
+    // a listening socket whose accept queue is full: further connection
+    // attempts to it hang, unless the platform rejects them
+    ServerSocket blackhole;
+    final List<Socket> backlog = new ArrayList<>();
+
+    @BeforeClass
+    public void setup() throws IOException {
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        server = HttpServer.create(new InetSocketAddress(loopback, 0), 0);
+        server.createContext("/", ConnectTimeoutTest::handle);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        uri = URI.create("http://" + HOST + ":" + server.getAddress().getPort() + "/");
+
+        blackhole = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.2"));
+        for (int i = 0; i < 8; i++) {
+            Socket s = new Socket();
+            backlog.add(s);
+            try {
+                s.connect(blackhole.getLocalSocketAddress(), 200);
+            } catch (IOException x) {
+                // the queue is full
+                break;
+            }
+        }
+    }
+
+    @AfterClass
+    public void teardown() throws IOException {
+        server.stop(0);
+        executor.shutdownNow();
+        for (Socket s : backlog) s.close();
+        blackhole.close();
+    }
+
+    static void handle(HttpExchange t) throws IOException {
+        try (InputStream is = t.getRequestBody()) {
+            while (is.read() != -1);
+        }
+        t.sendResponseHeaders(200, -1);
+        t.close();
+    }
+
+    static HttpClient.Resolver resolver(InetAddress... addresses) {
+        return host -> CompletableFuture.completedFuture(Arrays.asList(addresses));
+    }
+
+    InetSocketAddress blackhole() {
+        try (Socket s = new Socket()) {
+            s.connect(blackhole.getLocalSocketAddress(), 500);
+        } catch (IOException x) {
+            return (InetSocketAddress) blackhole.getLocalSocketAddress();
+        }
+        throw new SkipException("connection attempts are not blocked");
+    }
+
+    @Test
+    public void testResolutionTimeout() throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(500))
+                .resolver(host -> new CompletableFuture<>())
+                .build();
+        long start = System.nanoTime();
+        try {
+            client.send(HttpRequest.newBuilder(uri).build(),
+                        HttpResponse.BodyHandler.discard(null));
+            fail("Expected HttpConnectTimeoutException");
+        } catch (HttpConnectTimeoutException expected) {
+            System.out.println("Got expected: " + expected);
+        }
+        long elapsed = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        assertTrue(elapsed >= 500, "elapsed: " + elapsed);
+    }
+
+    @Test
+    public void testConnectTimeout() throws Exception {
+        InetSocketAddress blackhole = blackhole();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(500))
+                .build();
+        URI unreachable = URI.create("http://127.0.0.2:" + blackhole.getPort() + "/");
+        CompletableFuture<HttpResponse<Void>> cf = client.sendAsync(
+                HttpRequest.newBuilder(unreachable).build(),
+                HttpResponse.BodyHandler.discard(null));
+        try {
+            cf.get();
+            fail("Expected HttpConnectTimeoutException");
+        } catch (ExecutionException expected) {
+            System.out.println("Got expected: " + expected);
+            assertTrue(expected.getCause() instanceof HttpConnectTimeoutException,
+                       "unexpected cause: " + expected.getCause());
+        }
+    }
+
+    @Test
+    public void testRace() throws Exception {
+        InetSocketAddress blackhole = blackhole();
+        // the port of the server does not accept connections on the first
+        // address: the second address is tried after the attempt delay
+        HttpClient client = HttpClient.newBuilder()
+                .version(HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .resolver(resolver(blackhole.getAddress(),
+                                   InetAddress.getByName("127.0.0.1")))
+                .build();
+        URI race = URI.create("http://" + HOST + ":" + server.getAddress().getPort() + "/");
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(race).build(),
+                                                  HttpResponse.BodyHandler.discard(null));
+        assertEquals(response.statusCode(), 200);
+    }
+}
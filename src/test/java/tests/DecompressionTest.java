@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Checks that a client built with decompression(true) asks for
+ *          compressed bodies and inflates them, unless the request sets
+ *          its own Accept-Encoding.
+ * @modules jdk.incubator.httpclient java.logging jdk.httpserver
+ * @run testng/othervm DecompressionTest
+ */
+package tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static org.testng.Assert.assertEquals;
+
+public class DecompressionTest {
+
+    static final String BODY;
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            sb.append("line ").append(i).append('\n');
+        }
+        BODY = sb.toString();
+    }
+
+    HttpServer server;
+    ExecutorService executor;
+    URI uri;
+
+    @BeforeClass
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/", DecompressionTest::handle);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    }
+
+    @AfterClass
+    public void teardown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /** Encodes the body with the encoding asked for in X-Encoding, or else
+     * with the first encoding accepted, and echoes Accept-Encoding back. */
+    static void handle(HttpExchange t) throws IOException {
+        t.getRequestBody().close();
+        String accept = t.getRequestHeaders().getFirst("Accept-Encoding");
+        String encoding = accept == null ? "identity" : accept.split(",")[0].trim();
+        if (accept != null && t.getRequestHeaders().containsKey("X-Encoding")) {
+            encoding = t.getRequestHeaders().getFirst("X-Encoding");
+        }
+        t.getResponseHeaders().set("X-Accept-Encoding", String.valueOf(accept));
+        if (!encoding.equals("identity")) {
+            t.getResponseHeaders().set("Content-Encoding", encoding);
+        }
+        t.sendResponseHeaders(200, 0);
+        OutputStream os = t.getResponseBody();
+        if (encoding.equals("gzip")) {
+            os = new GZIPOutputStream(os);
+        } else if (encoding.equals("deflate")) {
+            os = new DeflaterOutputStream(os);
+        }
+        try (OutputStream out = os) {
+            out.write(BODY.getBytes("US-ASCII"));
+        }
+    }
+
+    @Test
+    public void testDecompression() throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HTTP_1_1)
+                .decompression(true)
+                .build();
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandler.asString());
+        assertEquals(response.headers().firstValue("X-Accept-Encoding").get(),
+                     "gzip, deflate");
+        assertEquals(response.headers().firstValue("Content-Encoding").get(), "gzip");
+        assertEquals(response.body(), BODY);
+
+        // deflate is decoded as well
+        response = client.send(HttpRequest.newBuilder(uri)
+                        .header("X-Encoding", "deflate").build(),
+                HttpResponse.BodyHandler.asString());
+        assertEquals(response.headers().firstValue("Content-Encoding").get(), "deflate");
+        assertEquals(response.body(), BODY);
+
+        // a request which chooses its own encodings is left alone
+        HttpResponse<byte[]> raw = client.send(HttpRequest.newBuilder(uri)
+                        .header("Accept-Encoding", "gzip").build(),
+                HttpResponse.BodyHandler.asByteArray());
+        assertEquals(raw.headers().firstValue("Content-Encoding").get(), "gzip");
+        assertEquals(raw.body()[0], (byte) 0x1f);
+    }
+
+    @Test
+    public void testNoDecompression() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HTTP_1_1).build();
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandler.asString());
+        assertEquals(response.headers().firstValue("X-Accept-Encoding").get(), "null");
+        assertEquals(response.body(), BODY);
+    }
+}
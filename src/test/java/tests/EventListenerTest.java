@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Checks the order of the events notified to an
+ *          HttpClient.EventListener, and that a failing listener does not
+ *          affect the exchange.
+ * @modules jdk.incubator.httpclient jdk.httpserver
+ * @run testng/othervm EventListenerTest
+ */
+package tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class EventListenerTest {
+
+    static final String BODY = "Hello world";
+
+    HttpServer server;
+    ExecutorService executor;
+    URI uri;
+
+    @BeforeClass
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/", EventListenerTest::handle);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/");
+    }
+
+    @AfterClass
+    public void teardown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    static void handle(HttpExchange t) throws IOException {
+        try (InputStream is = t.getRequestBody()) {
+            while (is.read() != -1);
+        }
+        byte[] body = BODY.getBytes("US-ASCII");
+        t.sendResponseHeaders(200, body.length);
+        try (OutputStream os = t.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    static class Recorder implements HttpClient.EventListener {
+        final List<String> events = new ArrayList<>();
+        final List<Long> times = new ArrayList<>();
+        volatile Throwable failure;
+
+        synchronized void record(String event, long nanoTime) {
+            events.add(event);
+            times.add(nanoTime);
+        }
+
+        synchronized List<String> events() {
+            return new ArrayList<>(events);
+        }
+
+        synchronized void clear() {
+            events.clear();
+            times.clear();
+        }
+
+        synchronized void checkMonotonic() {
+            for (int i = 1; i < times.size(); i++) {
+                assertTrue(times.get(i - 1) <= times.get(i),
+                           events.get(i - 1) + " after " + events.get(i));
+            }
+        }
+
+        @Override public void requestStart(HttpRequest r, long t) {
+            record("requestStart", t);
+        }
+        @Override public void dnsStart(HttpRequest r, String host, long t) {
+            record("dnsStart", t);
+        }
+        @Override public void dnsEnd(HttpRequest r, String host, long t) {
+            record("dnsEnd", t);
+        }
+        @Override public void connectionLookup(HttpRequest r, boolean reused, long t) {
+            record(reused ? "reused" : "notReused", t);
+        }
+        @Override public void connectStart(HttpRequest r, InetSocketAddress a, long t) {
+            record("connectStart", t);
+        }
+        @Override public void connectEnd(HttpRequest r, Throwable x, long t) {
+            record("connectEnd", t);
+        }
+        @Override public void requestHeadersSent(HttpRequest r, long t) {
+            record("requestHeadersSent", t);
+        }
+        @Override public void requestBodySent(HttpRequest r, long t) {
+            record("requestBodySent", t);
+        }
+        @Override public void responseHeadersStart(HttpRequest r, long t) {
+            record("responseHeadersStart", t);
+        }
+        @Override public void responseHeadersEnd(HttpRequest r, int status, long t) {
+            record("responseHeadersEnd:" + status, t);
+        }
+        @Override public void responseBodyEnd(HttpRequest r, Throwable x, long t) {
+            record("responseBodyEnd", t);
+        }
+        @Override public void requestEnd(HttpRequest r, Throwable x, long t) {
+            failure = x;
+            record("requestEnd", t);
+        }
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+        Recorder recorder = new Recorder();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HTTP_1_1)
+                .eventListener(recorder)
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .POST(HttpRequest.BodyPublisher.fromString("hello"))
+                .build();
+
+        HttpResponse<String> response =
+                client.send(request, HttpResponse.BodyHandler.asString());
+        assertEquals(response.body(), BODY);
+        waitFor(recorder, "requestEnd");
+        assertEquals(recorder.events(), Arrays.asList(
+                "requestStart", "dnsStart", "dnsEnd", "notReused",
+                "connectStart", "connectEnd",
+                "requestHeadersSent", "requestBodySent",
+                "responseHeadersStart", "responseHeadersEnd:200",
+                "responseBodyEnd", "requestEnd"));
+        assertNull(recorder.failure);
+        recorder.checkMonotonic();
+
+        // the second request reuses the connection
+        recorder.clear();
+        response = client.send(request, HttpResponse.BodyHandler.asString());
+        assertEquals(response.body(), BODY);
+        waitFor(recorder, "requestEnd");
+        assertEquals(recorder.events(), Arrays.asList(
+                "requestStart", "dnsStart", "dnsEnd", "reused",
+                "requestHeadersSent", "requestBodySent",
+                "responseHeadersStart", "responseHeadersEnd:200",
+                "responseBodyEnd", "requestEnd"));
+        recorder.checkMonotonic();
+    }
+
+    @Test
+    public void testConnectFailure() throws Exception {
+        Recorder recorder = new Recorder();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HTTP_1_1)
+                .eventListener(recorder)
+                .build();
+        // nothing listens on the port of a stopped server
+        HttpServer stopped = HttpServer.create(new InetSocketAddress(0), 0);
+        int port = stopped.getAddress().getPort();
+        stopped.stop(0);
+        try {
+            client.send(HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + port + "/")).build(),
+                        HttpResponse.BodyHandler.discard(null));
+        } catch (IOException expected) {
+            System.out.println("Got expected: " + expected);
+        }
+        waitFor(recorder, "requestEnd");
+        List<String> events = recorder.events();
+        assertTrue(events.contains("connectEnd"), events.toString());
+        assertTrue(recorder.failure instanceof IOException,
+                   String.valueOf(recorder.failure));
+    }
+
+    @Test
+    public void testFailingListener() throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HTTP_1_1)
+                .eventListener(new HttpClient.EventListener() {
+                    @Override
+                    public void requestStart(HttpRequest r, long t) {
+                        throw new IllegalStateException("requestStart");
+                    }
+                    @Override
+                    public void responseHeadersEnd(HttpRequest r, int s, long t) {
+                        throw new IllegalStateException("responseHeadersEnd");
+                    }
+                })
+                .build();
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandler.asString());
+        assertEquals(response.statusCode(), 200);
+        assertEquals(response.body(), BODY);
+    }
+
+    // requestEnd may be notified after send returns
+    static void waitFor(Recorder recorder, String event) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!recorder.events().contains(event)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
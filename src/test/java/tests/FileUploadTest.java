@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Uploads files over plain HTTP/1.1, where the body is transferred
+ *          straight from the file to the socket, and checks that the server
+ *          receives exactly the file content, also when a connection is reused.
+ * @modules jdk.incubator.httpclient java.logging jdk.httpserver
+ * @run testng/othervm FileUploadTest
+ */
+package tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static org.testng.Assert.assertEquals;
+
+public class FileUploadTest {
+
+    HttpServer server;
+    ExecutorService executor;
+    URI uri;
+    HttpClient client;
+
+    @BeforeClass
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/upload", FileUploadTest::handle);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/upload");
+        client = HttpClient.newBuilder().version(HTTP_1_1).build();
+    }
+
+    @AfterClass
+    public void teardown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /** Replies with the length and the CRC32 of the request body. */
+    static void handle(HttpExchange t) throws IOException {
+        CRC32 crc = new CRC32();
+        long length = 0;
+        try (InputStream is = t.getRequestBody()) {
+            // give the client a chance to fill its send buffer
+            Thread.sleep(100);
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = is.read(buf)) != -1) {
+                crc.update(buf, 0, n);
+                length += n;
+            }
+        } catch (InterruptedException x) {
+            throw new IOException(x);
+        }
+        byte[] reply = (length + ":" + crc.getValue()).getBytes("US-ASCII");
+        t.sendResponseHeaders(200, reply.length);
+        try (OutputStream os = t.getResponseBody()) {
+            os.write(reply);
+        }
+    }
+
+    @DataProvider(name = "sizes")
+    public Object[][] sizes() {
+        return new Object[][] { { 1 }, { 16 * 1024 + 1 }, { 8 * 1024 * 1024 } };
+    }
+
+    @Test(dataProvider = "sizes")
+    public void testUpload(int size) throws Exception {
+        Path file = Files.createTempFile("upload", ".bin");
+        try {
+            byte[] content = new byte[size];
+            new Random(size).nextBytes(content);
+            Files.write(file, content);
+            CRC32 crc = new CRC32();
+            crc.update(content, 0, content.length);
+            String expected = size + ":" + crc.getValue();
+
+            // twice, so that the second upload reuses the pooled connection
+            for (int i = 0; i < 2; i++) {
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                        .POST(HttpRequest.BodyPublisher.fromFile(file))
+                        .build();
+                HttpResponse<String> response =
+                        client.send(request, HttpResponse.BodyHandler.asString());
+                assertEquals(response.statusCode(), 200);
+                assertEquals(response.body(), expected);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -28,6 +28,8 @@ import java.net.CookieHandler;
 import java.net.CookieManager;
 import java.net.InetSocketAddress;
 import java.net.ProxySelector;
+import java.net.URI;
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.Executor;
 import javax.net.ssl.SSLContext;
@@ -64,6 +66,7 @@ public class HttpClientBuilderTest {
             assertFalse(client.authenticator().isPresent());
             assertFalse(client.cookieHandler().isPresent());
             assertFalse(client.executor().isPresent());
+            assertFalse(client.connectTimeout().isPresent());
             assertFalse(client.proxy().isPresent());
             assertTrue(client.sslParameters() != null);
             assertTrue(client.followRedirects().equals(HttpClient.Redirect.NEVER));
@@ -78,6 +81,7 @@ public class HttpClientBuilderTest {
         assertThrows(NullPointerException.class, () -> builder.authenticator(null));
         assertThrows(NullPointerException.class, () -> builder.cookieHandler(null));
         assertThrows(NullPointerException.class, () -> builder.executor(null));
+        assertThrows(NullPointerException.class, () -> builder.connectTimeout(null));
         assertThrows(NullPointerException.class, () -> builder.proxy(null));
         assertThrows(NullPointerException.class, () -> builder.sslParameters(null));
         assertThrows(NullPointerException.class, () -> builder.followRedirects(null));
@@ -117,6 +121,20 @@ public class HttpClientBuilderTest {
         assertTrue(builder.build().cookieHandler().get() == c);
     }
 
+    @Test
+    public void testConnectTimeout() {
+        HttpClient.Builder builder = HttpClient.newBuilder();
+        Duration a = Duration.ofSeconds(5);
+        builder.connectTimeout(a);
+        assertTrue(builder.build().connectTimeout().get() == a);
+        Duration b = Duration.ofMillis(1);
+        builder.connectTimeout(b);
+        assertTrue(builder.build().connectTimeout().get() == b);
+        assertThrows(IllegalArgumentException.class, () -> builder.connectTimeout(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> builder.connectTimeout(Duration.ofSeconds(-1)));
+        assertTrue(builder.build().connectTimeout().get() == b);
+    }
+
     static class TestExecutor implements Executor {
         public void execute(Runnable r) { }
     }
@@ -235,6 +253,35 @@ public class HttpClientBuilderTest {
         builder.build();
     }
 
+    @Test
+    public void testSelectorThreads() {
+        HttpClient.Builder builder = HttpClient.newBuilder();
+        assertThrows(IllegalArgumentException.class, () -> builder.selectorThreads(-1));
+        assertThrows(IllegalArgumentException.class, () -> builder.selectorThreads(0));
+
+        builder.selectorThreads(1);
+        builder.build();
+        builder.selectorThreads(4);
+        builder.build();
+    }
+
+    @Test
+    public void testPipelining() {
+        HttpClient.Builder builder = HttpClient.newBuilder();
+        URI origin = URI.create("http://127.0.0.1:8080/");
+        assertThrows(NullPointerException.class, () -> builder.pipelining(null, 2));
+        assertThrows(IllegalArgumentException.class, () -> builder.pipelining(origin, 0));
+        assertThrows(IllegalArgumentException.class,
+                     () -> builder.pipelining(URI.create("ftp://127.0.0.1/"), 2));
+        assertThrows(IllegalArgumentException.class,
+                     () -> builder.pipelining(URI.create("/relative"), 2));
+
+        builder.pipelining(origin, 1);
+        builder.build();
+        builder.pipelining(URI.create("https://example.com"), 8);
+        builder.build();
+    }
+
 
     /* ---- standalone entry point ---- */
 
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Checks that HTTP/1.1 requests to an origin with pipelining
+ *          enabled are sent on a busy connection, that their responses are
+ *          matched in order, that only idempotent requests are pipelined,
+ *          and that the client falls back to one request at a time after
+ *          a failure.
+ * @modules jdk.incubator.httpclient
+ * @run testng/othervm PipeliningTest
+ */
+package tests;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import java9.util.concurrent.CompletableFuture;
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+
+public class PipeliningTest {
+
+    /**
+     * A server that answers the requests of a connection in batches: it
+     * waits until it has {@code batch} requests, or until no request has
+     * come for a while, and then writes all the responses at once, so that
+     * they are read together by the client. Odd responses are chunked.
+     * If {@code failFirst}, the first connection is closed after the first
+     * response of its first batch. If {@code closeFirst}, that response
+     * also carries {@code Connection: close}.
+     */
+    static final class Server implements Closeable {
+        static final int IDLE = 1000;
+        final ServerSocket ss;
+        final int batch;
+        final boolean failFirst;
+        final boolean closeFirst;
+        final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        final List<List<String>> batches = new CopyOnWriteArrayList<>();
+        volatile int connections;
+
+        Server(int batch, boolean failFirst) throws IOException {
+            this(batch, failFirst, false);
+        }
+
+        Server(int batch, boolean failFirst, boolean closeFirst) throws IOException {
+            this.batch = batch;
+            this.failFirst = failFirst || closeFirst;
+            this.closeFirst = closeFirst;
+            ss = new ServerSocket();
+            ss.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            Thread t = new Thread(this::accept, "PipeliningTest-accept");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        URI uri(String path) {
+            return URI.create("http://127.0.0.1:" + ss.getLocalPort() + path);
+        }
+
+        void accept() {
+            try {
+                while (true) {
+                    Socket s = ss.accept();
+                    int index = connections++;
+                    Thread t = new Thread(() -> serve(s, index));
+                    t.setDaemon(true);
+                    t.start();
+                }
+            } catch (IOException closed) { }
+        }
+
+        void serve(Socket s, int index) {
+            try (Socket socket = s) {
+                socket.setSoTimeout(IDLE);
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                List<String> paths = new ArrayList<>();
+                while (true) {
+                    String path = null;
+                    boolean idle = false;
+                    try {
+                        path = readRequest(in);
+                        if (path == null) return;
+                        paths.add(path);
+                        received.add(path);
+                    } catch (SocketTimeoutException x) {
+                        idle = true;
+                    }
+                    if (paths.size() < batch && !(idle && !paths.isEmpty())) {
+                        continue;
+                    }
+                    batches.add(new ArrayList<>(paths));
+                    boolean fail = failFirst && index == 0;
+                    ByteArrayOutputStream responses = new ByteArrayOutputStream();
+                    for (int i = 0; i < (fail ? 1 : paths.size()); i++) {
+                        responses.write(response(paths.get(i), i % 2 == 1,
+                                                 fail && closeFirst));
+                    }
+                    out.write(responses.toByteArray());
+                    out.flush();
+                    paths.clear();
+                    if (fail) return;
+                }
+            } catch (IOException x) {
+                System.out.println("Server: " + x);
+            }
+        }
+
+        // Returns the path of the next request, or null at EOF
+        static String readRequest(InputStream in) throws IOException {
+            String line = readLine(in);
+            if (line == null) return null;
+            String path = line.split(" ")[1];
+            int length = 0;
+            while (!(line = readLine(in)).isEmpty()) {
+                if (line.toLowerCase().startsWith("content-length:")) {
+                    length = Integer.parseInt(line.substring(15).trim());
+                }
+            }
+            for (int i = 0; i < length; i++) in.read();
+            return path;
+        }
+
+        static String readLine(InputStream in) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c == -1) return null;
+                if (c != '\r') sb.append((char) c);
+            }
+            return sb.toString();
+        }
+
+        static byte[] response(String body, boolean chunked, boolean close) {
+            String status = "HTTP/1.1 200 OK\r\n"
+                    + (close ? "Connection: close\r\n" : "");
+            String r = chunked
+                    ? status + "Transfer-Encoding: chunked\r\n\r\n"
+                      + Integer.toHexString(body.length()) + "\r\n" + body
+                      + "\r\n0\r\n\r\n"
+                    : status + "Content-Length: " + body.length()
+                      + "\r\n\r\n" + body;
+            return r.getBytes(StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public void close() throws IOException {
+            ss.close();
+        }
+    }
+
+    static HttpClient client(Server server, int depth) {
+        return HttpClient.newBuilder()
+                .version(HTTP_1_1)
+                .pipelining(server.uri("/"), depth)
+                .build();
+    }
+
+    static CompletableFuture<HttpResponse<String>> get(HttpClient client,
+                                                       Server server,
+                                                       String path) {
+        return client.sendAsync(HttpRequest.newBuilder(server.uri(path)).build(),
+                                HttpResponse.BodyHandler.asString());
+    }
+
+    // Waits until the server has received the given request
+    static void awaitRequest(Server server, String path) throws Exception {
+        assertEquals(server.received.poll(10, TimeUnit.SECONDS), path);
+    }
+
+    @Test
+    public void testPipelined() throws Exception {
+        try (Server server = new Server(3, false)) {
+            HttpClient client = client(server, 3);
+            List<CompletableFuture<HttpResponse<String>>> cfs = new ArrayList<>();
+            cfs.add(get(client, server, "/0"));
+            awaitRequest(server, "/0");
+            // the first request is waiting for its response
+            cfs.add(get(client, server, "/1"));
+            cfs.add(get(client, server, "/2"));
+            for (int i = 0; i < cfs.size(); i++) {
+                HttpResponse<String> r = cfs.get(i).get(10, TimeUnit.SECONDS);
+                assertEquals(r.statusCode(), 200);
+                assertEquals(r.body(), "/" + i);
+            }
+            assertEquals(server.connections, 1);
+            assertEquals(server.batches.get(0).size(), 3);
+
+            // the connection went back to the pool after the last response
+            HttpResponse<String> r = get(client, server, "/3").get(10, TimeUnit.SECONDS);
+            assertEquals(r.body(), "/3");
+            assertEquals(server.connections, 1);
+        }
+    }
+
+    @Test
+    public void testDepth() throws Exception {
+        // the server holds the responses until the connection is idle, so
+        // that the pipeline is still full when the third request is sent
+        try (Server server = new Server(3, false)) {
+            HttpClient client = client(server, 2);
+            List<CompletableFuture<HttpResponse<String>>> cfs = new ArrayList<>();
+            cfs.add(get(client, server, "/0"));
+            awaitRequest(server, "/0");
+            cfs.add(get(client, server, "/1"));
+            awaitRequest(server, "/1");
+            // the pipeline of the first connection is full
+            cfs.add(get(client, server, "/2"));
+            for (int i = 0; i < cfs.size(); i++) {
+                assertEquals(cfs.get(i).get(10, TimeUnit.SECONDS).body(), "/" + i);
+            }
+            assertEquals(server.connections, 2);
+        }
+    }
+
+    @Test
+    public void testNotIdempotent() throws Exception {
+        try (Server server = new Server(2, false)) {
+            HttpClient client = client(server, 2);
+            CompletableFuture<HttpResponse<String>> cf0 = get(client, server, "/0");
+            awaitRequest(server, "/0");
+            CompletableFuture<HttpResponse<String>> cf1 = client.sendAsync(
+                    HttpRequest.newBuilder(server.uri("/1"))
+                            .POST(HttpRequest.BodyPublisher.fromString("hello"))
+                            .build(),
+                    HttpResponse.BodyHandler.asString());
+            assertEquals(cf0.get(10, TimeUnit.SECONDS).body(), "/0");
+            assertEquals(cf1.get(10, TimeUnit.SECONDS).body(), "/1");
+            // each request was answered on its own
+            for (List<String> batch : server.batches) {
+                assertEquals(batch.size(), 1, "batches: " + server.batches);
+            }
+        }
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        try (Server server = new Server(3, true)) {
+            HttpClient client = client(server, 3);
+            List<CompletableFuture<HttpResponse<String>>> cfs = new ArrayList<>();
+            cfs.add(get(client, server, "/0"));
+            awaitRequest(server, "/0");
+            cfs.add(get(client, server, "/1"));
+            cfs.add(get(client, server, "/2"));
+            // the first connection is closed after the first response: the
+            // other requests are sent again
+            for (int i = 0; i < cfs.size(); i++) {
+                HttpResponse<String> r = cfs.get(i).get(20, TimeUnit.SECONDS);
+                assertNotNull(r);
+                assertEquals(r.body(), "/" + i);
+            }
+            assertEquals(server.batches.get(0).size(), 3);
+
+            // requests are no longer pipelined
+            int batches = server.batches.size();
+            server.received.clear();
+            CompletableFuture<HttpResponse<String>> cf3 = get(client, server, "/3");
+            awaitRequest(server, "/3");
+            CompletableFuture<HttpResponse<String>> cf4 = get(client, server, "/4");
+            assertEquals(cf3.get(10, TimeUnit.SECONDS).body(), "/3");
+            assertEquals(cf4.get(10, TimeUnit.SECONDS).body(), "/4");
+            List<List<String>> later = server.batches.subList(batches, server.batches.size());
+            for (List<String> batch : later) {
+                assertEquals(batch.size(), 1, "batches: " + server.batches);
+            }
+        }
+    }
+
+    @Test
+    public void testConnectionClose() throws Exception {
+        try (Server server = new Server(2, false, true)) {
+            HttpClient client = client(server, 2);
+            CompletableFuture<HttpResponse<String>> cf0 = get(client, server, "/0");
+            awaitRequest(server, "/0");
+            CompletableFuture<HttpResponse<String>> cf1 = get(client, server, "/1");
+            // the first response closes the connection: the second request
+            // is sent again, on a connection of its own
+            assertEquals(cf0.get(10, TimeUnit.SECONDS).body(), "/0");
+            assertEquals(cf1.get(20, TimeUnit.SECONDS).body(), "/1");
+            assertEquals(server.batches.get(0).size(), 2);
+            assertEquals(server.connections, 2);
+
+            // requests are still pipelined, on the connection of the second
+            // request
+            server.received.clear();
+            CompletableFuture<HttpResponse<String>> cf2 = get(client, server, "/2");
+            awaitRequest(server, "/2");
+            CompletableFuture<HttpResponse<String>> cf3 = get(client, server, "/3");
+            assertEquals(cf2.get(10, TimeUnit.SECONDS).body(), "/2");
+            assertEquals(cf3.get(10, TimeUnit.SECONDS).body(), "/3");
+            assertEquals(server.connections, 2);
+            List<String> last = server.batches.get(server.batches.size() - 1);
+            assertEquals(last.size(), 2, "batches: " + server.batches);
+        }
+    }
+}
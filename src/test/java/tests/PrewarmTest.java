@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Checks that HttpClient.prewarm parks connections that are then
+ *          used by the requests to the same origin.
+ * @modules jdk.incubator.httpclient jdk.httpserver
+ * @run testng/othervm PrewarmTest
+ */
+package tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpClientMetrics;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import tests.http2.server.Http2EchoHandler;
+import tests.http2.server.Http2TestServer;
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static jdk.incubator.http.HttpClient.Version.HTTP_2;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+public class PrewarmTest {
+
+    HttpServer server;
+    Http2TestServer server2;
+    ExecutorService executor;
+    URI uri;
+    URI uri2;
+    String origin;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/", PrewarmTest::handle);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        origin = "127.0.0.1:" + server.getAddress().getPort();
+        uri = URI.create("http://" + origin + "/");
+
+        server2 = new Http2TestServer(false, 0, executor, null);
+        server2.addHandler(new Http2EchoHandler(), "/");
+        server2.start();
+        uri2 = URI.create("http://127.0.0.1:" + server2.getAddress().getPort() + "/");
+    }
+
+    @AfterClass
+    public void teardown() {
+        server.stop(0);
+        server2.stop();
+        executor.shutdownNow();
+    }
+
+    static void handle(HttpExchange t) throws IOException {
+        try (InputStream is = t.getRequestBody()) {
+            while (is.read() != -1);
+        }
+        t.sendResponseHeaders(200, -1);
+        t.close();
+    }
+
+    @Test
+    public void testHttp1() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HTTP_1_1).build();
+        HttpClientMetrics metrics = client.metrics();
+        client.prewarm(uri, 3).join();
+        assertEquals(metrics.getIdleConnections().get(origin), Integer.valueOf(3));
+        assertEquals(metrics.getPoolMisses(), 3);
+
+        // idle connections count toward the number asked for
+        client.prewarm(uri, 4).join();
+        assertEquals(metrics.getIdleConnections().get(origin), Integer.valueOf(4));
+        assertEquals(metrics.getOpenConnections().get(origin), Integer.valueOf(4));
+
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri).build(),
+                                                  HttpResponse.BodyHandler.discard(null));
+        assertEquals(response.statusCode(), 200);
+        // the request used a parked connection
+        assertEquals(metrics.getPoolMisses(), 4);
+        assertEquals(metrics.getOpenConnections().get(origin), Integer.valueOf(4));
+    }
+
+    @Test
+    public void testH2c() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HTTP_2).build();
+        client.prewarm(uri2, 1).join();
+        String origin2 = uri2.getHost() + ":" + uri2.getPort();
+        assertEquals(client.metrics().getIdleConnections().get(origin2),
+                     Integer.valueOf(1));
+
+        // the upgrade to h2c happens on the parked connection
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(uri2)
+                        .POST(HttpRequest.BodyPublisher.fromString("hello"))
+                        .build(),
+                HttpResponse.BodyHandler.asString());
+        assertEquals(response.statusCode(), 200);
+        assertEquals(response.version(), HTTP_2);
+        assertEquals(client.metrics().getPoolMisses(), 1);
+        assertEquals(client.metrics().getPoolHits(), 1);
+    }
+
+    @Test
+    public void testPriorKnowledge() throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HTTP_2)
+                .http2PriorKnowledge(true)
+                .build();
+        HttpClientMetrics metrics = client.metrics();
+        String origin2 = uri2.getHost() + ":" + uri2.getPort();
+        client.prewarm(uri2, 2).join();
+        assertEquals(metrics.getOpenConnections().get(origin2), Integer.valueOf(2));
+
+        // the connections of the group count toward the number asked for
+        client.prewarm(uri2, 1).join();
+        client.prewarm(uri2, 2).join();
+        assertEquals(metrics.getOpenConnections().get(origin2), Integer.valueOf(2));
+        client.prewarm(uri2, 3).join();
+        assertEquals(metrics.getOpenConnections().get(origin2), Integer.valueOf(3));
+
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(uri2)
+                        .POST(HttpRequest.BodyPublisher.fromString("hello"))
+                        .build(),
+                HttpResponse.BodyHandler.asString());
+        assertEquals(response.version(), HTTP_2);
+        assertEquals(metrics.getOpenConnections().get(origin2), Integer.valueOf(3));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HTTP_1_1).build();
+        // nothing listens on the port of a stopped server
+        HttpServer stopped = HttpServer.create(new InetSocketAddress(0), 0);
+        int port = stopped.getAddress().getPort();
+        stopped.stop(0);
+        try {
+            client.prewarm(URI.create("http://127.0.0.1:" + port + "/"), 2).join();
+            fail("prewarm should have failed");
+        } catch (Exception expected) {
+            System.out.println("Got expected: " + expected);
+        }
+        assertEquals(client.metrics().getOpenConnections().size(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBadCount() {
+        HttpClient.newHttpClient().prewarm(uri, 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBadScheme() {
+        HttpClient.newHttpClient().prewarm(URI.create("ftp://127.0.0.1/"), 1);
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Tests HttpClient.sendRangedAsync against a server that supports
+ *          byte ranges, one that fails some ranges once, and one that does
+ *          not support ranges at all.
+ * @modules jdk.incubator.httpclient java.logging jdk.httpserver
+ * @run testng/othervm RangedDownloadTest
+ */
+package tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class RangedDownloadTest {
+
+    static final byte[] CONTENT = new byte[1024 * 1024 + 13];
+    static {
+        new Random(42).nextBytes(CONTENT);
+    }
+
+    HttpServer server;
+    ExecutorService executor;
+    String base;
+    HttpClient client;
+    final AtomicInteger rangeRequests = new AtomicInteger();
+    final Map<String,AtomicInteger> failures = new ConcurrentHashMap<>();
+    final AtomicInteger brokenRequests = new AtomicInteger();
+    final Set<String> encodings = ConcurrentHashMap.newKeySet();
+    static final long SLOW_RANGE_MILLIS = 10_000;
+
+    @BeforeClass
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/ranges", t -> handle(t, true, false));
+        server.createContext("/flaky", t -> handle(t, true, true));
+        server.createContext("/plain", t -> handle(t, false, false));
+        server.createContext("/broken", this::broken);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        client = HttpClient.newBuilder().version(HTTP_1_1).build();
+    }
+
+    @AfterClass
+    public void teardown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    void handle(HttpExchange t, boolean ranges, boolean flaky) throws IOException {
+        t.getRequestBody().close();
+        encodings.add(String.valueOf(t.getRequestHeaders().getFirst("Accept-Encoding")));
+        if (ranges) {
+            t.getResponseHeaders().set("Accept-Ranges", "bytes");
+            t.getResponseHeaders().set("ETag", "\"v1\"");
+        }
+        if (t.getRequestMethod().equals("HEAD")) {
+            t.getResponseHeaders().set("Content-Length", Integer.toString(CONTENT.length));
+            t.sendResponseHeaders(200, -1);
+            t.close();
+            return;
+        }
+        String range = t.getRequestHeaders().getFirst("Range");
+        if (!ranges || range == null) {
+            reply(t, 200, 0, CONTENT.length);
+            return;
+        }
+        rangeRequests.incrementAndGet();
+        if (!"\"v1\"".equals(t.getRequestHeaders().getFirst("If-Range"))) {
+            reply(t, 200, 0, CONTENT.length);
+            return;
+        }
+        // every other range fails the first time it is requested
+        String[] bounds = range.substring("bytes=".length()).split("-");
+        int first = Integer.parseInt(bounds[0]);
+        int last = Integer.parseInt(bounds[1]);
+        AtomicInteger count = failures.computeIfAbsent(range, r -> new AtomicInteger());
+        if (flaky && (first / (64 * 1024)) % 2 == 0 && count.getAndIncrement() == 0) {
+            t.sendResponseHeaders(503, -1);
+            t.close();
+            return;
+        }
+        t.getResponseHeaders().set("Content-Range",
+                "bytes " + first + "-" + last + "/" + CONTENT.length);
+        reply(t, 206, first, last + 1);
+    }
+
+    // the first range always fails, the others are slow to come
+    void broken(HttpExchange t) throws IOException {
+        t.getRequestBody().close();
+        t.getResponseHeaders().set("Accept-Ranges", "bytes");
+        if (t.getRequestMethod().equals("HEAD")) {
+            t.getResponseHeaders().set("Content-Length", Integer.toString(CONTENT.length));
+            t.sendResponseHeaders(200, -1);
+            t.close();
+            return;
+        }
+        String range = t.getRequestHeaders().getFirst("Range");
+        String[] bounds = range.substring("bytes=".length()).split("-");
+        int first = Integer.parseInt(bounds[0]);
+        int last = Integer.parseInt(bounds[1]);
+        if (first == 0) {
+            brokenRequests.incrementAndGet();
+            t.sendResponseHeaders(503, -1);
+            t.close();
+            return;
+        }
+        try {
+            Thread.sleep(SLOW_RANGE_MILLIS);
+        } catch (InterruptedException x) {
+            t.close();
+            return;
+        }
+        t.getResponseHeaders().set("Content-Range",
+                "bytes " + first + "-" + last + "/" + CONTENT.length);
+        reply(t, 206, first, last + 1);
+    }
+
+    static void reply(HttpExchange t, int status, int from, int to) throws IOException {
+        t.sendResponseHeaders(status, to - from);
+        try (OutputStream os = t.getResponseBody()) {
+            os.write(CONTENT, from, to - from);
+        }
+    }
+
+    HttpResponse<Path> download(String path, int ranges, Path file) throws Exception {
+        return download(client, path, ranges, file);
+    }
+
+    HttpResponse<Path> download(HttpClient client, String path, int ranges, Path file)
+        throws Exception
+    {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + path)).build();
+        return client.sendRangedAsync(request, file, ranges).join();
+    }
+
+    @Test
+    public void testRanges() throws Exception {
+        Path file = Files.createTempFile("ranged", ".bin");
+        try {
+            rangeRequests.set(0);
+            HttpResponse<Path> response = download("ranges", 4, file);
+            assertEquals(response.statusCode(), 200);
+            assertEquals(response.body(), file);
+            assertEquals(rangeRequests.get(), 4);
+            assertTrue(Arrays.equals(Files.readAllBytes(file), CONTENT));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testDecompressingClient() throws Exception {
+        HttpClient decompressing = HttpClient.newBuilder()
+                .version(HTTP_1_1)
+                .decompression(true)
+                .build();
+        Path file = Files.createTempFile("ranged", ".bin");
+        try {
+            encodings.clear();
+            rangeRequests.set(0);
+            HttpResponse<Path> response = download(decompressing, "ranges", 4, file);
+            assertEquals(response.statusCode(), 200);
+            assertEquals(rangeRequests.get(), 4);
+            assertTrue(Arrays.equals(Files.readAllBytes(file), CONTENT));
+            // the ranges are of the content as is, never of an encoding of it
+            assertEquals(encodings, Collections.singleton("identity"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRetryFailedRanges() throws Exception {
+        Path file = Files.createTempFile("ranged", ".bin");
+        try {
+            rangeRequests.set(0);
+            // longer than the resource, to check that it gets truncated
+            Files.write(file, new byte[CONTENT.length * 2]);
+            download("flaky", 8, file);
+            assertTrue(Arrays.equals(Files.readAllBytes(file), CONTENT));
+            // only the failed ranges have been fetched again
+            long failed = failures.values().stream().filter(c -> c.get() > 1).count();
+            assertEquals(rangeRequests.get(), 8 + failed);
+            assertTrue(failed > 0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFailFast() throws Exception {
+        Path file = Files.createTempFile("ranged", ".bin");
+        try {
+            long start = System.nanoTime();
+            try {
+                download("broken", 4, file);
+                fail("Expected the download to fail");
+            } catch (CompletionException expected) {
+                System.out.println("Got expected: " + expected);
+            }
+            // the failure is reported without waiting for the slow ranges
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsed < SLOW_RANGE_MILLIS, "elapsed: " + elapsed);
+            assertEquals(brokenRequests.get(), 3);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testNoRanges() throws Exception {
+        Path file = Files.createTempFile("ranged", ".bin");
+        try {
+            HttpResponse<Path> response = download("plain", 4, file);
+            assertEquals(response.statusCode(), 200);
+            assertTrue(Arrays.equals(Files.readAllBytes(file), CONTENT));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
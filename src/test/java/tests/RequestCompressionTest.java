@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Sends request bodies through BodyPublisher.gzip and
+ *          BodyPublisher.deflate, and checks that the server receives a
+ *          chunked body with the right Content-Encoding.
+ * @modules jdk.incubator.httpclient java.logging jdk.httpserver
+ * @run testng/othervm RequestCompressionTest
+ */
+package tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpRequest.BodyPublisher;
+import jdk.incubator.http.HttpResponse;
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static org.testng.Assert.assertEquals;
+
+public class RequestCompressionTest {
+
+    static final String BODY;
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            sb.append("line ").append(i).append('\n');
+        }
+        BODY = sb.toString();
+    }
+
+    HttpServer server;
+    ExecutorService executor;
+    HttpClient client;
+    URI uri;
+    Path file;
+
+    @BeforeClass
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/", RequestCompressionTest::handle);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        client = HttpClient.newBuilder().version(HTTP_1_1).build();
+        file = Files.createTempFile("RequestCompressionTest", ".txt");
+        Files.write(file, BODY.getBytes("US-ASCII"));
+    }
+
+    @AfterClass
+    public void teardown() throws IOException {
+        server.stop(0);
+        executor.shutdownNow();
+        Files.deleteIfExists(file);
+    }
+
+    /** Decodes the request body, and echoes it back with the request's
+     * Content-Encoding and Transfer-Encoding in response headers. */
+    static void handle(HttpExchange t) throws IOException {
+        String encoding = t.getRequestHeaders().getFirst("Content-Encoding");
+        InputStream is = t.getRequestBody();
+        if ("gzip".equals(encoding)) {
+            is = new GZIPInputStream(is);
+        } else if ("deflate".equals(encoding)) {
+            is = new InflaterInputStream(is);
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (InputStream in = is) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                bos.write(buf, 0, n);
+            }
+        }
+        t.getResponseHeaders().set("X-Content-Encoding", String.valueOf(encoding));
+        t.getResponseHeaders().set("X-Transfer-Encoding",
+                String.valueOf(t.getRequestHeaders().getFirst("Transfer-Encoding")));
+        byte[] body = bos.toByteArray();
+        t.sendResponseHeaders(200, body.length);
+        try (OutputStream os = t.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    @DataProvider(name = "encodings")
+    public Object[][] encodings() {
+        return new Object[][] { { "gzip" }, { "deflate" } };
+    }
+
+    static BodyPublisher compress(String encoding, BodyPublisher publisher) {
+        return encoding.equals("gzip") ? BodyPublisher.gzip(publisher)
+                                       : BodyPublisher.deflate(publisher);
+    }
+
+    void check(HttpRequest request, String encoding) throws Exception {
+        HttpResponse<String> response = client.send(request,
+                HttpResponse.BodyHandler.asString());
+        assertEquals(response.statusCode(), 200);
+        assertEquals(response.headers().firstValue("X-Content-Encoding").get(), encoding);
+        assertEquals(response.headers().firstValue("X-Transfer-Encoding").get(), "chunked");
+        assertEquals(response.body(), BODY);
+    }
+
+    @Test(dataProvider = "encodings")
+    public void testString(String encoding) throws Exception {
+        BodyPublisher publisher = compress(encoding, BodyPublisher.fromString(BODY));
+        assertEquals(publisher.contentLength(), -1);
+        check(HttpRequest.newBuilder(uri).POST(publisher).build(), encoding);
+    }
+
+    @Test(dataProvider = "encodings")
+    public void testFile(String encoding) throws Exception {
+        BodyPublisher publisher = compress(encoding, BodyPublisher.fromFile(file));
+        check(HttpRequest.newBuilder(uri).POST(publisher).build(), encoding);
+    }
+
+    @Test(dataProvider = "encodings")
+    public void testEmpty(String encoding) throws Exception {
+        BodyPublisher publisher = compress(encoding, BodyPublisher.fromString(""));
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(uri).POST(publisher).build(),
+                HttpResponse.BodyHandler.asString());
+        assertEquals(response.statusCode(), 200);
+        assertEquals(response.body(), "");
+    }
+
+    @Test
+    public void testUserContentEncoding() throws Exception {
+        // a Content-Encoding set on the request is left alone
+        BodyPublisher publisher = BodyPublisher.gzip(BodyPublisher.fromString(BODY));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Encoding", "gzip")
+                .POST(publisher)
+                .build();
+        check(request, "gzip");
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Checks that a client with a resolver connects to the addresses
+ *          returned by the resolver, in turn, and reports its failures.
+ * @modules jdk.incubator.httpclient jdk.httpserver
+ * @run testng/othervm ResolverTest
+ */
+package tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import java9.util.concurrent.CompletableFuture;
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+public class ResolverTest {
+
+    // only known to the resolvers of this test
+    static final String HOST = "resolver.test";
+
+    HttpServer server;
+    ExecutorService executor;
+    URI uri;
+
+    @BeforeClass
+    public void setup() throws IOException {
+        server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+        server.createContext("/", ResolverTest::handle);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        uri = URI.create("http://" + HOST + ":" + server.getAddress().getPort() + "/");
+    }
+
+    @AfterClass
+    public void teardown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    static void handle(HttpExchange t) throws IOException {
+        try (InputStream is = t.getRequestBody()) {
+            while (is.read() != -1);
+        }
+        t.sendResponseHeaders(200, -1);
+        t.close();
+    }
+
+    static final class TestResolver implements HttpClient.Resolver {
+        final List<InetAddress> addresses;
+        final List<String> hosts = new CopyOnWriteArrayList<>();
+        TestResolver(List<InetAddress> addresses) { this.addresses = addresses; }
+        @Override
+        public CompletableFuture<List<InetAddress>> resolve(String host) {
+            hosts.add(host);
+            if (!host.equals(HOST)) {
+                CompletableFuture<List<InetAddress>> cf = new CompletableFuture<>();
+                cf.completeExceptionally(new UnknownHostException(host));
+                return cf;
+            }
+            return CompletableFuture.completedFuture(addresses);
+        }
+    }
+
+    @Test
+    public void testFailover() throws Exception {
+        // nothing listens on the server's port on the IPv6 loopback, or
+        // IPv6 is not available: either way the first address fails
+        TestResolver resolver = new TestResolver(Arrays.asList(
+                InetAddress.getByName("::1"), InetAddress.getByName("127.0.0.1")));
+        List<String> events = new CopyOnWriteArrayList<>();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HTTP_1_1)
+                .resolver(resolver)
+                .eventListener(new HttpClient.EventListener() {
+                    @Override public void dnsStart(HttpRequest r, String h, long t) {
+                        events.add("dnsStart");
+                    }
+                    @Override public void dnsEnd(HttpRequest r, String h, long t) {
+                        events.add("dnsEnd");
+                    }
+                    @Override public void connectStart(HttpRequest r, InetSocketAddress a, long t) {
+                        events.add("connectStart");
+                    }
+                    @Override public void connectEnd(HttpRequest r, Throwable x, long t) {
+                        events.add("connectEnd");
+                    }
+                })
+                .build();
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri).build(),
+                                                  HttpResponse.BodyHandler.discard(null));
+        assertEquals(response.statusCode(), 200);
+        assertEquals(resolver.hosts, Arrays.asList(HOST));
+        assertEquals(events, Arrays.asList(
+                "connectStart", "dnsStart", "dnsEnd", "connectEnd"));
+
+        // the connection is reused without resolving the host again
+        response = client.send(HttpRequest.newBuilder(uri).build(),
+                               HttpResponse.BodyHandler.discard(null));
+        assertEquals(response.statusCode(), 200);
+        assertEquals(resolver.hosts, Arrays.asList(HOST));
+    }
+
+    @Test
+    public void testUnknownHost() throws Exception {
+        TestResolver resolver = new TestResolver(new ArrayList<>());
+        HttpClient client = HttpClient.newBuilder().resolver(resolver).build();
+        URI unknown = URI.create("http://unknown.test:" + server.getAddress().getPort() + "/");
+        try {
+            client.send(HttpRequest.newBuilder(unknown).build(),
+                        HttpResponse.BodyHandler.discard(null));
+            fail("Expected UnknownHostException");
+        } catch (UnknownHostException expected) {
+            System.out.println("Got expected: " + expected);
+        }
+        // no address at all
+        try {
+            client.send(HttpRequest.newBuilder(uri).build(),
+                        HttpResponse.BodyHandler.discard(null));
+            fail("Expected UnknownHostException");
+        } catch (UnknownHostException expected) {
+            System.out.println("Got expected: " + expected);
+        }
+    }
+
+    @Test
+    public void testCachingResolver() throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .resolver(HttpClient.Resolver.newCachingResolver(executor,
+                        Duration.ofMinutes(1), Duration.ofSeconds(10)))
+                .build();
+        URI local = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(local).build(),
+                                                  HttpResponse.BodyHandler.discard(null));
+        assertEquals(response.statusCode(), 200);
+    }
+}
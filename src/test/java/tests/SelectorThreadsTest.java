@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Sends concurrent requests over a client that runs several
+ *          selector threads.
+ * @modules jdk.incubator.httpclient jdk.httpserver
+ * @run testng/othervm SelectorThreadsTest
+ */
+package tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import java9.util.concurrent.CompletableFuture;
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static org.testng.Assert.assertEquals;
+
+public class SelectorThreadsTest {
+
+    static final int THREADS = 4;
+    static final int REQUESTS = 64;
+
+    HttpServer server;
+    ExecutorService executor;
+    URI uri;
+
+    @BeforeClass
+    public void setup() throws IOException {
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        server = HttpServer.create(new InetSocketAddress(loopback, 0), 0);
+        server.createContext("/", SelectorThreadsTest::echo);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/echo");
+    }
+
+    @AfterClass
+    public void teardown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    static void echo(HttpExchange t) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream is = t.getRequestBody()) {
+            byte[] buf = new byte[1024];
+            int n;
+            while ((n = is.read(buf)) != -1) body.write(buf, 0, n);
+        }
+        byte[] bytes = body.toByteArray();
+        t.sendResponseHeaders(200, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream os = t.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    // Returns the number of live selector threads of the given client
+    static int selectorThreads(HttpClient client) {
+        String s = client.toString();
+        String id = s.substring(s.lastIndexOf('(') + 1, s.length() - 1);
+        String prefix = "HttpClient-" + id + "-SelectorManager";
+        int n = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().startsWith(prefix)) n++;
+        }
+        return n;
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HTTP_1_1)
+                .selectorThreads(THREADS)
+                .build();
+        // each channel is served by one of the selector threads, and the
+        // timer of each request by a possibly different one
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofSeconds(30))
+                    .POST(HttpRequest.BodyPublisher.fromString("request-" + i))
+                    .build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandler.asString()));
+        }
+        assertEquals(selectorThreads(client), THREADS);
+        for (int i = 0; i < REQUESTS; i++) {
+            HttpResponse<String> response = responses.get(i).join();
+            assertEquals(response.statusCode(), 200);
+            assertEquals(response.body(), "request-" + i);
+        }
+
+        // the pooled connections are reused across selector threads
+        for (int i = 0; i < REQUESTS; i++) {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .POST(HttpRequest.BodyPublisher.fromString("again-" + i))
+                    .build();
+            HttpResponse<String> response =
+                    client.send(request, HttpResponse.BodyHandler.asString());
+            assertEquals(response.body(), "again-" + i);
+        }
+    }
+}
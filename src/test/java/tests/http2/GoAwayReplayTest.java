@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2015, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Checks that after a GOAWAY the streams the server processes
+ *          complete, that the others are replayed on a new connection, and
+ *          that the connection is closed once drained.
+ * @run testng/othervm GoAwayReplayTest
+ */
+package tests.http2;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import java9.util.concurrent.CompletableFuture;
+import static jdk.incubator.http.HttpClient.Version.HTTP_2;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class GoAwayReplayTest {
+
+    static final int PREFACE_LENGTH = 24;
+    // an empty SETTINGS frame
+    static final byte[] SETTINGS = { 0, 0, 0, 4, 0, 0, 0, 0, 0 };
+
+    // HEADERS, END_STREAM | END_HEADERS, ":status: 200"
+    static byte[] response(int stream) {
+        return new byte[] { 0, 0, 1, 1, 5, 0, 0, 0, (byte) stream, (byte) 0x88 };
+    }
+
+    // GOAWAY, NO_ERROR
+    static byte[] goAway(int lastStream) {
+        return new byte[] { 0, 0, 8, 7, 0, 0, 0, 0, 0,
+                            0, 0, 0, (byte) lastStream, 0, 0, 0, 0 };
+    }
+
+    ServerSocket server;
+    final AtomicInteger connections = new AtomicInteger();
+    final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    // the last stream id of the GOAWAY sent when stream 3 is opened
+    volatile int lastStream;
+    volatile CountDownLatch closedByClient;
+    URI uri;
+
+    @BeforeClass
+    public void setup() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        uri = URI.create("http://127.0.0.1:" + server.getLocalPort() + "/");
+        Thread acceptor = new Thread(this::accept, "GoAwayReplayTest-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterClass
+    public void teardown() throws IOException {
+        server.close();
+        for (Socket s : sockets) s.close();
+    }
+
+    void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket s = server.accept();
+                connections.incrementAndGet();
+                sockets.add(s);
+                Thread t = new Thread(() -> serve(s), "GoAwayReplayTest-server");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException x) {
+                // closed
+            }
+        }
+    }
+
+    /*
+     * Upgrades the connection to HTTP/2 and answers the upgrade request on
+     * stream 1. When stream 3 is opened, sends a GOAWAY, and answers
+     * stream 3 only if the GOAWAY says it is processed.
+     */
+    void serve(Socket s) {
+        try (InputStream in = s.getInputStream();
+             OutputStream out = s.getOutputStream()) {
+            // the upgrade request has no body
+            int state = 0;
+            while (state < 4) {
+                int c = in.read();
+                if (c == -1) return;
+                state = (c == (state % 2 == 0 ? '\r' : '\n')) ? state + 1
+                        : (c == '\r' ? 1 : 0);
+            }
+            out.write(("HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Connection: Upgrade\r\nUpgrade: h2c\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            out.write(SETTINGS);
+            out.write(response(1));
+            out.flush();
+            DataInputStream din = new DataInputStream(in);
+            din.readFully(new byte[PREFACE_LENGTH]);
+            byte[] header = new byte[9];
+            while (true) {
+                din.readFully(header);
+                int length = ((header[0] & 0xFF) << 16)
+                        | ((header[1] & 0xFF) << 8) | (header[2] & 0xFF);
+                int type = header[3];
+                int stream = header[8] & 0xFF;
+                din.readFully(new byte[length]);
+                if (type == 1 && stream == 3) {
+                    int last = lastStream;
+                    out.write(goAway(last));
+                    if (last >= 3) {
+                        out.write(response(3));
+                    }
+                    out.flush();
+                }
+            }
+        } catch (IOException x) {
+            // closed by the client, or at the end of the test
+            CountDownLatch latch = closedByClient;
+            if (latch != null) latch.countDown();
+        }
+    }
+
+    HttpResponse<Void> send(HttpClient client) throws Exception {
+        CompletableFuture<HttpResponse<Void>> cf = client.sendAsync(
+                HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandler.discard(null));
+        return cf.get(20, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testUnprocessedStreamReplayed() throws Exception {
+        lastStream = 1;
+        HttpClient client = HttpClient.newBuilder().version(HTTP_2).build();
+        int before = connections.get();
+        HttpResponse<Void> response = send(client);
+        assertEquals(response.statusCode(), 200);
+        assertEquals(response.version(), HTTP_2);
+
+        // stream 3 is refused by the GOAWAY, and sent again as stream 1
+        // of a new connection
+        response = send(client);
+        assertEquals(response.statusCode(), 200);
+        assertEquals(response.version(), HTTP_2);
+        assertEquals(connections.get(), before + 2);
+    }
+
+    @Test
+    public void testProcessedStreamCompletes() throws Exception {
+        lastStream = 3;
+        HttpClient client = HttpClient.newBuilder().version(HTTP_2).build();
+        int before = connections.get();
+        HttpResponse<Void> response = send(client);
+        assertEquals(response.statusCode(), 200);
+
+        closedByClient = new CountDownLatch(1);
+        // stream 3 is processed: it completes on the draining connection
+        response = send(client);
+        assertEquals(response.statusCode(), 200);
+        assertEquals(connections.get(), before + 1);
+        // which is then closed
+        assertTrue(closedByClient.await(10, TimeUnit.SECONDS),
+                   "connection not closed after draining");
+
+        // and not used for new requests
+        response = send(client);
+        assertEquals(response.statusCode(), 200);
+        assertEquals(connections.get(), before + 2);
+    }
+}
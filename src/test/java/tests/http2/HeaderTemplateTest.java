@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2015, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+/*
+ * @test
+ * @summary Checks that the headers of a header template are sent with
+ *          requests over HTTP/1.1 and HTTP/2, along with their own headers.
+ * @library /lib/testlibrary server
+ * @modules jdk.incubator.httpclient/jdk.incubator.http.internal.common
+ *          jdk.incubator.httpclient/jdk.incubator.http.internal.frame
+ *          jdk.incubator.httpclient/jdk.incubator.http.internal.hpack
+ *          jdk.httpserver
+ * @run testng/othervm HeaderTemplateTest
+ */
+package tests.http2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpHeaderTemplate;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import jdk.incubator.http.internal.common.HttpHeadersImpl;
+import tests.http2.server.Http2TestServer;
+import java9.util.concurrent.CompletableFuture;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static jdk.incubator.http.HttpClient.Version.HTTP_1_1;
+import static jdk.incubator.http.HttpClient.Version.HTTP_2;
+import static jdk.incubator.http.HttpResponse.BodyHandler.asString;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+
+public class HeaderTemplateTest {
+
+    static final HttpHeaderTemplate TEMPLATE = HttpHeaderTemplate.of(
+            "Accept", "application/json",
+            "X-Tenant", "acme",
+            "X-Tenant", "acme-eu");
+
+    Http2TestServer http2Server;
+    HttpServer http1Server;
+    URI http2URI;
+    URI http1URI;
+
+    // what the handlers answer with
+    static String describe(List<String> accept, List<String> tenant, List<String> id) {
+        return accept + " " + tenant + " " + id;
+    }
+
+    @BeforeClass
+    public void setup() throws Exception {
+        http2Server = new Http2TestServer(false, 0);
+        http2Server.addHandler(t -> {
+            HttpHeadersImpl h = t.getRequestHeaders();
+            byte[] body = describe(h.allValues("accept"), h.allValues("x-tenant"),
+                                   h.allValues("x-id")).getBytes(US_ASCII);
+            t.sendResponseHeaders(200, body.length);
+            try (OutputStream os = t.getResponseBody()) {
+                os.write(body);
+            }
+        }, "/h2");
+        http2Server.start();
+        http2URI = URI.create("http://127.0.0.1:"
+                + http2Server.getAddress().getPort() + "/h2");
+
+        http1Server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        http1Server.createContext("/h1", e -> {
+            byte[] body = describe(values(e.getRequestHeaders().get("Accept")),
+                                   values(e.getRequestHeaders().get("X-Tenant")),
+                                   values(e.getRequestHeaders().get("X-Id")))
+                    .getBytes(US_ASCII);
+            e.sendResponseHeaders(200, body.length);
+            try (OutputStream os = e.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        http1Server.start();
+        http1URI = URI.create("http://127.0.0.1:"
+                + http1Server.getAddress().getPort() + "/h1");
+    }
+
+    static List<String> values(List<String> values) {
+        return values == null ? new ArrayList<>() : values;
+    }
+
+    @AfterClass
+    public void teardown() {
+        http2Server.stop();
+        http1Server.stop(0);
+    }
+
+    @Test
+    public void testHttp1() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HTTP_1_1).build();
+        check(client, http1URI);
+    }
+
+    @Test
+    public void testHttp2() throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HTTP_2)
+                .http2PriorKnowledge(true)
+                .build();
+        check(client, http2URI);
+    }
+
+    void check(HttpClient client, URI uri) throws Exception {
+        // several requests on the same connection, so that over HTTP/2 the
+        // later ones are sent with the indexes of the template's headers
+        for (int i = 0; i < 3; i++) {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .headerTemplate(TEMPLATE)
+                    .header("X-Id", Integer.toString(i))
+                    .build();
+            HttpResponse<String> response = client.send(request, asString());
+            assertEquals(response.statusCode(), 200);
+            assertEquals(response.body(),
+                    "[application/json] [acme, acme-eu] [" + i + "]");
+        }
+        List<CompletableFuture<HttpResponse<String>>> cfs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            cfs.add(client.sendAsync(HttpRequest.newBuilder(uri)
+                    .headerTemplate(TEMPLATE)
+                    .header("X-Id", "async" + i)
+                    .build(), asString()));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(cfs.get(i).join().body(),
+                    "[application/json] [acme, acme-eu] [async" + i + "]");
+        }
+        // without a template
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(uri).header("X-Id", "none").build(),
+                asString());
+        assertEquals(response.body(), "[] [] [none]");
+    }
+
+    @Test
+    public void testTemplate() {
+        assertEquals(TEMPLATE.headers().allValues("x-tenant").size(), 2);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(http1URI)
+                .headerTemplate(TEMPLATE);
+        assertEquals(builder.build().headerTemplate(), Optional.of(TEMPLATE));
+        assertEquals(builder.copy().build().headerTemplate(), Optional.of(TEMPLATE));
+        assertFalse(HttpRequest.newBuilder(http1URI).build()
+                .headerTemplate().isPresent());
+        // not part of the request's own headers
+        assertFalse(builder.build().headers().firstValue("X-Tenant").isPresent());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> HttpHeaderTemplate.of("X-Odd"));
+        assertThrows(IllegalArgumentException.class,
+                () -> HttpHeaderTemplate.of("Bad Name", "value"));
+        assertThrows(IllegalArgumentException.class,
+                () -> HttpHeaderTemplate.of("X-Bad", "bad\r\nvalue"));
+        assertThrows(NullPointerException.class,
+                () -> HttpRequest.newBuilder(http1URI).headerTemplate(null));
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2015, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Checks that an HTTP/2 connection whose server stops answering is
+ *          detected with PING probes, evicted, and that its requests that
+ *          the server did not answer are replayed on a new connection.
+ * @run testng/othervm -Djdk.httpclient.http2.pinginterval=200 -Djdk.httpclient.http2.pingtimeout=300 PingLivenessTest
+ */
+package tests.http2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import java9.util.concurrent.CompletableFuture;
+import static jdk.incubator.http.HttpClient.Version.HTTP_2;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class PingLivenessTest {
+
+    // an empty SETTINGS frame
+    static final byte[] SETTINGS = { 0, 0, 0, 4, 0, 0, 0, 0, 0 };
+    // HEADERS for stream 1, END_STREAM | END_HEADERS, ":status: 200"
+    static final byte[] RESPONSE = { 0, 0, 1, 1, 5, 0, 0, 0, 1, (byte) 0x88 };
+
+    ServerSocket server;
+    final AtomicInteger connections = new AtomicInteger();
+    final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    URI uri;
+
+    @BeforeClass
+    public void setup() throws IOException {
+        // read for each new connection
+        System.setProperty("jdk.httpclient.http2.pinginterval", "200");
+        System.setProperty("jdk.httpclient.http2.pingtimeout", "300");
+        server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        uri = URI.create("http://127.0.0.1:" + server.getLocalPort() + "/");
+        Thread acceptor = new Thread(this::accept, "PingLivenessTest-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterClass
+    public void teardown() throws IOException {
+        System.clearProperty("jdk.httpclient.http2.pinginterval");
+        System.clearProperty("jdk.httpclient.http2.pingtimeout");
+        server.close();
+        for (Socket s : sockets) s.close();
+    }
+
+    /*
+     * Upgrades each connection to HTTP/2 and answers the upgrade request,
+     * then reads everything and answers nothing, like a server that has
+     * silently gone away.
+     */
+    void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket s = server.accept();
+                connections.incrementAndGet();
+                sockets.add(s);
+                Thread t = new Thread(() -> serve(s), "PingLivenessTest-server");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException x) {
+                // closed
+            }
+        }
+    }
+
+    static void serve(Socket s) {
+        try (InputStream in = s.getInputStream();
+             OutputStream out = s.getOutputStream()) {
+            // the upgrade request has no body
+            int state = 0;
+            while (state < 4) {
+                int c = in.read();
+                if (c == -1) return;
+                state = (c == (state % 2 == 0 ? '\r' : '\n')) ? state + 1
+                        : (c == '\r' ? 1 : 0);
+            }
+            out.write(("HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Connection: Upgrade\r\nUpgrade: h2c\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            out.write(SETTINGS);
+            out.write(RESPONSE);
+            out.flush();
+            byte[] buf = new byte[8192];
+            while (in.read(buf) != -1);
+        } catch (IOException x) {
+            // closed
+        }
+    }
+
+    HttpResponse<Void> send(HttpClient client) throws Exception {
+        CompletableFuture<HttpResponse<Void>> cf = client.sendAsync(
+                HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandler.discard(null));
+        return cf.get(20, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testDeadConnectionEvicted() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HTTP_2).build();
+        int before = connections.get();
+        HttpResponse<Void> response = send(client);
+        assertEquals(response.statusCode(), 200);
+        assertEquals(response.version(), HTTP_2);
+        assertEquals(connections.get(), before + 1);
+
+        // the connection does not answer the PING, and is evicted
+        Thread.sleep(2000);
+        response = send(client);
+        assertEquals(response.statusCode(), 200);
+        assertEquals(connections.get(), before + 2);
+    }
+
+    @Test
+    public void testUnansweredRequestReplayed() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HTTP_2).build();
+        int before = connections.get();
+        HttpResponse<Void> response = send(client);
+        assertEquals(response.statusCode(), 200);
+
+        // sent on the connection, which the server no longer answers
+        long start = System.nanoTime();
+        response = send(client);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(response.statusCode(), 200);
+        assertEquals(connections.get(), before + 2);
+        assertTrue(elapsed >= 500, "replayed after " + elapsed + " ms");
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2015, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Checks that with prior knowledge cleartext HTTP/2 connections are
+ *          opened with the connection preface, without upgrade, and reused.
+ * @library /lib/testlibrary server
+ * @modules jdk.incubator.httpclient/jdk.incubator.http.internal.common
+ *          jdk.incubator.httpclient/jdk.incubator.http.internal.frame
+ *          jdk.incubator.httpclient/jdk.incubator.http.internal.hpack
+ * @run testng/othervm PriorKnowledgeTest
+ */
+package tests.http2;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import jdk.incubator.http.HttpClient;
+import jdk.incubator.http.HttpRequest;
+import jdk.incubator.http.HttpResponse;
+import tests.http2.server.Http2EchoHandler;
+import tests.http2.server.Http2TestServer;
+import java9.util.concurrent.CompletableFuture;
+import static jdk.incubator.http.HttpClient.Version.HTTP_2;
+import static jdk.incubator.http.HttpRequest.BodyPublisher.fromString;
+import static jdk.incubator.http.HttpResponse.BodyHandler.asString;
+import static org.testng.Assert.assertEquals;
+
+public class PriorKnowledgeTest {
+
+    Http2TestServer server;
+    URI uri;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        server = new Http2TestServer(false, 0);
+        server.addHandler(new Http2EchoHandler(), "/echo");
+        server.start();
+        uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/echo");
+    }
+
+    @AfterClass
+    public void teardown() {
+        server.stop();
+    }
+
+    @Test
+    public void testPriorKnowledge() throws Exception {
+        AtomicInteger connects = new AtomicInteger();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HTTP_2)
+                .http2PriorKnowledge(true)
+                .eventListener(new HttpClient.EventListener() {
+                    @Override
+                    public void connectStart(HttpRequest r, InetSocketAddress a, long t) {
+                        connects.incrementAndGet();
+                    }
+                })
+                .build();
+
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(uri).GET().build(), asString());
+        assertEquals(response.statusCode(), 200);
+        assertEquals(response.version(), HTTP_2);
+
+        // a request with a body, which an upgrade could not carry
+        response = client.send(
+                HttpRequest.newBuilder(uri).POST(fromString("hello")).build(),
+                asString());
+        assertEquals(response.statusCode(), 200);
+        assertEquals(response.version(), HTTP_2);
+        assertEquals(response.body(), "hello");
+
+        List<CompletableFuture<HttpResponse<String>>> cfs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            cfs.add(client.sendAsync(HttpRequest.newBuilder(uri)
+                    .POST(fromString("request " + i)).build(), asString()));
+        }
+        for (int i = 0; i < 10; i++) {
+            HttpResponse<String> r = cfs.get(i).join();
+            assertEquals(r.version(), HTTP_2);
+            assertEquals(r.body(), "request " + i);
+        }
+        // all the requests were multiplexed on one connection
+        assertEquals(connects.get(), 1);
+    }
+
+    @Test
+    public void testPrewarm() throws Exception {
+        AtomicInteger connects = new AtomicInteger();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HTTP_2)
+                .http2PriorKnowledge(true)
+                .eventListener(new HttpClient.EventListener() {
+                    @Override
+                    public void connectStart(HttpRequest r, InetSocketAddress a, long t) {
+                        connects.incrementAndGet();
+                    }
+                })
+                .build();
+        client.prewarm(uri, 1).join();
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(uri).GET().build(), asString());
+        assertEquals(response.version(), HTTP_2);
+        // the request found the HTTP/2 connection opened by prewarm
+        assertEquals(connects.get(), 0);
+    }
+
+    @Test
+    public void testUpgradeByDefault() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HTTP_2).build();
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(uri).GET().build(), asString());
+        assertEquals(response.statusCode(), 200);
+        assertEquals(response.version(), HTTP_2);
+    }
+}
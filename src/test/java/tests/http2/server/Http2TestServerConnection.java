@@ -319,9 +319,22 @@ public class Http2TestServerConnection {
         return (SettingsFrame)frame;
     }
 
+    /**
+     * Returns true if a plaintext connection starts with the connection
+     * preface, i.e. the client has prior knowledge that HTTP/2 is supported.
+     */
+    private boolean priorKnowledge() throws IOException {
+        int len = clientPreface.length;
+        byte[] bytes = new byte[len];
+        is.mark(len);
+        int n = readNBytes(is, bytes, 0, len);
+        is.reset();
+        return n == len && J9Arrays.compare(clientPreface, bytes) == 0;
+    }
+
     void run() throws Exception {
         String upgrade = null;
-        if (!secure) {
+        if (!secure && !priorKnowledge()) {
             upgrade = doUpgrade();
         } else {
             readPreface();
@@ -340,7 +353,7 @@ public class Http2TestServerConnection {
         hpackOut = new Encoder(serverSettings.getParameter(HEADER_TABLE_SIZE));
         hpackIn = new Decoder(clientSettings.getParameter(HEADER_TABLE_SIZE));
 
-        if (!secure) {
+        if (upgrade != null) {
             createPrimordialStream(upgrade);
             nextstream = 3;
         }